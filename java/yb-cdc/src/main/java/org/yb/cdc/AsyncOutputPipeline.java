@@ -0,0 +1,264 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yb.client.YBTable;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves the delivery of change records to an {@link OutputClient} off the RPC I/O threads.
+ *
+ * Records are buffered per tablet, which preserves their order within a tablet, and delivered to
+ * the output client in batches through {@link OutputClient#applyChanges}. A batch is delivered
+ * once the tablet has {@code maxBatchSize} records buffered, or once its oldest record has been
+ * buffered for {@code lingerMs}. When a tablet has {@code bufferCapacity} records buffered,
+ * {@link #isFull} tells the pollers to stop fetching changes for it until the sink catches up.
+ * A batch the output client fails to apply is delivered again, in order, until it is applied or
+ * the pipeline is closed.
+ */
+public class AsyncOutputPipeline implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncOutputPipeline.class);
+
+  // Time to wait before delivering a batch again after the output client failed to apply it.
+  private static final long RETRY_DELAY_MS = 1000;
+
+  private final OutputClient outputClient;
+  private final int bufferCapacity;
+  private final int maxBatchSize;
+  private final long lingerMs;
+  private final ScheduledExecutorService executor;
+  private final Map<String, TabletBuffer> buffers = new ConcurrentHashMap<>();
+  private volatile boolean closed = false;
+  // The last error the output client failed to apply a batch with.
+  private volatile Exception lastError = null;
+
+  public AsyncOutputPipeline(OutputClient outputClient, int bufferCapacity, int maxBatchSize,
+                             long lingerMs, int numThreads) {
+    this.outputClient = outputClient;
+    this.bufferCapacity = bufferCapacity;
+    this.maxBatchSize = maxBatchSize;
+    this.lingerMs = lingerMs;
+    this.executor = Executors.newScheduledThreadPool(numThreads,
+        new ThreadFactoryBuilder().setNameFormat("cdc-output-%d").setDaemon(true).build());
+  }
+
+  /**
+   * @return true if the tablet has as many records buffered as the pipeline allows, in which
+   * case no more changes should be fetched for it
+   */
+  public boolean isFull(String tabletId) {
+    TabletBuffer buffer = buffers.get(tabletId);
+    return buffer != null && buffer.size() >= bufferCapacity;
+  }
+
+  /**
+   * Buffers the records of a GetChanges response for delivery. This never blocks, the buffer
+   * can thus exceed its capacity by at most one response.
+   *
+   * @param onApplied run once all the records have been applied by the output client, may be null
+   */
+  public void submit(YBTable table, String tabletId,
+                     List<CdcService.CDCSDKProtoRecordPB> records, Runnable onApplied) {
+    TabletBuffer buffer = buffers.computeIfAbsent(tabletId, TabletBuffer::new);
+    int sizeBefore = buffer.add(new Chunk(table, records, onApplied));
+    if (sizeBefore + records.size() >= maxBatchSize || lingerMs <= 0) {
+      schedule(buffer, 0);
+    } else if (sizeBefore == 0) {
+      schedule(buffer, lingerMs);
+    }
+  }
+
+  private void schedule(final TabletBuffer buffer, long delayMs) {
+    if (closed) {
+      return;
+    }
+    try {
+      executor.schedule(() -> drain(buffer), delayMs, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      LOG.debug("Output pipeline is shut down, not delivering tablet " + buffer.tabletId);
+    }
+  }
+
+  /**
+   * Delivers everything buffered for the tablet. Only one thread drains a tablet at a time, a
+   * drain scheduled while another is running is a no-op since the running one picks up the
+   * records.
+   */
+  private void drain(TabletBuffer buffer) {
+    if (!buffer.draining.compareAndSet(false, true)) {
+      return;
+    }
+    boolean failed = false;
+    try {
+      List<Chunk> batch;
+      while (!(batch = buffer.peekBatch(maxBatchSize)).isEmpty()) {
+        if (!deliver(buffer.tabletId, batch)) {
+          failed = true;
+          break;
+        }
+        buffer.remove(batch.size());
+        for (Chunk chunk : batch) {
+          if (chunk.onApplied != null) {
+            chunk.onApplied.run();
+          }
+        }
+      }
+    } finally {
+      buffer.draining.set(false);
+    }
+    if (failed) {
+      schedule(buffer, RETRY_DELAY_MS);
+    } else if (!buffer.isEmpty()) {
+      // Records may have been submitted after the last batch was taken.
+      schedule(buffer, 0);
+    }
+  }
+
+  private boolean deliver(String tabletId, List<Chunk> batch) {
+    try {
+      // Consecutive chunks of the same table are applied together.
+      int start = 0;
+      while (start < batch.size()) {
+        YBTable table = batch.get(start).table;
+        List<CdcService.CDCSDKProtoRecordPB> records = new ArrayList<>();
+        int end = start;
+        while (end < batch.size() && batch.get(end).table == table) {
+          records.addAll(batch.get(end).records);
+          ++end;
+        }
+        if (!records.isEmpty()) {
+          outputClient.applyChanges(table, records);
+        }
+        start = end;
+      }
+      return true;
+    } catch (Exception e) {
+      LOG.error("Unable to apply changes of tablet " + tabletId + ", retrying", e);
+      lastError = e;
+      return false;
+    }
+  }
+
+  /**
+   * @return the last error the output client failed to apply a batch with, null if none
+   */
+  public Exception getLastError() {
+    return lastError;
+  }
+
+  /**
+   * Stops the delivery threads and then delivers whatever is still buffered from the calling
+   * thread.
+   *
+   * @throws IOException if the output client failed to apply some of the buffered records, with
+   * its last error as the cause
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    executor.shutdown();
+    try {
+      executor.awaitTermination(30, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    buffers.values().forEach(this::drain);
+    int undelivered = 0;
+    for (TabletBuffer buffer : buffers.values()) {
+      undelivered += buffer.size();
+    }
+    if (undelivered > 0) {
+      throw new IOException("Unable to apply " + undelivered + " buffered change records",
+                            lastError);
+    }
+  }
+
+  private static final class Chunk {
+    final YBTable table;
+    final List<CdcService.CDCSDKProtoRecordPB> records;
+    final Runnable onApplied;
+
+    Chunk(YBTable table, List<CdcService.CDCSDKProtoRecordPB> records, Runnable onApplied) {
+      this.table = table;
+      this.records = records;
+      this.onApplied = onApplied;
+    }
+  }
+
+  private static final class TabletBuffer {
+    final String tabletId;
+    final AtomicBoolean draining = new AtomicBoolean(false);
+    private final ArrayDeque<Chunk> chunks = new ArrayDeque<>();
+    private int size = 0;
+
+    TabletBuffer(String tabletId) {
+      this.tabletId = tabletId;
+    }
+
+    /**
+     * @return the number of records buffered before this chunk was added
+     */
+    synchronized int add(Chunk chunk) {
+      int sizeBefore = size;
+      chunks.addLast(chunk);
+      size += chunk.records.size();
+      return sizeBefore;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    synchronized boolean isEmpty() {
+      return chunks.isEmpty();
+    }
+
+    /**
+     * @return the oldest chunks holding up to maxRecords records, or the oldest chunk if it alone
+     * holds more
+     */
+    synchronized List<Chunk> peekBatch(int maxRecords) {
+      List<Chunk> batch = new ArrayList<>();
+      int records = 0;
+      for (Chunk chunk : chunks) {
+        if (!batch.isEmpty() && records + chunk.records.size() > maxRecords) {
+          break;
+        }
+        batch.add(chunk);
+        records += chunk.records.size();
+      }
+      return batch;
+    }
+
+    synchronized void remove(int numChunks) {
+      for (int i = 0; i < numChunks; ++i) {
+        size -= chunks.removeFirst().records.size();
+      }
+    }
+  }
+}
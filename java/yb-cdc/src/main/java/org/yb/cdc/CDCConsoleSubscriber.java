@@ -48,7 +48,9 @@ public class CDCConsoleSubscriber {
 
     CmdLineOpts configuration = CmdLineOpts.createFromArgs(args);
     try {
-      CDCConsoleSubscriber subscriber = new CDCConsoleSubscriber(configuration, new LogClient());
+      OutputClient outputClient = configuration.outputFile == null
+          ? new LogClient() : new FileOutputClient(configuration.outputFile);
+      CDCConsoleSubscriber subscriber = new CDCConsoleSubscriber(configuration, outputClient);
       subscriber.run();
     }
     catch (Exception e) {
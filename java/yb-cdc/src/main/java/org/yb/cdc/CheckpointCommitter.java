@@ -0,0 +1,132 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.stumbleupon.async.Callback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yb.cdc.util.Checkpoint;
+import org.yb.cdc.util.CheckpointStore;
+import org.yb.client.AsyncYBClient;
+import org.yb.client.YBTable;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically group commits the checkpoints acknowledged by the pollers to a
+ * {@link CheckpointStore}, and then asynchronously sets them on the tablet servers.
+ *
+ * A checkpoint is only recorded once all the records before it have been applied by the
+ * {@link OutputClient}, so after a crash the changes replayed are bounded by the commit interval.
+ */
+public class CheckpointCommitter implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(CheckpointCommitter.class);
+
+  private final CheckpointStore store;
+  private final AsyncYBClient asyncYBClient;
+  private final String streamId;
+  private final ScheduledExecutorService executor;
+
+  // Table of every tablet which had a checkpoint recorded, needed to route setCheckpoint.
+  private final Map<String, YBTable> tabletIdToTable = new ConcurrentHashMap<>();
+
+  // Checkpoints read from the store when the connector started.
+  private Map<String, Checkpoint> storedCheckpoints;
+
+  public CheckpointCommitter(CheckpointStore store, AsyncYBClient asyncYBClient,
+                             String streamId, long commitIntervalMs) {
+    this.store = store;
+    this.asyncYBClient = asyncYBClient;
+    this.streamId = streamId;
+    this.executor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("cdc-checkpoint-committer-%d")
+            .setDaemon(true).build());
+    executor.scheduleWithFixedDelay(this::commitSafely, commitIntervalMs, commitIntervalMs,
+                                    TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return the checkpoints stored for the tablets of the stream, keyed by tablet id
+   */
+  public synchronized Map<String, Checkpoint> getStoredCheckpoints() throws IOException {
+    if (storedCheckpoints == null) {
+      storedCheckpoints = store.load();
+    }
+    return storedCheckpoints;
+  }
+
+  /**
+   * Records an acknowledged checkpoint of a tablet, it will be made durable by the next commit.
+   */
+  public void record(YBTable table, String tabletId, Checkpoint checkpoint) {
+    tabletIdToTable.putIfAbsent(tabletId, table);
+    store.put(tabletId, checkpoint);
+  }
+
+  private void commitSafely() {
+    try {
+      commit();
+    } catch (Exception e) {
+      LOG.error("Unable to commit the CDC checkpoints", e);
+    }
+  }
+
+  /**
+   * Makes the recorded checkpoints durable and sets them on the tablet servers. Failures to set a
+   * checkpoint on the server are only logged, the next commit of the tablet sets a later one.
+   */
+  void commit() throws IOException {
+    // Nothing can be committed before the store is loaded.
+    getStoredCheckpoints();
+    Map<String, Checkpoint> committed = store.flush();
+    for (Map.Entry<String, Checkpoint> entry : committed.entrySet()) {
+      final String tabletId = entry.getKey();
+      final Checkpoint cp = entry.getValue();
+      YBTable table = tabletIdToTable.get(tabletId);
+      if (table == null || cp.getTerm() < 0 || cp.getIndex() < 0) {
+        // Nothing to set on the server while the snapshot of the tablet is not yet complete.
+        continue;
+      }
+      asyncYBClient.setCheckpoint(table, streamId, tabletId, cp.getTerm(), cp.getIndex(), false)
+        .addErrback(new Callback<Void, Exception>() {
+          @Override
+          public Void call(Exception e) {
+            LOG.warn("Unable to set checkpoint " + cp + " on tablet " + tabletId, e);
+            return null;
+          }
+        });
+    }
+    if (!committed.isEmpty()) {
+      LOG.debug("Committed checkpoints of " + committed.size() + " tablets");
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    commit();
+    store.close();
+  }
+}
@@ -34,6 +34,17 @@ public class CmdLineOpts {
   public String clientKeyFile;
   public int maxTablets = AsyncYBClient.DEFAULT_MAX_TABLETS;
   public boolean bootstrap = false;
+  public boolean streaming = false;
+  public int maxInflightRequests = 16;
+  public int maxInflightPerTServer = 2;
+  public String checkpointDir;
+  public long checkpointCommitIntervalMs = 1000;
+  public String outputFile;
+  public boolean asyncOutput = false;
+  public int outputBufferRecords = 10000;
+  public int outputBatchSize = 500;
+  public long outputLingerMs = 50;
+  public long tableDiscoveryIntervalMs = 30000;
 
   // Config file path to be provided from command line.
   public String configFile = "";
@@ -50,7 +61,9 @@ public class CmdLineOpts {
               .concat(lineSeparator)
               .concat("\tschema.name=<your-schema-name>")
               .concat(lineSeparator)
-              .concat("\ttable.name=<your-table-name>")
+              .concat("\ttable.name=<comma-separated-table-names-or-*-for-all>")
+              .concat(lineSeparator)
+              .concat("\ttable.regex=<regex-of-schema-qualified-table-names-if-any>")
               .concat(lineSeparator)
               .concat("\tsocket.read.timeout.ms=" +
                       "<socket-read-timeout-in-milliseconds>")
@@ -121,6 +134,47 @@ public class CmdLineOpts {
       .concat("    Whether to bootstrap the table. This flag has no effect if " +
               "--disable_snapshot is not provided i.e. if you are taking a snapshot, " +
               "bootstrapping will be ignored")
+      .concat(lineSeparator)
+      .concat("  --streaming").concat(lineSeparator)
+      .concat("    Keep a GetChanges call in flight for every tablet independently instead of " +
+              "polling all the tablets in rounds")
+      .concat(lineSeparator)
+      .concat("  --max_inflight_requests").concat(lineSeparator)
+      .concat("    Maximum number of GetChanges calls in flight in the streaming mode, " +
+              "default is 16")
+      .concat(lineSeparator)
+      .concat("  --max_inflight_per_tserver").concat(lineSeparator)
+      .concat("    Maximum number of GetChanges calls in flight to a single tablet server, " +
+              "default is 2")
+      .concat(lineSeparator)
+      .concat("  --checkpoint_dir").concat(lineSeparator)
+      .concat("    Directory to durably store the checkpoints in, so that a restarted connector " +
+              "resumes from them")
+      .concat(lineSeparator)
+      .concat("  --checkpoint_commit_interval_ms").concat(lineSeparator)
+      .concat("    Interval at which the checkpoints are committed, default is 1000")
+      .concat(lineSeparator)
+      .concat("  --output_file").concat(lineSeparator)
+      .concat("    Append the change records to this file as length-delimited protobufs " +
+              "instead of logging them")
+      .concat(lineSeparator)
+      .concat("  --async_output").concat(lineSeparator)
+      .concat("    Apply the change records in batches from separate threads instead of the " +
+              "RPC threads")
+      .concat(lineSeparator)
+      .concat("  --output_buffer_records").concat(lineSeparator)
+      .concat("    Records buffered per tablet before its polling is paused with " +
+              "--async_output, default is 10000")
+      .concat(lineSeparator)
+      .concat("  --output_batch_size").concat(lineSeparator)
+      .concat("    Records applied per batch with --async_output, default is 500")
+      .concat(lineSeparator)
+      .concat("  --output_linger_ms").concat(lineSeparator)
+      .concat("    Maximum time a record is buffered with --async_output, default is 50")
+      .concat(lineSeparator)
+      .concat("  --table_discovery_interval_ms").concat(lineSeparator)
+      .concat("    Interval at which new tables and split tablets are looked up, 0 disables " +
+              "it, default is 30000")
       .concat(lineSeparator);
 
     public static CmdLineOpts createFromArgs(String[] args) throws Exception {
@@ -169,6 +223,29 @@ public class CmdLineOpts {
 
       options.addOption("bootstrap", false, "Whether to bootstrap the table");
 
+      options.addOption("streaming", false,
+        "Whether to poll every tablet independently without waiting for other tablets");
+      options.addOption("max_inflight_requests", true,
+        "Maximum number of GetChanges calls in flight in the streaming mode");
+      options.addOption("max_inflight_per_tserver", true,
+        "Maximum number of GetChanges calls in flight to a single tablet server");
+
+      options.addOption("checkpoint_dir", true,
+        "Directory to durably store the checkpoints in");
+      options.addOption("checkpoint_commit_interval_ms", true,
+        "Interval at which the checkpoints are committed");
+
+      options.addOption("output_file", true,
+        "File to append the change records to as length-delimited protobufs");
+      options.addOption("async_output", false,
+        "Whether to apply the change records in batches off the RPC threads");
+      options.addOption("output_buffer_records", true,
+        "Records buffered per tablet before its polling is paused");
+      options.addOption("output_batch_size", true, "Records applied per batch");
+      options.addOption("output_linger_ms", true, "Maximum time a record is buffered");
+      options.addOption("table_discovery_interval_ms", true,
+        "Interval at which new tables and split tablets are looked up");
+
       // Do the actual arg parsing.
       CommandLineParser parser = new BasicParser();
       CommandLine commandLine = null;
@@ -274,6 +351,55 @@ public class CmdLineOpts {
         bootstrap = true;
       }
 
+      if (commandLine.hasOption("streaming")) {
+        streaming = true;
+      }
+
+      if (commandLine.hasOption("max_inflight_requests")) {
+        maxInflightRequests =
+          Integer.parseInt(commandLine.getOptionValue("max_inflight_requests"));
+      }
+
+      if (commandLine.hasOption("max_inflight_per_tserver")) {
+        maxInflightPerTServer =
+          Integer.parseInt(commandLine.getOptionValue("max_inflight_per_tserver"));
+      }
+
+      if (commandLine.hasOption("checkpoint_dir")) {
+        checkpointDir = commandLine.getOptionValue("checkpoint_dir");
+      }
+
+      if (commandLine.hasOption("checkpoint_commit_interval_ms")) {
+        checkpointCommitIntervalMs =
+          Long.parseLong(commandLine.getOptionValue("checkpoint_commit_interval_ms"));
+      }
+
+      if (commandLine.hasOption("output_file")) {
+        outputFile = commandLine.getOptionValue("output_file");
+      }
+
+      if (commandLine.hasOption("async_output")) {
+        asyncOutput = true;
+      }
+
+      if (commandLine.hasOption("output_buffer_records")) {
+        outputBufferRecords =
+          Integer.parseInt(commandLine.getOptionValue("output_buffer_records"));
+      }
+
+      if (commandLine.hasOption("output_batch_size")) {
+        outputBatchSize = Integer.parseInt(commandLine.getOptionValue("output_batch_size"));
+      }
+
+      if (commandLine.hasOption("output_linger_ms")) {
+        outputLingerMs = Long.parseLong(commandLine.getOptionValue("output_linger_ms"));
+      }
+
+      if (commandLine.hasOption("table_discovery_interval_ms")) {
+        tableDiscoveryIntervalMs =
+          Long.parseLong(commandLine.getOptionValue("table_discovery_interval_ms"));
+      }
+
       // Check if a config file has been provided.
       if (commandLine.hasOption("config_file")) {
         LOG.info("Setting up config file path from command line");
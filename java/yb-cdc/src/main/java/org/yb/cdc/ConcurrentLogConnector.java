@@ -17,18 +17,23 @@ import com.google.common.net.HostAndPort;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.yb.cdc.util.FileCheckpointStore;
 import org.yb.client.*;
-import org.yb.master.MasterDdlOuterClass;
+import org.yb.master.MasterDdlOuterClass.ListTablesResponsePB.TableInfo;
 import org.yb.util.ServerInfo;
 
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class ConcurrentLogConnector {
@@ -37,7 +42,6 @@ public class ConcurrentLogConnector {
   private static YBClient syncClient;
   private static String CDC_CONFIG_FILE = "";
   private String format;
-  private final String PUBLIC_SCHEMA_NAME = "public";
 
   private final ExecutorService executor;
   private YBTable table;
@@ -49,10 +53,12 @@ public class ConcurrentLogConnector {
   private String clientCertFile;
   private String clientKeyFile;
 
-  private Set<String> tableIds;
-  private String tableId = null;
   private String namespace;
-  private String tableName;
+  private TableSelector tableSelector;
+  // All the streamed tables by table id, they share the client and its location cache.
+  private final Map<String, YBTable> tables = new ConcurrentHashMap<>();
+  // Tablets last reported by the master for every streamed table.
+  private final Map<String, Set<String>> knownTablets = new ConcurrentHashMap<>();
 
   private Properties prop = new Properties();
   int concurrency = 1;
@@ -60,6 +66,17 @@ public class ConcurrentLogConnector {
   private boolean stopExecution = false;
   private int pollingInterval;
   private boolean bootstrap;
+  private boolean streaming;
+  private int maxInflightRequests;
+  private int maxInflightPerTServer;
+  private final List<ConcurrentPoller> pollers = new ArrayList<>();
+  private String checkpointDir;
+  private long checkpointCommitIntervalMs;
+  private CheckpointCommitter checkpointCommitter;
+  private AsyncOutputPipeline outputPipeline;
+  private TServerRequestScheduler tserverScheduler;
+  private long tableDiscoveryIntervalMs;
+  private ScheduledExecutorService discoveryExecutor;
 
   public ConcurrentLogConnector(CmdLineOpts opts, OutputClient opClient) throws Exception {
     InputStream input = new FileInputStream(opts.configFile);
@@ -74,20 +91,22 @@ public class ConcurrentLogConnector {
 
     bootstrap = opts.bootstrap;
 
+    streaming = opts.streaming;
+    maxInflightRequests = opts.maxInflightRequests;
+    maxInflightPerTServer = opts.maxInflightPerTServer;
+
+    checkpointDir = opts.checkpointDir;
+    checkpointCommitIntervalMs = opts.checkpointCommitIntervalMs;
+    tableDiscoveryIntervalMs = opts.tableDiscoveryIntervalMs;
+
     // Load a properties file.
     prop.load(input);
     format = prop.getProperty("format");
     namespace = prop.getProperty("schema.name");
-    tableName = prop.getProperty("table.name");
-    String schemaName = PUBLIC_SCHEMA_NAME;
+    tableSelector = new TableSelector(namespace, prop.getProperty("table.name"),
+                                      prop.getProperty("table.regex"));
 
-    if (tableName.contains(".")) {
-      String[] splitVal = tableName.split("\\.");
-      schemaName = splitVal[0];
-      tableName = splitVal[1];
-    }
-
-    LOG.info("Schema name while setting up: " + schemaName);
+    LOG.info("Tables selected for streaming: " + tableSelector);
 
     LOG.info(String.format("Creating new YB client with master address %s",
                             prop.getProperty("master.address")));
@@ -109,35 +128,30 @@ public class ConcurrentLogConnector {
     executor = Executors.newFixedThreadPool(concurrency,
             new ThreadFactoryBuilder().setNameFormat("connector-%d").build());
 
-    ListTablesResponse tablesResp = syncClient.getTablesList();
-
-    for (MasterDdlOuterClass.ListTablesResponsePB.TableInfo tableInfo : tablesResp
-            .getTableInfoList()) {
-      if (tableInfo.getName().equals(tableName) &&
-        tableInfo.getNamespace().getName().equals(namespace) &&
-        (tableInfo.getPgschemaName().isEmpty() || tableInfo.getPgschemaName().equals(schemaName))) {
-        tableId = tableInfo.getId().toStringUtf8();
-        // If the tableId is found, there's no point in iterating further.
-        break;
-      }
+    for (String tableId : listSelectedTableIds()) {
+      tables.put(tableId, syncClient.openTableByUUID(tableId));
     }
 
-    // If tableId is not found, it's likely that it's not present, we should not proceed
+    // If no table is found, it's likely that they are not present, we should not proceed
     // further in that case.
-    if (tableId == null) {
-      LOG.error(String.format("Could not find table with name %s.%s.%s",
-                              namespace, schemaName, tableName));
+    if (tables.isEmpty()) {
+      LOG.error(String.format("Could not find any table matching %s", tableSelector));
       System.exit(0);
     }
+    LOG.info(String.format("Found %d tables to stream", tables.size()));
 
-    tableIds = new HashSet<>();
-    tableIds.add(tableId);
-    table = syncClient.openTableByUUID(tableId);
+    // The stream is created for the whole namespace, any of its tables will do.
+    table = tables.values().iterator().next();
     ListTabletServersResponse serversResp = syncClient.listTabletServers();
     for (ServerInfo serverInfo : serversResp.getTabletServersList()) {
         hps.add(HostAndPort.fromParts(serverInfo.getHost(), serverInfo.getPort()));
     }
     outputClient = opClient;
+    if (opts.asyncOutput) {
+      outputPipeline = new AsyncOutputPipeline(outputClient, opts.outputBufferRecords,
+                                               opts.outputBatchSize, opts.outputLingerMs,
+                                               concurrency);
+    }
     streamId = prop.getProperty("stream.id"); // Getting this from passed options (opts).
     input.close();
   }
@@ -152,43 +166,106 @@ public class ConcurrentLogConnector {
     }
     LOG.info(String.format("DB stream id is %s", streamId));
 
-    List<LocatedTablet> tabletLocations = table.getTabletsLocations(30000);
-    List<Map<String, List<String>>> tableIdsToTabletIdsMapList = new ArrayList<>(concurrency);
+    if (checkpointDir != null) {
+      // Checkpoints of different streams must not be mixed up, so every stream gets its own
+      // directory.
+      checkpointCommitter = new CheckpointCommitter(
+        new FileCheckpointStore(Paths.get(checkpointDir, streamId).toString()), client, streamId,
+        checkpointCommitIntervalMs);
+    }
+
+    // Warm up the location cache of the client for all the tables at once, rather than having
+    // every first call to a tablet look it up with the master.
+    LOG.info(String.format("Cached the locations of %d tablets",
+                           syncClient.prefetchTabletLocations(new ArrayList<>(tables.values()))));
+
+    Map<String, List<LocatedTablet>> tabletLocations = new HashMap<>();
+    for (YBTable streamedTable : tables.values()) {
+      List<LocatedTablet> tablets = streamedTable.getTabletsLocations(30000);
+      tabletLocations.put(streamedTable.getTableId(), tablets);
+      knownTablets.put(streamedTable.getTableId(), tabletIdsOf(tablets));
+    }
+
+    if (streaming) {
+      runStreaming(tabletLocations);
+      return;
+    }
+
+    // Keep the tablets led by the same tablet server in the same poller at first, balancing the
+    // number of tablets across the pollers. The calls in flight to every server are capped by a
+    // scheduler shared by all the pollers, which charges every call to the current leader of its
+    // tablet, so the cap holds once leadership moves and the groups no longer match the pollers.
+    Map<String, Map<String, List<String>>> tabletsByLeader = new HashMap<>();
+    int numTablets = 0;
+    for (Map.Entry<String, List<LocatedTablet>> entry : tabletLocations.entrySet()) {
+      for (LocatedTablet tablet : entry.getValue()) {
+        LocatedTablet.Replica leader = tablet.getLeaderReplica();
+        String leaderUuid = leader == null ? TServerRequestScheduler.UNKNOWN_LEADER
+                                           : leader.getTsUuid();
+        tabletsByLeader.computeIfAbsent(leaderUuid, k -> new HashMap<>())
+          .computeIfAbsent(entry.getKey(), k -> new ArrayList<>())
+          .add(new String(tablet.getTabletId()));
+        ++numTablets;
+      }
+    }
+    List<Map<String, List<String>>> leaderGroups = new ArrayList<>(tabletsByLeader.values());
+    leaderGroups.sort((a, b) -> Integer.compare(countTablets(b), countTablets(a)));
 
+    List<Map<String, List<String>>> tableIdsToTabletIdsMapList = new ArrayList<>(concurrency);
+    int[] tabletsPerPoller = new int[concurrency];
     for (int i = 0; i < concurrency; i++) {
       tableIdsToTabletIdsMapList.add(new HashMap<>());
     }
-    int i = 0;
-    for (String tableId : tableIds) {
-      for (LocatedTablet tablet : tabletLocations) {
-        i++;
-        String tabletId = new String(tablet.getTabletId());
-        tableIdsToTabletIdsMapList.get(i % concurrency).putIfAbsent(tableId,
-                new ArrayList<>());
-        tableIdsToTabletIdsMapList.get(i % concurrency).get(tableId).add(tabletId);
+    for (Map<String, List<String>> group : leaderGroups) {
+      int target = 0;
+      for (int i = 1; i < concurrency; i++) {
+        if (tabletsPerPoller[i] < tabletsPerPoller[target]) {
+          target = i;
+        }
       }
+      Map<String, List<String>> pollerTablets = tableIdsToTabletIdsMapList.get(target);
+      group.forEach((tableId, tabletIds) ->
+        pollerTablets.computeIfAbsent(tableId, k -> new ArrayList<>()).addAll(tabletIds));
+      tabletsPerPoller[target] += countTablets(group);
     }
+    LOG.info(String.format("Polling %d tablets of %d tables led by %d tablet servers, with at " +
+                           "most %d requests in flight per tablet server", numTablets,
+                           tables.size(), leaderGroups.size(), maxInflightPerTServer));
 
-    List<Runnable> runnables = tableIdsToTabletIdsMapList.stream().map(
-            tableIdsToTabletIds -> {
-                try {
-                  return new ConcurrentPoller(syncClient, client, outputClient, streamId,
-                                              tableIdsToTabletIds, 2, format, stopExecution,
-                                              enableSnapshot, bootstrap);
-                } catch (IOException e) {
-                  e.printStackTrace();
-                }
-                return null;
-            }).filter(poller -> poller != null).map(poller -> (Runnable) () -> {
+    List<LocatedTablet> allTablets = new ArrayList<>();
+    tabletLocations.values().forEach(allTablets::addAll);
+    tserverScheduler = new TServerRequestScheduler(client, maxInflightPerTServer, allTablets);
+    // A poller may end up polling tablets of any server as leadership moves, the scheduler keeps
+    // the calls to every server under the cap.
+    int pollerConcurrency = maxInflightPerTServer * Math.max(1, leaderGroups.size());
+    for (int i = 0; i < concurrency; i++) {
+      try {
+        ConcurrentPoller poller = new ConcurrentPoller(
+          syncClient, client, outputClient, streamId, tableIdsToTabletIdsMapList.get(i),
+          pollerConcurrency, format, stopExecution,
+          enableSnapshot, bootstrap, checkpointCommitter, outputPipeline);
+        synchronized (pollers) {
+          pollers.add(poller);
+        }
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    startTableDiscovery();
+
+    List<Runnable> runnables;
+    synchronized (pollers) {
+      runnables = pollers.stream().map(poller -> (Runnable) () -> {
         try {
             while (true) {
-              poller.poll();
+              poller.poll(tserverScheduler);
               Thread.sleep(pollingInterval);
             }
         } catch (Exception e) {
           e.printStackTrace();
         }
-    }).collect(Collectors.toList());
+      }).collect(Collectors.toList());
+    }
 
     List<Future> futures = runnables.stream()
         .map(r -> executor.submit(r)).collect(Collectors.toList());
@@ -198,7 +275,165 @@ public class ConcurrentLogConnector {
     }
   }
 
+  /**
+   * Streams all the tablets of all the tables through a single poller, so that the in-flight
+   * GetChanges calls are bounded globally rather than per group of tablets.
+   */
+  private void runStreaming(Map<String, List<LocatedTablet>> tabletLocations) throws Exception {
+    Map<String, List<String>> tableIdsToTabletIds = new HashMap<>();
+    List<LocatedTablet> allTablets = new ArrayList<>();
+    tabletLocations.forEach((tableId, tablets) -> {
+      tableIdsToTabletIds.put(tableId, new ArrayList<>(tabletIdsOf(tablets)));
+      allTablets.addAll(tablets);
+    });
+
+    ConcurrentPoller poller = new ConcurrentPoller(syncClient, client, outputClient, streamId,
+                                                   tableIdsToTabletIds, maxInflightRequests,
+                                                   format, stopExecution, enableSnapshot,
+                                                   bootstrap, checkpointCommitter,
+                                                   outputPipeline);
+    synchronized (pollers) {
+      pollers.add(poller);
+    }
+    tserverScheduler = new TServerRequestScheduler(client, maxInflightPerTServer, allTablets);
+    LOG.info(String.format("Streaming changes from %d tablets of %d tables with at most %d " +
+                           "requests in flight, %d per tablet server", allTablets.size(),
+                           tables.size(), maxInflightRequests, maxInflightPerTServer));
+    startTableDiscovery();
+    poller.pollContinuously(pollingInterval, tserverScheduler);
+  }
+
+  /**
+   * @return the ids of the tables of the namespace which match the table selection
+   */
+  private Set<String> listSelectedTableIds() throws Exception {
+    Set<String> tableIds = new HashSet<>();
+    ListTablesResponse tablesResp = syncClient.getTablesList(null, true, namespace);
+    for (TableInfo tableInfo : tablesResp.getTableInfoList()) {
+      if (tableSelector.matches(tableInfo)) {
+        tableIds.add(tableInfo.getId().toStringUtf8());
+      }
+    }
+    return tableIds;
+  }
+
+  private static Set<String> tabletIdsOf(List<LocatedTablet> tablets) {
+    Set<String> tabletIds = new HashSet<>();
+    for (LocatedTablet tablet : tablets) {
+      tabletIds.add(new String(tablet.getTabletId()));
+    }
+    return tabletIds;
+  }
+
+  private static int countTablets(Map<String, List<String>> tableIdsToTabletIds) {
+    return tableIdsToTabletIds.values().stream().mapToInt(List::size).sum();
+  }
+
+  private void startTableDiscovery() {
+    if (tableDiscoveryIntervalMs <= 0) {
+      return;
+    }
+    discoveryExecutor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("cdc-table-discovery-%d")
+            .setDaemon(true).build());
+    discoveryExecutor.scheduleWithFixedDelay(this::discoverTablets, tableDiscoveryIntervalMs,
+                                             tableDiscoveryIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Looks up the tables created since the last run which match the selection, and the tablets
+   * created by splits. They are added to the least loaded poller without restarting the stream.
+   * Tablets which the master no longer reports, the parents of split tablets and the tablets of
+   * dropped tables, are removed from their poller once they have been drained.
+   */
+  private void discoverTablets() {
+    try {
+      Set<String> selectedTableIds = listSelectedTableIds();
+      for (String tableId : selectedTableIds) {
+        if (!tables.containsKey(tableId)) {
+          YBTable newTable = syncClient.openTableByUUID(tableId);
+          LOG.info(String.format("Discovered new table %s (%s)", newTable.getName(), tableId));
+          syncClient.prefetchTabletLocations(Collections.singletonList(newTable));
+          tables.put(tableId, newTable);
+        }
+      }
+      for (String tableId : new ArrayList<>(tables.keySet())) {
+        if (!selectedTableIds.contains(tableId)) {
+          LOG.info(String.format("Table %s is gone, draining its tablets", tableId));
+          tables.remove(tableId);
+          Set<String> tabletIds = knownTablets.remove(tableId);
+          if (tabletIds != null) {
+            retireTablets(tabletIds);
+          }
+        }
+      }
+
+      for (YBTable streamedTable : tables.values()) {
+        List<LocatedTablet> tablets = streamedTable.getTabletsLocations(30000);
+        Set<String> current = tabletIdsOf(tablets);
+        Set<String> known = knownTablets.getOrDefault(streamedTable.getTableId(),
+                                                      Collections.emptySet());
+
+        List<String> added = new ArrayList<>();
+        for (String tabletId : current) {
+          if (!known.contains(tabletId)) {
+            added.add(tabletId);
+          }
+        }
+        Set<String> removed = new HashSet<>(known);
+        removed.removeAll(current);
+
+        if (!added.isEmpty()) {
+          if (tserverScheduler != null) {
+            tserverScheduler.addTablets(tablets);
+          }
+          leastLoadedPoller().addTablets(streamedTable, added);
+        }
+        if (!removed.isEmpty()) {
+          retireTablets(removed);
+        }
+        knownTablets.put(streamedTable.getTableId(), current);
+      }
+    } catch (Exception e) {
+      LOG.warn("Unable to discover new tables and tablets, retrying later", e);
+    }
+  }
+
+  private ConcurrentPoller leastLoadedPoller() {
+    synchronized (pollers) {
+      return pollers.stream()
+        .min(Comparator.comparingInt(ConcurrentPoller::getTabletCount)).get();
+    }
+  }
+
+  private void retireTablets(Collection<String> tabletIds) {
+    synchronized (pollers) {
+      pollers.forEach(poller -> poller.retireTablets(tabletIds));
+    }
+  }
+
   public void close() {
     stopExecution = true;
+    if (discoveryExecutor != null) {
+      discoveryExecutor.shutdownNow();
+    }
+    synchronized (pollers) {
+      pollers.forEach(ConcurrentPoller::close);
+    }
+    // The buffered records must be applied before their checkpoints are committed.
+    if (outputPipeline != null) {
+      try {
+        outputPipeline.close();
+      } catch (IOException e) {
+        LOG.error("Unable to apply the buffered changes while closing", e);
+      }
+    }
+    if (checkpointCommitter != null) {
+      try {
+        checkpointCommitter.close();
+      } catch (IOException e) {
+        LOG.error("Unable to commit the checkpoints while closing", e);
+      }
+    }
   }
 }
@@ -13,6 +13,7 @@
 
 package org.yb.cdc;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.stumbleupon.async.Callback;
 import com.stumbleupon.async.Deferred;
 import org.slf4j.Logger;
@@ -37,6 +38,25 @@ public class ConcurrentPoller {
   private boolean enableSnapshot;
   private boolean bootstrap;
 
+  // Backoff applied between GetChanges calls on a tablet which returned no records while
+  // streaming. It doubles on every empty response up to maxEmptyBackoffMs and is reset as soon
+  // as the tablet returns records again.
+  static final long INITIAL_EMPTY_BACKOFF_MS = 10;
+  private long maxEmptyBackoffMs = 200;
+
+  // Used in the streaming mode to (re)issue GetChanges calls off the RPC I/O threads.
+  private ScheduledExecutorService streamScheduler;
+  private final CountDownLatch streamStopped = new CountDownLatch(1);
+  // Caps the calls in flight per tablet server while streaming, null if there is no such cap.
+  private TServerRequestScheduler tserverScheduler;
+  private volatile boolean closed = false;
+
+  // Tablets polled by this poller. The chains of the tablets removed from it stop on their own.
+  private final Set<String> activeTablets = ConcurrentHashMap.newKeySet();
+  // Tablets no longer reported by the master, i.e. the parents of split tablets and the tablets
+  // of dropped tables. They are polled until drained and then removed.
+  private final Set<String> retiringTablets = ConcurrentHashMap.newKeySet();
+
   static final AbstractMap.SimpleImmutableEntry<String, String> END_PAIR =
       new AbstractMap.SimpleImmutableEntry("", "");
 
@@ -51,6 +71,13 @@ public class ConcurrentPoller {
 
   YBClient syncClient;
 
+  // Durably commits the acknowledged checkpoints, null when they are only kept in memory.
+  private final CheckpointCommitter checkpointCommitter;
+
+  // Delivers the records to the output client off the RPC I/O threads, null when they are
+  // applied directly from the response callbacks.
+  private final AsyncOutputPipeline outputPipeline;
+
   // We need the schema information in a DDL the very first time we send a getChanges request.
   boolean needSchemaInfo = false;
 
@@ -64,7 +91,25 @@ public class ConcurrentPoller {
                           boolean stopExecution,
                           boolean enableSnapshot,
                           boolean bootstrap) throws IOException {
+    this(syncClient, client, outputClient, streamId, tableIdsToTabletIds, concurrency, format,
+         stopExecution, enableSnapshot, bootstrap, null, null);
+  }
+
+  public ConcurrentPoller(YBClient syncClient,
+                          AsyncYBClient client,
+                          OutputClient outputClient,
+                          String streamId,
+                          Map<String, List<String>> tableIdsToTabletIds,
+                          int concurrency,
+                          String format,
+                          boolean stopExecution,
+                          boolean enableSnapshot,
+                          boolean bootstrap,
+                          CheckpointCommitter checkpointCommitter,
+                          AsyncOutputPipeline outputPipeline) throws IOException {
     this.syncClient = syncClient;
+    this.checkpointCommitter = checkpointCommitter;
+    this.outputPipeline = outputPipeline;
     this.asyncYBClient = client;
     this.streamId = streamId;
     this.format = format;
@@ -90,7 +135,8 @@ public class ConcurrentPoller {
     listTabletIdTableIdPair = tableIdsToTabletIds.entrySet().stream()
       .flatMap(e -> e.getValue().stream()
         .map(v -> new AbstractMap.SimpleImmutableEntry<>(v, e.getKey())))
-      .collect(Collectors.toList());
+      .collect(Collectors.toCollection(CopyOnWriteArrayList::new));
+    listTabletIdTableIdPair.forEach(entry -> activeTablets.add(entry.getKey()));
     queue = new LinkedBlockingQueue();
     try {
       initOffset();
@@ -99,48 +145,143 @@ public class ConcurrentPoller {
     }
   }
 
-  private void initOffset() throws Exception {
-    long term = 0;
-    long index = 0;
-    int writeId = 0;
-
+  private Checkpoint initialCheckpoint() {
     if (enableSnapshot) {
-      term = -1;
-      index = -1;
-      writeId = -1;
+      return new Checkpoint(-1, -1, "".getBytes(), -1, 0);
     }
+    return new Checkpoint(0, 0, "".getBytes(), 0, 0);
+  }
+
+  private Map<String, Checkpoint> storedCheckpoints() throws IOException {
+    return checkpointCommitter == null
+        ? Collections.emptyMap() : checkpointCommitter.getStoredCheckpoints();
+  }
 
-    long finalTerm = term;
-    long finalIndex = index;
-    int finalWriteId = writeId;
+  private void initOffset() throws Exception {
     listTabletIdTableIdPair.forEach(entry ->
-      checkPointMap.put(entry.getKey(), new Checkpoint(finalTerm, finalIndex,
-          "".getBytes(), finalWriteId, 0)));
+      checkPointMap.put(entry.getKey(), initialCheckpoint()));
 
+    Map<String, Checkpoint> storedCheckpoints = storedCheckpoints();
     for (AbstractMap.SimpleImmutableEntry<String, String> entry: listTabletIdTableIdPair) {
-      final YBTable table = tableIdToTable.get(entry.getValue());
+      initTabletOffset(entry.getKey(), entry.getValue(), storedCheckpoints);
+    }
+  }
 
-      GetCheckpointResponse getCheckpointResponse = syncClient.getCheckpoint(table, streamId,
-                                                                            entry.getKey());
-
-      if (bootstrap) {
-        if (getCheckpointResponse.getTerm() == -1 && getCheckpointResponse.getIndex() == -1) {
-          LOG.info(String.format("Bootstrapping tablet %s", entry.getKey()));
-          syncClient.bootstrapTablet(table, streamId, entry.getKey(), 0, 0, true, true);
-        } else {
-          LOG.info(String.format("Skipping bootstrap for tablet %s as it has checkpoint %d.%d",
-                                 entry.getKey(), getCheckpointResponse.getTerm(),
-                                 getCheckpointResponse.getIndex()));
-        }
+  private void initTabletOffset(String tabletId, String tableId,
+                                Map<String, Checkpoint> storedCheckpoints) throws Exception {
+    final YBTable table = tableIdToTable.get(tableId);
+
+    Checkpoint storedCheckpoint = storedCheckpoints.get(tabletId);
+    if (storedCheckpoint != null) {
+      // Resume exactly from where we left off, the server checkpoint may be behind it.
+      LOG.info(String.format("Resuming tablet %s from stored checkpoint %s",
+                             tabletId, storedCheckpoint));
+      checkPointMap.put(tabletId, storedCheckpoint);
+      return;
+    }
+
+    GetCheckpointResponse getCheckpointResponse = syncClient.getCheckpoint(table, streamId,
+                                                                          tabletId);
+
+    if (bootstrap) {
+      if (getCheckpointResponse.getTerm() == -1 && getCheckpointResponse.getIndex() == -1) {
+        LOG.info(String.format("Bootstrapping tablet %s", tabletId));
+        syncClient.bootstrapTablet(table, streamId, tabletId, 0, 0, true, true);
       } else {
-        LOG.info("Skipping bootstrap because the --bootstrap flag was not specified");
-        syncClient.bootstrapTablet(table, streamId, entry.getKey(), 0, 0, true, false);
+        LOG.info(String.format("Skipping bootstrap for tablet %s as it has checkpoint %d.%d",
+                               tabletId, getCheckpointResponse.getTerm(),
+                               getCheckpointResponse.getIndex()));
       }
+    } else {
+      LOG.info("Skipping bootstrap because the --bootstrap flag was not specified");
+      syncClient.bootstrapTablet(table, streamId, tabletId, 0, 0, true, false);
     }
+  }
 
+  /**
+   * Starts polling tablets which appeared after this poller was created, i.e. the tablets of a
+   * new table or the children of a split tablet. Their offsets are initialized like the ones of
+   * the tablets polled from the start. Tablets which are already polled are ignored.
+   */
+  public void addTablets(YBTable table, List<String> tabletIds) throws IOException {
+    tableIdToTable.putIfAbsent(table.getTableId(), table);
+    Map<String, Checkpoint> storedCheckpoints = storedCheckpoints();
+    for (String tabletId : tabletIds) {
+      if (!activeTablets.add(tabletId)) {
+        continue;
+      }
+      checkPointMap.put(tabletId, initialCheckpoint());
+      try {
+        initTabletOffset(tabletId, table.getTableId(), storedCheckpoints);
+      } catch (Exception e) {
+        LOG.error("Exception thrown while initializing the offset of tablet " + tabletId, e);
+      }
+      LOG.info(String.format("Polling new tablet %s of table %s", tabletId, table.getName()));
+      AbstractMap.SimpleImmutableEntry<String, String> entry =
+        new AbstractMap.SimpleImmutableEntry<>(tabletId, table.getTableId());
+      synchronized (this) {
+        listTabletIdTableIdPair.add(entry);
+        if (streamScheduler != null) {
+          scheduleNext(new TabletStream(tabletId, table.getTableId()), 0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Marks tablets which the master no longer reports. They keep being polled until they return
+   * no more changes, or until they can no longer be found, and are then removed.
+   */
+  public void retireTablets(Collection<String> tabletIds) {
+    for (String tabletId : tabletIds) {
+      if (activeTablets.contains(tabletId) && retiringTablets.add(tabletId)) {
+        LOG.info("Draining tablet " + tabletId + " before removing it");
+      }
+    }
+  }
+
+  /**
+   * @return the number of tablets polled by this poller
+   */
+  public int getTabletCount() {
+    return activeTablets.size();
+  }
+
+  private void finishTablet(String tabletId) {
+    if (activeTablets.remove(tabletId)) {
+      retiringTablets.remove(tabletId);
+      listTabletIdTableIdPair.removeIf(entry -> entry.getKey().equals(tabletId));
+      LOG.info("Removed drained tablet " + tabletId);
+    }
+  }
+
+  private void finishIfDrained(String tabletId, GetChangesResponse response) {
+    if (response.getResp().getCdcSdkProtoRecordsCount() == 0 &&
+        retiringTablets.contains(tabletId)) {
+      finishTablet(tabletId);
+    }
+  }
+
+  private void finishIfGone(String tabletId, Exception e) {
+    if (!retiringTablets.contains(tabletId) || !(e instanceof CDCErrorException)) {
+      return;
+    }
+    CdcService.CDCErrorPB.Code code = ((CDCErrorException) e).getCDCError().getCode();
+    if (code == CdcService.CDCErrorPB.Code.TABLET_NOT_FOUND ||
+        code == CdcService.CDCErrorPB.Code.TABLE_NOT_FOUND) {
+      finishTablet(tabletId);
+    }
   }
 
   public void poll() throws Exception {
+    poll(null);
+  }
+
+  /**
+   * Same as {@link #poll()}, additionally capping the calls in flight to every tablet server with
+   * the given scheduler, which may be shared with other pollers.
+   */
+  public void poll(TServerRequestScheduler tserverScheduler) throws Exception {
     final List result = new ArrayList();
     queue.addAll(listTabletIdTableIdPair);
     queue.add(END_PAIR);
@@ -158,18 +299,49 @@ public class ConcurrentPoller {
         requestBarrier.release();
         break;
       }
+      if (outputPipeline != null && outputPipeline.isFull(entry.getKey())) {
+        // Let the output catch up with this tablet before fetching more of its changes.
+        LOG.debug("Output buffer of tablet " + entry.getKey() + " is full, skipping it");
+        requestBarrier.release();
+        continue;
+      }
       final Checkpoint cp = checkPointMap.get(entry.getKey());
       final YBTable table = tableIdToTable.get(entry.getValue());
 
       LOG.debug("Polling table: " + table + " tablet: " + entry.getKey() +
                " with checkpoint " + cp);
       Callback resCallback = new HandleResponse(table, entry.getKey(), result, requestBarrier);
-      Callback errCallback = new HandleFailure(requestBarrier);
-
-      Deferred<GetChangesResponse> response = asyncYBClient.getChangesCDCSDK(
-        table, streamId, entry.getKey() /*tabletId*/,
-        cp.getTerm(), cp.getIndex(), cp.getKey(), cp.getWriteId(), cp.getSnapshotTime(),
-        needSchemaInfo);
+      Callback errCallback = new HandleFailure(entry.getKey(), requestBarrier);
+
+      Deferred<GetChangesResponse> response;
+      if (tserverScheduler == null) {
+        response = asyncYBClient.getChangesCDCSDK(
+          table, streamId, entry.getKey() /*tabletId*/,
+          cp.getTerm(), cp.getIndex(), cp.getKey(), cp.getWriteId(), cp.getSnapshotTime(),
+          needSchemaInfo);
+      } else {
+        // The call is sent once the leader of the tablet has a free slot, which may be from the
+        // callback of a call of another poller.
+        final Deferred<GetChangesResponse> capped = new Deferred<>();
+        final boolean withSchemaInfo = needSchemaInfo;
+        tserverScheduler.submit(entry.getValue(), entry.getKey(), server -> {
+          Deferred<GetChangesResponse> sent;
+          try {
+            sent = asyncYBClient.getChangesCDCSDK(
+              table, streamId, entry.getKey() /*tabletId*/,
+              cp.getTerm(), cp.getIndex(), cp.getKey(), cp.getWriteId(), cp.getSnapshotTime(),
+              withSchemaInfo);
+          } catch (Exception e) {
+            tserverScheduler.release(server);
+            capped.callback(e);
+            return;
+          }
+          sent.addCallbacks(new ReleaseServerSlot<GetChangesResponse>(tserverScheduler, server,
+                                                                      capped),
+                            new ReleaseServerSlot<Exception>(tserverScheduler, server, capped));
+        });
+        response = capped;
+      }
 
       // Once we got the response, we do not need the schema in further calls so unset the flag.
       needSchemaInfo = false;
@@ -201,16 +373,248 @@ public class ConcurrentPoller {
     }
   }
 
+  /**
+   * Streams changes from all the tablets of this poller until {@link #close()} is called.
+   *
+   * Unlike {@link #poll()}, there is no batch barrier here: every tablet has its own chain of
+   * GetChanges calls where the response callback updates the tablet's checkpoint and immediately
+   * schedules the next call. A slow tablet thus only delays itself. The request barrier bounds
+   * the number of GetChanges calls in flight across all the tablets of this poller.
+   *
+   * @param maxEmptyBackoffMs the maximum time to wait before polling a tablet again after it
+   *                          returned no records
+   */
+  public void pollContinuously(long maxEmptyBackoffMs) throws Exception {
+    pollContinuously(maxEmptyBackoffMs, null);
+  }
+
+  /**
+   * Same as {@link #pollContinuously(long)}, additionally capping the calls in flight to every
+   * tablet server with the given scheduler.
+   */
+  public void pollContinuously(long maxEmptyBackoffMs,
+                               TServerRequestScheduler tserverScheduler) throws Exception {
+    this.tserverScheduler = tserverScheduler;
+    this.maxEmptyBackoffMs = Math.max(INITIAL_EMPTY_BACKOFF_MS, maxEmptyBackoffMs);
+    // Tablets added concurrently are either in the list already or see the scheduler.
+    synchronized (this) {
+      streamScheduler = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("cdc-stream-scheduler-%d")
+              .setDaemon(true).build());
+      for (AbstractMap.SimpleImmutableEntry<String, String> entry : listTabletIdTableIdPair) {
+        final TabletStream stream = new TabletStream(entry.getKey(), entry.getValue());
+        streamScheduler.execute(() -> issueGetChanges(stream));
+      }
+    }
+
+    try {
+      streamStopped.await();
+    } finally {
+      streamScheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Stops the streaming started by {@link #pollContinuously(long)}. Calls already in flight are
+   * allowed to complete but no new calls are issued.
+   */
+  public void close() {
+    closed = true;
+    streamStopped.countDown();
+  }
+
+  private void issueGetChanges(final TabletStream stream) {
+    if (closed || stopExecution) {
+      streamStopped.countDown();
+      return;
+    }
+    if (!activeTablets.contains(stream.tabletId)) {
+      return;
+    }
+
+    if (outputPipeline != null && outputPipeline.isFull(stream.tabletId)) {
+      // Let the output catch up with this tablet before fetching more of its changes.
+      scheduleNext(stream, stream.nextBackoffMs());
+      return;
+    }
+
+    if (tserverScheduler == null) {
+      sendGetChanges(stream);
+      return;
+    }
+    // Once the leader of the tablet has a free slot, the call is sent from the scheduler thread
+    // like any other, as the slot may be handed over from an RPC callback.
+    tserverScheduler.submit(stream.tableId, stream.tabletId, server -> {
+      stream.chargedServer = server;
+      try {
+        streamScheduler.execute(() -> sendGetChanges(stream));
+      } catch (RejectedExecutionException e) {
+        releaseServerSlot(stream);
+      }
+    });
+  }
+
+  private void sendGetChanges(final TabletStream stream) {
+    // This only blocks the scheduler thread, the permits are released by the RPC callbacks.
+    requestBarrier.acquireUninterruptibly();
+    final Checkpoint cp = checkPointMap.get(stream.tabletId);
+    final YBTable table = tableIdToTable.get(stream.tableId);
+
+    LOG.debug("Streaming table: " + table + " tablet: " + stream.tabletId +
+              " with checkpoint " + cp);
+    Deferred<GetChangesResponse> response;
+    try {
+      response = asyncYBClient.getChangesCDCSDK(
+        table, streamId, stream.tabletId,
+        cp.getTerm(), cp.getIndex(), cp.getKey(), cp.getWriteId(), cp.getSnapshotTime(),
+        needSchemaInfo);
+    } catch (Exception e) {
+      requestBarrier.release();
+      releaseServerSlot(stream);
+      LOG.error("Unable to send GetChanges for tablet " + stream.tabletId, e);
+      scheduleNext(stream, stream.nextBackoffMs());
+      return;
+    }
+    response.addCallbacks(new ContinueStream(table, stream),
+                          new ContinueStreamOnFailure(stream));
+  }
+
+  private void releaseServerSlot(TabletStream stream) {
+    if (tserverScheduler != null && stream.chargedServer != null) {
+      String server = stream.chargedServer;
+      stream.chargedServer = null;
+      tserverScheduler.release(server);
+    }
+  }
+
+  private void scheduleNext(final TabletStream stream, long delayMs) {
+    if (closed) {
+      return;
+    }
+    try {
+      if (delayMs <= 0) {
+        streamScheduler.execute(() -> issueGetChanges(stream));
+      } else {
+        streamScheduler.schedule(() -> issueGetChanges(stream), delayMs, TimeUnit.MILLISECONDS);
+      }
+    } catch (RejectedExecutionException e) {
+      LOG.debug("Scheduler is shut down, not polling tablet " + stream.tabletId + " further");
+    }
+  }
+
+  /**
+   * Per-tablet state of the continuation chain used in the streaming mode.
+   */
+  final class TabletStream {
+    final String tabletId;
+    final String tableId;
+    // Only touched from the callback of the single call in flight for this tablet.
+    private long emptyBackoffMs = 0;
+    // The tablet server the call in flight is charged to, if calls are capped per server.
+    volatile String chargedServer;
+
+    TabletStream(String tabletId, String tableId) {
+      this.tabletId = tabletId;
+      this.tableId = tableId;
+    }
+
+    long nextBackoffMs() {
+      emptyBackoffMs = emptyBackoffMs == 0 ? INITIAL_EMPTY_BACKOFF_MS
+                                           : Math.min(emptyBackoffMs * 2, maxEmptyBackoffMs);
+      return emptyBackoffMs;
+    }
+
+    void resetBackoff() {
+      emptyBackoffMs = 0;
+    }
+  }
+
+  /**
+   * Frees the slot of a call capped by a {@link TServerRequestScheduler} once it completes, and
+   * passes the outcome of the call on.
+   */
+  static final class ReleaseServerSlot<T> implements Callback<Void, T> {
+    private final TServerRequestScheduler tserverScheduler;
+    private final String server;
+    private final Deferred<GetChangesResponse> capped;
+
+    ReleaseServerSlot(TServerRequestScheduler tserverScheduler, String server,
+                      Deferred<GetChangesResponse> capped) {
+      this.tserverScheduler = tserverScheduler;
+      this.server = server;
+      this.capped = capped;
+    }
+
+    @Override
+    public Void call(T result) {
+      tserverScheduler.release(server);
+      capped.callback(result);
+      return null;
+    }
+
+    public String toString() {
+      return "Release Server Slot";
+    }
+  }
+
+  final class ContinueStream implements Callback<Void, GetChangesResponse> {
+    private final HandleResponse handleResponse;
+    private final TabletStream stream;
+
+    ContinueStream(YBTable table, TabletStream stream) {
+      this.handleResponse = new HandleResponse(table, stream.tabletId, null, requestBarrier);
+      this.stream = stream;
+    }
+
+    @Override
+    public Void call(final GetChangesResponse response) {
+      handleResponse.call(response);
+      releaseServerSlot(stream);
+      if (response.getResp().getCdcSdkProtoRecordsCount() == 0) {
+        scheduleNext(stream, stream.nextBackoffMs());
+      } else {
+        stream.resetBackoff();
+        scheduleNext(stream, 0);
+      }
+      return null;
+    }
+
+    public String toString() {
+      return "Continue Stream";
+    }
+  }
+
+  final class ContinueStreamOnFailure implements Callback<Void, Exception> {
+    private final TabletStream stream;
+
+    ContinueStreamOnFailure(TabletStream stream) {
+      this.stream = stream;
+    }
+
+    @Override
+    public Void call(Exception e) {
+      requestBarrier.release();
+      releaseServerSlot(stream);
+      finishIfGone(stream.tabletId, e);
+      LOG.warn("GetChanges failed for tablet " + stream.tabletId + ", retrying", e);
+      scheduleNext(stream, stream.nextBackoffMs());
+      return null;
+    }
+  }
+
   final class HandleFailure implements Callback<Void, Exception> {
+    private final String tabletId;
     private final Semaphore barrier;
 
-    HandleFailure(Semaphore barrier) {
+    HandleFailure(String tabletId, Semaphore barrier) {
+      this.tabletId = tabletId;
       this.barrier = barrier;
     }
 
     @Override
     public Void call(Exception e) throws Exception {
       barrier.release();
+      finishIfGone(tabletId, e);
       LOG.debug("Releasing the requestbarrier" + barrier.availablePermits());
 
       e.printStackTrace();
@@ -245,10 +649,15 @@ public class ConcurrentPoller {
     }
 
     public Void call(final GetChangesResponse response) {
-        return callPROTO(response);
+        callPROTO(response);
+        finishIfDrained(tabletId, response);
+        return null;
     }
 
     public Void callPROTO(final GetChangesResponse response) {
+      if (outputPipeline != null) {
+        return callPROTOAsync(response);
+      }
       boolean noError = true;
 
       for (CdcService.CDCSDKProtoRecordPB record : response
@@ -256,7 +665,9 @@ public class ConcurrentPoller {
         .getCdcSdkProtoRecordsList()) {
         try {
           outputClient.applyChange(table, record);
-          result.add(record);
+          if (result != null) {
+            result.add(record);
+          }
         } catch (Exception e) {
           e.printStackTrace();
           noError = false;
@@ -274,6 +685,9 @@ public class ConcurrentPoller {
           response.getSnapshotTime());
 
         checkPointMap.put(tabletId, cp);
+        if (checkpointCommitter != null) {
+          checkpointCommitter.record(table, tabletId, cp);
+        }
         LOG.debug("For tablet " + this.tabletId + " got the checkpoint " + cp);
       }
 
@@ -281,6 +695,28 @@ public class ConcurrentPoller {
       return null;
     }
 
+    /**
+     * Hands the records over to the output pipeline. The next GetChanges can start from the new
+     * checkpoint right away, but it is only acknowledged once the records have been applied.
+     */
+    private Void callPROTOAsync(final GetChangesResponse response) {
+      final Checkpoint cp = Checkpoint.from(response);
+      checkPointMap.put(tabletId, cp);
+      LOG.debug("For tablet " + this.tabletId + " got the checkpoint " + cp);
+
+      List<CdcService.CDCSDKProtoRecordPB> records =
+        response.getResp().getCdcSdkProtoRecordsList();
+      if (result != null) {
+        result.addAll(records);
+      }
+      outputPipeline.submit(table, tabletId, records,
+                            checkpointCommitter == null ? null :
+                              () -> checkpointCommitter.record(table, tabletId, cp));
+
+      barrier.release();
+      return null;
+    }
+
     public String toString() {
       return "Handle Response";
     }
@@ -0,0 +1,61 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import org.yb.client.YBTable;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Appends the change records to a file as varint length-delimited protobufs, which can be read
+ * back with {@code CDCSDKProtoRecordPB.parseDelimitedFrom}. The records are never converted to
+ * text, and the file is only flushed once per batch.
+ */
+public class FileOutputClient implements OutputClient, AutoCloseable {
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  private final OutputStream out;
+
+  public FileOutputClient(String path) throws IOException {
+    this.out = new BufferedOutputStream(new FileOutputStream(path, true /* append */),
+                                        BUFFER_SIZE);
+  }
+
+  @Override
+  public synchronized void applyChange(YBTable table,
+                                       CdcService.CDCSDKProtoRecordPB changeRecord)
+      throws IOException {
+    changeRecord.writeDelimitedTo(out);
+    out.flush();
+  }
+
+  @Override
+  public synchronized void applyChanges(YBTable table,
+                                        List<CdcService.CDCSDKProtoRecordPB> changeRecords)
+      throws IOException {
+    for (CdcService.CDCSDKProtoRecordPB changeRecord : changeRecords) {
+      changeRecord.writeDelimitedTo(out);
+    }
+    out.flush();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    out.close();
+  }
+}
@@ -17,6 +17,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yb.client.YBTable;
 
+import java.util.List;
+
 public class LogClient implements OutputClient {
   long inserts = 0;
   long updates = 0;
@@ -27,7 +29,23 @@ public class LogClient implements OutputClient {
   private static final Logger LOG = LoggerFactory.getLogger(LogClient.class);
 
   @Override
-  public void applyChange(YBTable table, CdcService.CDCSDKProtoRecordPB changeRecord) {
+  public synchronized void applyChange(YBTable table,
+                                       CdcService.CDCSDKProtoRecordPB changeRecord) {
+    logChange(changeRecord);
+    logCounts();
+  }
+
+  @Override
+  public synchronized void applyChanges(YBTable table,
+                                        List<CdcService.CDCSDKProtoRecordPB> changeRecords) {
+    // The counts are only logged once per batch.
+    for (CdcService.CDCSDKProtoRecordPB changeRecord : changeRecords) {
+      logChange(changeRecord);
+    }
+    logCounts();
+  }
+
+  private void logChange(CdcService.CDCSDKProtoRecordPB changeRecord) {
     LOG.info(changeRecord.toString());
     switch (changeRecord.getRowMessage().getOp()) {
       case INSERT:
@@ -43,6 +61,9 @@ public class LogClient implements OutputClient {
         ++snapshotRecords;
         break;
     }
+  }
+
+  private void logCounts() {
     LOG.info(String.format("Inserts: %d, Updates: %d, Deletes: %d, Snapshot Records: %d",
         inserts, updates, deletes, snapshotRecords));
   }
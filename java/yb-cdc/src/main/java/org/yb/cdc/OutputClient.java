@@ -15,7 +15,20 @@ package org.yb.cdc;
 
 import org.yb.client.YBTable;
 
+import java.util.List;
+
 public interface OutputClient {
   public void applyChange(YBTable table,
                           CdcService.CDCSDKProtoRecordPB changeRecord) throws Exception;
+
+  /**
+   * Applies a batch of change records of a table, in order. Clients which can write a batch more
+   * efficiently than one record at a time should override this.
+   */
+  default void applyChanges(YBTable table,
+                            List<CdcService.CDCSDKProtoRecordPB> changeRecords) throws Exception {
+    for (CdcService.CDCSDKProtoRecordPB changeRecord : changeRecords) {
+      applyChange(table, changeRecord);
+    }
+  }
 }
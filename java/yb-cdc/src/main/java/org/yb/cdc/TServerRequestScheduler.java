@@ -0,0 +1,183 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.yb.client.AsyncYBClient;
+import org.yb.client.LocatedTablet;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Caps the number of GetChanges calls in flight to every tablet server.
+ *
+ * Calls are charged to the tablet server which currently leads the tablet, as known by the
+ * location cache of the {@link AsyncYBClient}. Since the leader is looked up again for every
+ * call, tablets move to their new leader's group as soon as the client learns about a leadership
+ * change. Calls which would exceed the cap of their server wait in a per-server queue and are
+ * started when a call to that server completes. A waiting call whose tablet changed leader in the
+ * meantime is moved to the queue of the new leader instead.
+ *
+ * The cap holds across all the pollers sharing the scheduler, whichever poller the tablets were
+ * assigned to.
+ */
+public class TServerRequestScheduler {
+  // Group of the tablets whose leader is not known yet.
+  static final String UNKNOWN_LEADER = "";
+
+  // Looks up the leader of a (table, tablet) in the location cache of the client, null if unknown.
+  private final BiFunction<String, String, String> cachedLeaders;
+  private final int maxInflightPerServer;
+
+  // Leaders reported by the master when the tablets were located, used until the client has
+  // cached the locations of a tablet.
+  private final Map<String, String> reportedLeaders = new ConcurrentHashMap<>();
+
+  private final Map<String, ServerQueue> queues = new ConcurrentHashMap<>();
+
+  public TServerRequestScheduler(AsyncYBClient asyncYBClient, int maxInflightPerServer,
+                                 List<LocatedTablet> tabletLocations) {
+    this(asyncYBClient::getCachedLeaderUuid, maxInflightPerServer, tabletLocations);
+  }
+
+  @VisibleForTesting
+  TServerRequestScheduler(BiFunction<String, String, String> cachedLeaders,
+                          int maxInflightPerServer, List<LocatedTablet> tabletLocations) {
+    this.cachedLeaders = cachedLeaders;
+    this.maxInflightPerServer = maxInflightPerServer;
+    addTablets(tabletLocations);
+  }
+
+  /**
+   * Records the leaders of tablets which were located after the scheduler was created, e.g.
+   * those of a new table or the children of a split tablet.
+   */
+  public void addTablets(List<LocatedTablet> tabletLocations) {
+    for (LocatedTablet tablet : tabletLocations) {
+      LocatedTablet.Replica leader = tablet.getLeaderReplica();
+      if (leader != null) {
+        reportedLeaders.put(new String(tablet.getTabletId()), leader.getTsUuid());
+      }
+    }
+  }
+
+  /**
+   * @return the UUID of the tablet server leading the tablet, or {@link #UNKNOWN_LEADER}
+   */
+  public String leaderOf(String tableId, String tabletId) {
+    String leader = cachedLeaders.apply(tableId, tabletId);
+    if (leader == null) {
+      leader = reportedLeaders.getOrDefault(tabletId, UNKNOWN_LEADER);
+    }
+    return leader;
+  }
+
+  /**
+   * Runs {@code send} with the server the call is charged to once that server has a free slot,
+   * either right away or when a call to it completes. The caller must call {@link #release} with
+   * that server once the call completes.
+   */
+  public void submit(String tableId, String tabletId, Consumer<String> send) {
+    submit(new Call(tableId, tabletId, send));
+  }
+
+  private void submit(Call call) {
+    String server = leaderOf(call.tableId, call.tabletId);
+    ServerQueue queue = queues.computeIfAbsent(server, k -> new ServerQueue());
+    synchronized (queue) {
+      if (queue.inflight >= maxInflightPerServer) {
+        queue.waiting.addLast(call);
+        return;
+      }
+      ++queue.inflight;
+    }
+    call.send.accept(server);
+  }
+
+  /**
+   * Frees the slot of a completed call, handing it over to the next waiting call of the server
+   * whose tablet is still led by it.
+   */
+  public void release(String server) {
+    ServerQueue queue = queues.get(server);
+    if (queue == null) {
+      return;
+    }
+    while (true) {
+      Call next;
+      synchronized (queue) {
+        next = queue.waiting.pollFirst();
+        if (next == null) {
+          --queue.inflight;
+          return;
+        }
+      }
+      if (leaderOf(next.tableId, next.tabletId).equals(server)) {
+        next.send.accept(server);
+        return;
+      }
+      // The tablet moved while its call was waiting, so it waits for its new leader instead.
+      submit(next);
+    }
+  }
+
+  /**
+   * @return the number of calls in flight to every tablet server
+   */
+  public Map<String, Integer> getInflightPerServer() {
+    Map<String, Integer> inflight = new HashMap<>();
+    queues.forEach((server, queue) -> {
+      synchronized (queue) {
+        inflight.put(server, queue.inflight);
+      }
+    });
+    return inflight;
+  }
+
+  /**
+   * @return the number of calls waiting for a free slot of every tablet server
+   */
+  public Map<String, Integer> getWaitingPerServer() {
+    Map<String, Integer> waiting = new HashMap<>();
+    queues.forEach((server, queue) -> {
+      synchronized (queue) {
+        waiting.put(server, queue.waiting.size());
+      }
+    });
+    return waiting;
+  }
+
+  private static final class Call {
+    final String tableId;
+    final String tabletId;
+    final Consumer<String> send;
+
+    Call(String tableId, String tabletId, Consumer<String> send) {
+      this.tableId = tableId;
+      this.tabletId = tabletId;
+      this.send = send;
+    }
+  }
+
+  private static final class ServerQueue {
+    int inflight = 0;
+    final ArrayDeque<Call> waiting = new ArrayDeque<>();
+  }
+}
@@ -0,0 +1,105 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import org.yb.master.CatalogEntityInfo.SysTablesEntryPB;
+import org.yb.master.MasterDdlOuterClass.ListTablesResponsePB.TableInfo;
+import org.yb.master.MasterTypes;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which tables of a namespace are streamed by the connector.
+ *
+ * The tables are selected with the {@code table.name} property, a comma separated list of
+ * table names which may be qualified with their schema, e.g. {@code orders,audit.events}.
+ * Unqualified names are looked up in the {@code public} schema. A {@code table.name} of
+ * {@code *} selects every user table of the namespace. Alternatively, {@code table.regex}
+ * selects the tables whose schema qualified name, e.g. {@code public.orders}, fully matches the
+ * regular expression. Index and system tables, and the tables being dropped, are never
+ * selected.
+ */
+public class TableSelector {
+  static final String ALL_TABLES = "*";
+  static final String DEFAULT_SCHEMA_NAME = "public";
+
+  private final String namespace;
+  private final boolean allTables;
+  private final Set<String> qualifiedNames = new HashSet<>();
+  private final Pattern pattern;
+
+  public TableSelector(String namespace, String tableNames, String tableRegex) {
+    this.namespace = namespace;
+    this.pattern = tableRegex == null || tableRegex.trim().isEmpty()
+        ? null : Pattern.compile(tableRegex.trim());
+    boolean all = false;
+    if (tableNames != null) {
+      for (String name : tableNames.split(",")) {
+        name = name.trim();
+        if (name.isEmpty()) {
+          continue;
+        }
+        if (name.equals(ALL_TABLES)) {
+          all = true;
+        } else {
+          qualifiedNames.add(name.contains(".") ? name : DEFAULT_SCHEMA_NAME + "." + name);
+        }
+      }
+    }
+    this.allTables = all;
+    if (!allTables && qualifiedNames.isEmpty() && pattern == null) {
+      throw new IllegalArgumentException(
+        "Either table.name or table.regex must select at least one table");
+    }
+  }
+
+  public String getNamespace() {
+    return namespace;
+  }
+
+  /**
+   * @return true if the changes of the table must be streamed
+   */
+  public boolean matches(TableInfo tableInfo) {
+    if (!tableInfo.getNamespace().getName().equals(namespace)) {
+      return false;
+    }
+    if (tableInfo.getRelationType() != MasterTypes.RelationType.USER_TABLE_RELATION) {
+      return false;
+    }
+    if (tableInfo.hasState() &&
+        (tableInfo.getState() == SysTablesEntryPB.State.DELETING ||
+         tableInfo.getState() == SysTablesEntryPB.State.DELETED)) {
+      return false;
+    }
+    if (allTables) {
+      return true;
+    }
+    String schemaName = tableInfo.getPgschemaName().isEmpty()
+        ? DEFAULT_SCHEMA_NAME : tableInfo.getPgschemaName();
+    String qualifiedName = schemaName + "." + tableInfo.getName();
+    if (qualifiedNames.contains(qualifiedName)) {
+      return true;
+    }
+    return pattern != null && pattern.matcher(qualifiedName).matches();
+  }
+
+  @Override
+  public String toString() {
+    return namespace + (allTables ? ".*" : "." + qualifiedNames +
+                        (pattern == null ? "" : " ~ " + pattern.pattern()));
+  }
+}
@@ -0,0 +1,44 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Keeps the last acknowledged {@link Checkpoint} of every tablet of a stream across restarts of
+ * the connector.
+ *
+ * Implementations are expected to buffer {@link #put} calls and only make them durable on
+ * {@link #flush}, so that checkpoints of many tablets are group committed.
+ */
+public interface CheckpointStore extends Closeable {
+  /**
+   * @return the durable checkpoints keyed by tablet id, empty if nothing was stored yet
+   */
+  Map<String, Checkpoint> load() throws IOException;
+
+  /**
+   * Records the checkpoint of a tablet, replacing any checkpoint recorded before for it.
+   */
+  void put(String tabletId, Checkpoint checkpoint);
+
+  /**
+   * Makes all the checkpoints recorded so far durable.
+   *
+   * @return the checkpoints which were made durable by this call keyed by tablet id
+   */
+  Map<String, Checkpoint> flush() throws IOException;
+}
@@ -0,0 +1,318 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link CheckpointStore} backed by a local directory.
+ *
+ * Checkpoints are appended to a log file which is fsynced once per {@link #flush()}, so all the
+ * tablets recorded since the previous flush are committed together. Once the log grows well
+ * beyond the number of tablets, the latest checkpoints are compacted into a snapshot file which
+ * atomically replaces the previous one, and the log is truncated.
+ *
+ * Every record is written as its length, the serialized checkpoint and a CRC32 of it, so that a
+ * record torn by a crash in the middle of an append is detected and ignored on {@link #load()}.
+ * The directory is fsynced after the files are created or renamed, so that the files themselves
+ * survive a crash.
+ *
+ * A flush which fails to write the log returns its checkpoints to the pending ones, to be written
+ * by the next flush, unless newer checkpoints of the same tablets were recorded since.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+  private static final Logger LOG = LoggerFactory.getLogger(FileCheckpointStore.class);
+
+  static final String LOG_FILE_NAME = "checkpoints.log";
+  static final String SNAPSHOT_FILE_NAME = "checkpoints.snapshot";
+
+  // The log is compacted once it holds this many times more records than there are tablets.
+  private static final int COMPACTION_FACTOR = 8;
+  private static final int MIN_RECORDS_BEFORE_COMPACTION = 1024;
+
+  private final Path logPath;
+  private final Path snapshotPath;
+
+  // Checkpoints recorded since the last flush.
+  private Map<String, Checkpoint> pending = new LinkedHashMap<>();
+
+  // The durable checkpoint of every tablet, used to write the snapshots.
+  private final Map<String, Checkpoint> durable = new HashMap<>();
+
+  private final Object flushLock = new Object();
+  private FileChannel logChannel;
+  private long recordsInLog = 0;
+  // Length of the valid prefix of the last file read by readRecords.
+  private long validLogLength = 0;
+
+  public FileCheckpointStore(String directory) throws IOException {
+    Path dir = Paths.get(directory);
+    Files.createDirectories(dir);
+    this.logPath = dir.resolve(LOG_FILE_NAME);
+    this.snapshotPath = dir.resolve(SNAPSHOT_FILE_NAME);
+  }
+
+  @Override
+  public Map<String, Checkpoint> load() throws IOException {
+    synchronized (flushLock) {
+      return loadLocked();
+    }
+  }
+
+  private synchronized Map<String, Checkpoint> loadLocked() throws IOException {
+    durable.clear();
+    readRecords(snapshotPath, durable);
+    recordsInLog = readRecords(logPath, durable);
+
+    // Drop a torn record at the tail of the log, if any, so new records are appended after the
+    // last valid one.
+    boolean created = !Files.exists(logPath);
+    logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    logChannel.truncate(validLogLength);
+    logChannel.position(validLogLength);
+    if (created) {
+      syncDirectory();
+    }
+
+    LOG.info(String.format("Loaded checkpoints of %d tablets from %s",
+                           durable.size(), logPath.getParent()));
+    return new HashMap<>(durable);
+  }
+
+  @Override
+  public synchronized void put(String tabletId, Checkpoint checkpoint) {
+    pending.put(tabletId, checkpoint);
+  }
+
+  @Override
+  public Map<String, Checkpoint> flush() throws IOException {
+    // The pending checkpoints are swapped under the flush lock so that concurrent flushes append
+    // them to the log in the order they were recorded.
+    synchronized (flushLock) {
+      Map<String, Checkpoint> toFlush;
+      synchronized (this) {
+        if (logChannel == null) {
+          throw new IllegalStateException("Checkpoints must be loaded before they are flushed");
+        }
+        if (pending.isEmpty()) {
+          return new HashMap<>();
+        }
+        toFlush = pending;
+        pending = new LinkedHashMap<>();
+      }
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      for (Map.Entry<String, Checkpoint> entry : toFlush.entrySet()) {
+        writeRecord(out, entry.getKey(), entry.getValue());
+      }
+      out.flush();
+
+      long logLength = logChannel.position();
+      try {
+        appendToLog(ByteBuffer.wrap(bytes.toByteArray()));
+      } catch (IOException e) {
+        requeue(toFlush, logLength);
+        throw e;
+      }
+
+      durable.putAll(toFlush);
+      recordsInLog += toFlush.size();
+      if (recordsInLog > Math.max(MIN_RECORDS_BEFORE_COMPACTION,
+                                  (long) COMPACTION_FACTOR * durable.size())) {
+        try {
+          compact();
+        } catch (IOException e) {
+          // The checkpoints are durable in the log, the next flush compacts it again.
+          LOG.warn("Failed to compact the checkpoints in " + logPath.getParent(), e);
+        }
+      }
+      return toFlush;
+    }
+  }
+
+  /**
+   * Appends the records to the log and fsyncs it.
+   */
+  void appendToLog(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      logChannel.write(buffer);
+    }
+    logChannel.force(false);
+  }
+
+  /**
+   * Returns the checkpoints of a failed flush to the pending ones, behind the checkpoints recorded
+   * since, and drops what the flush may have written to the log. Must be called with the flush
+   * lock held.
+   */
+  private void requeue(Map<String, Checkpoint> toFlush, long logLength) {
+    synchronized (this) {
+      Map<String, Checkpoint> requeued = new LinkedHashMap<>(toFlush);
+      requeued.putAll(pending);
+      pending = requeued;
+    }
+    try {
+      // A partial append would hide the records appended after it from load().
+      logChannel.truncate(logLength);
+      logChannel.position(logLength);
+    } catch (IOException e) {
+      LOG.warn("Failed to truncate the checkpoint log " + logPath + " after a failed flush", e);
+    }
+  }
+
+  /**
+   * Fsyncs the directory, so that the files created or renamed in it survive a crash.
+   */
+  private void syncDirectory() throws IOException {
+    try (FileChannel dir = FileChannel.open(logPath.getParent(), StandardOpenOption.READ)) {
+      dir.force(true);
+    }
+  }
+
+  /**
+   * Writes the durable checkpoints to a new snapshot and truncates the log. Replaying a log which
+   * was not truncated because of a crash on top of the new snapshot yields the same checkpoints,
+   * so no ordering between the two steps is needed beyond the rename being durable.
+   */
+  private void compact() throws IOException {
+    Path tmpPath = snapshotPath.resolveSibling(SNAPSHOT_FILE_NAME + ".tmp");
+    try (FileOutputStream fos = new FileOutputStream(tmpPath.toFile());
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+      for (Map.Entry<String, Checkpoint> entry : durable.entrySet()) {
+        writeRecord(out, entry.getKey(), entry.getValue());
+      }
+      out.flush();
+      fos.getFD().sync();
+    }
+    Files.move(tmpPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE,
+               StandardCopyOption.REPLACE_EXISTING);
+    // The log must not be truncated before the rename is durable.
+    syncDirectory();
+
+    logChannel.truncate(0);
+    logChannel.position(0);
+    logChannel.force(true);
+    LOG.debug("Compacted " + recordsInLog + " checkpoint records into a snapshot of " +
+              durable.size() + " tablets");
+    recordsInLog = 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (logChannel == null) {
+      return;
+    }
+    flush();
+    synchronized (flushLock) {
+      if (logChannel != null) {
+        logChannel.close();
+      }
+    }
+  }
+
+  /**
+   * Reads the records of the given file into checkpoints, later records overriding earlier ones.
+   * Stops at the first incomplete or corrupted record.
+   *
+   * @return the number of valid records read
+   */
+  private long readRecords(Path path, Map<String, Checkpoint> checkpoints) throws IOException {
+    long count = 0;
+    long validLength = 0;
+    if (Files.exists(path)) {
+      try (DataInputStream in = new DataInputStream(
+             new BufferedInputStream(Files.newInputStream(path)))) {
+        while (true) {
+          int length;
+          try {
+            length = in.readInt();
+          } catch (EOFException e) {
+            break;
+          }
+          if (length <= 0 || length > 1 << 20) {
+            LOG.warn("Ignoring corrupted checkpoint record in " + path);
+            break;
+          }
+          byte[] payload = new byte[length];
+          long crc;
+          try {
+            in.readFully(payload);
+            crc = in.readLong();
+          } catch (EOFException e) {
+            LOG.warn("Ignoring incomplete checkpoint record at the end of " + path);
+            break;
+          }
+          CRC32 checksum = new CRC32();
+          checksum.update(payload, 0, payload.length);
+          if (checksum.getValue() != crc) {
+            LOG.warn("Ignoring checkpoint record with a bad checksum in " + path);
+            break;
+          }
+
+          DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+          String tabletId = record.readUTF();
+          long term = record.readLong();
+          long index = record.readLong();
+          byte[] key = new byte[record.readInt()];
+          record.readFully(key);
+          int writeId = record.readInt();
+          long snapshotTime = record.readLong();
+          checkpoints.put(tabletId, new Checkpoint(term, index, key, writeId, snapshotTime));
+
+          ++count;
+          validLength += 4 + length + 8;
+        }
+      }
+    }
+    validLogLength = validLength;
+    return count;
+  }
+
+  private static void writeRecord(DataOutputStream out, String tabletId, Checkpoint cp)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream record = new DataOutputStream(bytes);
+    byte[] key = cp.getKey() == null ? new byte[0] : cp.getKey();
+    record.writeUTF(tabletId);
+    record.writeLong(cp.getTerm());
+    record.writeLong(cp.getIndex());
+    record.writeInt(key.length);
+    record.write(key);
+    record.writeInt(cp.getWriteId());
+    record.writeLong(cp.getSnapshotTime());
+    record.flush();
+
+    byte[] payload = bytes.toByteArray();
+    CRC32 checksum = new CRC32();
+    checksum.update(payload, 0, payload.length);
+    out.writeInt(payload.length);
+    out.write(payload);
+    out.writeLong(checksum.getValue());
+  }
+}
@@ -0,0 +1,192 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import static org.yb.AssertionWrappers.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+import org.yb.client.YBTable;
+
+@RunWith(value = YBTestRunner.class)
+public class TestAsyncOutputPipeline {
+  private static final String TABLET = "tablet1";
+
+  private AsyncOutputPipeline pipeline;
+
+  /**
+   * Keeps the records it is given, in the order it is given them. Applying a batch first waits
+   * for the gate, and fails as long as there are failures left to inject.
+   */
+  private static class RecordingOutputClient implements OutputClient {
+    final List<String> applied = Collections.synchronizedList(new ArrayList<>());
+    final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger failuresLeft = new AtomicInteger();
+    volatile CountDownLatch gate = new CountDownLatch(0);
+
+    @Override
+    public void applyChange(YBTable table, CdcService.CDCSDKProtoRecordPB changeRecord) {
+      throw new UnsupportedOperationException("Records should be applied in batches");
+    }
+
+    @Override
+    public void applyChanges(YBTable table, List<CdcService.CDCSDKProtoRecordPB> changeRecords)
+        throws Exception {
+      gate.await();
+      threads.add(Thread.currentThread().getName());
+      if (failuresLeft.getAndDecrement() > 0) {
+        throw new IOException("Injected apply error");
+      }
+      batchSizes.add(changeRecords.size());
+      for (CdcService.CDCSDKProtoRecordPB record : changeRecords) {
+        applied.add(record.getRowMessage().getTable());
+      }
+    }
+  }
+
+  private final RecordingOutputClient outputClient = new RecordingOutputClient();
+
+  @After
+  public void tearDown() throws Exception {
+    if (pipeline != null) {
+      outputClient.failuresLeft.set(0);
+      outputClient.gate.countDown();
+      pipeline.close();
+    }
+  }
+
+  /**
+   * @return records named after the given prefix and their index
+   */
+  private static List<CdcService.CDCSDKProtoRecordPB> records(String prefix, int count) {
+    List<CdcService.CDCSDKProtoRecordPB> records = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      records.add(CdcService.CDCSDKProtoRecordPB.newBuilder()
+          .setRowMessage(CdcService.RowMessage.newBuilder().setTable(prefix + i))
+          .build());
+    }
+    return records;
+  }
+
+  private static void waitFor(AtomicInteger counter, int expected) throws Exception {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (counter.get() < expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, counter.get());
+  }
+
+  @Test
+  public void testRecordsOfATabletAreAppliedInOrder() throws Exception {
+    pipeline = new AsyncOutputPipeline(outputClient, 1000, 10, 5, 4);
+    AtomicInteger appliedChunks = new AtomicInteger();
+    List<String> expected = new ArrayList<>();
+    for (int chunk = 0; chunk < 100; chunk++) {
+      List<CdcService.CDCSDKProtoRecordPB> records = records("r" + chunk + "-", 3);
+      for (CdcService.CDCSDKProtoRecordPB record : records) {
+        expected.add(record.getRowMessage().getTable());
+      }
+      pipeline.submit(null, TABLET, records, appliedChunks::incrementAndGet);
+    }
+    waitFor(appliedChunks, 100);
+    assertEquals(expected, outputClient.applied);
+    // The chunks are batched, without splitting them or going over the batch size.
+    assertLessThan(outputClient.batchSizes.size(), 100);
+    for (int batchSize : outputClient.batchSizes) {
+      assertEquals(0, batchSize % 3);
+      assertLessThanOrEqualTo(batchSize, 10);
+    }
+    // They were applied by the output threads, not by the caller.
+    assertFalse(outputClient.threads.contains(Thread.currentThread().getName()));
+    assertTrue(outputClient.threads.get(0).startsWith("cdc-output-"));
+  }
+
+  @Test
+  public void testFullTabletBlocksOnlyItself() throws Exception {
+    pipeline = new AsyncOutputPipeline(outputClient, 5, 100, 0, 1);
+    outputClient.gate = new CountDownLatch(1);
+    AtomicInteger appliedChunks = new AtomicInteger();
+    pipeline.submit(null, TABLET, records("a", 3), appliedChunks::incrementAndGet);
+    assertFalse(pipeline.isFull(TABLET));
+    pipeline.submit(null, TABLET, records("b", 3), appliedChunks::incrementAndGet);
+    // The sink is stuck, the tablet is over its capacity until it catches up.
+    assertTrue(pipeline.isFull(TABLET));
+    assertFalse(pipeline.isFull("tablet2"));
+
+    outputClient.gate.countDown();
+    waitFor(appliedChunks, 2);
+    assertFalse(pipeline.isFull(TABLET));
+  }
+
+  @Test
+  public void testCloseFlushesLingeringRecords() throws Exception {
+    pipeline = new AsyncOutputPipeline(outputClient, 1000, 100, 60000, 1);
+    AtomicInteger appliedChunks = new AtomicInteger();
+    pipeline.submit(null, TABLET, records("a", 2), appliedChunks::incrementAndGet);
+    pipeline.submit(null, "tablet2", records("b", 1), appliedChunks::incrementAndGet);
+    // Less than a batch waits for the linger time.
+    Thread.sleep(100);
+    assertEquals(0, appliedChunks.get());
+
+    pipeline.close();
+    pipeline = null;
+    assertEquals(2, appliedChunks.get());
+    assertEquals(3, outputClient.applied.size());
+  }
+
+  @Test
+  public void testFailedBatchIsRetried() throws Exception {
+    pipeline = new AsyncOutputPipeline(outputClient, 1000, 100, 0, 1);
+    outputClient.failuresLeft.set(1);
+    AtomicInteger appliedChunks = new AtomicInteger();
+    pipeline.submit(null, TABLET, records("a", 2), appliedChunks::incrementAndGet);
+    pipeline.submit(null, TABLET, records("b", 2), appliedChunks::incrementAndGet);
+    waitFor(appliedChunks, 2);
+    // The error of the output thread is reported, and the records were applied once, in order.
+    assertEquals("Injected apply error", pipeline.getLastError().getMessage());
+    assertEquals(4, outputClient.applied.size());
+    assertEquals("a0", outputClient.applied.get(0));
+    assertEquals("b1", outputClient.applied.get(3));
+  }
+
+  @Test
+  public void testCloseReportsUnappliedRecords() throws Exception {
+    pipeline = new AsyncOutputPipeline(outputClient, 1000, 100, 0, 1);
+    outputClient.failuresLeft.set(Integer.MAX_VALUE);
+    AtomicInteger appliedChunks = new AtomicInteger();
+    pipeline.submit(null, TABLET, records("a", 2), appliedChunks::incrementAndGet);
+    while (pipeline.getLastError() == null) {
+      Thread.sleep(10);
+    }
+    try {
+      pipeline.close();
+      fail("Closing should have failed on the records left");
+    } catch (IOException e) {
+      assertEquals("Unable to apply 2 buffered change records", e.getMessage());
+      assertEquals("Injected apply error", e.getCause().getMessage());
+    }
+    pipeline = null;
+    assertEquals(0, appliedChunks.get());
+  }
+}
@@ -0,0 +1,65 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import static org.yb.AssertionWrappers.*;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+@RunWith(value = YBTestRunner.class)
+public class TestFileOutputClient {
+
+  private static CdcService.CDCSDKProtoRecordPB record(String table) {
+    return CdcService.CDCSDKProtoRecordPB.newBuilder()
+        .setRowMessage(CdcService.RowMessage.newBuilder().setTable(table))
+        .build();
+  }
+
+  private static List<String> readTables(Path file) throws Exception {
+    List<String> tables = new ArrayList<>();
+    try (InputStream in = new FileInputStream(file.toFile())) {
+      CdcService.CDCSDKProtoRecordPB record;
+      while ((record = CdcService.CDCSDKProtoRecordPB.parseDelimitedFrom(in)) != null) {
+        tables.add(record.getRowMessage().getTable());
+      }
+    }
+    return tables;
+  }
+
+  @Test
+  public void testRecordsAreReadBack() throws Exception {
+    Path file = Files.createTempDirectory("cdc-output").resolve("changes.pb");
+    FileOutputClient client = new FileOutputClient(file.toString());
+    client.applyChanges(null, Arrays.asList(record("a"), record("b")));
+    client.applyChange(null, record("c"));
+    // Every batch is flushed, the records can be read before the client is closed.
+    assertEquals(Arrays.asList("a", "b", "c"), readTables(file));
+    client.close();
+
+    // A new client appends to the file.
+    client = new FileOutputClient(file.toString());
+    client.applyChanges(null, Arrays.asList(record("d")));
+    client.close();
+    assertEquals(Arrays.asList("a", "b", "c", "d"), readTables(file));
+  }
+}
@@ -0,0 +1,148 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import static org.yb.AssertionWrappers.*;
+
+import com.stumbleupon.async.Deferred;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+import org.yb.client.GetChangesResponse;
+
+@RunWith(value = YBTestRunner.class)
+public class TestTServerRequestScheduler {
+  // Leaders of the tablets as known by the location cache of the client.
+  private final Map<String, String> leaders = new ConcurrentHashMap<>();
+  // Calls sent so far, as "tablet@server".
+  private final List<String> sent = new ArrayList<>();
+
+  private TServerRequestScheduler newScheduler(int maxInflightPerServer) {
+    return new TServerRequestScheduler((tableId, tabletId) -> leaders.get(tabletId),
+                                       maxInflightPerServer, Collections.emptyList());
+  }
+
+  private void submit(TServerRequestScheduler scheduler, String tabletId) {
+    scheduler.submit("table", tabletId, server -> sent.add(tabletId + "@" + server));
+  }
+
+  private static Map<String, Integer> counts(String... serverCounts) {
+    Map<String, Integer> counts = new HashMap<>();
+    for (int i = 0; i < serverCounts.length; i += 2) {
+      counts.put(serverCounts[i], Integer.parseInt(serverCounts[i + 1]));
+    }
+    return counts;
+  }
+
+  @Test
+  public void testCapPerServer() {
+    TServerRequestScheduler scheduler = newScheduler(2);
+    leaders.put("t1", "ts1");
+    leaders.put("t2", "ts1");
+    leaders.put("t3", "ts1");
+    leaders.put("t4", "ts2");
+    for (String tabletId : Arrays.asList("t1", "t2", "t3", "t4")) {
+      submit(scheduler, tabletId);
+    }
+    assertEquals(Arrays.asList("t1@ts1", "t2@ts1", "t4@ts2"), sent);
+    assertEquals(counts("ts1", "2", "ts2", "1"), scheduler.getInflightPerServer());
+    assertEquals(counts("ts1", "1", "ts2", "0"), scheduler.getWaitingPerServer());
+
+    // The slot of a completed call goes to the waiting one.
+    scheduler.release("ts1");
+    assertEquals("t3@ts1", sent.get(3));
+    assertEquals(counts("ts1", "2", "ts2", "1"), scheduler.getInflightPerServer());
+
+    scheduler.release("ts1");
+    scheduler.release("ts1");
+    scheduler.release("ts2");
+    assertEquals(counts("ts1", "0", "ts2", "0"), scheduler.getInflightPerServer());
+  }
+
+  @Test
+  public void testLeaderChange() {
+    TServerRequestScheduler scheduler = newScheduler(2);
+    leaders.put("t1", "ts1");
+    leaders.put("t2", "ts1");
+    leaders.put("t3", "ts1");
+    for (String tabletId : Arrays.asList("t1", "t2", "t3")) {
+      submit(scheduler, tabletId);
+    }
+    assertEquals(counts("ts1", "1"), scheduler.getWaitingPerServer());
+
+    // ts2 takes over t1 and t3. Once the call of t1 completes, the waiting call of t3 moves to
+    // ts2 rather than taking the freed slot of ts1.
+    leaders.put("t1", "ts2");
+    leaders.put("t3", "ts2");
+    scheduler.release("ts1");
+    assertEquals("t3@ts2", sent.get(2));
+    assertEquals(counts("ts1", "1", "ts2", "1"), scheduler.getInflightPerServer());
+
+    // The next call of t1 is charged to ts2 too.
+    submit(scheduler, "t1");
+    assertEquals("t1@ts2", sent.get(3));
+    assertEquals(counts("ts1", "1", "ts2", "2"), scheduler.getInflightPerServer());
+    assertEquals(counts("ts1", "0", "ts2", "0"), scheduler.getWaitingPerServer());
+
+    // The cap of ts2 now covers t1 and t3, while ts1 has a free slot.
+    submit(scheduler, "t3");
+    assertEquals(4, sent.size());
+    assertEquals(counts("ts1", "0", "ts2", "1"), scheduler.getWaitingPerServer());
+  }
+
+  @Test
+  public void testBatchCallsReleaseSlots() throws Exception {
+    TServerRequestScheduler scheduler = newScheduler(1);
+    leaders.put("t1", "ts1");
+    leaders.put("t2", "ts1");
+
+    // Sends the calls the way the batch mode of ConcurrentPoller does.
+    Map<String, Deferred<GetChangesResponse>> rpcs = new HashMap<>();
+    Map<String, Deferred<GetChangesResponse>> capped = new HashMap<>();
+    for (String tabletId : Arrays.asList("t1", "t2")) {
+      Deferred<GetChangesResponse> response = new Deferred<>();
+      capped.put(tabletId, response);
+      scheduler.submit("table", tabletId, server -> {
+        Deferred<GetChangesResponse> rpc = new Deferred<>();
+        rpcs.put(tabletId, rpc);
+        rpc.addCallbacks(
+          new ConcurrentPoller.ReleaseServerSlot<GetChangesResponse>(scheduler, server, response),
+          new ConcurrentPoller.ReleaseServerSlot<Exception>(scheduler, server, response));
+      });
+    }
+    assertEquals(Collections.singleton("t1"), rpcs.keySet());
+
+    // A failed call frees its slot too, and its failure is passed on.
+    rpcs.get("t1").callback(new Exception("Injected GetChanges error"));
+    try {
+      capped.get("t1").join(1000);
+      fail("The call of t1 should have failed");
+    } catch (Exception e) {
+      assertEquals("Injected GetChanges error", e.getMessage());
+    }
+    assertTrue(rpcs.containsKey("t2"));
+    assertEquals(counts("ts1", "1"), scheduler.getInflightPerServer());
+
+    rpcs.get("t2").callback(null);
+    assertNull(capped.get("t2").join(1000));
+    assertEquals(counts("ts1", "0"), scheduler.getInflightPerServer());
+  }
+}
@@ -0,0 +1,71 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import static org.yb.AssertionWrappers.*;
+
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+import org.yb.master.CatalogEntityInfo.SysTablesEntryPB;
+import org.yb.master.MasterDdlOuterClass.ListTablesResponsePB.TableInfo;
+import org.yb.master.MasterTypes;
+
+@RunWith(value = YBTestRunner.class)
+public class TestTableSelector {
+  private static TableInfo.Builder tableInfo(String namespace, String schema, String name) {
+    return TableInfo.newBuilder()
+      .setId(ByteString.copyFromUtf8(namespace + "." + schema + "." + name))
+      .setName(name)
+      .setNamespace(MasterTypes.NamespaceIdentifierPB.newBuilder().setName(namespace))
+      .setPgschemaName(schema)
+      .setRelationType(MasterTypes.RelationType.USER_TABLE_RELATION);
+  }
+
+  @Test
+  public void testTableList() {
+    TableSelector selector = new TableSelector("yugabyte", "orders, audit.events", null);
+    assertTrue(selector.matches(tableInfo("yugabyte", "public", "orders").build()));
+    assertTrue(selector.matches(tableInfo("yugabyte", "audit", "events").build()));
+    assertFalse(selector.matches(tableInfo("yugabyte", "audit", "orders").build()));
+    assertFalse(selector.matches(tableInfo("yugabyte", "public", "events").build()));
+    assertFalse(selector.matches(tableInfo("other", "public", "orders").build()));
+  }
+
+  @Test
+  public void testAllTables() {
+    TableSelector selector = new TableSelector("yugabyte", "*", null);
+    assertTrue(selector.matches(tableInfo("yugabyte", "public", "orders").build()));
+    assertTrue(selector.matches(tableInfo("yugabyte", "audit", "events").build()));
+    assertFalse(selector.matches(tableInfo("other", "public", "orders").build()));
+    assertFalse(selector.matches(tableInfo("yugabyte", "public", "orders_idx")
+      .setRelationType(MasterTypes.RelationType.INDEX_TABLE_RELATION).build()));
+    assertFalse(selector.matches(tableInfo("yugabyte", "public", "dropped")
+      .setState(SysTablesEntryPB.State.DELETING).build()));
+  }
+
+  @Test
+  public void testRegex() {
+    TableSelector selector = new TableSelector("yugabyte", null, "public\\.orders_.*");
+    assertTrue(selector.matches(tableInfo("yugabyte", "public", "orders_2022").build()));
+    assertFalse(selector.matches(tableInfo("yugabyte", "public", "orders").build()));
+    assertFalse(selector.matches(tableInfo("yugabyte", "audit", "orders_2022").build()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNothingSelected() {
+    new TableSelector("yugabyte", " ", "");
+  }
+}
@@ -0,0 +1,156 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc.util;
+
+import static org.yb.AssertionWrappers.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+@RunWith(value = YBTestRunner.class)
+public class TestFileCheckpointStore {
+  private Path dir;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory("cdc-checkpoints");
+  }
+
+  private static void assertCheckpoint(Checkpoint expected, Checkpoint actual) {
+    assertNotNull(actual);
+    assertEquals(expected.getTerm(), actual.getTerm());
+    assertEquals(expected.getIndex(), actual.getIndex());
+    assertArrayEquals(expected.getKey(), actual.getKey());
+    assertEquals(expected.getWriteId(), actual.getWriteId());
+    assertEquals(expected.getSnapshotTime(), actual.getSnapshotTime());
+  }
+
+  @Test
+  public void testResumeFromFlushedCheckpoints() throws Exception {
+    FileCheckpointStore store = new FileCheckpointStore(dir.toString());
+    assertTrue(store.load().isEmpty());
+
+    Checkpoint first = new Checkpoint(1, 10, "k".getBytes(), 0, 0);
+    Checkpoint second = new Checkpoint(1, 12, "".getBytes(), 2, 100);
+    store.put("tablet1", first);
+    store.put("tablet2", first);
+    store.put("tablet2", second);
+    Map<String, Checkpoint> flushed = store.flush();
+    assertEquals(2, flushed.size());
+
+    // Not flushed, so it must not survive a crash.
+    store.put("tablet1", second);
+
+    Map<String, Checkpoint> loaded = new FileCheckpointStore(dir.toString()).load();
+    assertEquals(2, loaded.size());
+    assertCheckpoint(first, loaded.get("tablet1"));
+    assertCheckpoint(second, loaded.get("tablet2"));
+  }
+
+  @Test
+  public void testCompaction() throws Exception {
+    FileCheckpointStore store = new FileCheckpointStore(dir.toString());
+    store.load();
+    for (int i = 0; i < 5000; ++i) {
+      store.put("tablet" + (i % 3), new Checkpoint(1, i, "".getBytes(), 0, 0));
+      store.flush();
+    }
+    store.close();
+
+    assertTrue(Files.exists(dir.resolve(FileCheckpointStore.SNAPSHOT_FILE_NAME)));
+    Map<String, Checkpoint> loaded = new FileCheckpointStore(dir.toString()).load();
+    assertEquals(3, loaded.size());
+    assertEquals(4999, loaded.get("tablet1").getIndex());
+    assertEquals(4997, loaded.get("tablet2").getIndex());
+    assertEquals(4998, loaded.get("tablet0").getIndex());
+  }
+
+  @Test
+  public void testTornRecordIsIgnored() throws Exception {
+    FileCheckpointStore store = new FileCheckpointStore(dir.toString());
+    store.load();
+    Checkpoint cp = new Checkpoint(2, 5, "".getBytes(), 0, 0);
+    store.put("tablet1", cp);
+    store.flush();
+    store.put("tablet1", new Checkpoint(2, 6, "".getBytes(), 0, 0));
+    store.flush();
+    store.close();
+
+    // Cut the last record in the middle, as a crash during the append would.
+    Path log = dir.resolve(FileCheckpointStore.LOG_FILE_NAME);
+    try (RandomAccessFile file = new RandomAccessFile(log.toFile(), "rw")) {
+      file.setLength(file.length() - 5);
+    }
+
+    store = new FileCheckpointStore(dir.toString());
+    assertCheckpoint(cp, store.load().get("tablet1"));
+
+    // New records must be appended after the last valid one.
+    Checkpoint next = new Checkpoint(2, 7, "".getBytes(), 0, 0);
+    store.put("tablet1", next);
+    store.close();
+    assertCheckpoint(next, new FileCheckpointStore(dir.toString()).load().get("tablet1"));
+  }
+
+  @Test
+  public void testFailedFlushIsRequeued() throws Exception {
+    boolean[] failAppend = {true};
+    FileCheckpointStore store = new FileCheckpointStore(dir.toString()) {
+      @Override
+      void appendToLog(ByteBuffer buffer) throws IOException {
+        if (failAppend[0]) {
+          // Part of the records reaches the log before the failure.
+          buffer.limit(buffer.position() + 3);
+          super.appendToLog(buffer);
+          throw new IOException("Injected write error");
+        }
+        super.appendToLog(buffer);
+      }
+    };
+    store.load();
+    Checkpoint first = new Checkpoint(3, 1, "".getBytes(), 0, 0);
+    Checkpoint second = new Checkpoint(3, 2, "".getBytes(), 0, 0);
+    store.put("tablet1", first);
+    store.put("tablet2", first);
+    try {
+      store.flush();
+      fail("Flush should have failed");
+    } catch (IOException e) {
+      assertEquals("Injected write error", e.getMessage());
+    }
+
+    // A checkpoint recorded since the failed flush wins over the requeued one.
+    store.put("tablet2", second);
+    failAppend[0] = false;
+    Map<String, Checkpoint> flushed = store.flush();
+    assertEquals(2, flushed.size());
+    assertCheckpoint(first, flushed.get("tablet1"));
+    assertCheckpoint(second, flushed.get("tablet2"));
+    store.close();
+
+    Map<String, Checkpoint> loaded = new FileCheckpointStore(dir.toString()).load();
+    assertEquals(2, loaded.size());
+    assertCheckpoint(first, loaded.get("tablet1"));
+    assertCheckpoint(second, loaded.get("tablet2"));
+  }
+}
@@ -0,0 +1,90 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.yb.ColumnSchema.ColumnSchemaBuilder;
+import org.yb.Common;
+import org.yb.Common.PartitionSchemaPB.HashSchema;
+import org.yb.Schema;
+import org.yb.Type;
+import org.yb.client.PartitionSchema.HashBucketSchema;
+import org.yb.client.PartitionSchema.RangeSchema;
+
+/**
+ * Schemas and rows of the benchmarks.
+ */
+final class BenchmarkSchemas {
+
+  private BenchmarkSchemas() {
+  }
+
+  /**
+   * Builds a schema of {@code columnCount} key columns alternating between INT64 and STRING
+   * columns, followed by as many STRING value columns.
+   */
+  static Schema keyValueSchema(int columnCount) {
+    Common.SchemaPB.Builder pb = Common.SchemaPB.newBuilder();
+    for (int i = 0; i < 2 * columnCount; i++) {
+      boolean isKey = i < columnCount;
+      Type type = isKey && i % 2 == 0 ? Type.INT64 : Type.STRING;
+      Common.ColumnSchemaPB.Builder columnPb = ProtobufHelper.columnToPb(
+          new ColumnSchemaBuilder("c" + i, type).key(isKey).build()).toBuilder();
+      columnPb.setId(i);
+      pb.addColumns(columnPb);
+    }
+    return ProtobufHelper.pbToSchema(pb.build());
+  }
+
+  /**
+   * @return a partition schema hashing the first key column and ranging over all of them
+   */
+  static PartitionSchema partitionSchema(Schema schema) {
+    List<Integer> keyColumnIds = new ArrayList<>();
+    for (int i = 0; i < schema.getPrimaryKeyColumnCount(); i++) {
+      keyColumnIds.add(schema.getColumnByIndex(i).getId());
+    }
+    List<HashBucketSchema> hashBuckets = new ArrayList<>();
+    hashBuckets.add(new HashBucketSchema(keyColumnIds.subList(0, 1), 32, 0));
+    return new PartitionSchema(new RangeSchema(keyColumnIds), hashBuckets, schema,
+                               HashSchema.MULTI_COLUMN_HASH_SCHEMA);
+  }
+
+  /**
+   * @return a random string of {@code width} ASCII characters
+   */
+  static String randomString(Random random, int width) {
+    char[] chars = new char[width];
+    for (int i = 0; i < width; i++) {
+      chars[i] = (char) ('a' + random.nextInt(26));
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Sets all the columns of a row of a {@link #keyValueSchema}, with strings of the given width.
+   */
+  static void fillRow(PartialRow row, Random random, int stringWidth) {
+    Schema schema = row.getSchema();
+    for (int i = 0; i < schema.getColumnCount(); i++) {
+      if (schema.getColumnByIndex(i).getType() == Type.INT64) {
+        row.addLong(i, random.nextLong());
+      } else {
+        row.addString(i, randomString(random, stringWidth));
+      }
+    }
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Comparisons of keys with {@link Bytes}, which order the tablets in the location cache and the
+ * rows in scans. The keys compared share a prefix of all but their last byte, the worst case.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BytesBenchmark {
+
+  @Param({"4", "16", "64", "256"})
+  public int keyWidth;
+
+  private byte[] key;
+  private byte[] sameKey;
+  private byte[] greaterKey;
+  private long value;
+
+  @Setup
+  public void setUp() {
+    key = new byte[keyWidth];
+    new Random(keyWidth).nextBytes(key);
+    key[keyWidth - 1] = 0;
+    sameKey = key.clone();
+    greaterKey = key.clone();
+    greaterKey[keyWidth - 1] = (byte) 0xff;
+    value = new Random(keyWidth).nextLong();
+  }
+
+  @Benchmark
+  public int memcmp() {
+    return Bytes.memcmp(key, greaterKey);
+  }
+
+  @Benchmark
+  public int memcmpComparator() {
+    return Bytes.MEMCMP.compare(key, greaterKey);
+  }
+
+  @Benchmark
+  public boolean equalKeys() {
+    return Bytes.equals(key, sameKey);
+  }
+
+  @Benchmark
+  public long setAndGetLong() {
+    Bytes.setLong(key, value, 0);
+    return Bytes.getLong(key, 0);
+  }
+}
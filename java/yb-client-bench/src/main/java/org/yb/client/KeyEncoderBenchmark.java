@@ -0,0 +1,84 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.Schema;
+
+/**
+ * Encoding of the primary and partition keys of rows, done for every write and every lookup of
+ * the tablet of a row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyEncoderBenchmark {
+
+  @Param({"1", "4", "16"})
+  public int columnCount;
+
+  @Param({"8", "64"})
+  public int keyWidth;
+
+  private final KeyEncoder encoder = new KeyEncoder();
+  private final ByteBuffer out = ByteBuffer.allocateDirect(4096);
+  private PartitionSchema partitionSchema;
+  private PartialRow row;
+
+  @Setup
+  public void setUp() {
+    Schema schema = BenchmarkSchemas.keyValueSchema(columnCount);
+    partitionSchema = BenchmarkSchemas.partitionSchema(schema);
+    row = schema.newPartialRow();
+    BenchmarkSchemas.fillRow(row, new Random(columnCount), keyWidth);
+  }
+
+  @Benchmark
+  public byte[] encodePrimaryKey() {
+    return encoder.encodePrimaryKey(row);
+  }
+
+  @Benchmark
+  public byte[] encodePartitionKey() {
+    return encoder.encodePartitionKey(row, partitionSchema);
+  }
+
+  @Benchmark
+  public int encodePrimaryKeyToBuffer() {
+    out.clear();
+    return encoder.encodePrimaryKey(row, out);
+  }
+
+  @Benchmark
+  public int encodePartitionKeyToBuffer() {
+    out.clear();
+    return encoder.encodePartitionKey(row, partitionSchema, out);
+  }
+}
@@ -0,0 +1,110 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.Schema;
+
+/**
+ * Building {@link PartialRow}s, by column index and by column name, and encoding their keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartialRowBenchmark {
+
+  @Param({"1", "4", "16"})
+  public int columnCount;
+
+  @Param({"8", "64"})
+  public int keyWidth;
+
+  private Schema schema;
+  private long[] longs;
+  private String[] strings;
+  private String[] names;
+  private PartialRow filledRow;
+
+  @Setup
+  public void setUp() {
+    schema = BenchmarkSchemas.keyValueSchema(columnCount);
+    Random random = new Random(columnCount);
+    int numColumns = schema.getColumnCount();
+    longs = new long[numColumns];
+    strings = new String[numColumns];
+    names = new String[numColumns];
+    for (int i = 0; i < numColumns; i++) {
+      longs[i] = random.nextLong();
+      strings[i] = BenchmarkSchemas.randomString(random, keyWidth);
+      names[i] = schema.getColumnByIndex(i).getName();
+    }
+    filledRow = schema.newPartialRow();
+    BenchmarkSchemas.fillRow(filledRow, random, keyWidth);
+  }
+
+  private boolean isLong(int columnIndex) {
+    return columnIndex < columnCount && columnIndex % 2 == 0;
+  }
+
+  @Benchmark
+  public PartialRow fillByIndex() {
+    PartialRow row = schema.newPartialRow();
+    for (int i = 0; i < longs.length; i++) {
+      if (isLong(i)) {
+        row.addLong(i, longs[i]);
+      } else {
+        row.addString(i, strings[i]);
+      }
+    }
+    return row;
+  }
+
+  @Benchmark
+  public PartialRow fillByName() {
+    PartialRow row = schema.newPartialRow();
+    for (int i = 0; i < longs.length; i++) {
+      if (isLong(i)) {
+        row.addLong(names[i], longs[i]);
+      } else {
+        row.addString(names[i], strings[i]);
+      }
+    }
+    return row;
+  }
+
+  @Benchmark
+  public byte[] encodePrimaryKey() {
+    return filledRow.encodePrimaryKey();
+  }
+
+  @Benchmark
+  public String stringifyRowKey() {
+    return filledRow.stringifyRowKey();
+  }
+}
@@ -0,0 +1,99 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.util.Slice;
+import org.yb.util.Slices;
+
+/**
+ * {@link Slice} and {@link Slices} operations on keys, such as the tablet IDs the location cache
+ * is keyed by.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SliceBenchmark {
+
+  @Param({"4", "16", "64", "256"})
+  public int keyWidth;
+
+  private byte[] bytes;
+  private Slice slice;
+  private Slice sameSlice;
+  private ByteBuffer buffer;
+
+  @Setup
+  public void setUp() {
+    bytes = new byte[keyWidth];
+    new Random(keyWidth).nextBytes(bytes);
+    // Slices over the middle of larger arrays, like the ones of a decoded response.
+    byte[] padded = new byte[keyWidth + 8];
+    System.arraycopy(bytes, 0, padded, 4, keyWidth);
+    slice = new Slice(padded, 4, keyWidth);
+    sameSlice = new Slice(bytes.clone());
+    buffer = ByteBuffer.wrap(bytes);
+  }
+
+  @Benchmark
+  public Slice wrap() {
+    return Slices.wrappedBuffer(bytes);
+  }
+
+  @Benchmark
+  public Slice copyFromByteBuffer() {
+    return Slices.copiedBuffer(buffer, 0, keyWidth);
+  }
+
+  @Benchmark
+  public Slice copySlice() {
+    return slice.copySlice();
+  }
+
+  @Benchmark
+  public byte[] getBytes() {
+    return slice.getBytes();
+  }
+
+  @Benchmark
+  public boolean equalSlices() {
+    return slice.equals(sameSlice);
+  }
+
+  @Benchmark
+  public int hashSlice() {
+    return slice.hashCode();
+  }
+
+  @Benchmark
+  public int compareSlices() {
+    return slice.compareTo(sameSlice);
+  }
+}
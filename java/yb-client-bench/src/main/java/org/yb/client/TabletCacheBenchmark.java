@@ -0,0 +1,144 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.Common;
+import org.yb.master.MasterClientOuterClass.GetTableLocationsResponsePB;
+import org.yb.master.MasterClientOuterClass.TabletLocationsPB;
+
+/**
+ * Lookups of the tablet of a partition key in the location cache of {@link AsyncYBClient}, a
+ * floor lookup in the sorted map of the tablets of the table, done before sending every RPC to a
+ * tablet. The table is split in tablets of equal 2-byte hash ranges, as a hash partitioned table
+ * is, and the cache is filled without any master, with tablets that have no replicas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TabletCacheBenchmark {
+
+  private static final String TABLE_ID = "000030af000030008000000000004000";
+
+  private static final int NUM_KEYS = 4096;
+
+  private static final int HASH_SPACE = 1 << 16;
+
+  private static final int BATCH_SIZE = 256;
+
+  @Param({"1", "16", "256", "4096"})
+  public int tabletCount;
+
+  private AsyncYBClient client;
+  private byte[][] keys;
+  private List<byte[]> batch;
+
+  /**
+   * The position of a thread in the keys, so that concurrent threads look up different tablets.
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next = new Random().nextInt(NUM_KEYS);
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    // Never connected, the tablets have no replicas.
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1:1").build();
+    GetTableLocationsResponsePB.Builder response = GetTableLocationsResponsePB.newBuilder();
+    for (int i = 0; i < tabletCount; i++) {
+      Common.PartitionPB.Builder partition = Common.PartitionPB.newBuilder();
+      if (i > 0) {
+        partition.setPartitionKeyStart(hashKey(i * (HASH_SPACE / tabletCount)));
+      }
+      if (i < tabletCount - 1) {
+        partition.setPartitionKeyEnd(hashKey((i + 1) * (HASH_SPACE / tabletCount)));
+      }
+      response.addTabletLocations(TabletLocationsPB.newBuilder()
+          .setTabletId(ByteString.copyFromUtf8(String.format("tablet-%05d", i)))
+          .setPartition(partition)
+          .setStale(false));
+    }
+    client.discoverTablets(new YBTable(client, "bench", TABLE_ID, null, null), response.build());
+
+    // Partition keys are the 2-byte hash followed by the encoded range columns.
+    Random random = new Random(tabletCount);
+    keys = new byte[NUM_KEYS][];
+    for (int i = 0; i < NUM_KEYS; i++) {
+      keys[i] = new byte[10];
+      random.nextBytes(keys[i]);
+    }
+    batch = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      batch.add(keys[i]);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    client.close();
+  }
+
+  private static ByteString hashKey(int hash) {
+    return ByteString.copyFrom(new byte[] { (byte) (hash >>> 8), (byte) hash });
+  }
+
+  @Benchmark
+  public AsyncYBClient.RemoteTablet getTablet(Cursor cursor) {
+    int next = cursor.next;
+    cursor.next = (next + 1) % NUM_KEYS;
+    return client.getTablet(TABLE_ID, keys[next]);
+  }
+
+  /**
+   * Looks up the tablets of a batch of {@value #BATCH_SIZE} keys one key at a time.
+   */
+  @Benchmark
+  public int getTabletOfEachKey() {
+    int found = 0;
+    for (byte[] key : batch) {
+      if (client.getTablet(TABLE_ID, key) != null) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Looks up the tablets of a batch of {@value #BATCH_SIZE} keys at once.
+   */
+  @Benchmark
+  public AsyncYBClient.RemoteTablet[] getTabletsOfBatch() {
+    return client.getTablets(TABLE_ID, batch);
+  }
+}
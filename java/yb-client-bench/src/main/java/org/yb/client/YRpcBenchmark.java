@@ -0,0 +1,79 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.protobuf.ByteString;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.yb.master.MasterClientOuterClass.GetTableLocationsRequestPB;
+import org.yb.master.MasterTypes.TableIdentifierPB;
+import org.yb.rpc.RpcHeader;
+
+/**
+ * Serialization of a request and its header into the buffer written to the connection, for a
+ * lookup of the tablets of a key range.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class YRpcBenchmark {
+
+  @Param({"4", "16", "64", "256"})
+  public int keyWidth;
+
+  private RpcHeader.RequestHeader header;
+  private GetTableLocationsRequestPB request;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(keyWidth);
+    byte[] start = new byte[keyWidth];
+    byte[] end = new byte[keyWidth];
+    random.nextBytes(start);
+    random.nextBytes(end);
+    header = RpcHeader.RequestHeader.newBuilder()
+        .setCallId(42)
+        .setRemoteMethod(RpcHeader.RemoteMethodPB.newBuilder()
+            .setServiceName("yb.master.MasterClient")
+            .setMethodName("GetTableLocations"))
+        .setTimeoutMillis(10000)
+        .build();
+    request = GetTableLocationsRequestPB.newBuilder()
+        .setTable(TableIdentifierPB.newBuilder()
+            .setTableId(ByteString.copyFromUtf8("000030af000030008000000000004000")))
+        .setPartitionKeyStart(ByteString.copyFrom(start))
+        .setPartitionKeyEnd(ByteString.copyFrom(end))
+        .build();
+  }
+
+  @Benchmark
+  public ChannelBuffer toChannelBuffer() {
+    return YRpc.toChannelBuffer(header, request);
+  }
+}
@@ -57,7 +57,6 @@ import java.io.FileInputStream;
 import java.io.FileReader;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.SocketAddress;
 import java.net.UnknownHostException;
 import java.nio.charset.Charset;
 import java.security.KeyFactory;
@@ -70,12 +69,12 @@ import java.security.cert.X509Certificate;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
@@ -83,6 +82,9 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
@@ -161,6 +163,11 @@ public class AsyncYBClient implements AutoCloseable {
 
   public static final Logger LOG = LoggerFactory.getLogger(AsyncYBClient.class);
   public static final int SLEEP_TIME = 500;
+  public static final int DEFAULT_RETRY_BUDGET = 1000;
+  // How long the master's answer that a table is not served yet is trusted before asking again.
+  static final long TABLE_NOT_SERVED_TTL_MS = SLEEP_TIME;
+  // Number of tables whose tablets are prefetched concurrently.
+  static final int PREFETCH_PARALLELISM = 8;
   public static final byte[] EMPTY_ARRAY = new byte[0];
   public static final long NO_TIMESTAMP = -1;
   public static final long DEFAULT_OPERATION_TIMEOUT_MS = 10000;
@@ -206,21 +213,14 @@ public class AsyncYBClient implements AutoCloseable {
 
   /**
    * Cache that maps a TabletServer address ("ip:port") to the clients
-   * connected to it.
+   * connected to it, and each client back to its address.
    * <p>
-   * Access to this map must be synchronized by locking its monitor.
-   * Lock ordering: when locking both this map and a TabletClient, the
-   * TabletClient must always be locked first to avoid deadlocks.  Logging
-   * the contents of this map (or calling toString) requires copying it first.
+   * It is lock-free for lookups, and creating a client for an address is
+   * atomic, so that concurrent callers don't create unnecessary connections.
+   * Logging the contents of this registry requires copying it first, as
+   * {@code TabletClient.toString} locks the client briefly.
    * <p>
-   * This isn't a {@link ConcurrentHashMap} because we don't use it frequently
-   * (just when connecting to / disconnecting from TabletClients) and when we
-   * add something to it, we want to do an atomic get-and-put, but
-   * {@code putIfAbsent} isn't a good fit for us since it requires to create
-   * an object that may be "wasted" in case another thread wins the insertion
-   * race, and we don't want to create unnecessary connections.
-   * <p>
-   * Upon disconnection, clients are automatically removed from this map.
+   * Upon disconnection, clients are automatically removed from this registry.
    * We don't use a {@code ChannelGroup} because a {@code ChannelGroup} does
    * the clean-up on the {@code channelClosed} event, which is actually the
    * 3rd and last event to be fired when a channel gets disconnected.  The
@@ -230,8 +230,7 @@ public class AsyncYBClient implements AutoCloseable {
    * that are going to cause unnecessary errors.
    * @see TabletClientPipeline#handleDisconnect
    */
-  private final HashMap<String, TabletClient> ip2client =
-      new HashMap<String, TabletClient>();
+  private final TabletClientRegistry ip2client = new TabletClientRegistry();
 
   // Since the masters also go through TabletClient, we need to treat them as if they were a normal
   // table. We'll use the following fake table name to identify places where we need special
@@ -242,6 +241,12 @@ public class AsyncYBClient implements AutoCloseable {
 
   private final HashedWheelTimer timer = new HashedWheelTimer(20, MILLISECONDS);
 
+  // Runs the waits for conditions on the timer above.
+  private final ConditionWaiter conditionWaiter = new ConditionWaiter(timer);
+
+  // Whether the next wait starts with a failed probe, see injectWaitError.
+  private final AtomicBoolean injectWaitError = new AtomicBoolean(false);
+
   /**
    * Timestamp required for HybridTime external consistency through timestamp
    * propagation.
@@ -249,11 +254,12 @@ public class AsyncYBClient implements AutoCloseable {
    */
   private long lastPropagatedTimestamp = NO_TIMESTAMP;
 
-  // A table is considered not served when we get an empty list of locations but know
-  // that a tablet exists. This is currently only used for new tables. The objects stored are
-  // table IDs.
-  private final Set<String> tablesNotServed = Collections.newSetFromMap(new
-      ConcurrentHashMap<String, Boolean>());
+  // Tracks the master lookups in flight, so that concurrent lookups of the same key are
+  // coalesced, and the tables which are not served yet. A table is considered not served when we
+  // get an empty list of locations but know that a tablet exists. This is currently only used for
+  // new tables.
+  private final TabletLookupTracker tabletLookups =
+      new TabletLookupTracker(TABLE_NOT_SERVED_TTL_MS);
 
   /**
    * Semaphore used to rate-limit master lookups
@@ -263,7 +269,6 @@ public class AsyncYBClient implements AutoCloseable {
    */
   private final Semaphore masterLookups = new Semaphore(50);
 
-  private final Random sleepRandomizer = new Random();
 
   private final long defaultOperationTimeoutMs;
 
@@ -283,6 +288,13 @@ public class AsyncYBClient implements AutoCloseable {
 
   private final int numTabletsInTable;
 
+  // Number of connections opened to every server RPCs to tablets are sent to.
+  private final int connectionsPerServer;
+
+  private final ClientMetrics metrics;
+
+  private final RetryScheduler retryScheduler;
+
   private AsyncYBClient(AsyncYBClientBuilder b) {
     this.channelFactory = b.createChannelFactory();
     this.masterAddresses = b.masterAddresses;
@@ -297,6 +309,10 @@ public class AsyncYBClient implements AutoCloseable {
     this.clientPort = b.clientPort;
     this.defaultSocketReadTimeoutMs = b.defaultSocketReadTimeoutMs;
     this.numTabletsInTable = b.numTablets;
+    this.connectionsPerServer = b.connectionsPerServer;
+    this.metrics = b.metrics;
+    metrics.bind(this);
+    this.retryScheduler = new RetryScheduler(timer, b.retryBudget);
   }
 
   /**
@@ -752,6 +768,197 @@ public class AsyncYBClient implements AutoCloseable {
     return sendRpcToTablet(rpc);
   }
 
+  /**
+   * Waits for a condition to become true, without blocking any thread while waiting.
+   * The condition is probed with a jittered exponential backoff, up to every
+   * {@link #SLEEP_TIME} ms.
+   * @param condition the condition to wait for
+   * @param timeoutMs the amount of time, in MS, to wait
+   * @return a deferred object that yields true if the condition became true in time, false
+   *         otherwise
+   */
+  public Deferred<Boolean> waitForCondition(ConditionWaiter.AsyncCondition condition,
+                                            long timeoutMs) {
+    checkIsClosed();
+    if (injectWaitError.compareAndSet(true, false)) {
+      final ConditionWaiter.AsyncCondition injectedCondition = condition;
+      final AtomicBoolean failed = new AtomicBoolean(false);
+      condition = () -> {
+        if (failed.compareAndSet(false, true)) {
+          LOG.info("Simulated expection due to injected error.");
+          return Deferred.fromError(new NonRecoverableException("Injected wait error"));
+        }
+        return injectedCondition.get();
+      };
+    }
+    return conditionWaiter.waitFor(condition, timeoutMs);
+  }
+
+  /**
+   * Makes the first probe of the next wait fail, to test the waits through errors.
+   */
+  void injectWaitError() {
+    injectWaitError.set(true);
+  }
+
+  /**
+   * Waits for the master to be running and initialized, that is to return its registration.
+   * @return a deferred object that yields true if the master is initialized in time, false
+   *         otherwise
+   */
+  public Deferred<Boolean> waitForMaster(final HostAndPort hp, final long timeoutMs) {
+    return waitForCondition(() -> getMasterRegistration(hp).addCallback(
+        resp -> resp.getInstanceId().hasPermanentUuid()), timeoutMs);
+  }
+
+  /**
+   * Waits for the masters to have elected a leader.
+   * @return a deferred object that yields the UUID of the leader master, or null if none was
+   *         elected in time
+   */
+  public Deferred<String> waitForMasterLeader(final long timeoutMs) {
+    return waitForNewMasterLeader(null, timeoutMs);
+  }
+
+  /**
+   * Waits for the masters to have elected a leader other than the given one, after it stepped
+   * down for instance.
+   * @param oldLeaderUuid the UUID of the previous leader master, null for any leader
+   * @return a deferred object that yields the UUID of the new leader master, or null if none was
+   *         elected in time
+   */
+  public Deferred<String> waitForNewMasterLeader(final String oldLeaderUuid,
+                                                 final long timeoutMs) {
+    final AtomicReference<String> leaderUuid = new AtomicReference<>();
+    return waitForCondition(() -> {
+      List<Deferred<Boolean>> probes = new ArrayList<>();
+      for (HostAndPort hp : getMasterAddresses()) {
+        probes.add(getMasterRegistration(hp).addCallbacks(resp -> {
+          if (resp.getRole() != CommonTypes.PeerRole.LEADER) {
+            return false;
+          }
+          String uuid = resp.getInstanceId().getPermanentUuid().toStringUtf8();
+          if (uuid.equals(oldLeaderUuid)) {
+            return false;
+          }
+          leaderUuid.set(uuid);
+          return true;
+        }, (Exception e) -> {
+          LOG.debug("Couldn't get registration info for master {} due to error '{}'.",
+                    hp, e.getMessage());
+          return false;
+        }));
+      }
+      return Deferred.group(probes).addCallback(found -> found.contains(true));
+    }, timeoutMs).addCallback(found -> found ? leaderUuid.get() : null);
+  }
+
+  /**
+   * Waits for the table to have a specific number of replicas.
+   * @return a deferred object that yields true if the table has the expected number of replicas
+   *         in time, false otherwise
+   */
+  public Deferred<Boolean> waitForReplicaCount(final YBTable table, final int numReplicas,
+                                               final long timeoutMs) {
+    return waitForCondition(() -> table.asyncGetTabletsLocations(defaultAdminOperationTimeoutMs)
+        .addCallback(tablets -> {
+          for (LocatedTablet tablet : tablets) {
+            if (tablet.getReplicas().size() != numReplicas) {
+              return false;
+            }
+          }
+          return true;
+        }), timeoutMs);
+  }
+
+  /**
+   * Waits for the specific server to respond to pings.
+   * @return a deferred object that yields true if the server responded in time, false otherwise
+   */
+  public Deferred<Boolean> waitForServer(final HostAndPort hp, final long timeoutMs) {
+    return waitForCondition(() -> ping(hp).addCallback(resp -> true), timeoutMs);
+  }
+
+  /**
+   * Waits for the tablet load to be balanced by the master leader.
+   * @return a deferred object that yields true if the load got balanced in time, false otherwise
+   */
+  public Deferred<Boolean> waitForLoadBalance(final long timeoutMs, final int numServers) {
+    return waitForCondition(
+        () -> getIsLoadBalanced(numServers).addCallback(resp -> !resp.hasError()), timeoutMs);
+  }
+
+  /**
+   * Waits for the load balancer to become idle.
+   * @return a deferred object that yields true if it became idle in time, false otherwise
+   */
+  public Deferred<Boolean> waitForLoadBalancerIdle(final long timeoutMs) {
+    return waitForCondition(
+        () -> getIsLoadBalancerIdle().addCallback(resp -> !resp.hasError()), timeoutMs);
+  }
+
+  /**
+   * Waits for the load balancer to become active.
+   * @return a deferred object that yields true if it became active in time, false otherwise
+   */
+  public Deferred<Boolean> waitForLoadBalancerActive(final long timeoutMs) {
+    return waitForCondition(() -> getIsLoadBalancerIdle().addCallbacks(
+        resp -> false,
+        (Exception e) -> {
+          if (e instanceof MasterErrorException) {
+            // The master reports an active load balancer as an error.
+            return e.toString().contains("LOAD_BALANCER_RECENTLY_ACTIVE");
+          }
+          throw e;
+        }), timeoutMs);
+  }
+
+  /**
+   * Waits for the leaders to be on the preferred zones only.
+   * @return a deferred object that yields true if they are in time, false otherwise
+   */
+  public Deferred<Boolean> waitForAreLeadersOnPreferredOnlyCondition(final long timeoutMs) {
+    return waitForCondition(
+        () -> getAreLeadersOnPreferredOnly().addCallback(resp -> !resp.hasError()), timeoutMs);
+  }
+
+  /**
+   * Waits for the live and read replica counts per tablet server of the table to match the
+   * expected ones, see {@link YBTable#getMemberTypeCountsForEachTSType}.
+   * @return a deferred object that yields true if they match in time, false otherwise
+   */
+  public Deferred<Boolean> waitForExpectedReplicaMap(
+      final long timeoutMs, final YBTable table,
+      final Map<String, List<List<Integer>>> replicaMapExpected) {
+    return waitForCondition(() -> table.asyncGetTabletsLocations(timeoutMs).addCallback(
+        tablets -> YBTable.getMemberTypeCountsForEachTSType(tablets).equals(replicaMapExpected)),
+        timeoutMs);
+  }
+
+  /**
+   * Waits for the master to have the universe key in memory.
+   * @return a deferred object that yields true if it has the key in time, false otherwise
+   */
+  public Deferred<Boolean> waitForMasterHasUniverseKeyInMemory(
+      final long timeoutMs, final String universeKeyId, final HostAndPort hp) {
+    return waitForCondition(() -> hasUniverseKeyInMemory(universeKeyId, hp).addCallback(resp -> {
+      if (resp.getServerError() != null) {
+        throw new RuntimeException("Could not add universe keys to " + hp.toString() +
+            " with error: " + resp.getServerError().getStatus().getMessage());
+      }
+      return resp.hasKey();
+    }), timeoutMs);
+  }
+
+  /**
+   * Waits for the tables matching the filter to be gone.
+   * @return a deferred object that yields true if they are gone in time, false otherwise
+   */
+  public Deferred<Boolean> waitForTableRemoval(final long timeoutMs, final String nameFilter) {
+    return waitForCondition(() -> getTablesList(nameFilter).addCallback(
+        tl -> tl.getTablesList().isEmpty()), timeoutMs);
+  }
+
   /**
    * Check if initdb executed by the master is done running.
    */
@@ -1493,6 +1700,7 @@ public class AsyncYBClient implements AutoCloseable {
   }
 
   <R> Deferred<R> sendRpcToTablet(final YRpc<R> request) {
+    request.metrics = metrics;
     if (cannotRetryRequest(request)) {
       return tooManyAttemptsOrTimeout(request, null);
     }
@@ -1541,19 +1749,26 @@ public class AsyncYBClient implements AutoCloseable {
       TabletClient tabletClient = clientFor(tablet);
 
       if (tabletClient != null) {
+        metrics.tabletCacheLookup(true);
         request.setTablet(tablet);
         final Deferred<R> d = request.getDeferred();
-        tabletClient.sendRpc(request);
+        // The RPCs to the master tablet use the single connection the master was discovered with.
+        if (isMasterTable(tableId)) {
+          tabletClient.sendRpc(request);
+        } else {
+          pickConnection(tabletClient).sendRpc(request);
+        }
         return d;
       }
     }
+    metrics.tabletCacheLookup(false);
 
     // Right after creating a table a request will fall into locateTablet since we don't know yet
     // if the table is ready or not. If discoverTablets() didn't get any tablets back,
     // then on retry we'll fall into the following block. It will sleep, then call the master to
     // see if the table was created. We'll spin like this until the table is created and then
     // we'll try to locate the tablet again.
-    if (tablesNotServed.contains(tableId)) {
+    if (tabletLookups.isNotServed(tableId)) {
       return delayedIsCreateTableDone(request.getTable(), request,
           new RetryRpcCB<R, MasterDdlOuterClass.IsCreateTableDoneResponsePB>(request),
           getDelayedIsCreateTableDoneErrback(request));
@@ -1697,20 +1912,17 @@ public class AsyncYBClient implements AutoCloseable {
     final class RetryTimer implements TimerTask {
       public void run(final Timeout timeout) {
         String tableId = table.getTableId();
-        final boolean has_permit = acquireMasterLookupPermit();
-        if (!has_permit) {
-          // If we failed to acquire a permit, it's worth checking if someone
-          // looked up the tablet we're interested in.  Every once in a while
-          // this will save us a Master lookup.
-          if (!tablesNotServed.contains(tableId)) {
-            try {
-              retryCB.call(null);
-              return;
-            } catch (Exception e) {
-              // we're calling RetryRpcCB which doesn't throw exceptions, ignore
-            }
+        // Only one of the RPCs waiting for the table asks the master per TTL. The others retry,
+        // which either finds the table served by now or waits some more.
+        if (!tabletLookups.shouldRecheckNotServed(tableId)) {
+          try {
+            retryCB.call(null);
+            return;
+          } catch (Exception e) {
+            // we're calling RetryRpcCB which doesn't throw exceptions, ignore
           }
         }
+        final boolean has_permit = acquireMasterLookupPermit();
         IsCreateTableDoneRequest rpc = new IsCreateTableDoneRequest(masterTable, tableId);
         rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
         final Deferred<MasterDdlOuterClass.IsCreateTableDoneResponsePB> d =
@@ -1755,9 +1967,10 @@ public class AsyncYBClient implements AutoCloseable {
         final MasterDdlOuterClass.IsCreateTableDoneResponsePB response) {
       if (response.getDone()) {
         LOG.debug("Table {} was created", tableName);
-        tablesNotServed.remove(tableName);
+        tabletLookups.markServed(tableName);
       } else {
         LOG.debug("Table {} is still being created", tableName);
+        tabletLookups.markNotServed(tableName);
       }
       return response;
     }
@@ -1767,7 +1980,7 @@ public class AsyncYBClient implements AutoCloseable {
   }
 
   boolean isTableNotServed(String tableId) {
-    return tablesNotServed.contains(tableId);
+    return tabletLookups.isNotServed(tableId);
   }
 
 
@@ -1779,9 +1992,7 @@ public class AsyncYBClient implements AutoCloseable {
           new Exception("Exception created to collect stack trace"));
       attemptCount = 1;
     }
-    // TODO backoffs? Sleep in increments of 500 ms, plus some random time up to 50
-    long sleepTime = (attemptCount * SLEEP_TIME) + sleepRandomizer.nextInt(50);
-    LOG.info("Going to sleep for " + sleepTime + " at retry " + rpc.attempt);
+    long sleepTime = RetryScheduler.backoffMs(attemptCount, rpc.deadlineTracker);
     if (LOG.isDebugEnabled()) {
       LOG.debug("Going to sleep for " + sleepTime + " at retry " + rpc.attempt);
     }
@@ -1797,9 +2008,7 @@ public class AsyncYBClient implements AutoCloseable {
    */
   @VisibleForTesting
   List<TabletClient> getTableClients() {
-    synchronized (ip2client) {
-      return new ArrayList<TabletClient>(ip2client.values());
-    }
+    return ip2client.getClients();
   }
 
   /**
@@ -1842,6 +2051,19 @@ public class AsyncYBClient implements AutoCloseable {
     }
   }
 
+  /**
+   * Gives the UUID of the tablet server this client currently considers to be the leader of a
+   * tablet, according to its tablet location cache. The cache follows leader changes as RPCs to
+   * the tablet get redirected, so this can be used to group requests by destination.
+   * @param tableId the table the tablet belongs to
+   * @param tabletId the tablet to find the leader of
+   * @return the leader's UUID, or null if the tablet isn't cached or its leader isn't known
+   */
+  public String getCachedLeaderUuid(String tableId, String tabletId) {
+    TabletClient client = clientFor(getTablet(tableId, tabletId));
+    return client == null ? null : client.getUuid();
+  }
+
   /**
    * Checks whether or not an RPC can be retried once more.
    * @param rpc The RPC we're going to attempt to execute.
@@ -1884,16 +2106,25 @@ public class AsyncYBClient implements AutoCloseable {
    */
   Deferred<GetTableLocationsResponsePB> locateTablet(
       YBTable table, byte[] partitionKey) {
-    final boolean has_permit = acquireMasterLookupPermit();
     String tableId = table.getTableId();
+    // Concurrent lookups of the same key, e.g. by all the RPCs to a tablet right after its table
+    // was opened or after its leader moved, only send one request to the master.
+    Deferred<GetTableLocationsResponsePB> pending =
+        tabletLookups.joinOrRegister(tableId, partitionKey);
+    if (pending != null) {
+      return pending;
+    }
+    final boolean has_permit = acquireMasterLookupPermit();
     if (!has_permit) {
       // If we failed to acquire a permit, it's worth checking if someone
       // looked up the tablet we're interested in.  Every once in a while
       // this will save us a Master lookup.
       RemoteTablet tablet = getTablet(tableId, partitionKey);
       if (tablet != null && clientFor(tablet) != null) {
-
-        return Deferred.fromResult(null);  // Looks like no lookup needed.
+        // Looks like no lookup needed.
+        Deferred<GetTableLocationsResponsePB> d = Deferred.fromResult(null);
+        tabletLookups.complete(tableId, partitionKey, d);
+        return d;
       }
     }
 
@@ -1905,6 +2136,7 @@ public class AsyncYBClient implements AutoCloseable {
         new GetTableLocationsRequest(masterTable, partitionKey, partitionKey, tableId,
           numTablets);
     rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
+    metrics.masterLookupSent();
     final Deferred<GetTableLocationsResponsePB> d;
 
     // If we know this is going to the master, check the master consensus configuration (as specified by
@@ -1918,9 +2150,94 @@ public class AsyncYBClient implements AutoCloseable {
     if (has_permit) {
       d.addBoth(new ReleaseMasterLookupPermit<GetTableLocationsResponsePB>());
     }
+    tabletLookups.complete(tableId, partitionKey, d);
     return d;
   }
 
+  /**
+   * Loads the locations of all the tablets of a table into the tablet location cache, paging
+   * through the table with as few GetTableLocations RPCs as the master allows. RPCs sent to the
+   * table afterwards find their tablet in the cache instead of each looking it up.
+   * @param table the table to prefetch the tablets of
+   * @param deadline deadline in milliseconds for the prefetch to complete
+   * @return a deferred that yields the number of tablets cached
+   */
+  public Deferred<Integer> prefetchTabletLocations(final YBTable table, long deadline) {
+    final DeadlineTracker deadlineTracker = new DeadlineTracker();
+    deadlineTracker.setDeadline(deadline);
+    return loopPrefetchTabletLocations(table, null, 0, deadlineTracker);
+  }
+
+  /**
+   * Same as {@link #prefetchTabletLocations(YBTable, long)} for a list of tables. Up to
+   * {@link #PREFETCH_PARALLELISM} tables are prefetched concurrently.
+   * @return a deferred that yields the total number of tablets cached
+   */
+  public Deferred<Integer> prefetchTabletLocations(final List<YBTable> tables, long deadline) {
+    final DeadlineTracker deadlineTracker = new DeadlineTracker();
+    deadlineTracker.setDeadline(deadline);
+    List<Deferred<Integer>> lanes = new ArrayList<>();
+    for (int lane = 0; lane < Math.min(PREFETCH_PARALLELISM, tables.size()); lane++) {
+      Deferred<Integer> d = Deferred.fromResult(0);
+      for (int i = lane; i < tables.size(); i += PREFETCH_PARALLELISM) {
+        final YBTable table = tables.get(i);
+        d = d.addCallbackDeferring(new Callback<Deferred<Integer>, Integer>() {
+          @Override
+          public Deferred<Integer> call(final Integer tabletsSoFar) {
+            return loopPrefetchTabletLocations(table, null, tabletsSoFar, deadlineTracker);
+          }
+        });
+      }
+      lanes.add(d);
+    }
+    return Deferred.group(lanes).addCallback(new Callback<Integer, ArrayList<Integer>>() {
+      @Override
+      public Integer call(ArrayList<Integer> counts) {
+        int total = 0;
+        for (Integer count : counts) {
+          total += count;
+        }
+        return total;
+      }
+    });
+  }
+
+  private Deferred<Integer> loopPrefetchTabletLocations(final YBTable table,
+      final byte[] startPartitionKey, final int tabletsSoFar,
+      final DeadlineTracker deadlineTracker) {
+    if (deadlineTracker.timedOut()) {
+      return Deferred.fromError(new NonRecoverableException(
+          "Took too long prefetching the tablets of " + table.getName() + ", " +
+          deadlineTracker));
+    }
+    GetTableLocationsRequest rpc = new GetTableLocationsRequest(masterTable, startPartitionKey,
+        null, table.getTableId(), DEFAULT_MAX_TABLETS);
+    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
+    return sendRpcToTablet(rpc).addCallbackDeferring(
+        new Callback<Deferred<Integer>, GetTableLocationsResponsePB>() {
+          @Override
+          public Deferred<Integer> call(GetTableLocationsResponsePB response) throws Exception {
+            if (response.hasError()) {
+              return Deferred.fromError(
+                  new NonRecoverableException(response.getError().toString()));
+            }
+            discoverTablets(table, response);
+            int numTablets = response.getTabletLocationsCount();
+            if (numTablets == 0) {
+              // Not served yet, the RPCs to the table will wait for it.
+              return Deferred.fromResult(tabletsSoFar);
+            }
+            byte[] lastEndPartition = response.getTabletLocations(numTablets - 1)
+                .getPartition().getPartitionKeyEnd().toByteArray();
+            if (lastEndPartition.length == 0) {
+              return Deferred.fromResult(tabletsSoFar + numTablets);
+            }
+            return loopPrefetchTabletLocations(table, lastEndPartition,
+                tabletsSoFar + numTablets, deadlineTracker);
+          }
+        });
+  }
+
   /**
    * Update the master config: send RPCs to all config members, use the returned data to
    * fill a {@link MasterClientOuterClass.GetTabletLocationsResponsePB} object.
@@ -2042,7 +2359,13 @@ public class AsyncYBClient implements AutoCloseable {
    * We're in the context of decode() meaning we need to either callback or retry later.
    */
   <R> void handleTabletNotFound(final YRpc<R> rpc, YBException ex, TabletClient server) {
-    invalidateTabletCache(rpc.getTablet(), server);
+    // The tablets only know about the first connection to every server.
+    TabletClient primary = ip2client.primaryOf(server);
+    // When a pooled connection is reset, the server isn't necessarily gone: its RPCs are retried
+    // over the other connections of the pool.
+    if (primary == server || !(ex instanceof ConnectionResetException)) {
+      invalidateTabletCache(rpc.getTablet(), primary);
+    }
     handleRetryableError(rpc, ex, server);
   }
 
@@ -2051,7 +2374,7 @@ public class AsyncYBClient implements AutoCloseable {
    * a RPC, so we need to demote it and retry.
    */
   <R> void handleNotLeader(final YRpc<R> rpc, YBException ex, TabletClient server) {
-    rpc.getTablet().demoteLeader(server);
+    rpc.getTablet().demoteLeader(ip2client.primaryOf(server));
     handleRetryableError(rpc, ex, server);
   }
 
@@ -2062,26 +2385,41 @@ public class AsyncYBClient implements AutoCloseable {
 
   private <R> void delayedSendRpcToTablet(final YRpc<R> rpc, YBException ex, TabletClient server) {
     // Here we simply retry the RPC later. We might be doing this along with a lot of other RPCs
-    // in parallel. Asynchbase does some hacking with a "probe" RPC while putting the other ones
-    // on hold but we won't be doing this for the moment. Regions in HBase can move a lot,
-    // we're not expecting this in YB.
-    final class RetryTimer implements TimerTask {
-      public void run(final Timeout timeout) {
-        if (rpc.isRetrySameServer()) {
-          server.sendRpc(rpc);
-        } else {
-          sendRpcToTablet(rpc);
-        }
-      }
-    }
-
+    // in parallel, so the retries are spread with jitter and those to the same destination share
+    // a single wakeup, see RetryScheduler.
     long sleepTime = getSleepTimeForRpc(rpc);
     if (cannotRetryRequest(rpc) || rpc.deadlineTracker.wouldSleepingTimeout(sleepTime)) {
       tooManyAttemptsOrTimeout(rpc, ex);
       // Don't let it retry.
       return;
     }
-    newTimeout(new RetryTimer(), sleepTime);
+    final Runnable retry = () -> {
+      if (rpc.isRetrySameServer()) {
+        server.sendRpc(rpc);
+      } else {
+        sendRpcToTablet(rpc);
+      }
+    };
+    // Until it's sent again, the RPC is waiting in the client.
+    rpc.sentNanos = 0;
+    if (server == null) {
+      retryScheduler.schedule(RetryScheduler.MASTER_LEADER, sleepTime, retry);
+    } else {
+      // Only the retries which go back to the same server, or follow a connection failure, take
+      // from the budget of the server. Those looking up their tablet again, after a leader change
+      // for instance, wait for the lookup.
+      RemoteTablet tablet = rpc.getTablet();
+      boolean charged = RetryScheduler.chargesRetry(rpc.isRetrySameServer(), ex);
+      if (!retryScheduler.scheduleRetry(server.getUuid(),
+                                        tablet == null ? null : tablet.getTabletIdAsString(),
+                                        charged, sleepTime, retry)) {
+        // The server failed too many RPCs lately, don't add to its load.
+        rpc.errback(new NonRecoverableException("Retry budget of " + server.getUuid() +
+            " exhausted: " + rpc, ex));
+        return;
+      }
+    }
+    metrics.rpcRetried(rpc.method(), ex);
   }
 
   /**
@@ -2111,6 +2449,16 @@ public class AsyncYBClient implements AutoCloseable {
           // Returning the exception means we early out and errback to the user.
           return e;
         }
+        if (isMasterTable(table.getTableId())) {
+          // The leader master is known again, the RPCs waiting for it don't need to wait more.
+          retryScheduler.wakeUp(RetryScheduler.MASTER_LEADER);
+        } else {
+          // Same for the RPCs waiting for the leaders of the tablets to be looked up again.
+          for (MasterClientOuterClass.TabletLocationsPB tabletPb : arg.getTabletLocationsList()) {
+            retryScheduler.wakeUp(
+                RetryScheduler.tabletDestination(tabletPb.getTabletId().toStringUtf8()));
+          }
+        }
         return null;
       }
     }
@@ -2120,14 +2468,17 @@ public class AsyncYBClient implements AutoCloseable {
   };
 
   boolean acquireMasterLookupPermit() {
+    final long start = System.nanoTime();
+    boolean acquired = false;
     try {
       // With such a low timeout, the JVM may chose to spin-wait instead of
       // de-scheduling the thread (and causing context switches and whatnot).
-      return masterLookups.tryAcquire(5, MILLISECONDS);
+      acquired = masterLookups.tryAcquire(5, MILLISECONDS);
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();  // Make this someone else's problem.
-      return false;
     }
+    metrics.masterLookupPermitWait(System.nanoTime() - start, acquired);
+    return acquired;
   }
 
   /**
@@ -2148,9 +2499,10 @@ public class AsyncYBClient implements AutoCloseable {
       if (LOG.isDebugEnabled()) {
         LOG.debug("Table {} has not been created yet", tableName);
       }
-      tablesNotServed.add(tableId);
+      tabletLookups.markNotServed(tableId);
       return;
     }
+    tabletLookups.markServed(tableId);
     // Doing a get first instead of putIfAbsent to avoid creating unnecessary CSLMs because in
     // the most common case the table should already be present
     ConcurrentSkipListMap<byte[], RemoteTablet> tablets = tabletsCache.get(tableId);
@@ -2220,24 +2572,73 @@ public class AsyncYBClient implements AutoCloseable {
       return tablets.firstEntry().getValue();
     }
 
+    return floorTablet(tablets, partitionKey);
+  }
+
+  /**
+   * Finds the tablets of a batch of rows of a table in the location cache. The partition keys of
+   * the rows are looked up in order, and a key falling in the tablet of the previous one isn't
+   * looked up again, so a batch costs a lookup per tablet it spans rather than one per row.
+   * @param table the table of the rows
+   * @param rows the rows to find the tablets of
+   * @return the tablets of the rows, in the order of the rows, null for the rows whose tablet
+   *         isn't cached
+   */
+  RemoteTablet[] getTablets(YBTable table, List<PartialRow> rows) {
+    return getTablets(table.getTableId(), table.getPartitionSchema().encodePartitionKeys(rows));
+  }
+
+  RemoteTablet[] getTablets(String tableId, final List<byte[]> partitionKeys) {
+    RemoteTablet[] result = new RemoteTablet[partitionKeys.size()];
+    ConcurrentSkipListMap<byte[], RemoteTablet> tablets = tabletsCache.get(tableId);
+    if (tablets == null || partitionKeys.isEmpty()) {
+      return result;
+    }
+    if (isMasterTable(tableId)) {
+      Arrays.fill(result, getTablet(tableId, partitionKeys.get(0)));
+      return result;
+    }
+
+    Integer[] order = new Integer[partitionKeys.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Bytes.memcmp(partitionKeys.get(a), partitionKeys.get(b)));
+
+    RemoteTablet current = null;
+    for (int i : order) {
+      byte[] partitionKey = partitionKeys.get(i);
+      // Keys are sorted, so the key is past the start of the current tablet.
+      if (current == null || !isBeforeEnd(current.getPartition(), partitionKey)) {
+        current = floorTablet(tablets, partitionKey);
+      }
+      result[i] = current;
+    }
+    return result;
+  }
+
+  private static RemoteTablet floorTablet(ConcurrentSkipListMap<byte[], RemoteTablet> tablets,
+                                          byte[] partitionKey) {
     Map.Entry<byte[], RemoteTablet> tabletPair = tablets.floorEntry(partitionKey);
 
     if (tabletPair == null) {
       return null;
     }
 
-    Partition partition = tabletPair.getValue().getPartition();
-
     // If the partition is not the end partition, but it doesn't include the key
     // we are looking for, then we have not yet found the correct tablet.
-    if (!partition.isEndPartition()
-        && Bytes.memcmp(partitionKey, partition.getPartitionKeyEnd()) >= 0) {
+    if (!isBeforeEnd(tabletPair.getValue().getPartition(), partitionKey)) {
       return null;
     }
 
     return tabletPair.getValue();
   }
 
+  private static boolean isBeforeEnd(Partition partition, byte[] partitionKey) {
+    return partition.isEndPartition() ||
+        Bytes.memcmp(partitionKey, partition.getPartitionKeyEnd()) < 0;
+  }
+
   RemoteTablet getFirstTablet(String tableId) {
     ConcurrentSkipListMap<byte[], RemoteTablet> tablets = tabletsCache.get(tableId);
     if (tablets == null) {
@@ -2266,6 +2667,21 @@ public class AsyncYBClient implements AutoCloseable {
     return rT;
   }
 
+  /**
+   * Retrieve the master registration (see {@link GetMasterRegistrationResponse}
+   * for a replica.
+   * @param hp The RPC host and port of the master replica.
+   * @return A Deferred object for the master replica's current registration.
+   */
+  Deferred<GetMasterRegistrationResponse> getMasterRegistration(HostAndPort hp) {
+    TabletClient masterClient = newMasterClient(hp);
+    if (masterClient == null) {
+      return Deferred.fromError(
+          new NonRecoverableException("Couldn't resolve this master's address " + hp.toString()));
+    }
+    return getMasterRegistration(masterClient);
+  }
+
   /**
    * Retrieve the master registration (see {@link GetMasterRegistrationResponse}
    * for a replica.
@@ -2312,20 +2728,73 @@ public class AsyncYBClient implements AutoCloseable {
   }
 
   TabletClient newClient(String uuid, final String host, final int port) {
-    final String hostport = host + ':' + port;
-    TabletClient client;
-    SocketChannel chan;
-    synchronized (ip2client) {
-      client = ip2client.get(hostport);
-      if (client != null && client.isAlive()) {
-        return client;
+    return newClient(uuid, host, port, host + ':' + port);
+  }
+
+  /**
+   * Picks the connection to send an RPC over among the connections to the server of the given
+   * client, see {@link #pickLeastLoaded}. The given client is the first connection of the pool, the
+   * other ones are only opened once it has RPCs in flight.
+   * @param client the client the tablet locations point to
+   * @return the connection to use
+   */
+  TabletClient pickConnection(TabletClient client) {
+    if (connectionsPerServer <= 1 || (client.isAlive() && client.getNumRpcsInFlight() == 0)) {
+      return client;
+    }
+    String hostport = ip2client.addressOf(client);
+    if (hostport == null || TabletClientRegistry.isPooledAddress(hostport)) {
+      return client;
+    }
+    int colon = hostport.lastIndexOf(':');
+    String host = hostport.substring(0, colon);
+    int port = Integer.parseInt(hostport.substring(colon + 1));
+    return pickLeastLoaded(client, connectionsPerServer, slot -> newClient(
+        client.getUuid(), host, port, TabletClientRegistry.pooledAddress(hostport, slot)));
+  }
+
+  /**
+   * Picks the live connection with the fewest RPCs in flight. The additional connections are only
+   * looked at, and so opened, while the best connection so far has RPCs in flight, or is dead.
+   * @param first the first connection to the server
+   * @param numConnections the number of connections to the server, the first one included
+   * @param connectionOfSlot gets the additional connection of a slot, from 1 on
+   * @return the connection to use, the first one if none of the connections is alive
+   */
+  static TabletClient pickLeastLoaded(TabletClient first, int numConnections,
+                                      IntFunction<TabletClient> connectionOfSlot) {
+    TabletClient best = first;
+    int inflight = first.isAlive() ? first.getNumRpcsInFlight() : Integer.MAX_VALUE;
+    for (int slot = 1; slot < numConnections && inflight > 0; slot++) {
+      TabletClient pooled = connectionOfSlot.apply(slot);
+      if (!pooled.isAlive()) {
+        continue;
       }
+      int pooledInflight = pooled.getNumRpcsInFlight();
+      if (pooledInflight < inflight) {
+        best = pooled;
+        inflight = pooledInflight;
+      }
+    }
+    return best;
+  }
+
+  private TabletClient newClient(String uuid, final String host, final int port,
+                                 final String hostport) {
+    // Only set if this call created the client, in which case it has to connect it.
+    final SocketChannel[] newChannel = new SocketChannel[1];
+    TabletClient client = ip2client.getOrCreate(hostport, address -> {
       final TabletClientPipeline pipeline = new TabletClientPipeline();
-      client = pipeline.init(uuid);
-      chan = channelFactory.newChannel(pipeline);
-      ip2client.put(hostport, client);  // This is guaranteed to return null.
+      final TabletClient created = pipeline.init(uuid);
+      newChannel[0] = channelFactory.newChannel(pipeline);
+      // Registered before the client becomes visible to other callers.
+      client2tablets.put(created, new ArrayList<RemoteTablet>());
+      return created;
+    });
+    final SocketChannel chan = newChannel[0];
+    if (chan == null) {
+      return client;
     }
-    this.client2tablets.put(client, new ArrayList<RemoteTablet>());
     final SocketChannelConfig config = chan.getConfig();
     config.setConnectTimeoutMillis(5000);
     config.setTcpNoDelay(true);
@@ -2418,14 +2887,7 @@ public class AsyncYBClient implements AutoCloseable {
   private Deferred<ArrayList<Void>> disconnectEverything() {
     ArrayList<Deferred<Void>> deferreds =
         new ArrayList<Deferred<Void>>(2);
-    HashMap<String, TabletClient> ip2client_copy;
-    synchronized (ip2client) {
-      // Make a local copy so we can shutdown every Tablet Server clients
-      // without hold the lock while we iterate over the data structure.
-      ip2client_copy = new HashMap<String, TabletClient>(ip2client);
-    }
-
-    for (TabletClient ts : ip2client_copy.values()) {
+    for (TabletClient ts : ip2client.getClients()) {
       deferreds.add(ts.shutdown());
     }
     final int size = deferreds.size();
@@ -2435,18 +2897,8 @@ public class AsyncYBClient implements AutoCloseable {
             // Normally, now that we've shutdown() every client, all our caches should
             // be empty since each shutdown() generates a DISCONNECTED event, which
             // causes TabletClientPipeline to call removeClientFromCache().
-            HashMap<String, TabletClient> logme = null;
-            synchronized (ip2client) {
-              if (!ip2client.isEmpty()) {
-                logme = new HashMap<String, TabletClient>(ip2client);
-              }
-            }
-            if (logme != null) {
-              // Putting this logging statement inside the synchronized block
-              // can lead to a deadlock, since HashMap.toString() is going to
-              // call TabletClient.toString() on each entry, and this locks the
-              // client briefly.  Other parts of the code lock clients first and
-              // the ip2client HashMap second, so this can easily deadlock.
+            if (!ip2client.isEmpty()) {
+              Map<String, TabletClient> logme = ip2client.snapshot();
               LOG.error("Some clients are left in the client cache and haven't"
                   + " been cleaned up: " + logme);
             }
@@ -2459,100 +2911,19 @@ public class AsyncYBClient implements AutoCloseable {
         });
   }
 
-  /**
-   * Blocking call.
-   * Performs a slow search of the IP used by the given client.
-   * <p>
-   * This is needed when we're trying to find the IP of the client before its
-   * channel has successfully connected, because Netty's API offers no way of
-   * retrieving the IP of the remote peer until we're connected to it.
-   * @param client The client we want the IP of.
-   * @return The IP of the client, or {@code null} if we couldn't find it.
-   */
-  private InetSocketAddress slowSearchClientIP(final TabletClient client) {
-    String hostport = null;
-    synchronized (ip2client) {
-      for (final Map.Entry<String, TabletClient> e : ip2client.entrySet()) {
-        if (e.getValue() == client) {
-          hostport = e.getKey();
-          break;
-        }
-      }
-    }
-
-    if (hostport == null) {
-      HashMap<String, TabletClient> copy;
-      synchronized (ip2client) {
-        copy = new HashMap<String, TabletClient>(ip2client);
-      }
-      LOG.error("WTF?  Should never happen!  Couldn't find " + client
-          + " in " + copy);
-      return null;
-    }
-    final int colon = hostport.indexOf(':', 1);
-    if (colon < 1) {
-      LOG.error("WTF?  Should never happen!  No `:' found in " + hostport);
-      return null;
-    }
-    final String host = getIP(hostport.substring(0, colon));
-    if (host == null) {
-      // getIP will print the reason why, there's nothing else we can do.
-      return null;
-    }
-
-    int port;
-    try {
-      port = parsePortNumber(hostport.substring(colon + 1,
-          hostport.length()));
-    } catch (NumberFormatException e) {
-      LOG.error("WTF?  Should never happen!  Bad port in " + hostport, e);
-      return null;
-    }
-    return new InetSocketAddress(host, port);
-  }
-
   /**
    * Removes all the cache entries referred to the given client.
    * @param client The client for which we must invalidate everything.
-   * @param remote The address of the remote peer, if known, or null.
    */
-  private void removeClientFromCache(final TabletClient client,
-                                     final SocketAddress remote) {
-
-    if (remote == null) {
-      return;  // Can't continue without knowing the remote address.
-    }
-
-    String hostport;
-    if (remote instanceof InetSocketAddress) {
-      final InetSocketAddress sock = (InetSocketAddress) remote;
-      final InetAddress addr = sock.getAddress();
-      if (addr == null) {
-        LOG.error("WTF?  Unresolved IP for " + remote
-            + ".  This shouldn't happen.");
-        return;
-      } else {
-        hostport = addr.getHostAddress() + ':' + sock.getPort();
-      }
+  private void removeClientFromCache(final TabletClient client) {
+    // The client is looked up by identity, which also covers the masters, whose address in the
+    // cache is the one the user passed rather than the one the channel is connected to.
+    String hostport = ip2client.remove(client);
+    if (hostport == null) {
+      LOG.trace("When expiring " + client + " from the client cache, it was found that there" +
+          " was no entry for it.");
     } else {
-      LOG.error("WTF?  Found a non-InetSocketAddress remote: " + remote
-          + ".  This shouldn't happen.");
-      return;
-    }
-
-    TabletClient old;
-    synchronized (ip2client) {
-      old = ip2client.remove(hostport);
-    }
-    LOG.debug("Removed from IP cache: {" + hostport + "} -> {" + client + "}");
-    if (old == null) {
-      // Currently we're seeing this message when masters are disconnected and the hostport we got
-      // above is different than the one the user passes (that we use to populate ip2client). At
-      // worst this doubles the entries for masters, which has an insignificant impact.
-      // TODO When fixed, make this a WARN again.
-      LOG.trace("When expiring " + client + " from the client cache (host:port="
-          + hostport + "), it was found that there was no entry"
-          + " corresponding to " + remote + ".  This shouldn't happen.");
+      LOG.debug("Removed from IP cache: {" + hostport + "} -> {" + client + "}");
     }
 
     ArrayList<RemoteTablet> tablets = client2tablets.remove(client);
@@ -2571,6 +2942,47 @@ public class AsyncYBClient implements AutoCloseable {
     }
   }
 
+  ClientMetrics getMetrics() {
+    return metrics;
+  }
+
+  RetryScheduler getRetryScheduler() {
+    return retryScheduler;
+  }
+
+  /**
+   * @return the number of RPCs in flight over every connection, by the address of the connection
+   */
+  public Map<String, Integer> getNumRpcsInFlightPerConnection() {
+    Map<String, Integer> inflight = new HashMap<>();
+    for (Map.Entry<String, TabletClient> e : ip2client.snapshot().entrySet()) {
+      inflight.put(e.getKey(), e.getValue().getNumRpcsInFlight());
+    }
+    return inflight;
+  }
+
+  /**
+   * @return the number of connections to servers currently open or being opened
+   */
+  public int getNumConnections() {
+    return ip2client.size();
+  }
+
+  /**
+   * @return the number of connections to servers opened since this client was created
+   */
+  public long getNumConnectionsOpened() {
+    return ip2client.getNumCreated();
+  }
+
+  /**
+   * @return the number of connections to servers closed since this client was created, the
+   *         difference with {@link #getNumConnectionsOpened} over time measures the churn
+   */
+  public long getNumConnectionsClosed() {
+    return ip2client.getNumRemoved();
+  }
+
   private boolean isMasterTable(String tableId) {
     // Checking that it's the same instance so there's absolutely no chance of confusing the master
     // 'table' for a user one.
@@ -2749,18 +3161,11 @@ public class AsyncYBClient implements AutoCloseable {
       disconnected = true;  // So we don't clean up the same client twice.
       try {
         final TabletClient client = super.get(TabletClient.class);
-        SocketAddress remote = super.getChannel().getRemoteAddress();
-        // At this point Netty gives us no easy way to access the
-        // SocketAddress of the peer we tried to connect to. This
-        // kinda sucks but I couldn't find an easier way.
-        if (remote == null) {
-          remote = slowSearchClientIP(client);
-        }
 
         // Prevent the client from buffering requests while we invalidate
         // everything we have about it.
         synchronized (client) {
-          removeClientFromCache(client, remote);
+          removeClientFromCache(client);
         }
       } catch (Exception e) {
         log.error("Uncaught exception when handling a disconnection of " + getChannel(), e);
@@ -2799,24 +3204,6 @@ public class AsyncYBClient implements AutoCloseable {
     }
   }
 
-  /**
-   * Parses a TCP port number from a string.
-   * @param portnum The string to parse.
-   * @return A strictly positive, validated port number.
-   * @throws NumberFormatException if the string couldn't be parsed as an
-   * integer or if the value was outside of the range allowed for TCP ports.
-   */
-  private static int parsePortNumber(final String portnum)
-      throws NumberFormatException {
-    final int port = Integer.parseInt(portnum);
-    if (port <= 0 || port > 65535) {
-      throw new NumberFormatException(port == 0 ? "port is zero" :
-          (port < 0 ? "port is negative: "
-              : "port is too large: ") + port);
-    }
-    return port;
-  }
-
   void newTimeout(final TimerTask task, final long timeout_ms) {
     try {
       timer.newTimeout(task, timeout_ms, MILLISECONDS);
@@ -3087,6 +3474,12 @@ public class AsyncYBClient implements AutoCloseable {
 
     private int numTablets = DEFAULT_MAX_TABLETS;
 
+    private int connectionsPerServer = 1;
+
+    private int retryBudget = DEFAULT_RETRY_BUDGET;
+
+    private ClientMetrics metrics = ClientMetrics.NOOP;
+
     /**
      * Creates a new builder for a client that will connect to the specified masters.
      * @param masterAddresses comma-separated list of "host:port" pairs of the masters
@@ -3247,6 +3640,46 @@ public class AsyncYBClient implements AutoCloseable {
       return this;
     }
 
+    /**
+     * Sets the number of connections opened to every tablet server. RPCs to tablets are sent
+     * over the connection with the fewest RPCs in flight, so that one busy connection doesn't
+     * hold the other RPCs to the same server back. The additional connections are only opened
+     * once the first one has RPCs in flight.
+     * Optional.
+     * If not provided, 1 is used.
+     */
+    public AsyncYBClientBuilder connectionsPerServer(int connectionsPerServer) {
+      Preconditions.checkArgument(connectionsPerServer > 0,
+          "connectionsPerServer should be greater than 0");
+      this.connectionsPerServer = connectionsPerServer;
+      return this;
+    }
+
+    /**
+     * Sets the retry budget of every server: the number of RPCs failing on a server that are
+     * retried, net of a tenth of a retry per successful response from the server. Once a server
+     * has used its budget, it is considered down, and the RPCs failing on it fail right away
+     * instead of being retried.
+     * Optional.
+     * If not provided, defaults to {@link AsyncYBClient#DEFAULT_RETRY_BUDGET}.
+     */
+    public AsyncYBClientBuilder retryBudget(int retryBudget) {
+      Preconditions.checkArgument(retryBudget > 0, "retryBudget should be greater than 0");
+      this.retryBudget = retryBudget;
+      return this;
+    }
+
+    /**
+     * Sets where the client records the latency, retries and lookups of its RPCs, for example a
+     * {@link StripedClientMetrics}.
+     * Optional.
+     * If not provided, nothing is recorded.
+     */
+    public AsyncYBClientBuilder metrics(ClientMetrics metrics) {
+      this.metrics = Preconditions.checkNotNull(metrics);
+      return this;
+    }
+
     /**
      * Creates the channel factory for Netty. The user can specify the executors, but
      * if they don't, we'll use a simple thread pool.
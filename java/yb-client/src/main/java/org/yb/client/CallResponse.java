@@ -38,10 +38,14 @@ import org.yb.rpc.RpcHeader;
 import org.yb.util.Slice;
 
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 
 /**
  * This class handles information received from an RPC response, providing
  * access to sidecars and decoded protobufs from the message.
+ * <p>
+ * The header, the message and the sidecars are slices of the array backing the
+ * response, they are only valid while the response is being decoded.
  */
 @InterfaceAudience.Private
 final class CallResponse {
@@ -65,13 +69,12 @@ final class CallResponse {
    * @throws IndexOutOfBoundsException if the ChannelBuffer does not contain
    * the amount of bytes specified by its length prefix.
    */
-  public CallResponse(final ChannelBuffer buf) {
-    this.buf = buf;
-
-    this.totalResponseSize = buf.readInt();
+  public CallResponse(final ChannelBuffer in) {
+    this.totalResponseSize = in.readInt();
     if (this.totalResponseSize > 0) {
-      YRpc.checkArrayLength(buf, this.totalResponseSize);
-      TabletClient.ensureReadable(buf, this.totalResponseSize);
+      YRpc.checkArrayLength(in, this.totalResponseSize);
+      TabletClient.ensureReadable(in, this.totalResponseSize);
+      this.buf = frameOf(in, this.totalResponseSize);
 
       final int headerSize = Bytes.readVarInt32(buf);
       final Slice headerSlice = nextBytes(buf, headerSize);
@@ -79,10 +82,29 @@ final class CallResponse {
       YRpc.readProtobuf(headerSlice, builder);
       this.header = builder.build();
     } else {
+      this.buf = null;
       this.header = null;
     }
   }
 
+  /**
+   * Consumes the next {@code length} bytes of {@code in} and returns them as a
+   * buffer backed by an array, which is only copied if {@code in} isn't backed
+   * by one. The {@link org.jboss.netty.handler.codec.replay.ReplayingDecoder}
+   * passes a buffer that doesn't expose the array of its cumulation buffer, so
+   * the frame is sliced out of it first.
+   */
+  private static ChannelBuffer frameOf(final ChannelBuffer in, final int length) {
+    final ChannelBuffer frame = in.readSlice(length);
+    if (frame.hasArray()) {  // Zero copy.
+      return ChannelBuffers.wrappedBuffer(frame.array(), frame.arrayOffset() + frame.readerIndex(),
+          length);
+    }
+    final byte[] payload = new byte[length];
+    frame.readBytes(payload);
+    return ChannelBuffers.wrappedBuffer(payload);
+  }
+
   public boolean isEmpty() {
     return this.totalResponseSize == 0;
   }
@@ -167,19 +189,13 @@ final class CallResponse {
   }
 
   // After checking the length, generates a slice for the next 'length'
-  // bytes of 'buf'.
+  // bytes of 'buf', which is always backed by an array.
   private static Slice nextBytes(final ChannelBuffer buf, final int length) {
     YRpc.checkArrayLength(buf, length);
-    byte[] payload;
-    int offset;
-    if (buf.hasArray()) {  // Zero copy.
-      payload = buf.array();
-      offset = buf.arrayOffset() + buf.readerIndex();
-    } else {  // We have to copy the entire payload out of the buffer :(
-      payload = new byte[length];
-      buf.readBytes(payload);
-      offset = 0;
-    }
-    return new Slice(payload, offset, length);
+    TabletClient.ensureReadable(buf, length);
+    final Slice slice =
+        new Slice(buf.array(), buf.arrayOffset() + buf.readerIndex(), length);
+    buf.skipBytes(length);
+    return slice;
   }
 }
@@ -0,0 +1,86 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+
+/**
+ * Receives the events {@link AsyncYBClient} records about the RPCs it sends, see
+ * {@link AsyncYBClient.AsyncYBClientBuilder#metrics}.
+ * <p>
+ * The methods are called from the threads sending and receiving the RPCs, including the Netty IO
+ * threads, so implementations must be thread-safe and must not block. All the methods do nothing
+ * by default. {@link StripedClientMetrics} keeps counters and latency histograms of them all.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public interface ClientMetrics {
+
+  /** Records nothing. */
+  ClientMetrics NOOP = new ClientMetrics() {};
+
+  /**
+   * Called once, when the client these metrics were given to is built, before it sends any RPC.
+   * Lets the metrics read the state of the client, such as its connections, when reported.
+   * @param client the client recording into these metrics
+   */
+  default void bind(AsyncYBClient client) {}
+
+  /**
+   * An RPC completed, successfully or not.
+   * @param method the name of the RPC method
+   * @param queueNanos the time from the RPC being sent by the caller until its last attempt was
+   *                   written to a connection, spent in lookups, retries and waiting for a
+   *                   connection. It is the whole latency if the RPC never reached a server.
+   * @param wireNanos the time from its last attempt being written until it completed, spent on
+   *                  the network and in the server
+   * @param success whether the RPC succeeded
+   */
+  default void rpcCompleted(String method, long queueNanos, long wireNanos, boolean success) {}
+
+  /**
+   * An RPC is going to be retried.
+   * @param method the name of the RPC method
+   * @param cause the error the RPC is retried for
+   */
+  default void rpcRetried(String method, Exception cause) {}
+
+  /**
+   * A tablet the RPC is for was found in the location cache, or not.
+   */
+  default void tabletCacheLookup(boolean hit) {}
+
+  /**
+   * The client waited for a permit to send a tablet location lookup to the master.
+   * @param waitNanos how long it waited
+   * @param acquired whether it got the permit
+   */
+  default void masterLookupPermitWait(long waitNanos, boolean acquired) {}
+
+  /**
+   * A tablet location lookup was sent to the master.
+   */
+  default void masterLookupSent() {}
+
+  /**
+   * An RPC request was serialized.
+   */
+  default void rpcEncoded(long nanos) {}
+
+  /**
+   * An RPC response was de-serialized and dispatched.
+   */
+  default void rpcDecoded(long nanos) {}
+}
@@ -0,0 +1,256 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.stumbleupon.async.Callback;
+import com.stumbleupon.async.Deferred;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+
+/**
+ * Waits for asynchronous conditions to become true, without holding a thread while waiting.
+ * <p>
+ * The condition is probed until it returns true, the wait times out, or it failed too many
+ * times. Probes are scheduled on a timer, the one of the {@link AsyncYBClient} for the waits it
+ * starts, so any number of waits only use the timer thread and the IO threads. The delay between
+ * two probes starts small and doubles up to {@link #MAX_DELAY_MS}, with jitter so that
+ * concurrent waits don't probe the master in lockstep.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class ConditionWaiter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConditionWaiter.class);
+
+  /**
+   * A condition checked with an RPC.
+   */
+  public interface AsyncCondition {
+    /**
+     * @return a deferred yielding whether the condition is met. An error counts as not met.
+     */
+    Deferred<Boolean> get() throws Exception;
+  }
+
+  // Delay before the first probe is retried.
+  static final long INITIAL_DELAY_MS = 10;
+
+  // Maximum delay between two probes.
+  static final long MAX_DELAY_MS = AsyncYBClient.SLEEP_TIME;
+
+  // Timeouts from this one on are waited for forever.
+  static final long MAX_TIMEOUT_MS = TimeUnit.DAYS.toMillis(365);
+
+  // Number of probe errors to tolerate.
+  static final int MAX_ERRORS_TO_IGNORE = 2500;
+
+  // Log errors every so many errors.
+  private static final int LOG_ERRORS_EVERY_NUM_ITERS = 100;
+
+  // Log info after these many probes.
+  private static final int LOG_EVERY_NUM_ITERS = 200;
+
+  private final Timer timer;
+
+  ConditionWaiter(Timer timer) {
+    this.timer = timer;
+  }
+
+  /**
+   * Waits for a condition to become true.
+   * @param condition the condition to probe
+   * @param timeoutMs the amount of time, in MS, to wait
+   * @return a deferred yielding true if the condition became true in time, false if the wait
+   *         timed out or the condition failed too many times. It is never erred back.
+   */
+  Deferred<Boolean> waitFor(AsyncCondition condition, long timeoutMs) {
+    final Wait wait = new Wait(condition, timeoutMs);
+    if (timeoutMs < MAX_TIMEOUT_MS) {
+      // Completes the wait on time even if a probe is still in flight.
+      wait.schedule(new TimerTask() {
+        @Override
+        public void run(Timeout timeout) {
+          wait.finish(false, null);
+        }
+      }, timeoutMs);
+    }
+    wait.probe();
+    return wait.result;
+  }
+
+  /**
+   * Computes the delay before the next probe: exponential in the number of probes so far, capped
+   * at {@link #MAX_DELAY_MS}, randomized between half and all of it, and never past the deadline.
+   * @param attempt the number of probes so far, at least 1
+   * @param remainingMs the time left before the deadline
+   */
+  static long nextDelayMs(int attempt, long remainingMs) {
+    long delay = INITIAL_DELAY_MS << Math.min(attempt - 1, 16);
+    delay = Math.min(delay, MAX_DELAY_MS);
+    delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    return Math.max(1, Math.min(delay, remainingMs));
+  }
+
+  /**
+   * Adapts a deferred to a {@link CompletableFuture}, for callers composing the waits with other
+   * futures.
+   */
+  public static <T> CompletableFuture<T> toCompletableFuture(Deferred<T> d) {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    d.addCallbacks(new Callback<Void, T>() {
+      @Override
+      public Void call(T arg) {
+        future.complete(arg);
+        return null;
+      }
+    }, new Callback<Void, Exception>() {
+      @Override
+      public Void call(Exception e) {
+        future.completeExceptionally(e);
+        return null;
+      }
+    });
+    return future;
+  }
+
+  /**
+   * A wait in progress. At most one probe of a wait is in flight at any time.
+   */
+  private final class Wait {
+    final Deferred<Boolean> result = new Deferred<>();
+    private final AsyncCondition condition;
+    private final long start = System.nanoTime();
+    private final long timeoutNanos;
+    private final AtomicBoolean done = new AtomicBoolean();
+
+    // Only accessed by the current probe.
+    private int numIters = 0;
+    private int numErrors = 0;
+    private Exception finalException = null;
+
+    Wait(AsyncCondition condition, long timeoutMs) {
+      this.condition = condition;
+      this.timeoutNanos =
+          timeoutMs < MAX_TIMEOUT_MS ? TimeUnit.MILLISECONDS.toNanos(timeoutMs) : Long.MAX_VALUE;
+    }
+
+    void probe() {
+      if (done.get()) {
+        return;
+      }
+      final Deferred<Boolean> d;
+      try {
+        d = condition.get();
+      } catch (Exception e) {
+        onError(e);
+        return;
+      }
+      d.addCallbacks(new Callback<Void, Boolean>() {
+        @Override
+        public Void call(Boolean met) {
+          if (Boolean.TRUE.equals(met)) {
+            finish(true, null);
+          } else {
+            retry();
+          }
+          return null;
+        }
+
+        @Override
+        public String toString() {
+          return "condition probe callback";
+        }
+      }, new Callback<Void, Exception>() {
+        @Override
+        public Void call(Exception e) {
+          onError(e);
+          return null;
+        }
+
+        @Override
+        public String toString() {
+          return "condition probe errback";
+        }
+      });
+    }
+
+    private void onError(Exception e) {
+      // We will get exceptions if we cannot connect to the other end. Save them for final debug
+      // if we never succeed.
+      finalException = e;
+      numErrors++;
+      if (numErrors % LOG_ERRORS_EVERY_NUM_ITERS == 0) {
+        LOG.warn("Hit {} errors so far. Latest is : {}.", numErrors, e.toString());
+      }
+      if (numErrors >= MAX_ERRORS_TO_IGNORE) {
+        finish(false, "Hit too many errors, final exception is " + e.toString());
+        return;
+      }
+      retry();
+    }
+
+    private void retry() {
+      numIters++;
+      if (numIters % LOG_EVERY_NUM_ITERS == 0) {
+        LOG.info("Tried operation {} times so far.", numIters);
+      }
+      final long remainingMs = timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE :
+          TimeUnit.NANOSECONDS.toMillis(timeoutNanos - (System.nanoTime() - start));
+      if (remainingMs <= 0) {
+        finish(false, null);
+        return;
+      }
+      schedule(new TimerTask() {
+        @Override
+        public void run(Timeout timeout) {
+          probe();
+        }
+      }, nextDelayMs(numIters, remainingMs));
+    }
+
+    void schedule(TimerTask task, long delayMs) {
+      try {
+        timer.newTimeout(task, delayMs, TimeUnit.MILLISECONDS);
+      } catch (IllegalStateException e) {
+        // The client is shutting down, no more probes can be scheduled.
+        finish(false, "Failed to schedule the next probe: " + e.toString());
+      }
+    }
+
+    void finish(boolean met, String errorMessage) {
+      if (!done.compareAndSet(false, true)) {
+        return;
+      }
+      if (!met) {
+        if (errorMessage == null) {
+          LOG.error("Timed out waiting for operation. Final exception was {}.",
+                    finalException != null ? finalException.toString() : "none");
+        } else {
+          LOG.error(errorMessage);
+        }
+        LOG.error("Returning failure after {} iterations, num errors = {}.", numIters, numErrors);
+      }
+      result.callback(met);
+    }
+  }
+}
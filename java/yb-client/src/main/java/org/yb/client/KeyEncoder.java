@@ -38,19 +38,35 @@ import org.yb.Schema;
 import org.yb.Type;
 import org.yb.annotations.InterfaceAudience;
 import org.yb.client.PartitionSchema.HashBucketSchema;
-
-import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Utility class for encoding rows into primary and partition keys.
+ * <p>
+ * Keys are built in buffers owned by the encoder, which are reused from one key to the next, so
+ * an encoder only allocates the returned keys, and nothing when keys are encoded into buffers of
+ * the caller. An encoder is not thread-safe, {@link #get} returns the one of the current thread.
  */
 @InterfaceAudience.Private
 class KeyEncoder {
 
-  private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+  private static final ThreadLocal<KeyEncoder> ENCODERS = ThreadLocal.withInitial(KeyEncoder::new);
+
+  // The key being encoded.
+  private final KeyBuffer key = new KeyBuffer();
+
+  // The columns of the hash bucket being encoded.
+  private final KeyBuffer hashColumns = new KeyBuffer();
+
+  /**
+   * @return the encoder of the current thread
+   */
+  static KeyEncoder get() {
+    return ENCODERS.get();
+  }
 
   /**
    * Encodes the primary key of the row.
@@ -59,14 +75,32 @@ class KeyEncoder {
    * @return the encoded primary key of the row
    */
   public byte[] encodePrimaryKey(final PartialRow row) {
-    buf.reset();
+    encodePrimaryKeyToBuffer(row);
+    return key.toByteArray();
+  }
 
+  /**
+   * Encodes the primary key of the row into the buffer, from its position on, and advances its
+   * position past the key.
+   *
+   * @param row the row to encode
+   * @param out the buffer to write the key to, a heap or a direct buffer
+   * @return the length of the key
+   * @throws java.nio.BufferOverflowException if the key doesn't fit in the buffer, which is then
+   *         left unchanged
+   */
+  public int encodePrimaryKey(final PartialRow row, ByteBuffer out) {
+    encodePrimaryKeyToBuffer(row);
+    return key.writeTo(out);
+  }
+
+  private void encodePrimaryKeyToBuffer(final PartialRow row) {
+    key.reset();
     final Schema schema = row.getSchema();
     for (int columnIdx = 0; columnIdx < schema.getPrimaryKeyColumnCount(); columnIdx++) {
       final boolean isLast = columnIdx + 1 == schema.getPrimaryKeyColumnCount();
-      encodeColumn(row, columnIdx, isLast);
+      encodeColumn(row, columnIdx, isLast, key);
     }
-    return extractByteArray();
   }
 
   /**
@@ -77,38 +111,66 @@ class KeyEncoder {
    * @return an encoded partition key
    */
   public byte[] encodePartitionKey(PartialRow row, PartitionSchema partitionSchema) {
-    buf.reset();
-    if (!partitionSchema.getHashBucketSchemas().isEmpty()) {
-      ByteBuffer bucketBuf = ByteBuffer.allocate(4 * partitionSchema.getHashBucketSchemas().size());
-      bucketBuf.order(ByteOrder.BIG_ENDIAN);
-
-      for (final HashBucketSchema hashBucketSchema : partitionSchema.getHashBucketSchemas()) {
-        encodeColumns(row, hashBucketSchema.getColumnIds());
-        byte[] encodedColumns = extractByteArray();
-        long hash = Murmur2.hash64(encodedColumns,
-                                   encodedColumns.length,
-                                   hashBucketSchema.getSeed());
-        int bucket = (int) UnsignedLongs.remainder(hash, hashBucketSchema.getNumBuckets());
-        bucketBuf.putInt(bucket);
-      }
+    encodePartitionKeyToBuffer(row, partitionSchema);
+    return key.toByteArray();
+  }
+
+  /**
+   * Encodes the provided row into a partition key according to the partition schema, into the
+   * buffer from its position on, and advances its position past the key.
+   *
+   * @param row the row to encode
+   * @param partitionSchema the partition schema describing the table's partitioning
+   * @param out the buffer to write the key to, a heap or a direct buffer
+   * @return the length of the key
+   * @throws java.nio.BufferOverflowException if the key doesn't fit in the buffer, which is then
+   *         left unchanged
+   */
+  public int encodePartitionKey(PartialRow row, PartitionSchema partitionSchema, ByteBuffer out) {
+    encodePartitionKeyToBuffer(row, partitionSchema);
+    return key.writeTo(out);
+  }
+
+  /**
+   * Encodes the partition keys of a batch of rows.
+   *
+   * @param rows the rows to encode
+   * @param partitionSchema the partition schema describing the table's partitioning
+   * @return the encoded partition keys, in the order of the rows
+   */
+  public List<byte[]> encodePartitionKeys(List<PartialRow> rows, PartitionSchema partitionSchema) {
+    List<byte[]> keys = new ArrayList<>(rows.size());
+    for (PartialRow row : rows) {
+      keys.add(encodePartitionKey(row, partitionSchema));
+    }
+    return keys;
+  }
 
-      assert bucketBuf.arrayOffset() == 0;
-      buf.write(bucketBuf.array(), 0, bucketBuf.position());
+  private void encodePartitionKeyToBuffer(PartialRow row, PartitionSchema partitionSchema) {
+    key.reset();
+    for (final HashBucketSchema hashBucketSchema : partitionSchema.getHashBucketSchemas()) {
+      hashColumns.reset();
+      encodeColumns(row, hashBucketSchema.getColumnIds(), hashColumns);
+      long hash = Murmur2.hash64(hashColumns.bytes,
+                                 hashColumns.length,
+                                 hashBucketSchema.getSeed());
+      int bucket = (int) UnsignedLongs.remainder(hash, hashBucketSchema.getNumBuckets());
+      key.writeInt(bucket);
     }
 
-    encodeColumns(row, partitionSchema.getRangeSchema().getColumns());
-    return extractByteArray();
+    encodeColumns(row, partitionSchema.getRangeSchema().getColumns(), key);
   }
 
   /**
    * Encodes a sequence of columns from the row.
    * @param row the row containing the columns to encode
    * @param columnIds the IDs of each column to encode
+   * @param out the buffer to encode the columns to
    */
-  private void encodeColumns(PartialRow row, List<Integer> columnIds) {
+  private static void encodeColumns(PartialRow row, List<Integer> columnIds, KeyBuffer out) {
     for (int i = 0; i < columnIds.size(); i++) {
       boolean isLast = i + 1 == columnIds.size();
-      encodeColumn(row, row.getSchema().getColumnIndex(columnIds.get(i)), isLast);
+      encodeColumn(row, row.getSchema().getColumnIndex(columnIds.get(i)), isLast, out);
     }
   }
 
@@ -117,8 +179,10 @@ class KeyEncoder {
    * @param row the row being encoded
    * @param columnIdx the column index of the column to encode
    * @param isLast whether the column is the last component of the key
+   * @param out the buffer to encode the column to
    */
-  private void encodeColumn(PartialRow row, int columnIdx, boolean isLast) {
+  private static void encodeColumn(PartialRow row, int columnIdx, boolean isLast,
+                                   KeyBuffer out) {
     final Schema schema = row.getSchema();
     final ColumnSchema column = schema.getColumnByIndex(columnIdx);
     if (!row.isSet(columnIdx)) {
@@ -128,42 +192,57 @@ class KeyEncoder {
     final Type type = column.getType();
 
     if (type == Type.STRING || type == Type.BINARY) {
-      addBinaryComponent(row.getVarLengthData().get(columnIdx), isLast);
+      addBinaryComponent(row.getVarLengthData().get(columnIdx), isLast, out);
     } else {
       addComponent(row.getRowAlloc(),
                    schema.getColumnOffset(columnIdx),
                    type.getSize(),
-                   type);
+                   type,
+                   out);
     }
   }
 
   /**
-   * Encodes a byte buffer into the key.
+   * Encodes a byte buffer into the key. The value is read with absolute gets, so its position is
+   * left at its mark.
    * @param value the value to encode
    * @param isLast whether the value is the final component in the key
+   * @param out the buffer to encode the value to
    */
-  private void addBinaryComponent(ByteBuffer value, boolean isLast) {
+  private static void addBinaryComponent(ByteBuffer value, boolean isLast, KeyBuffer out) {
     value.reset();
+    final int start = value.position();
+    final int end = value.limit();
 
-    // TODO find a way to not have to read byte-by-byte that doesn't require extra copies. This is
-    // especially slow now that users can pass direct byte buffers.
-    while (value.hasRemaining()) {
-      byte currentByte = value.get();
-      buf.write(currentByte);
-      if (!isLast && currentByte == 0x00) {
+    if (isLast) {
+      // The last component is written as is.
+      out.ensureCapacity(end - start);
+      if (value.hasArray()) {
+        System.arraycopy(value.array(), value.arrayOffset() + start,
+                         out.bytes, out.length, end - start);
+        out.length += end - start;
+      } else {
+        for (int i = start; i < end; i++) {
+          out.bytes[out.length++] = value.get(i);
+        }
+      }
+      return;
+    }
+
+    for (int i = start; i < end; i++) {
+      byte currentByte = value.get(i);
+      out.write(currentByte);
+      if (currentByte == 0x00) {
         // If we're a middle component of a composite key, we need to add a \x00
         // at the end in order to separate this component from the next one. However,
         // if we just did that, we'd have issues where a key that actually has
         // \x00 in it would compare wrong, so we have to instead add \x00\x00, and
         // encode \x00 as \x00\x01. -- key_encoder.h
-        buf.write(0x01);
+        out.write(0x01);
       }
     }
-
-    if (!isLast) {
-      buf.write(0x00);
-      buf.write(0x00);
-    }
+    out.write(0x00);
+    out.write(0x00);
   }
 
   /**
@@ -172,8 +251,9 @@ class KeyEncoder {
    * @param offset the offset into the {@code value} buffer that the value begins
    * @param len the length of the value
    * @param type the type of the value to encode
+   * @param out the buffer to encode the value to
    */
-  private void addComponent(byte[] value, int offset, int len, Type type) {
+  private static void addComponent(byte[] value, int offset, int len, Type type, KeyBuffer out) {
     switch (type) {
       case INT8:
       case INT16:
@@ -183,10 +263,10 @@ class KeyEncoder {
         // Picking the first byte because big endian.
         byte lastByte = value[offset + (len - 1)];
         lastByte = Bytes.xorLeftMostBit(lastByte);
-        buf.write(lastByte);
+        out.write(lastByte);
         if (len > 1) {
           for (int i = len - 2; i >= 0; i--) {
-            buf.write(value[offset + i]);
+            out.write(value[offset + i]);
           }
         }
         break;
@@ -197,12 +277,45 @@ class KeyEncoder {
   }
 
   /**
-   * Returns the encoded key, and resets the key encoder to be used for another key.
-   * @return the encoded key which has been built through calls to {@link #addComponent}
+   * A growable byte array a key is built in, reset rather than reallocated between keys.
    */
-  private byte[] extractByteArray() {
-    byte[] bytes = buf.toByteArray();
-    buf.reset();
-    return bytes;
+  private static final class KeyBuffer {
+    private static final int INITIAL_CAPACITY = 64;
+
+    byte[] bytes = new byte[INITIAL_CAPACITY];
+    int length;
+
+    void reset() {
+      length = 0;
+    }
+
+    void ensureCapacity(int extra) {
+      if (length + extra > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+      }
+    }
+
+    void write(int b) {
+      ensureCapacity(1);
+      bytes[length++] = (byte) b;
+    }
+
+    // Writes a big-endian int.
+    void writeInt(int v) {
+      ensureCapacity(4);
+      bytes[length++] = (byte) (v >>> 24);
+      bytes[length++] = (byte) (v >>> 16);
+      bytes[length++] = (byte) (v >>> 8);
+      bytes[length++] = (byte) v;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(bytes, length);
+    }
+
+    int writeTo(ByteBuffer out) {
+      out.put(bytes, 0, length);
+      return length;
+    }
   }
 }
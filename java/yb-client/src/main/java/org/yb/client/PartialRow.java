@@ -525,7 +525,18 @@ public class PartialRow {
    * @return a byte array containing an encoded primary key
    */
   public byte[] encodePrimaryKey() {
-    return new KeyEncoder().encodePrimaryKey(this);
+    return KeyEncoder.get().encodePrimaryKey(this);
+  }
+
+  /**
+   * Encodes the primary key of the row into the buffer, from its position on, and advances its
+   * position past the key. Nothing is allocated.
+   * @param out the buffer to write the key to, a heap or a direct buffer
+   * @return the length of the key
+   * @throws java.nio.BufferOverflowException if the key doesn't fit in the buffer
+   */
+  public int encodePrimaryKey(ByteBuffer out) {
+    return KeyEncoder.get().encodePrimaryKey(this, out);
   }
 
   /**
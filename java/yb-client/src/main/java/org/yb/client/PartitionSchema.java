@@ -36,6 +36,7 @@ import org.yb.annotations.InterfaceAudience;
 import org.yb.annotations.InterfaceStability;
 import org.yb.Common.PartitionSchemaPB.HashSchema;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -99,7 +100,26 @@ public class PartitionSchema {
    * @return a byte array containing the encoded partition key of the row
    */
   public byte[] encodePartitionKey(PartialRow row) {
-    return new KeyEncoder().encodePartitionKey(row, this);
+    return KeyEncoder.get().encodePartitionKey(row, this);
+  }
+
+  /**
+   * Encodes the partition key of the row into the buffer, from its position on, and advances its
+   * position past the key. Nothing is allocated.
+   * @param out the buffer to write the key to, a heap or a direct buffer
+   * @return the length of the key
+   * @throws java.nio.BufferOverflowException if the key doesn't fit in the buffer
+   */
+  public int encodePartitionKey(PartialRow row, ByteBuffer out) {
+    return KeyEncoder.get().encodePartitionKey(row, this, out);
+  }
+
+  /**
+   * Returns the encoded partition keys of a batch of rows.
+   * @return the encoded partition keys, in the order of the rows
+   */
+  public List<byte[]> encodePartitionKeys(List<PartialRow> rows) {
+    return KeyEncoder.get().encodePartitionKeys(rows, this);
   }
 
   public RangeSchema getRangeSchema() {
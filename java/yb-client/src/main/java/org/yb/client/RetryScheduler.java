@@ -0,0 +1,425 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yb.annotations.InterfaceAudience;
+
+/**
+ * Schedules the retries of the RPCs of {@link AsyncYBClient}.
+ * <p>
+ * Retries are delayed with full-jitter exponential backoff: the delay of a retry is drawn
+ * uniformly between zero and an exponentially growing ceiling, so RPCs that fail together, as
+ * they do when a master or a tablet server fails over, don't retry together. The delay is
+ * shortened to leave time for the retry before the deadline of the RPC.
+ * <p>
+ * Retries are grouped by destination: the server they go back to, the tablet they wait to look up
+ * again, or {@link #MASTER_LEADER}. Each destination has a single timeout on the client timer,
+ * for its earliest retry, which re-sends all the retries of the destination due within
+ * {@link #COALESCE_WINDOW_MS} at once. This keeps the number of timer entries to the number of
+ * destinations rather than the number of RPCs. The retries waiting for a leader master, or for the
+ * leader of a tablet, are re-sent on the next tick of the timer once a lookup finds it. A
+ * destination without retries left is dropped, unless it is a server that has used part of its
+ * budget.
+ * <p>
+ * Each server has a retry budget: a retry sent back to the server it failed on, or following a
+ * connection failure, takes a token, and a successful response gives back a fraction of one. A
+ * server without tokens left is considered down, and the RPCs failing on it fail right away
+ * instead of being retried against it again. Retries that look up their tablet again, after a
+ * leader change for instance, go to another server or wait for the server to be ready, and don't
+ * take tokens.
+ */
+@InterfaceAudience.Private
+final class RetryScheduler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RetryScheduler.class);
+
+  /** Destination of the retries waiting for a leader master. */
+  static final String MASTER_LEADER = "master leader";
+
+  // Ceiling of the delay before the first retry.
+  static final long BASE_DELAY_MS = 20;
+
+  // Maximum ceiling of the delay before a retry.
+  static final long MAX_DELAY_MS = 4 * AsyncYBClient.SLEEP_TIME;
+
+  // Retries due this close to each other are sent together, the tick of the client timer.
+  static final long COALESCE_WINDOW_MS = 20;
+
+  // Tokens are counted in thousandths, a successful response gives back a tenth of a token.
+  private static final long TOKEN = 1000;
+  private static final long TOKEN_PER_SUCCESS = TOKEN / 10;
+
+  private final Timer timer;
+
+  // The clock the retries are due by, System.nanoTime() outside of tests.
+  private final LongSupplier nanoClock;
+
+  private final long maxTokens;
+
+  private final ConcurrentHashMap<String, Destination> destinations = new ConcurrentHashMap<>();
+
+  /**
+   * @param timer the timer to schedule the retries on
+   * @param retryBudget the number of retries against a server, net of its successful responses,
+   *                    after which it is considered down
+   */
+  RetryScheduler(Timer timer, int retryBudget) {
+    this(timer, retryBudget, System::nanoTime);
+  }
+
+  @VisibleForTesting
+  RetryScheduler(Timer timer, int retryBudget, LongSupplier nanoClock) {
+    this.timer = timer;
+    this.maxTokens = retryBudget * TOKEN;
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * @return the destination of the retries waiting for the given tablet to be looked up again
+   */
+  static String tabletDestination(String tabletId) {
+    return "tablet " + tabletId;
+  }
+
+  /**
+   * Tells whether a retry takes a token of the server the RPC failed on.
+   * @param retrySameServer whether the RPC is sent back to the server it failed on
+   * @param ex the error the RPC failed with
+   * @return true if the retry goes back to the same server or follows a connection failure, false
+   *         if the RPC looks up its tablet again
+   */
+  static boolean chargesRetry(boolean retrySameServer, YBException ex) {
+    return retrySameServer || ex instanceof ConnectionResetException;
+  }
+
+  /**
+   * Schedules the retry of an RPC that failed on a server.
+   * @param server the UUID of the server the RPC failed on
+   * @param tabletId the tablet of the RPC, null if it has none
+   * @param charged whether the retry takes a token of the server, see {@link #chargesRetry}
+   * @param delayMs the delay before the retry
+   * @param retry re-sends the RPC
+   * @return false if the retry takes a token and the server has none left, in which case the RPC
+   *         isn't retried
+   */
+  boolean scheduleRetry(String server, String tabletId, boolean charged, long delayMs,
+                        Runnable retry) {
+    if (charged && !tryAcquireRetry(server)) {
+      return false;
+    }
+    schedule(charged || tabletId == null ? server : tabletDestination(tabletId), delayMs, retry);
+    return true;
+  }
+
+  /**
+   * Computes the delay before a retry.
+   * @param attempt the number of attempts of the RPC so far, at least 1
+   * @param deadlineTracker the deadline of the RPC
+   * @return a delay between zero and the ceiling for the attempt, at most half the time left
+   *         before the deadline
+   */
+  static long backoffMs(int attempt, DeadlineTracker deadlineTracker) {
+    long ceiling = BASE_DELAY_MS << Math.min(Math.max(attempt - 1, 0), 20);
+    ceiling = Math.min(ceiling, MAX_DELAY_MS);
+    long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+    if (deadlineTracker.hasDeadline()) {
+      delay = Math.min(delay, deadlineTracker.getMillisBeforeDeadline() / 2);
+    }
+    return delay;
+  }
+
+  /**
+   * Takes a retry token of a server.
+   * @param server the UUID of the server the RPC failed on
+   * @return false if the server has no tokens left, in which case the RPC shouldn't be retried
+   */
+  boolean tryAcquireRetry(String server) {
+    while (true) {
+      Destination d = destination(server);
+      synchronized (d) {
+        if (d.removed) {
+          // Dropped while full, take the token from the destination replacing it.
+          continue;
+        }
+        AtomicLong tokens = d.tokens;
+        while (true) {
+          long current = tokens.get();
+          if (current < TOKEN) {
+            return false;
+          }
+          if (tokens.compareAndSet(current, current - TOKEN)) {
+            return true;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Gives back part of a retry token to a server that answered an RPC.
+   */
+  void onSuccess(String server) {
+    Destination destination = destinations.get(server);
+    if (destination == null) {
+      // The server never failed an RPC, its budget is full.
+      return;
+    }
+    AtomicLong tokens = destination.tokens;
+    long current = tokens.get();
+    while (current < maxTokens) {
+      long refilled = Math.min(maxTokens, current + TOKEN_PER_SUCCESS);
+      if (tokens.compareAndSet(current, refilled)) {
+        if (refilled == maxTokens) {
+          // The server got its whole budget back, it has nothing left to track.
+          destination.removeIfUnused();
+        }
+        return;
+      }
+      current = tokens.get();
+    }
+  }
+
+  /**
+   * Schedules a retry.
+   * @param destination the destination of the retry
+   * @param delayMs the delay before the retry
+   * @param retry re-sends the RPC
+   */
+  void schedule(String destination, long delayMs, Runnable retry) {
+    long dueNanos = nanoClock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+    while (!destination(destination).add(dueNanos, retry)) {
+      // Dropped in the meantime, add the retry to the destination replacing it.
+    }
+  }
+
+  /**
+   * Re-sends all the retries of a destination on the next tick of the timer. The retries are not
+   * sent by the caller, which is typically a callback running on a Netty IO thread.
+   */
+  void wakeUp(String destination) {
+    Destination d = destinations.get(destination);
+    if (d != null) {
+      d.wakeUpNow();
+    }
+  }
+
+  /**
+   * @return the number of retries waiting for the destination
+   */
+  int getNumWaiting(String destination) {
+    Destination d = destinations.get(destination);
+    return d == null ? 0 : d.size();
+  }
+
+  /**
+   * @return the number of destinations with retries waiting or a partly used budget
+   */
+  int getNumDestinations() {
+    return destinations.size();
+  }
+
+  /**
+   * @return the number of retry tokens a server has left
+   */
+  double getRetryTokens(String server) {
+    Destination d = destinations.get(server);
+    return (d == null ? maxTokens : d.tokens.get()) / (double) TOKEN;
+  }
+
+  private Destination destination(String name) {
+    Destination d = destinations.get(name);
+    if (d == null) {
+      d = destinations.computeIfAbsent(name, Destination::new);
+    }
+    return d;
+  }
+
+  private static final class Retry implements Comparable<Retry> {
+    final long dueNanos;
+    final Runnable task;
+
+    Retry(long dueNanos, Runnable task) {
+      this.dueNanos = dueNanos;
+      this.task = task;
+    }
+
+    @Override
+    public int compareTo(Retry other) {
+      return Long.compare(dueNanos, other.dueNanos);
+    }
+  }
+
+  private final class Destination implements TimerTask {
+    final String name;
+    final AtomicLong tokens = new AtomicLong(maxTokens);
+
+    // Guarded by this.
+    private final PriorityQueue<Retry> retries = new PriorityQueue<>();
+    private Timeout wakeup;
+    private long wakeupDueNanos;
+    // Whether the next wakeup sends all the retries, not only the ones due.
+    private boolean wakeUpAll;
+    // Whether the destination was dropped from the scheduler, in which case it takes neither
+    // retries nor tokens anymore.
+    boolean removed;
+
+    Destination(String name) {
+      this.name = name;
+    }
+
+    synchronized int size() {
+      return retries.size();
+    }
+
+    /**
+     * @return false if the destination was dropped, in which case the retry wasn't added
+     */
+    boolean add(long dueNanos, Runnable task) {
+      synchronized (this) {
+        if (removed) {
+          return false;
+        }
+        retries.add(new Retry(dueNanos, task));
+        // A wakeup due around the same time sends this retry too.
+        if (wakeup != null &&
+            dueNanos >= wakeupDueNanos - TimeUnit.MILLISECONDS.toNanos(COALESCE_WINDOW_MS)) {
+          return true;
+        }
+        if (wakeup != null) {
+          wakeup.cancel();
+        }
+        if (arm(dueNanos)) {
+          return true;
+        }
+      }
+      // The client is shutting down, the retry fails on the closed client.
+      runDue(Long.MAX_VALUE);
+      return true;
+    }
+
+    /**
+     * Schedules a wakeup that sends all the retries right away, in place of the next one.
+     */
+    void wakeUpNow() {
+      long now = nanoClock.getAsLong();
+      synchronized (this) {
+        if (retries.isEmpty()) {
+          return;
+        }
+        wakeUpAll = true;
+        if (wakeup != null && wakeupDueNanos <= now) {
+          return;
+        }
+        if (wakeup != null) {
+          wakeup.cancel();
+        }
+        if (arm(now)) {
+          return;
+        }
+      }
+      runDue(Long.MAX_VALUE);
+    }
+
+    // Must be called with this synchronized. Returns false if the timer is stopped.
+    private boolean arm(long dueNanos) {
+      long delayNanos = Math.max(0, dueNanos - nanoClock.getAsLong());
+      try {
+        wakeup = timer.newTimeout(this, delayNanos, TimeUnit.NANOSECONDS);
+        wakeupDueNanos = dueNanos;
+        return true;
+      } catch (IllegalStateException e) {
+        LOG.warn("Failed to schedule the retries to {}. Ignore this if we're shutting down.",
+                 name, e);
+        wakeup = null;
+        return false;
+      }
+    }
+
+    @Override
+    public void run(Timeout timeout) {
+      boolean all;
+      synchronized (this) {
+        if (timeout != wakeup) {
+          // Replaced by an earlier wakeup.
+          return;
+        }
+        wakeup = null;
+        all = wakeUpAll;
+        wakeUpAll = false;
+      }
+      runDue(all ? Long.MAX_VALUE :
+             nanoClock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(COALESCE_WINDOW_MS));
+    }
+
+    /**
+     * Drops the destination if it has no retries waiting and its whole budget.
+     */
+    synchronized void removeIfUnused() {
+      if (!removed && retries.isEmpty() && wakeup == null && tokens.get() == maxTokens) {
+        removed = true;
+        destinations.remove(name, this);
+      }
+    }
+
+    /**
+     * Sends the retries due by the given time, and schedules a wakeup for the next one.
+     */
+    void runDue(long byNanos) {
+      List<Retry> due = new ArrayList<>();
+      boolean armed = true;
+      synchronized (this) {
+        while (!retries.isEmpty() && retries.peek().dueNanos <= byNanos) {
+          due.add(retries.poll());
+        }
+        if (wakeup != null && retries.isEmpty()) {
+          wakeup.cancel();
+          wakeup = null;
+        } else if (wakeup == null && !retries.isEmpty()) {
+          armed = arm(retries.peek().dueNanos);
+        }
+        if (retries.isEmpty()) {
+          // Tablets come and go as they split and move, don't keep track of the ones done with.
+          removeIfUnused();
+        }
+      }
+      if (!due.isEmpty() && LOG.isDebugEnabled()) {
+        LOG.debug("Sending {} retries to {}", due.size(), name);
+      }
+      for (Retry retry : due) {
+        try {
+          retry.task.run();
+        } catch (Exception e) {
+          LOG.warn("Failed to retry an RPC to {}", name, e);
+        }
+      }
+      if (!armed) {
+        runDue(Long.MAX_VALUE);
+      }
+    }
+  }
+}
@@ -0,0 +1,265 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+
+/**
+ * {@link ClientMetrics} keeping striped counters and lock-free latency histograms, which can be
+ * exported in the Prometheus text format with {@link #toPrometheusText}.
+ * <p>
+ * The latency of every RPC method is split between the time spent in the client (the queue time:
+ * lookups, retries, waiting for a connection) and the time spent on the network and in the
+ * server (the wire time), which tells whether a slow operation is slow because of the client or
+ * because of the cluster. Retries are counted per method and per error they are retried for.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class StripedClientMetrics implements ClientMetrics {
+
+  private static final String PREFIX = "yb_client_";
+
+  private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final ConcurrentHashMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+
+  // Method name to error class name to number of retries.
+  private final ConcurrentHashMap<String, ConcurrentHashMap<String, LongAdder>> retries =
+      new ConcurrentHashMap<>();
+
+  private final LongAdder tabletCacheHits = new LongAdder();
+  private final LongAdder tabletCacheMisses = new LongAdder();
+  private final LongAdder masterLookups = new LongAdder();
+  private final LongAdder masterLookupPermitTimeouts = new LongAdder();
+  private final LatencyHistogram masterLookupPermitWait = new LatencyHistogram();
+  private final LatencyHistogram encodeTime = new LatencyHistogram();
+  private final LatencyHistogram decodeTime = new LatencyHistogram();
+
+  // The client whose connections are reported, the last one bound.
+  private volatile AsyncYBClient client;
+
+  private static final class MethodStats {
+    final LatencyHistogram queue = new LatencyHistogram();
+    final LatencyHistogram wire = new LatencyHistogram();
+    final LatencyHistogram total = new LatencyHistogram();
+    final LongAdder failures = new LongAdder();
+  }
+
+  private MethodStats statsFor(String method) {
+    MethodStats stats = methods.get(method);
+    if (stats == null) {
+      stats = methods.computeIfAbsent(method, k -> new MethodStats());
+    }
+    return stats;
+  }
+
+  @Override
+  public void bind(AsyncYBClient client) {
+    this.client = client;
+  }
+
+  @Override
+  public void rpcCompleted(String method, long queueNanos, long wireNanos, boolean success) {
+    MethodStats stats = statsFor(method);
+    stats.queue.record(queueNanos);
+    stats.wire.record(wireNanos);
+    stats.total.record(queueNanos + wireNanos);
+    if (!success) {
+      stats.failures.increment();
+    }
+  }
+
+  @Override
+  public void rpcRetried(String method, Exception cause) {
+    ConcurrentHashMap<String, LongAdder> causes = retries.get(method);
+    if (causes == null) {
+      causes = retries.computeIfAbsent(method, k -> new ConcurrentHashMap<>());
+    }
+    String causeName = cause == null ? "unknown" : cause.getClass().getSimpleName();
+    LongAdder count = causes.get(causeName);
+    if (count == null) {
+      count = causes.computeIfAbsent(causeName, k -> new LongAdder());
+    }
+    count.increment();
+  }
+
+  @Override
+  public void tabletCacheLookup(boolean hit) {
+    (hit ? tabletCacheHits : tabletCacheMisses).increment();
+  }
+
+  @Override
+  public void masterLookupPermitWait(long waitNanos, boolean acquired) {
+    masterLookupPermitWait.record(waitNanos);
+    if (!acquired) {
+      masterLookupPermitTimeouts.increment();
+    }
+  }
+
+  @Override
+  public void masterLookupSent() {
+    masterLookups.increment();
+  }
+
+  @Override
+  public void rpcEncoded(long nanos) {
+    encodeTime.record(nanos);
+  }
+
+  @Override
+  public void rpcDecoded(long nanos) {
+    decodeTime.record(nanos);
+  }
+
+  /**
+   * @return the number of RPCs of the method that completed
+   */
+  public long getRpcCount(String method) {
+    MethodStats stats = methods.get(method);
+    return stats == null ? 0 : stats.total.getCount();
+  }
+
+  /**
+   * @return the latency in nanoseconds of the RPCs of the method at the given quantile
+   */
+  public long getRpcLatencyNanos(String method, double quantile) {
+    MethodStats stats = methods.get(method);
+    return stats == null ? 0 : stats.total.getValueAtQuantile(quantile);
+  }
+
+  /**
+   * @return the number of retries of the method for errors of the given class
+   */
+  public long getRetryCount(String method, Class<? extends Exception> cause) {
+    Map<String, LongAdder> causes = retries.get(method);
+    LongAdder count = causes == null ? null : causes.get(cause.getSimpleName());
+    return count == null ? 0 : count.sum();
+  }
+
+  public long getTabletCacheHits() {
+    return tabletCacheHits.sum();
+  }
+
+  public long getTabletCacheMisses() {
+    return tabletCacheMisses.sum();
+  }
+
+  public long getMasterLookups() {
+    return masterLookups.sum();
+  }
+
+  /**
+   * @return the metrics in the Prometheus text exposition format
+   */
+  public String toPrometheusText() {
+    StringBuilder out = new StringBuilder();
+
+    header(out, "rpc_latency_seconds", "summary",
+        "Latency of the RPCs, split between time in the client (queue) and on the wire.");
+    for (Map.Entry<String, MethodStats> e : new TreeMap<>(methods).entrySet()) {
+      String method = "method=\"" + escape(e.getKey()) + "\"";
+      summary(out, "rpc_latency_seconds", method + ",phase=\"queue\"", e.getValue().queue);
+      summary(out, "rpc_latency_seconds", method + ",phase=\"wire\"", e.getValue().wire);
+      summary(out, "rpc_latency_seconds", method + ",phase=\"total\"", e.getValue().total);
+    }
+
+    header(out, "rpc_failures_total", "counter", "RPCs which completed with an error.");
+    for (Map.Entry<String, MethodStats> e : new TreeMap<>(methods).entrySet()) {
+      sample(out, "rpc_failures_total", "method=\"" + escape(e.getKey()) + "\"",
+          e.getValue().failures.sum());
+    }
+
+    header(out, "rpc_retries_total", "counter", "RPC retries by the error they are retried for.");
+    for (Map.Entry<String, ConcurrentHashMap<String, LongAdder>> e :
+         new TreeMap<>(retries).entrySet()) {
+      for (Map.Entry<String, LongAdder> cause : new TreeMap<>(e.getValue()).entrySet()) {
+        sample(out, "rpc_retries_total", "method=\"" + escape(e.getKey()) + "\",cause=\"" +
+            escape(cause.getKey()) + "\"", cause.getValue().sum());
+      }
+    }
+
+    header(out, "tablet_cache_lookups_total", "counter",
+        "Lookups of the tablet an RPC is for in the location cache.");
+    sample(out, "tablet_cache_lookups_total", "result=\"hit\"", tabletCacheHits.sum());
+    sample(out, "tablet_cache_lookups_total", "result=\"miss\"", tabletCacheMisses.sum());
+
+    header(out, "master_lookups_total", "counter", "Tablet location lookups sent to the master.");
+    sample(out, "master_lookups_total", null, masterLookups.sum());
+
+    header(out, "master_lookup_permit_wait_seconds", "summary",
+        "Time waited for a permit to send a tablet location lookup.");
+    summary(out, "master_lookup_permit_wait_seconds", null, masterLookupPermitWait);
+
+    header(out, "master_lookup_permit_timeouts_total", "counter",
+        "Tablet location lookups sent without a permit after waiting for one.");
+    sample(out, "master_lookup_permit_timeouts_total", null, masterLookupPermitTimeouts.sum());
+
+    header(out, "rpc_encode_seconds", "summary", "Time to serialize an RPC request.");
+    summary(out, "rpc_encode_seconds", null, encodeTime);
+
+    header(out, "rpc_decode_seconds", "summary", "Time to de-serialize and dispatch a response.");
+    summary(out, "rpc_decode_seconds", null, decodeTime);
+
+    AsyncYBClient boundClient = client;
+    if (boundClient != null) {
+      header(out, "rpcs_in_flight", "gauge", "RPCs sent over a connection and not answered yet.");
+      for (Map.Entry<String, Integer> e :
+           new TreeMap<>(boundClient.getNumRpcsInFlightPerConnection()).entrySet()) {
+        sample(out, "rpcs_in_flight", "connection=\"" + escape(e.getKey()) + "\"", e.getValue());
+      }
+    }
+    return out.toString();
+  }
+
+  private static void header(StringBuilder out, String name, String type, String help) {
+    out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void summary(StringBuilder out, String name, String labels,
+                              LatencyHistogram histogram) {
+    String prefix = labels == null ? "" : labels + ",";
+    for (double quantile : QUANTILES) {
+      sample(out, name, prefix + "quantile=\"" + quantile + "\"",
+          histogram.getValueAtQuantile(quantile) / NANOS_PER_SECOND);
+    }
+    sample(out, name + "_sum", labels, histogram.getSum() / NANOS_PER_SECOND);
+    sample(out, name + "_count", labels, histogram.getCount());
+  }
+
+  private static void sample(StringBuilder out, String name, String labels, double value) {
+    out.append(PREFIX).append(name);
+    if (labels != null) {
+      out.append('{').append(labels).append('}');
+    }
+    out.append(' ');
+    if (value == Math.rint(value) && !Double.isInfinite(value)) {
+      out.append((long) value);
+    } else {
+      out.append(value);
+    }
+    out.append('\n');
+  }
+
+  private static String escape(String labelValue) {
+    return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
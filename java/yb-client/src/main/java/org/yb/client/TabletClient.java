@@ -62,7 +62,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -95,6 +97,19 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
   private static final byte[] RPC_HEADER = new byte[] { 'Y', 'B', 1 };
   public static final int CONNECTION_CTX_CALL_ID = -3;
 
+  /**
+   * Maximum number of RPCs written to the channel at once. Each RPC is a separate buffer of the
+   * gathering write, which has to stay well under the iovec limit of the OS.
+   */
+  static final int MAX_COALESCED_WRITES = 128;
+
+  /**
+   * The remote methods of the RPCs sent so far, by service and method name. They are the same for
+   * every RPC of a kind, so there is no need to build them again for each request header.
+   */
+  private static final ConcurrentHashMap<String, ConcurrentHashMap<String,
+      RpcHeader.RemoteMethodPB>> REMOTE_METHODS = new ConcurrentHashMap<>();
+
   /**
    * A monotonically increasing counter for RPC IDs.
    * RPCs can be sent out from any thread, so we need an atomic integer.
@@ -137,6 +152,16 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
 
   private final long socketReadTimeoutMs;
 
+  /**
+   * The RPCs encoded but not written to the channel yet. RPCs sent from any thread are queued
+   * here, and the Netty IO thread writes all the queued ones together the next time it runs.
+   */
+  private final ConcurrentLinkedQueue<ChannelBuffer> pendingWrites =
+      new ConcurrentLinkedQueue<ChannelBuffer>();
+
+  /** Set while a task to write {@link #pendingWrites} is scheduled on the IO thread. */
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
   public TabletClient(AsyncYBClient client, String uuid) {
     this.ybClient = client;
     this.uuid = uuid;
@@ -155,7 +180,7 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
 
       final Channel chan = this.chan;  // Volatile read.
       if (chan != null) {  // Double check if we disconnected during encode().
-        Channels.write(chan, serialized);
+        write(chan, serialized);
         return;
       }
     }
@@ -187,7 +212,71 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
     }
   }
 
+  /**
+   * Queues an encoded RPC to be written to the channel, and makes sure the IO thread writes it.
+   * The RPCs queued by the time it does are written together, in a single gathering write.
+   */
+  private void write(final Channel chan, final ChannelBuffer serialized) {
+    pendingWrites.add(serialized);
+    scheduleFlush(chan);
+  }
+
+  private void scheduleFlush(final Channel chan) {
+    if (!flushScheduled.compareAndSet(false, true)) {
+      return;  // The scheduled task will write what we just queued.
+    }
+    chan.getPipeline().execute(new Runnable() {
+      @Override
+      public void run() {
+        flushPendingWrites(chan);
+      }
+    });
+  }
+
+  /**
+   * Writes the queued RPCs to the channel. Only called from the IO thread of the channel.
+   */
+  private void flushPendingWrites(final Channel chan) {
+    // Cleared before draining the queue, so that an RPC queued from now on schedules a new flush
+    // if this one misses it.
+    flushScheduled.set(false);
+    final ChannelBuffer first = pendingWrites.poll();
+    if (first == null) {
+      return;
+    }
+    ChannelBuffer next = pendingWrites.poll();
+    if (next == null) {
+      Channels.write(chan, first);
+      return;
+    }
+    final ArrayList<ChannelBuffer> batch = new ArrayList<ChannelBuffer>();
+    batch.add(first);
+    do {
+      batch.add(next);
+    } while (batch.size() < MAX_COALESCED_WRITES && (next = pendingWrites.poll()) != null);
+    // The composite buffer is written with a gathering write, without copying the RPCs.
+    Channels.write(chan, ChannelBuffers.wrappedBuffer(
+        batch.toArray(new ChannelBuffer[batch.size()])));
+    if (!pendingWrites.isEmpty()) {
+      scheduleFlush(chan);
+    }
+  }
+
+  private static RpcHeader.RemoteMethodPB remoteMethod(String service, String method) {
+    ConcurrentHashMap<String, RpcHeader.RemoteMethodPB> methods = REMOTE_METHODS.get(service);
+    if (methods == null) {
+      methods = REMOTE_METHODS.computeIfAbsent(service, k -> new ConcurrentHashMap<>());
+    }
+    RpcHeader.RemoteMethodPB remoteMethod = methods.get(method);
+    if (remoteMethod == null) {
+      remoteMethod = methods.computeIfAbsent(method, k -> RpcHeader.RemoteMethodPB.newBuilder()
+          .setServiceName(service).setMethodName(method).build());
+    }
+    return remoteMethod;
+  }
+
   private <R> ChannelBuffer encode(final YRpc<R> rpc) {
+    final long start = System.nanoTime();
     final int rpcid = this.rpcid.incrementAndGet();
     ChannelBuffer payload;
     final String service = rpc.serviceName();
@@ -195,8 +284,7 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
     try {
       final RpcHeader.RequestHeader.Builder headerBuilder = RpcHeader.RequestHeader.newBuilder()
           .setCallId(rpcid)
-          .setRemoteMethod(
-              RpcHeader.RemoteMethodPB.newBuilder().setServiceName(service).setMethodName(method));
+          .setRemoteMethod(remoteMethod(service, method));
 
       // If any timeout is set, find the lowest non-zero one, since this will be the deadline that
       // the server must respect.
@@ -236,6 +324,9 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
           + ", payload=" + payload + ' ' + Bytes.pretty(payload));
     }
 
+    rpc.metrics = ybClient.getMetrics();
+    rpc.sentNanos = System.nanoTime();
+    rpc.metrics.rpcEncoded(rpc.sentNanos - start);
     return payload;
   }
 
@@ -434,6 +525,11 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
       }
     }
 
+    if (decoded != null) {
+      ybClient.getRetryScheduler().onSuccess(uuid);
+    }
+    // Not counting the callbacks of the RPC, which run from here.
+    ybClient.getMetrics().rpcDecoded(System.nanoTime() - start);
     try {
       if (decoded != null) {
         assert !(decoded.getFirst() instanceof Exception);
@@ -608,6 +704,13 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
     return !dead;
   }
 
+  /**
+   * @return the number of RPCs sent over this connection which haven't been answered yet
+   */
+  int getNumRpcsInFlight() {
+    return rpcs_inflight.size();
+  }
+
   /**
    * Ensures that at least a {@code nbytes} are readable from the given buffer.
    * If there aren't enough bytes in the buffer this will raise an exception
@@ -676,6 +779,9 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
       ite.remove();
     }
 
+    // The RPCs not written yet are in flight as well, they were just failed or retried.
+    pendingWrites.clear();
+
     final ArrayList<YRpc<?>> rpcs;
     synchronized (this) {
       dead = true;
@@ -0,0 +1,158 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.yb.annotations.InterfaceAudience;
+
+/**
+ * Maps the addresses ("ip:port") of the servers {@link AsyncYBClient} is connected to, to their
+ * {@link TabletClient}, and back. Additional connections to a server are registered under
+ * "ip:port#slot", see {@link #pooledAddress}.
+ * <p>
+ * Lookups don't take any lock. Creating a client for an address is atomic: concurrent callers
+ * for the same address get the same client, and only one connection is created. Only callers for
+ * the same address contend with each other.
+ * <p>
+ * Clients are removed by identity, so a client that disconnects after it was replaced by a new
+ * one for the same address doesn't evict the new one.
+ */
+@InterfaceAudience.Private
+final class TabletClientRegistry {
+
+  // Separates the address of a server from the slot of a pooled connection to it.
+  private static final char POOL_SLOT_SEPARATOR = '#';
+
+  private final ConcurrentHashMap<String, TabletClient> clients = new ConcurrentHashMap<>();
+
+  private final ConcurrentHashMap<TabletClient, String> addresses = new ConcurrentHashMap<>();
+
+  private final AtomicLong numCreated = new AtomicLong();
+
+  private final AtomicLong numRemoved = new AtomicLong();
+
+  /**
+   * Gets the live client for an address, or creates one.
+   * @param hostport the address of the server
+   * @param factory creates the client if there is no live one, it must not connect it
+   * @return the client for the address
+   */
+  TabletClient getOrCreate(String hostport, Function<String, TabletClient> factory) {
+    TabletClient client = clients.get(hostport);
+    if (client != null && client.isAlive()) {
+      return client;
+    }
+    return clients.compute(hostport, (address, current) -> {
+      if (current != null && current.isAlive()) {
+        return current;
+      }
+      TabletClient created = factory.apply(address);
+      addresses.put(created, address);
+      numCreated.incrementAndGet();
+      return created;
+    });
+  }
+
+  /**
+   * Removes a client, if it is still registered.
+   * @return the address the client was registered for, or null if it wasn't
+   */
+  String remove(TabletClient client) {
+    String hostport = addresses.remove(client);
+    if (hostport == null) {
+      return null;
+    }
+    clients.remove(hostport, client);
+    numRemoved.incrementAndGet();
+    return hostport;
+  }
+
+  /**
+   * @return the key of an additional connection to the server at the given address
+   */
+  static String pooledAddress(String hostport, int slot) {
+    return hostport + POOL_SLOT_SEPARATOR + slot;
+  }
+
+  static boolean isPooledAddress(String address) {
+    return address.indexOf(POOL_SLOT_SEPARATOR) >= 0;
+  }
+
+  /**
+   * @return the first connection to the server of the given client, which is the one known by
+   *         the tablet locations, or the client itself if it is the first one or isn't registered
+   */
+  TabletClient primaryOf(TabletClient client) {
+    String address = addresses.get(client);
+    if (address == null) {
+      return client;
+    }
+    int separator = address.indexOf(POOL_SLOT_SEPARATOR);
+    if (separator < 0) {
+      return client;
+    }
+    TabletClient primary = clients.get(address.substring(0, separator));
+    return primary == null ? client : primary;
+  }
+
+  /**
+   * @return the address the client is registered for, or null if it isn't
+   */
+  String addressOf(TabletClient client) {
+    return addresses.get(client);
+  }
+
+  TabletClient get(String hostport) {
+    return clients.get(hostport);
+  }
+
+  List<TabletClient> getClients() {
+    return new ArrayList<>(clients.values());
+  }
+
+  Map<String, TabletClient> snapshot() {
+    return new HashMap<>(clients);
+  }
+
+  boolean isEmpty() {
+    return clients.isEmpty();
+  }
+
+  /**
+   * @return the number of clients currently registered
+   */
+  int size() {
+    return clients.size();
+  }
+
+  /**
+   * @return the number of clients created since the registry was created
+   */
+  long getNumCreated() {
+    return numCreated.get();
+  }
+
+  /**
+   * @return the number of clients removed after disconnecting since the registry was created
+   */
+  long getNumRemoved() {
+    return numRemoved.get();
+  }
+}
@@ -0,0 +1,188 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.stumbleupon.async.Callback;
+import com.stumbleupon.async.Deferred;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.yb.annotations.InterfaceAudience;
+import org.yb.master.MasterClientOuterClass.GetTableLocationsResponsePB;
+
+/**
+ * Keeps track of the tablet location lookups sent to the master by {@link AsyncYBClient}.
+ * <p>
+ * Lookups in flight are kept per table, by the partition key they start at. A lookup for the
+ * same key as a lookup in flight joins it instead of being sent to the master. Lookups of other
+ * keys are sent on their own, even when the lookup in flight may cover them: the master only
+ * returns a page of tablets, and an RPC whose tablet is not in that page would have to retry
+ * its lookup, one page after the other, using up one of its attempts each time.
+ * <p>
+ * Tables for which the master returned no tablets are remembered as not served yet, along with
+ * the time the master was last asked about them. Only one caller per {@code notServedTtlMs}
+ * asks the master again, the others rely on that answer.
+ */
+@InterfaceAudience.Private
+final class TabletLookupTracker {
+
+  private final ConcurrentHashMap<String, ConcurrentSkipListMap<byte[], PendingLookup>> inflight =
+      new ConcurrentHashMap<>();
+
+  // Table ID to the time in nanoseconds the master last reported it as not served.
+  private final ConcurrentHashMap<String, AtomicLong> notServed = new ConcurrentHashMap<>();
+
+  private final long notServedTtlNanos;
+
+  TabletLookupTracker(long notServedTtlMs) {
+    this.notServedTtlNanos = TimeUnit.MILLISECONDS.toNanos(notServedTtlMs);
+  }
+
+  /**
+   * Registers a lookup about to be sent to the master, unless one of the same key is in flight.
+   * @param tableId table to look up
+   * @param partitionKey key the lookup starts at, null for the start of the table
+   * @return null if the caller must send the lookup and then {@link #complete} it, otherwise a
+   *         deferred that fires once the lookup in flight completes
+   */
+  Deferred<GetTableLocationsResponsePB> joinOrRegister(String tableId, byte[] partitionKey) {
+    byte[] key = partitionKey == null ? AsyncYBClient.EMPTY_ARRAY : partitionKey;
+    ConcurrentSkipListMap<byte[], PendingLookup> lookups =
+        inflight.computeIfAbsent(tableId, k -> new ConcurrentSkipListMap<>(Bytes.MEMCMP));
+    while (true) {
+      PendingLookup same = lookups.get(key);
+      if (same != null) {
+        Deferred<GetTableLocationsResponsePB> joined = same.join();
+        if (joined != null) {
+          return joined;
+        }
+        // It just completed, the cache has been updated by now.
+        lookups.remove(key, same);
+        continue;
+      }
+      if (lookups.putIfAbsent(key, new PendingLookup()) == null) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Attaches the completion of a registered lookup to the deferred of its RPC. The callers which
+   * joined the lookup get the same result as the deferred.
+   */
+  void complete(String tableId, byte[] partitionKey, Deferred<GetTableLocationsResponsePB> d) {
+    final byte[] key = partitionKey == null ? AsyncYBClient.EMPTY_ARRAY : partitionKey;
+    d.addBoth(new CompleteLookup<GetTableLocationsResponsePB>(tableId, key));
+  }
+
+  /**
+   * Completes a registered lookup with the result of its RPC, response or exception alike.
+   */
+  private final class CompleteLookup<T> implements Callback<T, T> {
+    private final String tableId;
+    private final byte[] key;
+
+    CompleteLookup(String tableId, byte[] key) {
+      this.tableId = tableId;
+      this.key = key;
+    }
+
+    @Override
+    public T call(T arg) {
+      ConcurrentSkipListMap<byte[], PendingLookup> lookups = inflight.get(tableId);
+      PendingLookup lookup = lookups == null ? null : lookups.remove(key);
+      if (lookup != null) {
+        lookup.complete(arg);
+      }
+      return arg;
+    }
+
+    @Override
+    public String toString() {
+      return "complete coalesced tablet lookup";
+    }
+  }
+
+  /**
+   * @return the number of lookups in flight for the table
+   */
+  int numInflight(String tableId) {
+    ConcurrentSkipListMap<byte[], PendingLookup> lookups = inflight.get(tableId);
+    return lookups == null ? 0 : lookups.size();
+  }
+
+  void markNotServed(String tableId) {
+    long now = System.nanoTime();
+    AtomicLong checkedAt = notServed.putIfAbsent(tableId, new AtomicLong(now));
+    if (checkedAt != null) {
+      checkedAt.set(now);
+    }
+  }
+
+  void markServed(String tableId) {
+    notServed.remove(tableId);
+  }
+
+  boolean isNotServed(String tableId) {
+    return notServed.containsKey(tableId);
+  }
+
+  /**
+   * Decides whether the caller should ask the master again if a table that was not served is
+   * served now. At most one caller gets a yes per TTL.
+   */
+  boolean shouldRecheckNotServed(String tableId) {
+    AtomicLong checkedAt = notServed.get(tableId);
+    if (checkedAt == null) {
+      return false;
+    }
+    long last = checkedAt.get();
+    long now = System.nanoTime();
+    return now - last >= notServedTtlNanos && checkedAt.compareAndSet(last, now);
+  }
+
+  /**
+   * A lookup in flight and the callers waiting for it.
+   */
+  private static final class PendingLookup {
+    private List<Deferred<GetTableLocationsResponsePB>> waiters = new ArrayList<>();
+
+    /**
+     * @return a deferred for the result of the lookup, or null if it already completed
+     */
+    synchronized Deferred<GetTableLocationsResponsePB> join() {
+      if (waiters == null) {
+        return null;
+      }
+      Deferred<GetTableLocationsResponsePB> d = new Deferred<>();
+      waiters.add(d);
+      return d;
+    }
+
+    void complete(Object result) {
+      List<Deferred<GetTableLocationsResponsePB>> toNotify;
+      synchronized (this) {
+        toNotify = waiters;
+        waiters = null;
+      }
+      for (Deferred<GetTableLocationsResponsePB> d : toNotify) {
+        // An exception is passed as is, which makes the waiter errback.
+        d.callback(result);
+      }
+    }
+  }
+}
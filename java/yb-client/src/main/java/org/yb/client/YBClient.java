@@ -89,19 +89,6 @@ public class YBClient implements AutoCloseable {
   // Redis key column name.
   public static final String REDIS_KEY_COLUMN_NAME = "key";
 
-  // Number of response errors to tolerate.
-  private static final int MAX_ERRORS_TO_IGNORE = 2500;
-
-  // Log errors every so many errors.
-  private static final int LOG_ERRORS_EVERY_NUM_ITERS = 100;
-
-  // Log info after these many iterations.
-  private static final int LOG_EVERY_NUM_ITERS = 200;
-
-  // Simple way to inject an error on Wait based APIs. If enabled, after first inject,
-  // it will be turned off. We can enhance it to use more options like every-N etc.
-  private boolean injectWaitError = false;
-
   public YBClient(AsyncYBClient asyncClient) {
     this.asyncClient = asyncClient;
   }
@@ -485,16 +472,7 @@ public class YBClient implements AutoCloseable {
    * @return returns true if the master is properly initialized, false otherwise.
    */
   public boolean waitForMaster(HostAndPort hp, long timeoutMS) throws Exception {
-    if (!waitForServer(hp, timeoutMS)) {
-      return false;
-    }
-
-    long start = System.currentTimeMillis();
-    while (System.currentTimeMillis() - start < timeoutMS &&
-      getMasterUUID(hp.getHost(), hp.getPort()) == null) {
-      Thread.sleep(AsyncYBClient.SLEEP_TIME);
-    }
-    return getMasterUUID(hp.getHost(), hp.getPort()) != null;
+    return waitForCondition(asyncClient.waitForMaster(hp, timeoutMS), timeoutMS);
   }
 
   /**
@@ -623,20 +601,12 @@ public class YBClient implements AutoCloseable {
   private String waitAndGetLeaderMasterUUID(long timeoutMs) throws Exception {
     LOG.info("Waiting for master leader (timeout: " + timeoutMs + " ms)");
     long start = System.currentTimeMillis();
-    // Retry till we get a valid UUID (or timeout) for the new leader.
-    do {
-      String leaderUuid = getLeaderMasterUUID();
-
-      long elapsedTimeMs = System.currentTimeMillis() - start;
-      // Done if we got a valid one.
-      if (leaderUuid != null) {
-        LOG.info("Fininshed waiting for master leader in " + elapsedTimeMs + " ms. Leader UUID: " +
-                 leaderUuid);
-        return leaderUuid;
-      }
-
-      Thread.sleep(asyncClient.SLEEP_TIME);
-    } while (System.currentTimeMillis() - start < timeoutMs);
+    String leaderUuid = joinWait(asyncClient.waitForMasterLeader(timeoutMs), timeoutMs);
+    if (leaderUuid != null) {
+      LOG.info("Fininshed waiting for master leader in " + (System.currentTimeMillis() - start) +
+               " ms. Leader UUID: " + leaderUuid);
+      return leaderUuid;
+    }
 
     LOG.error("Timed out getting leader uuid.");
 
@@ -688,7 +658,14 @@ public class YBClient implements AutoCloseable {
           break;
         }
 
-        Thread.sleep(asyncClient.SLEEP_TIME);
+        // Give the election some more time before stepping down again.
+        String electedLeader = joinWait(
+            asyncClient.waitForNewMasterLeader(leaderUuid, AsyncYBClient.SLEEP_TIME),
+            AsyncYBClient.SLEEP_TIME);
+        if (electedLeader != null) {
+          newLeader = electedLeader;
+          break;
+        }
       } while (true);
     } catch (Exception e) {
      // TODO: Ideally we need an error code here, but this is come another layer which
@@ -960,208 +937,41 @@ public class YBClient implements AutoCloseable {
     boolean get() throws Exception;
   }
 
-  private class ReplicaCountCondition implements Condition {
-    private int numReplicas;
-    private YBTable table;
-    public ReplicaCountCondition(YBTable table, int numReplicas) {
-      this.numReplicas = numReplicas;
-      this.table = table;
-    }
-    @Override
-    public boolean get() throws Exception {
-      for (LocatedTablet tablet : table.getTabletsLocations(getDefaultAdminOperationTimeoutMs())) {
-        if (tablet.getReplicas().size() != numReplicas) {
-          return false;
-        }
-      }
-      return true;
-    }
-  }
-
-  private class TableDoesNotExistCondition implements Condition {
-    private String nameFilter;
-    public TableDoesNotExistCondition(String nameFilter) {
-      this.nameFilter = nameFilter;
-    }
-    @Override
-    public boolean get() throws Exception {
-      ListTablesResponse tl = getTablesList(nameFilter);
-      return tl.getTablesList().isEmpty();
-    }
-  }
-
-  /**
-   * Checks the ping of the given ip and port.
-   */
-  private class ServerCondition implements Condition {
-    private HostAndPort hp;
-    public ServerCondition(HostAndPort hp) {
-      this.hp = hp;
-    }
-    @Override
-    public boolean get() throws Exception {
-      return ping(hp.getHost(), hp.getPort());
-    }
-  }
-
-  /**
-   * Checks whether the IsLoadBalancedResponse has no error.
-   */
-  private class LoadBalanceCondition implements Condition {
-    private int numServers;
-    public LoadBalanceCondition(int numServers) {
-      this.numServers = numServers;
-    }
-    @Override
-    public boolean get() throws Exception {
-      IsLoadBalancedResponse resp = getIsLoadBalanced(numServers);
-      return !resp.hasError();
-    }
-  }
-
   /**
-   * Checks whether the IsLoadBalancerIdleResponse has no error.
+   * Quick and dirty error injection on Wait based API's.
+   * After every use, for now, will get automatically disabled.
    */
-  private class LoadBalancerIdleCondition implements Condition {
-    public LoadBalancerIdleCondition() {
-    }
-    @Override
-    public boolean get() throws Exception {
-      IsLoadBalancerIdleResponse resp = getIsLoadBalancerIdle();
-      return !resp.hasError();
-    }
+  public void injectWaitError() {
+    asyncClient.injectWaitError();
   }
 
   /**
-   * Checks whether the LoadBalancer is currently running.
+   * Blocks until the given wait for a condition completes.
+   * @param wait the wait started on the async client
+   * @param timeoutMs the amount of time, in MS, the wait was started with
+   * @return true if the condition is true within the time frame, false otherwise.
    */
-  private class LoadBalancerActiveCondition implements Condition {
-    public LoadBalancerActiveCondition() {
-    }
-    @Override
-    public boolean get() throws Exception {
-      try {
-        IsLoadBalancerIdleResponse resp = getIsLoadBalancerIdle();
-      } catch (MasterErrorException e) {
-        // TODO (deepthi.srinivasan) Instead of writing if-else
-        // with Exceptions, find a way to receive the error code
-        // neatly.
-        return e.toString().contains("LOAD_BALANCER_RECENTLY_ACTIVE");
-      }
+  private boolean waitForCondition(Deferred<Boolean> wait, final long timeoutMs) {
+    try {
+      return joinWait(wait, timeoutMs);
+    } catch (Exception e) {
+      LOG.error("Failed waiting for operation: {}.", e.toString());
       return false;
     }
   }
 
-
-  private class AreLeadersOnPreferredOnlyCondition implements Condition {
-    @Override
-    public boolean get() throws Exception {
-      AreLeadersOnPreferredOnlyResponse resp = getAreLeadersOnPreferredOnly();
-      return !resp.hasError();
-    }
-  }
-
-  private class ReplicaMapCondition implements Condition {
-    private YBTable table;
-    Map<String, List<List<Integer>>> replicaMapExpected;
-    private long deadline;
-    public ReplicaMapCondition(YBTable table,
-                               Map<String, List<List<Integer>>> replicaMapExpected,
-                               long deadline) {
-      this.table = table;
-      this.replicaMapExpected = replicaMapExpected;
-      this.deadline = deadline;
-    }
-    @Override
-    public boolean get() throws Exception {
-      Map<String, List<List<Integer>>> replicaMap =
-          table.getMemberTypeCountsForEachTSType(deadline);
-      return replicaMap.equals(replicaMapExpected);
-    }
-  }
-
-  private class MasterHasUniverseKeyInMemoryCondition implements Condition {
-    private String universeKeyId;
-    private HostAndPort hp;
-    public MasterHasUniverseKeyInMemoryCondition(String universeKeyId, HostAndPort hp) {
-      this.universeKeyId = universeKeyId;
-      this.hp = hp;
-    }
-
-    @Override
-    public boolean get() throws Exception {
-      return hasUniverseKeyInMemory(universeKeyId, hp);
-    }
-  }
-
-  /**
-   * Quick and dirty error injection on Wait based API's.
-   * After every use, for now, will get automatically disabled.
-   */
-  public void injectWaitError() {
-    injectWaitError = true;
-  }
-
   /**
-   * Helper method that loops on a condition every 500ms until it returns true or the
-   * operation times out.
-   * @param condition the Condition which implements a boolean get() method.
-   * @param timeoutMs the amount of time, in MS, to wait.
-   * @return true if the condition is true within the time frame, false otherwise.
+   * Blocks until the given wait started on the async client completes.
+   * @param wait the wait started on the async client
+   * @param timeoutMs the amount of time, in MS, the wait was started with
+   * @return the result of the wait
    */
-  private boolean waitForCondition(Condition condition, final long timeoutMs) {
-    Exception finalException = null;
-    long start = System.currentTimeMillis();
-    int numErrors = 0;
-    int numIters = 0;
-    String errorMessage = null;
-    do {
-      try {
-        if (injectWaitError) {
-          Thread.sleep(AsyncYBClient.SLEEP_TIME);
-          injectWaitError = false;
-          String msg = "Simulated expection due to injected error.";
-          LOG.info(msg);
-          throw new RuntimeException(msg);
-        }
-        if (condition.get()) {
-          return true;
-        }
-      } catch (Exception e) {
-        // We will get exceptions if we cannot connect to the other end. Catch them and save for
-        // final debug if we never succeed.
-        finalException = e;
-        numErrors++;
-        if (numErrors % LOG_ERRORS_EVERY_NUM_ITERS == 0) {
-          LOG.warn("Hit {} errors so far. Latest is : {}.", numErrors, finalException.toString());
-        }
-        if (numErrors >= MAX_ERRORS_TO_IGNORE) {
-          errorMessage = "Hit too many errors, final exception is " + finalException.toString();
-          break;
-        }
-      }
-
-      numIters++;
-      if (numIters % LOG_EVERY_NUM_ITERS == 0) {
-        LOG.info("Tried operation {} times so far.", numIters);
-      }
-
-      // Need to wait even when ping has an exception, so the sleep is outside the above try block.
-      try {
-        Thread.sleep(AsyncYBClient.SLEEP_TIME);
-      } catch (Exception e) {}
-    } while (System.currentTimeMillis() - start < timeoutMs);
-
-    if (errorMessage == null) {
-      LOG.error("Timed out waiting for operation. Final exception was {}.",
-                finalException != null ? finalException.toString() : "none");
-    } else {
-      LOG.error(errorMessage);
+  private static <T> T joinWait(Deferred<T> wait, final long timeoutMs) throws Exception {
+    if (timeoutMs >= ConditionWaiter.MAX_TIMEOUT_MS) {
+      return wait.join();
     }
-
-    LOG.error("Returning failure after {} iterations, num errors = {}.", numIters, numErrors);
-
-    return false;
+    // The wait completes by its timeout, unless the client gets shut down meanwhile.
+    return wait.join(timeoutMs + AsyncYBClient.SLEEP_TIME);
   }
 
   /**
@@ -1173,8 +983,8 @@ public class YBClient implements AutoCloseable {
   */
   public boolean waitForReplicaCount(final YBTable table, final int numReplicas,
                                      final long timeoutMs) {
-    Condition replicaCountCondition = new ReplicaCountCondition(table, numReplicas);
-    return waitForCondition(replicaCountCondition, timeoutMs);
+    return waitForCondition(
+        asyncClient.waitForReplicaCount(table, numReplicas, timeoutMs), timeoutMs);
   }
 
   /**
@@ -1184,8 +994,7 @@ public class YBClient implements AutoCloseable {
   * @return true if the server responded to pings in the given time, false otherwise
   */
   public boolean waitForServer(final HostAndPort hp, final long timeoutMs) {
-    Condition serverCondition = new ServerCondition(hp);
-    return waitForCondition(serverCondition, timeoutMs);
+    return waitForCondition(asyncClient.waitForServer(hp, timeoutMs), timeoutMs);
   }
 
   /**
@@ -1195,8 +1004,7 @@ public class YBClient implements AutoCloseable {
   * @return true if the master leader does not return any error balance check.
   */
   public boolean waitForLoadBalance(final long timeoutMs, int numServers) {
-    Condition loadBalanceCondition = new LoadBalanceCondition(numServers);
-    return waitForCondition(loadBalanceCondition, timeoutMs);
+    return waitForCondition(asyncClient.waitForLoadBalance(timeoutMs, numServers), timeoutMs);
   }
 
   /**
@@ -1205,8 +1013,7 @@ public class YBClient implements AutoCloseable {
   * @return true if the load balancer is currently running.
   */
   public boolean waitForLoadBalancerActive(final long timeoutMs) {
-    Condition loadBalancerActiveCondition = new LoadBalancerActiveCondition();
-    return waitForCondition(loadBalancerActiveCondition, timeoutMs);
+    return waitForCondition(asyncClient.waitForLoadBalancerActive(timeoutMs), timeoutMs);
   }
 
   /**
@@ -1215,8 +1022,7 @@ public class YBClient implements AutoCloseable {
   * @return true if the master leader does not return any error balance check.
   */
   public boolean waitForLoadBalancerIdle(final long timeoutMs) {
-    Condition loadBalancerIdleCondition = new LoadBalancerIdleCondition();
-    return waitForCondition(loadBalancerIdleCondition, timeoutMs);
+    return waitForCondition(asyncClient.waitForLoadBalancerIdle(timeoutMs), timeoutMs);
   }
 
   /**
@@ -1225,9 +1031,8 @@ public class YBClient implements AutoCloseable {
    * @return true iff the leader count is balanced within timeoutMs.
    */
   public boolean waitForAreLeadersOnPreferredOnlyCondition(final long timeoutMs) {
-    Condition areLeadersOnPreferredOnlyCondition =
-        new AreLeadersOnPreferredOnlyCondition();
-    return waitForCondition(areLeadersOnPreferredOnlyCondition, timeoutMs);
+    return waitForCondition(
+        asyncClient.waitForAreLeadersOnPreferredOnlyCondition(timeoutMs), timeoutMs);
   }
 
   /**
@@ -1243,14 +1048,14 @@ public class YBClient implements AutoCloseable {
    */
   public boolean waitForExpectedReplicaMap(final long timeoutMs, YBTable table,
                                             Map<String, List<List<Integer>>> replicaMapExpected) {
-    Condition replicaMapCondition = new ReplicaMapCondition(table, replicaMapExpected, timeoutMs);
-    return waitForCondition(replicaMapCondition, timeoutMs);
+    return waitForCondition(
+        asyncClient.waitForExpectedReplicaMap(timeoutMs, table, replicaMapExpected), timeoutMs);
   }
 
   public boolean waitForMasterHasUniverseKeyInMemory(
           final long timeoutMs, String universeKeyId, HostAndPort hp) {
-    Condition universeKeyCondition = new MasterHasUniverseKeyInMemoryCondition(universeKeyId, hp);
-    return waitForCondition(universeKeyCondition, timeoutMs);
+    return waitForCondition(
+        asyncClient.waitForMasterHasUniverseKeyInMemory(timeoutMs, universeKeyId, hp), timeoutMs);
   }
 
   /**
@@ -1336,8 +1141,7 @@ public class YBClient implements AutoCloseable {
   }
 
   public boolean waitForTableRemoval(final long timeoutMs, String name) {
-    Condition TableDoesNotExistCondition = new TableDoesNotExistCondition(name);
-    return waitForCondition(TableDoesNotExistCondition, timeoutMs);
+    return waitForCondition(asyncClient.waitForTableRemoval(timeoutMs, name), timeoutMs);
   }
 
   /**
@@ -1438,6 +1242,18 @@ public class YBClient implements AutoCloseable {
     return d.join(getDefaultAdminOperationTimeoutMs());
   }
 
+  /**
+   * It is the same as {@link AsyncYBClient#prefetchTabletLocations(List, long)}
+   * except that it is synchronous.
+   * @param tables tables to cache the tablet locations of
+   * @return the number of tablets cached
+   */
+  public int prefetchTabletLocations(final List<YBTable> tables) throws Exception {
+    long timeoutMs = getDefaultAdminOperationTimeoutMs();
+    Deferred<Integer> d = asyncClient.prefetchTabletLocations(tables, timeoutMs);
+    return d.join(timeoutMs);
+  }
+
   /**
    * It is the same as {@link AsyncYBClient#setupUniverseReplication(String, Map, Set)}
    * except that it is synchronous.
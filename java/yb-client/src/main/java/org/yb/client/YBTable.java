@@ -226,11 +226,18 @@ public class YBTable {
    */
   public Map<String, List<List<Integer>>> getMemberTypeCountsForEachTSType(long deadline)
       throws Exception {
+    return getMemberTypeCountsForEachTSType(getTabletsLocations(deadline));
+  }
+
+  /**
+   * Same as {@link #getMemberTypeCountsForEachTSType(long)}, for the given tablets of the table.
+   */
+  static Map<String, List<List<Integer>>> getMemberTypeCountsForEachTSType(
+      List<LocatedTablet> tablets) {
     // Intermediate map which contains an internal map from ts uuid to live and
     // read replica counts.
     Map<String, Map<String, List<Integer>>> intermediateMap =
         new HashMap<String, Map<String, List<Integer>>>();
-    List<LocatedTablet> tablets = getTabletsLocations(deadline);
     for (LocatedTablet tablet : tablets) {
       for (LocatedTablet.Replica replica : tablet.getReplicas()) {
         String placementUuid = replica.getTsPlacementUuid();
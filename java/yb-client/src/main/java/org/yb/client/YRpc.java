@@ -118,6 +118,14 @@ public abstract class YRpc<R> {
   // Maximum number of attempts to try the RPC. Default 100 times.
   byte maxAttempts = 100;
 
+  // Where the completion of this RPC is recorded, set by the client sending it.
+  ClientMetrics metrics = ClientMetrics.NOOP;
+
+  // When the RPC was handed to the client, and when its last attempt was written to a
+  // connection, 0 if it wasn't.
+  long startNanos;
+  long sentNanos;
+
   // Whether or not retries for this RPC should always go to the same server. This is required in
   // some cases where we do not want the RPC retries to hit a different server serving the same
   // tablet.
@@ -180,6 +188,7 @@ public abstract class YRpc<R> {
     deferred = null;
     attempt = 0;
     deadlineTracker.reset();
+    recordCompletion(!(result instanceof Exception));
     d.callback(result);
   }
 
@@ -203,10 +212,19 @@ public abstract class YRpc<R> {
     handleCallback(e);
   }
 
+  private void recordCompletion(boolean success) {
+    final long now = System.nanoTime();
+    final long queueNanos = (sentNanos == 0 ? now : sentNanos) - startNanos;
+    final long wireNanos = sentNanos == 0 ? 0 : now - sentNanos;
+    sentNanos = 0;
+    metrics.rpcCompleted(method(), queueNanos, wireNanos, success);
+  }
+
   /** Package private way of accessing / creating the Deferred of this RPC.  */
   final Deferred<R> getDeferred() {
     if (deferred == null) {
       deferred = new Deferred<R>();
+      startNanos = System.nanoTime();
     }
     return deferred;
   }
@@ -0,0 +1,70 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.*;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+import org.yb.rpc.RpcHeader;
+import org.yb.util.Slice;
+
+@RunWith(value = YBTestRunner.class)
+public class TestCallResponse {
+
+  private static final RpcHeader.ResponseHeader HEADER =
+      RpcHeader.ResponseHeader.newBuilder().setCallId(42).build();
+
+  private static final RpcHeader.ErrorStatusPB MESSAGE = RpcHeader.ErrorStatusPB.newBuilder()
+      .setMessage("some message")
+      .setCode(RpcHeader.ErrorStatusPB.RpcErrorCodePB.ERROR_SERVER_TOO_BUSY)
+      .build();
+
+  private static void checkResponse(ChannelBuffer buf) {
+    // Another response follows, only the first one must be consumed.
+    final int frameSize = buf.readableBytes() / 2;
+    CallResponse response = new CallResponse(buf);
+    assertFalse(response.isEmpty());
+    assertEquals(42, response.getHeader().getCallId());
+    assertEquals(frameSize, buf.readerIndex());
+
+    RpcHeader.ErrorStatusPB.Builder builder = RpcHeader.ErrorStatusPB.newBuilder();
+    YRpc.readProtobuf(response.getPBMessage(), builder);
+    assertEquals(MESSAGE, builder.build());
+  }
+
+  private static ChannelBuffer twoResponses(ChannelBuffer buf) {
+    ChannelBuffer frame = YRpc.toChannelBuffer(HEADER, MESSAGE);
+    buf.writeBytes(frame, frame.readerIndex(), frame.readableBytes());
+    buf.writeBytes(frame, frame.readerIndex(), frame.readableBytes());
+    return buf;
+  }
+
+  @Test
+  public void testHeapBufferIsNotCopied() {
+    ChannelBuffer buf = twoResponses(ChannelBuffers.buffer(1024));
+    CallResponse response = new CallResponse(buf);
+    Slice message = response.getPBMessage();
+    assertSame(buf.array(), message.getRawArray());
+
+    checkResponse(twoResponses(ChannelBuffers.buffer(1024)));
+  }
+
+  @Test
+  public void testDirectBuffer() {
+    checkResponse(twoResponses(ChannelBuffers.directBuffer(1024)));
+  }
+}
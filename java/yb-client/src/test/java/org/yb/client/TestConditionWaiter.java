@@ -0,0 +1,99 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.*;
+
+import com.google.common.net.HostAndPort;
+import com.stumbleupon.async.Deferred;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+@RunWith(value = YBTestRunner.class)
+public class TestConditionWaiter {
+  private final HashedWheelTimer timer = new HashedWheelTimer();
+  private final ConditionWaiter waiter = new ConditionWaiter(timer);
+
+  @After
+  public void tearDown() {
+    timer.stop();
+  }
+
+  @Test
+  public void testRetriesUntilMet() throws Exception {
+    AtomicInteger probes = new AtomicInteger();
+    Deferred<Boolean> wait = waiter.waitFor(() -> {
+      int probe = probes.incrementAndGet();
+      if (probe == 2) {
+        return Deferred.fromError(new RuntimeException("probe failed"));
+      }
+      return Deferred.fromResult(probe >= 4);
+    }, 10000);
+    assertTrue(wait.join(10000));
+    assertEquals(4, probes.get());
+  }
+
+  @Test
+  public void testTimesOutWithProbeInFlight() throws Exception {
+    long start = System.currentTimeMillis();
+    // The probe never completes, the wait must time out anyway.
+    Deferred<Boolean> wait = waiter.waitFor(() -> new Deferred<Boolean>(), 200);
+    assertFalse(wait.join(10000));
+    assertGreaterThanOrEqualTo(System.currentTimeMillis() - start, 200L);
+  }
+
+  @Test
+  public void testInjectedWaitError() throws Exception {
+    try (AsyncYBClient client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1:1").build()) {
+      client.injectWaitError();
+      AtomicInteger probes = new AtomicInteger();
+      Deferred<Boolean> wait = client.waitForCondition(() -> {
+        probes.incrementAndGet();
+        return Deferred.fromResult(true);
+      }, 10000);
+      assertTrue(wait.join(10000));
+      // The first probe failed without reaching the condition.
+      assertEquals(1, probes.get());
+      // Only the next wait fails once.
+      assertTrue(client.waitForCondition(() -> Deferred.fromResult(true), 10000).join(10000));
+    }
+  }
+
+  @Test
+  public void testMasterLeaderWaitTimesOut() throws Exception {
+    // No master listens there, the wait must time out without blocking the caller.
+    try (AsyncYBClient client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1:1")
+        .defaultAdminOperationTimeoutMs(100)
+        .build()) {
+      Deferred<String> leader = client.waitForMasterLeader(300);
+      assertNull(leader.join(10000));
+      assertFalse(client.waitForMaster(HostAndPort.fromParts("127.0.0.1", 1), 300).join(10000));
+    }
+  }
+
+  @Test
+  public void testBackoffIsBounded() {
+    for (int attempt = 1; attempt < 100; attempt++) {
+      long delay = ConditionWaiter.nextDelayMs(attempt, Long.MAX_VALUE);
+      assertGreaterThanOrEqualTo(delay, 1L);
+      assertLessThanOrEqualTo(delay, ConditionWaiter.MAX_DELAY_MS);
+    }
+    assertLessThanOrEqualTo(ConditionWaiter.nextDelayMs(1, Long.MAX_VALUE),
+        ConditionWaiter.INITIAL_DELAY_MS);
+    assertEquals(5L, ConditionWaiter.nextDelayMs(100, 5));
+  }
+}
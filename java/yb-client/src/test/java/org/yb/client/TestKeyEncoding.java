@@ -32,7 +32,10 @@
 package org.yb.client;
 
 import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertFalse;
+import static org.yb.AssertionWrappers.assertSame;
 import static org.yb.AssertionWrappers.assertTrue;
+import static org.yb.AssertionWrappers.fail;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
@@ -47,8 +50,12 @@ import org.yb.Type;
 import org.yb.client.PartitionSchema.HashBucketSchema;
 import org.yb.client.PartitionSchema.RangeSchema;
 
+import com.google.protobuf.ByteString;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import org.yb.master.MasterClientOuterClass;
 
 import org.yb.YBTestRunner;
 
@@ -141,4 +148,123 @@ public class TestKeyEncoding {
                           'c'                   // b = "c"
                       });
   }
+
+  private static PartitionSchema hashPartitionSchema(Schema schema) {
+    return new PartitionSchema(new RangeSchema(ImmutableList.of(0, 1)),
+                               ImmutableList.of(new HashBucketSchema(ImmutableList.of(0), 32, 0)),
+                               schema, HashSchema.MULTI_COLUMN_HASH_SCHEMA);
+  }
+
+  private static List<PartialRow> buildRows(Schema schema, int numRows) {
+    List<PartialRow> rows = new ArrayList<>();
+    for (int i = 0; i < numRows; i++) {
+      PartialRow row = schema.newPartialRow();
+      row.addInt("a", i);
+      row.addString("b", "b\0" + i);
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  @Test
+  public void testEncodeIntoBuffers() {
+    Schema schema = buildSchema(
+        new ColumnSchemaBuilder("a", Type.INT32).key(true),
+        new ColumnSchemaBuilder("b", Type.STRING).key(true));
+    PartitionSchema partitionSchema = hashPartitionSchema(schema);
+
+    for (PartialRow row : buildRows(schema, 10)) {
+      byte[] primaryKey = row.encodePrimaryKey();
+      byte[] partitionKey = partitionSchema.encodePartitionKey(row);
+      for (ByteBuffer out : new ByteBuffer[] { ByteBuffer.allocate(64),
+                                               ByteBuffer.allocateDirect(64) }) {
+        out.put((byte) 42);
+        assertEquals(primaryKey.length, row.encodePrimaryKey(out));
+        assertEquals(partitionKey.length, partitionSchema.encodePartitionKey(row, out));
+        out.flip();
+        assertEquals(42, out.get());
+        byte[] written = new byte[primaryKey.length];
+        out.get(written);
+        assertBytesEquals(written, primaryKey);
+        written = new byte[partitionKey.length];
+        out.get(written);
+        assertBytesEquals(written, partitionKey);
+        assertFalse(out.hasRemaining());
+      }
+
+      // A key that doesn't fit leaves the buffer as it was.
+      ByteBuffer tooSmall = ByteBuffer.allocate(primaryKey.length - 1);
+      try {
+        row.encodePrimaryKey(tooSmall);
+        fail("Expected a BufferOverflowException");
+      } catch (BufferOverflowException e) {
+        assertEquals(0, tooSmall.position());
+      }
+    }
+  }
+
+  @Test
+  public void testEncodePartitionKeys() {
+    Schema schema = buildSchema(
+        new ColumnSchemaBuilder("a", Type.INT32).key(true),
+        new ColumnSchemaBuilder("b", Type.STRING).key(true));
+    PartitionSchema partitionSchema = hashPartitionSchema(schema);
+    List<PartialRow> rows = buildRows(schema, 100);
+
+    List<byte[]> keys = partitionSchema.encodePartitionKeys(rows);
+    assertEquals(rows.size(), keys.size());
+    for (int i = 0; i < rows.size(); i++) {
+      assertBytesEquals(keys.get(i), new KeyEncoder().encodePartitionKey(rows.get(i),
+                                                                          partitionSchema));
+    }
+  }
+
+  private static ByteString bucketKey(int bucket) {
+    return ByteString.copyFrom(new byte[] { 0, 0, 0, (byte) bucket });
+  }
+
+  @Test
+  public void testGetTabletsOfRows() throws Exception {
+    Schema schema = buildSchema(
+        new ColumnSchemaBuilder("a", Type.INT32).key(true),
+        new ColumnSchemaBuilder("b", Type.STRING).key(true));
+    PartitionSchema partitionSchema = hashPartitionSchema(schema);
+
+    // Never connected, the tablets have no replicas. The table is split in 4 tablets on the hash
+    // bucket, but the last one isn't cached yet.
+    AsyncYBClient client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1:1").build();
+    try {
+      YBTable table = new YBTable(client, "table", "table-id", schema, partitionSchema);
+      MasterClientOuterClass.GetTableLocationsResponsePB.Builder response =
+          MasterClientOuterClass.GetTableLocationsResponsePB.newBuilder();
+      for (int i = 0; i < 3; i++) {
+        Common.PartitionPB.Builder partition = Common.PartitionPB.newBuilder();
+        if (i > 0) {
+          partition.setPartitionKeyStart(bucketKey(8 * i));
+        }
+        partition.setPartitionKeyEnd(bucketKey(8 * i + 8));
+        response.addTabletLocations(MasterClientOuterClass.TabletLocationsPB.newBuilder()
+            .setTabletId(ByteString.copyFromUtf8("tablet-" + i))
+            .setPartition(partition)
+            .setStale(false));
+      }
+      client.discoverTablets(table, response.build());
+
+      List<PartialRow> rows = buildRows(schema, 100);
+      AsyncYBClient.RemoteTablet[] tablets = client.getTablets(table, rows);
+      assertEquals(rows.size(), tablets.length);
+      int numUncached = 0;
+      for (int i = 0; i < rows.size(); i++) {
+        byte[] partitionKey = partitionSchema.encodePartitionKey(rows.get(i));
+        assertSame(client.getTablet("table-id", partitionKey), tablets[i]);
+        if (tablets[i] == null) {
+          numUncached++;
+          assertTrue(partitionKey[3] >= 24);
+        }
+      }
+      assertTrue(numUncached > 0 && numUncached < rows.size());
+    } finally {
+      client.close();
+    }
+  }
 }
@@ -0,0 +1,99 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+@RunWith(value = YBTestRunner.class)
+public class TestPickConnection {
+  private AsyncYBClient ybClient;
+
+  @Before
+  public void setUp() {
+    // Never connected, only used to build the TabletClients.
+    ybClient = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1:1").build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    ybClient.close();
+  }
+
+  private TabletClient connection(boolean alive, int inflight) {
+    return new TabletClient(ybClient, "ts1") {
+      @Override
+      public boolean isAlive() {
+        return alive;
+      }
+
+      @Override
+      int getNumRpcsInFlight() {
+        return inflight;
+      }
+    };
+  }
+
+  @Test
+  public void testIdleFirstConnection() {
+    TabletClient first = connection(true, 0);
+    List<Integer> opened = new ArrayList<>();
+    TabletClient picked = AsyncYBClient.pickLeastLoaded(first, 4, slot -> {
+      opened.add(slot);
+      return connection(true, 0);
+    });
+    assertSame(first, picked);
+    // The additional connections aren't opened while the first one is idle.
+    assertTrue(opened.isEmpty());
+  }
+
+  @Test
+  public void testLeastLoaded() {
+    TabletClient first = connection(true, 5);
+    TabletClient[] pooled = {null, connection(true, 3), connection(true, 1), connection(true, 2)};
+    assertSame(pooled[2], AsyncYBClient.pickLeastLoaded(first, 4, slot -> pooled[slot]));
+
+    // An idle connection is picked without looking at the next ones.
+    List<Integer> opened = new ArrayList<>();
+    TabletClient idle = connection(true, 0);
+    assertSame(idle, AsyncYBClient.pickLeastLoaded(first, 4, slot -> {
+      opened.add(slot);
+      return slot == 1 ? idle : pooled[slot];
+    }));
+    assertEquals(1, opened.size());
+  }
+
+  @Test
+  public void testDeadConnectionsSkipped() {
+    // A dead additional connection isn't picked, however few RPCs it had.
+    TabletClient first = connection(true, 5);
+    TabletClient dead = connection(false, 0);
+    TabletClient live = connection(true, 2);
+    assertSame(live, AsyncYBClient.pickLeastLoaded(first, 3, slot -> slot == 1 ? dead : live));
+
+    // A dead first connection falls back to a live additional one, even a busier one.
+    TabletClient deadFirst = connection(false, 0);
+    TabletClient busy = connection(true, 10);
+    assertSame(busy, AsyncYBClient.pickLeastLoaded(deadFirst, 2, slot -> busy));
+
+    // Without live connections the first one is used, and the RPC retried once it fails.
+    assertSame(deadFirst, AsyncYBClient.pickLeastLoaded(deadFirst, 2, slot -> dead));
+  }
+}
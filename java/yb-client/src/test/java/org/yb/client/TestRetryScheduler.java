@@ -0,0 +1,301 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+package org.yb.client;
+import static org.yb.AssertionWrappers.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.WireProtocol;
+import org.yb.YBTestRunner;
+import org.yb.tserver.TserverTypes;
+
+@RunWith(value = YBTestRunner.class)
+public class TestRetryScheduler {
+
+  /**
+   * A timer whose timeouts only expire when the test advances its clock.
+   */
+  private static class ManualTimer implements Timer {
+    long nowNanos = 0;
+    int numTimeouts = 0;
+    private final List<ManualTimeout> pending = new ArrayList<>();
+
+    private class ManualTimeout implements Timeout {
+      final TimerTask task;
+      final long dueNanos;
+      boolean expired;
+      boolean cancelled;
+
+      ManualTimeout(TimerTask task, long dueNanos) {
+        this.task = task;
+        this.dueNanos = dueNanos;
+      }
+
+      @Override
+      public Timer getTimer() {
+        return ManualTimer.this;
+      }
+
+      @Override
+      public TimerTask getTask() {
+        return task;
+      }
+
+      @Override
+      public boolean isExpired() {
+        return expired;
+      }
+
+      @Override
+      public boolean isCancelled() {
+        return cancelled;
+      }
+
+      @Override
+      public void cancel() {
+        cancelled = true;
+        pending.remove(this);
+      }
+    }
+
+    @Override
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+      numTimeouts++;
+      ManualTimeout timeout = new ManualTimeout(task, nowNanos + unit.toNanos(delay));
+      pending.add(timeout);
+      return timeout;
+    }
+
+    @Override
+    public Set<Timeout> stop() {
+      Set<Timeout> stopped = new HashSet<>(pending);
+      pending.clear();
+      return stopped;
+    }
+
+    /**
+     * Advances the clock, and runs the timeouts due by then.
+     */
+    void advance(long millis) throws Exception {
+      nowNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+      while (true) {
+        ManualTimeout due = null;
+        for (ManualTimeout timeout : pending) {
+          if (timeout.dueNanos <= nowNanos && (due == null || timeout.dueNanos < due.dueNanos)) {
+            due = timeout;
+          }
+        }
+        if (due == null) {
+          return;
+        }
+        pending.remove(due);
+        due.expired = true;
+        due.task.run(due);
+      }
+    }
+  }
+
+  private final ManualTimer timer = new ManualTimer();
+  private final RetryScheduler scheduler = new RetryScheduler(timer, 10, () -> timer.nowNanos);
+
+  private static YBException notTheLeader() {
+    return new TabletServerErrorException("ts1", TserverTypes.TabletServerErrorPB.newBuilder()
+        .setCode(TserverTypes.TabletServerErrorPB.Code.NOT_THE_LEADER)
+        .setStatus(WireProtocol.AppStatusPB.newBuilder()
+            .setCode(WireProtocol.AppStatusPB.ErrorCode.ILLEGAL_STATE))
+        .build());
+  }
+
+  @Test
+  public void testBackoffIsBoundedByDeadline() {
+    DeadlineTracker noDeadline = new DeadlineTracker();
+    for (int attempt = 1; attempt < 100; attempt++) {
+      long delay = RetryScheduler.backoffMs(attempt, noDeadline);
+      assertGreaterThanOrEqualTo(delay, 0L);
+      assertLessThanOrEqualTo(delay, RetryScheduler.MAX_DELAY_MS);
+    }
+    assertLessThanOrEqualTo(RetryScheduler.backoffMs(1, noDeadline),
+        RetryScheduler.BASE_DELAY_MS);
+
+    // Half the time left at most, so that there is time left to retry.
+    DeadlineTracker deadline = new DeadlineTracker();
+    for (int attempt = 1; attempt < 100; attempt++) {
+      deadline.setDeadline(deadline.getElapsedMillis() + 100);
+      assertLessThanOrEqualTo(RetryScheduler.backoffMs(attempt, deadline), 50L);
+    }
+  }
+
+  @Test
+  public void testRetryBudget() {
+    for (int i = 0; i < 10; i++) {
+      assertTrue(scheduler.tryAcquireRetry("ts1"));
+    }
+    assertFalse(scheduler.tryAcquireRetry("ts1"));
+    // Other servers have their own budget.
+    assertTrue(scheduler.tryAcquireRetry("ts2"));
+
+    // Ten successful responses give a retry back.
+    for (int i = 0; i < 10; i++) {
+      scheduler.onSuccess("ts1");
+    }
+    assertTrue(scheduler.tryAcquireRetry("ts1"));
+    assertFalse(scheduler.tryAcquireRetry("ts1"));
+
+    // The budget doesn't grow past its maximum.
+    for (int i = 0; i < 1000; i++) {
+      scheduler.onSuccess("ts2");
+    }
+    assertEquals(10.0, scheduler.getRetryTokens("ts2"), 0.0);
+  }
+
+  @Test
+  public void testChargedRetries() {
+    assertTrue(RetryScheduler.chargesRetry(true, notTheLeader()));
+    assertTrue(RetryScheduler.chargesRetry(false, new ConnectionResetException(null)));
+    assertFalse(RetryScheduler.chargesRetry(false, notTheLeader()));
+
+    for (int i = 0; i < 10; i++) {
+      assertTrue(scheduler.scheduleRetry("ts1", "tablet1", true, 100, () -> {}));
+    }
+    assertFalse(scheduler.scheduleRetry("ts1", "tablet1", true, 100, () -> {}));
+    assertEquals(10, scheduler.getNumWaiting("ts1"));
+  }
+
+  @Test
+  public void testLeaderChangeUnderLoad() throws Exception {
+    // The leader of the tablet moves away from ts1: all the RPCs in flight on it fail with
+    // NOT_THE_LEADER, many times the budget of ts1.
+    int numRpcs = 1000;
+    AtomicInteger sent = new AtomicInteger();
+    YBException ex = notTheLeader();
+    for (int i = 0; i < numRpcs; i++) {
+      boolean charged = RetryScheduler.chargesRetry(false, ex);
+      assertTrue(scheduler.scheduleRetry("ts1", "tablet1", charged, 1000 + i,
+                                         sent::incrementAndGet));
+    }
+    assertEquals(10.0, scheduler.getRetryTokens("ts1"), 0.0);
+    assertEquals(0, scheduler.getNumWaiting("ts1"));
+    String tablet = RetryScheduler.tabletDestination("tablet1");
+    assertEquals(numRpcs, scheduler.getNumWaiting(tablet));
+
+    // The first retry is due, and looks up the new leader.
+    timer.advance(1000);
+    assertEquals(1 + RetryScheduler.COALESCE_WINDOW_MS, sent.get());
+    // Once the lookup found it, the others don't wait more.
+    scheduler.wakeUp(tablet);
+    timer.advance(0);
+    assertEquals(numRpcs, sent.get());
+    assertEquals(0, scheduler.getNumWaiting(tablet));
+    assertEquals(10.0, scheduler.getRetryTokens("ts1"), 0.0);
+    assertEquals(0, scheduler.getNumDestinations());
+  }
+
+  @Test
+  public void testRetriesAreCoalesced() throws Exception {
+    int numRetries = 100;
+    AtomicInteger sent = new AtomicInteger();
+    // The first retry is the earliest, the others are due within the same window.
+    scheduler.schedule("ts1", 100, sent::incrementAndGet);
+    for (int i = 1; i < numRetries; i++) {
+      scheduler.schedule("ts1", 100 + i % 5, sent::incrementAndGet);
+    }
+    // A retry due after the window.
+    scheduler.schedule("ts1", 200, sent::incrementAndGet);
+    assertEquals(numRetries + 1, scheduler.getNumWaiting("ts1"));
+    assertEquals(1, timer.numTimeouts);
+
+    timer.advance(99);
+    assertEquals(0, sent.get());
+    timer.advance(1);
+    assertEquals(numRetries, sent.get());
+    // The wakeup of the retry left.
+    assertEquals(2, timer.numTimeouts);
+    timer.advance(100);
+    assertEquals(numRetries + 1, sent.get());
+    assertEquals(0, scheduler.getNumWaiting("ts1"));
+    assertEquals(2, timer.numTimeouts);
+  }
+
+  @Test
+  public void testEarlierRetryReplacesWakeup() throws Exception {
+    AtomicInteger sent = new AtomicInteger();
+    scheduler.schedule("ts1", 1000, sent::incrementAndGet);
+    scheduler.schedule("ts1", 100, sent::incrementAndGet);
+    assertEquals(2, timer.numTimeouts);
+    timer.advance(100);
+    assertEquals(1, sent.get());
+    timer.advance(900);
+    assertEquals(2, sent.get());
+  }
+
+  @Test
+  public void testWakeUp() throws Exception {
+    AtomicInteger sent = new AtomicInteger();
+    for (int i = 0; i < 10; i++) {
+      scheduler.schedule(RetryScheduler.MASTER_LEADER, 60000, sent::incrementAndGet);
+    }
+    scheduler.schedule("ts1", 60000, sent::incrementAndGet);
+
+    // The retries are sent by the timer, not by the caller, e.g. a Netty IO thread.
+    scheduler.wakeUp(RetryScheduler.MASTER_LEADER);
+    assertEquals(0, sent.get());
+    timer.advance(0);
+    assertEquals(10, sent.get());
+    assertEquals(0, scheduler.getNumWaiting(RetryScheduler.MASTER_LEADER));
+    assertEquals(1, scheduler.getNumWaiting("ts1"));
+
+    // Waking up a destination without retries is a no-op.
+    scheduler.wakeUp(RetryScheduler.MASTER_LEADER);
+    scheduler.wakeUp(RetryScheduler.tabletDestination("tablet1"));
+    timer.advance(0);
+    assertEquals(10, sent.get());
+  }
+
+  @Test
+  public void testIdleDestinationsAreDropped() throws Exception {
+    AtomicInteger sent = new AtomicInteger();
+    // Tablets that split or moved away leave nothing behind once their retries are sent.
+    for (int i = 0; i < 100; i++) {
+      scheduler.scheduleRetry("ts1", "tablet" + i, false, 10, sent::incrementAndGet);
+    }
+    assertEquals(100, scheduler.getNumDestinations());
+    timer.advance(10);
+    assertEquals(100, sent.get());
+    assertEquals(0, scheduler.getNumDestinations());
+
+    // A server keeps its used budget until its successful responses gave it back.
+    assertTrue(scheduler.scheduleRetry("ts1", "tablet1", true, 10, sent::incrementAndGet));
+    timer.advance(10);
+    assertEquals(1, scheduler.getNumDestinations());
+    assertEquals(9.0, scheduler.getRetryTokens("ts1"), 0.0);
+    for (int i = 0; i < 10; i++) {
+      scheduler.onSuccess("ts1");
+    }
+    assertEquals(0, scheduler.getNumDestinations());
+    assertEquals(10.0, scheduler.getRetryTokens("ts1"), 0.0);
+
+    // A dropped destination is created again by the next retry.
+    assertTrue(scheduler.scheduleRetry("ts1", "tablet1", true, 10, sent::incrementAndGet));
+    assertEquals(1, scheduler.getNumWaiting("ts1"));
+    assertEquals(9.0, scheduler.getRetryTokens("ts1"), 0.0);
+  }
+}
@@ -0,0 +1,70 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.*;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+@RunWith(value = YBTestRunner.class)
+public class TestStripedClientMetrics {
+
+  @Test
+  public void testHistogramBuckets() {
+    for (long value : new long[] { 0, 1, 7, 8, 15, 16, 1000, 123456789, Long.MAX_VALUE }) {
+      int index = LatencyHistogram.bucketIndex(value);
+      assertLessThanOrEqualTo(LatencyHistogram.bucketLowerBound(index), value);
+      assertGreaterThanOrEqualTo(LatencyHistogram.bucketUpperBound(index), value);
+    }
+  }
+
+  @Test
+  public void testHistogramQuantiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1000000L, histogram.getMax());
+    // Within the relative error of the buckets.
+    long p50 = histogram.getValueAtQuantile(0.5);
+    assertGreaterThanOrEqualTo(p50, 500000L);
+    assertLessThanOrEqualTo(p50, 500000L + 500000L / LatencyHistogram.SUB_BUCKETS);
+    assertEquals(1000000L, histogram.getValueAtQuantile(1.0));
+  }
+
+  @Test
+  public void testPrometheusText() {
+    StripedClientMetrics metrics = new StripedClientMetrics();
+    metrics.rpcCompleted("Write", 1000, 2000, true);
+    metrics.rpcCompleted("Write", 1000, 2000, false);
+    metrics.rpcRetried("Write", new ConnectionResetException("reset"));
+    metrics.tabletCacheLookup(true);
+    metrics.tabletCacheLookup(false);
+
+    assertEquals(2, metrics.getRpcCount("Write"));
+    assertEquals(1, metrics.getRetryCount("Write", ConnectionResetException.class));
+    assertEquals(1, metrics.getTabletCacheHits());
+
+    String text = metrics.toPrometheusText();
+    assertTrue(text.contains("# TYPE yb_client_rpc_latency_seconds summary\n"));
+    assertTrue(text.contains(
+        "yb_client_rpc_latency_seconds_count{method=\"Write\",phase=\"wire\"} 2\n"));
+    assertTrue(text.contains("yb_client_rpc_failures_total{method=\"Write\"} 1\n"));
+    assertTrue(text.contains(
+        "yb_client_rpc_retries_total{method=\"Write\",cause=\"ConnectionResetException\"} 1\n"));
+    assertTrue(text.contains("yb_client_tablet_cache_lookups_total{result=\"miss\"} 1\n"));
+  }
+}
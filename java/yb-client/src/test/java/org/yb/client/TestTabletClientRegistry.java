@@ -0,0 +1,95 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+@RunWith(value = YBTestRunner.class)
+public class TestTabletClientRegistry {
+  private AsyncYBClient ybClient;
+
+  @Before
+  public void setUp() {
+    // Never connected, only used to build the TabletClients.
+    ybClient = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1:1").build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    ybClient.close();
+  }
+
+  @Test
+  public void testCreateOrGet() {
+    TabletClientRegistry registry = new TabletClientRegistry();
+    AtomicInteger created = new AtomicInteger();
+    TabletClient first = registry.getOrCreate("10.0.0.1:9100", address -> {
+      created.incrementAndGet();
+      return new TabletClient(ybClient, "ts1");
+    });
+    TabletClient second = registry.getOrCreate("10.0.0.1:9100", address -> {
+      created.incrementAndGet();
+      return new TabletClient(ybClient, "ts1");
+    });
+    assertSame(first, second);
+    assertEquals(1, created.get());
+    assertEquals("10.0.0.1:9100", registry.addressOf(first));
+    assertEquals(1, registry.size());
+    assertEquals(1, registry.getNumCreated());
+  }
+
+  @Test
+  public void testRemoveByIdentity() {
+    TabletClientRegistry registry = new TabletClientRegistry();
+    TabletClient client = registry.getOrCreate("10.0.0.1:9100",
+        address -> new TabletClient(ybClient, "ts1"));
+    assertEquals("10.0.0.1:9100", registry.remove(client));
+    assertNull(registry.addressOf(client));
+    assertTrue(registry.isEmpty());
+
+    // A late disconnect of the old client must not evict the new one.
+    TabletClient replacement = registry.getOrCreate("10.0.0.1:9100",
+        address -> new TabletClient(ybClient, "ts1"));
+    assertNull(registry.remove(client));
+    assertSame(replacement, registry.get("10.0.0.1:9100"));
+    assertEquals(2, registry.getNumCreated());
+    assertEquals(1, registry.getNumRemoved());
+  }
+
+  @Test
+  public void testPooledConnections() {
+    TabletClientRegistry registry = new TabletClientRegistry();
+    TabletClient primary = registry.getOrCreate("10.0.0.1:9100",
+        address -> new TabletClient(ybClient, "ts1"));
+    String pooledAddress = TabletClientRegistry.pooledAddress("10.0.0.1:9100", 1);
+    assertTrue(TabletClientRegistry.isPooledAddress(pooledAddress));
+    assertFalse(TabletClientRegistry.isPooledAddress("10.0.0.1:9100"));
+
+    TabletClient pooled = registry.getOrCreate(pooledAddress,
+        address -> new TabletClient(ybClient, "ts1"));
+    assertNotSame(primary, pooled);
+    assertSame(primary, registry.primaryOf(pooled));
+    assertSame(primary, registry.primaryOf(primary));
+
+    // Without its primary, a pooled connection stands for itself.
+    registry.remove(primary);
+    assertSame(pooled, registry.primaryOf(pooled));
+  }
+}
@@ -0,0 +1,93 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.*;
+
+import com.stumbleupon.async.Deferred;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+import org.yb.master.MasterClientOuterClass.GetTableLocationsResponsePB;
+
+@RunWith(value = YBTestRunner.class)
+public class TestTabletLookupTracker {
+
+  @Test
+  public void testCoalescesSameKeyLookups() throws Exception {
+    TabletLookupTracker tracker = new TabletLookupTracker(1000);
+    assertNull(tracker.joinOrRegister("table", null));
+
+    // The same key joins the lookup in flight, the same key of other tables does not.
+    Deferred<GetTableLocationsResponsePB> joined = tracker.joinOrRegister("table", new byte[0]);
+    assertNotNull(joined);
+    assertNull(tracker.joinOrRegister("other", null));
+    assertEquals(1, tracker.numInflight("table"));
+
+    GetTableLocationsResponsePB response = GetTableLocationsResponsePB.getDefaultInstance();
+    Deferred<GetTableLocationsResponsePB> lookup = new Deferred<>();
+    tracker.complete("table", null, lookup);
+    lookup.callback(response);
+    assertSame(response, joined.join(1000));
+    assertEquals(0, tracker.numInflight("table"));
+
+    // Once completed, the next lookup is sent again.
+    assertNull(tracker.joinOrRegister("table", new byte[]{1}));
+  }
+
+  @Test
+  public void testLookupsOfOtherKeysAreNotCoalesced() throws Exception {
+    TabletLookupTracker tracker = new TabletLookupTracker(1000);
+    assertNull(tracker.joinOrRegister("table", new byte[]{5}));
+    // Keys before and after the lookup in flight are looked up in parallel with it, the page of
+    // tablets it returns may not reach them.
+    assertNull(tracker.joinOrRegister("table", new byte[]{1}));
+    assertNull(tracker.joinOrRegister("table", new byte[]{9}));
+    assertNotNull(tracker.joinOrRegister("table", new byte[]{9}));
+    assertEquals(3, tracker.numInflight("table"));
+  }
+
+  @Test
+  public void testJoinedLookupFailure() throws Exception {
+    TabletLookupTracker tracker = new TabletLookupTracker(1000);
+    assertNull(tracker.joinOrRegister("table", null));
+    Deferred<GetTableLocationsResponsePB> joined = tracker.joinOrRegister("table", null);
+
+    Deferred<GetTableLocationsResponsePB> lookup = new Deferred<>();
+    tracker.complete("table", null, lookup);
+    lookup.callback(new NonRecoverableException("no master"));
+    try {
+      joined.join(1000);
+      fail("The failure of the lookup should have been passed on");
+    } catch (NonRecoverableException e) {
+      assertEquals("no master", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testNotServedRecheckedOncePerTtl() throws Exception {
+    TabletLookupTracker tracker = new TabletLookupTracker(50);
+    assertFalse(tracker.shouldRecheckNotServed("table"));
+
+    tracker.markNotServed("table");
+    assertTrue(tracker.isNotServed("table"));
+    assertFalse(tracker.shouldRecheckNotServed("table"));
+
+    Thread.sleep(60);
+    assertTrue(tracker.shouldRecheckNotServed("table"));
+    assertFalse(tracker.shouldRecheckNotServed("table"));
+
+    tracker.markServed("table");
+    assertFalse(tracker.isNotServed("table"));
+  }
+}
@@ -14,9 +14,11 @@
 package com.yugabyte.sample.apps;
 
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.security.KeyStore;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
@@ -25,13 +27,19 @@ import java.sql.DriverManager;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.zip.Adler32;
 import java.util.zip.Checksum;
@@ -43,7 +51,15 @@ import com.datastax.oss.driver.api.core.AllNodesFailedException;
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.CqlSessionBuilder;
+import com.datastax.oss.driver.api.core.config.DefaultDriverOption;
+import com.datastax.oss.driver.api.core.config.DriverConfigLoader;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
 import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
 import com.datastax.oss.driver.api.core.loadbalancing.LoadBalancingPolicy;
 import com.datastax.oss.driver.api.core.metadata.EndPoint;
 import com.datastax.oss.driver.api.core.metadata.Metadata;
@@ -53,6 +69,7 @@ import com.datastax.oss.driver.internal.core.retry.DefaultRetryPolicy;
 
 import com.yugabyte.sample.common.CmdLineOpts;
 import com.yugabyte.sample.common.CmdLineOpts.ContactPoint;
+import com.yugabyte.sample.common.OpenLoopSchedule;
 import com.yugabyte.sample.common.SimpleLoadGenerator;
 import com.yugabyte.sample.common.SimpleLoadGenerator.Key;
 import com.yugabyte.sample.common.metrics.MetricsTracker;
@@ -102,6 +119,11 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
   private volatile JedisCluster jedisCluster = null;
   // Instances of the load generator.
   private static volatile SimpleLoadGenerator simpleLoadGenerator = null;
+  // Schedules of the reads and of the writes in open-loop mode.
+  private static volatile OpenLoopSchedule readSchedule = null;
+  private static volatile OpenLoopSchedule writeSchedule = null;
+  // Bounds the number of operations in flight in asynchronous mode.
+  private static volatile Semaphore opsInFlightPermits = null;
 
   // Is this app instance the main instance?
   private boolean mainInstance = false;
@@ -236,6 +258,12 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
       cassandra_session.close();
     }
     CqlSessionBuilder cqlSessionBldr = CqlSession.builder();
+    // Asynchronous workloads keep many requests in flight, spread them over the connections.
+    cqlSessionBldr = cqlSessionBldr.withConfigLoader(DriverConfigLoader.programmaticBuilder()
+        .withInt(DefaultDriverOption.CONNECTION_POOL_LOCAL_SIZE, appConfig.concurrentClients)
+        .withInt(DefaultDriverOption.CONNECTION_POOL_REMOTE_SIZE, appConfig.concurrentClients)
+        .withInt(DefaultDriverOption.CONNECTION_MAX_REQUESTS, appConfig.maxRequestsPerConnection)
+        .build());
     if (appConfig.dbUsername != null) {
       if (appConfig.dbPassword == null) {
         throw new IllegalArgumentException("Password required when providing a username");
@@ -330,6 +358,8 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
   Random random = new Random();
   byte[] buffer;
   Checksum checksum = new Adler32();
+  // Reused to write the "val: $key" prefix of the values.
+  private final byte[] keyValueBuffer = new byte[Key.MAX_VALUE_BYTES];
 
   // For binary values we store checksum in bytes.
   static final int CHECKSUM_SIZE = 4;
@@ -361,11 +391,16 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
   }
 
   protected void getRandomValue(Key key, int valueSize, byte[] outBuffer) {
-    final byte[] keyValueBytes = key.getValueStr().getBytes();
-    getRandomValue(keyValueBytes, valueSize, outBuffer);
+    final int keyValueLength = key.putValueBytes(keyValueBuffer);
+    getRandomValue(keyValueBuffer, keyValueLength, valueSize, outBuffer);
   }
 
   protected void getRandomValue(byte[] keyValueBytes, int valueSize, byte[] outBuffer) {
+    getRandomValue(keyValueBytes, keyValueBytes.length, valueSize, outBuffer);
+  }
+
+  protected void getRandomValue(byte[] keyValueBytes, int keyValueLength, int valueSize,
+                                byte[] outBuffer) {
     outBuffer[0] = appConfig.restrictValuesToAscii ? ASCII_MARKER : BINARY_MARKER;
     final int checksumSize = appConfig.restrictValuesToAscii ? CHECKSUM_ASCII_SIZE : CHECKSUM_SIZE;
     final boolean isUseChecksum = isUseChecksum(valueSize, checksumSize);
@@ -376,7 +411,7 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
       // Beginning of value is not random, but has format "<MARKER><PREFIX>", where prefix is
       // "val: $key" (or part of it in case small value size). This is needed to verify expected
       // value during read.
-      final int prefixSize = Math.min(contentSize - 1 /* marker */, keyValueBytes.length);
+      final int prefixSize = Math.min(contentSize - 1 /* marker */, keyValueLength);
       System.arraycopy(keyValueBytes, 0, outBuffer, 1, prefixSize);
       i += prefixSize;
     }
@@ -427,16 +462,17 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
     final int checksumSize = isAscii ? CHECKSUM_ASCII_SIZE : CHECKSUM_SIZE;
     final boolean hasChecksum = isUseChecksum(value.length, checksumSize);
     if (isUsePrefix(value.length)) {
-      final String keyValueStr = key.getValueStr();
-      final int prefixSize = Math.min(keyValueStr.length(), value.length -
+      final int keyValueLength = key.putValueBytes(keyValueBuffer);
+      final int prefixSize = Math.min(keyValueLength, value.length -
                              (hasChecksum ? checksumSize : 0) - 1 /* marker */);
-      final String prefix = new String(value, 1, prefixSize);
       // Check prefix.
-      if (!prefix.equals(keyValueStr.substring(0, prefixSize))) {
-        LOG.error("Value mismatch for key: " + key.toString() +
-                  ", expected to start with: " + keyValueStr +
-                  ", got: " + prefix);
-        return false;
+      for (int i = 0; i < prefixSize; ++i) {
+        if (value[i + 1] != keyValueBuffer[i]) {
+          LOG.error("Value mismatch for key: " + key.toString() +
+                    ", expected to start with: " + key.getValueStr() +
+                    ", got: " + new String(value, 1, prefixSize));
+          return false;
+        }
       }
     }
     if (hasChecksum) {
@@ -505,6 +541,58 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
     }
   }
 
+  /**
+   * Executes statements asynchronously, grouped by partition with groupByPartition().
+   * @param statements the statements to execute, writes of prepared statements.
+   * @return a future yielding the number of statements executed, completed once they all were.
+   */
+  protected CompletionStage<Long> executeAsyncByPartition(List<BoundStatement> statements) {
+    CqlSession session = getCassandraClient();
+    List<CompletableFuture<?>> results = new ArrayList<CompletableFuture<?>>();
+    for (Statement<?> statement : groupByPartition(statements)) {
+      results.add(session.executeAsync(statement).toCompletableFuture());
+    }
+    final long count = statements.size();
+    return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+                            .thenApply(v -> count);
+  }
+
+  /**
+   * Groups the statements for the same partition of the same table into unlogged batches, so that
+   * each group is a single write to a single tablet. The statements and the batches carry their
+   * routing key, so the driver sends each one straight to a replica of its partition. Statements
+   * without a routing key are left on their own.
+   * @param statements writes of prepared statements.
+   * @return the statements to execute: a batch for every partition written to more than once,
+   *         the statement itself for the others.
+   */
+  public static List<Statement<?>> groupByPartition(List<BoundStatement> statements) {
+    List<Statement<?>> grouped = new ArrayList<Statement<?>>();
+    Map<List<Object>, List<BoundStatement>> byPartition =
+        new LinkedHashMap<List<Object>, List<BoundStatement>>();
+    for (BoundStatement statement : statements) {
+      ByteBuffer routingKey = statement.getRoutingKey();
+      if (routingKey == null) {
+        grouped.add(statement);
+        continue;
+      }
+      ColumnDefinition column = statement.getPreparedStatement().getVariableDefinitions().get(0);
+      byPartition.computeIfAbsent(
+          Arrays.asList(column.getKeyspace(), column.getTable(), routingKey),
+          k -> new ArrayList<BoundStatement>()).add(statement);
+    }
+    for (List<BoundStatement> partition : byPartition.values()) {
+      if (partition.size() == 1) {
+        grouped.add(partition.get(0));
+      } else {
+        grouped.add(BatchStatement.newInstance(DefaultBatchType.UNLOGGED,
+                                               new ArrayList<BatchableStatement<?>>(partition))
+                                  .setRoutingKey(partition.get(0).getRoutingKey()));
+      }
+    }
+    return grouped;
+  }
+
   protected List<String> getCreateTableStatements() {
     return Arrays.asList();
   }
@@ -535,6 +623,29 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
    */
   public long doWrite(int threadIdx) { return 0; }
 
+  /**
+   * This call models an asynchronous OLTP read, issued in open-loop mode. Apps should override it
+   * to issue the read with the asynchronous API of their client (CqlSession.executeAsync() for the
+   * CQL apps), so that the IO thread is free to issue the next operations on schedule. The default
+   * implementation performs the read synchronously with doRead().
+   * @return a future yielding the number of reads done, a value of 0 or less indicates no ops
+   *         were done.
+   */
+  public CompletionStage<Long> doReadAsync() {
+    return CompletableFuture.completedFuture(doRead());
+  }
+
+  /**
+   * This call models an asynchronous OLTP write, issued in open-loop mode. See doReadAsync().
+   * The default implementation performs the write synchronously with doWrite().
+   * @return a future yielding the number of writes done, a value of 0 or less indicates no ops
+   *         were done.
+   * @param threadIdx index of thread that invoked this write.
+   */
+  public CompletionStage<Long> doWriteAsync(int threadIdx) {
+    return CompletableFuture.completedFuture(doWrite(threadIdx));
+  }
+
   /**
    * This call should implement the main logic in non-OLTP apps. Not called for OLTP apps.
    */
@@ -547,6 +658,15 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
   @Override
   public void appendMessage(StringBuilder sb) {
     sb.append("Uptime: " + (System.currentTimeMillis() - workloadStartTime) + " ms | ");
+    if (writeSchedule != null) {
+      sb.append("Open loop lag: reads " +
+                TimeUnit.NANOSECONDS.toMillis(readSchedule.getLagNanos()) + " ms, writes " +
+                TimeUnit.NANOSECONDS.toMillis(writeSchedule.getLagNanos()) + " ms | ");
+    }
+    SimpleLoadGenerator loadGenerator = simpleLoadGenerator;
+    if (loadGenerator != null && loadGenerator.getNumFailedKeys() > 0) {
+      sb.append("Failed keys: " + loadGenerator.getNumFailedKeys() + " | ");
+    }
   }
 
   /**
@@ -611,6 +731,13 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
         metricsTracker.createMetric(MetricName.Read);
         metricsTracker.createMetric(MetricName.Write);
         metricsTracker.registerStatusMessageAppender(this);
+        if (appConfig.metricsOutputFile != null) {
+          try {
+            metricsTracker.setOutputFile(appConfig.metricsOutputFile);
+          } catch (IOException e) {
+            LOG.error("Could not create metrics output file " + appConfig.metricsOutputFile, e);
+          }
+        }
         metricsTracker.start();
       }
     }
@@ -658,6 +785,24 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
     hasFinished.set(true);
   }
 
+  /**
+   * @return true if the operations are issued at the target rate whether the previous ones
+   *         completed or not (open loop), false if each IO thread issues its next operation once
+   *         the previous one completed (closed loop).
+   */
+  public boolean isOpenLoop() {
+    return appConfig.targetOpsPerSecond > 0;
+  }
+
+  /**
+   * @return true if the IO threads issue asynchronous operations with performReadAsync() and
+   *         performWriteAsync(), keeping several of them in flight, false if they perform one
+   *         operation at a time with performRead() and performWrite().
+   */
+  public boolean isAsync() {
+    return isOpenLoop() || appConfig.pipelined;
+  }
+
   private boolean isOutOfTime() {
     return appConfig.runTimeSeconds > 0 &&
         (System.currentTimeMillis() - workloadStartTime > appConfig.runTimeSeconds * 1000);
@@ -713,6 +858,130 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
     }
   }
 
+  /**
+   * Called by the framework in asynchronous mode to perform write operations - issues the next
+   * write with doWriteAsync() once there are less than maxOpsInFlight operations in flight, and
+   * measures its latency, whether it succeeded or not. In open-loop mode, the write is issued at its intended start time on the
+   * schedule, and its latency is measured from there rather than from the time it was sent.
+   * @param threadIdx index of thread that invoked this write.
+   * @return a future completed once the write completed, or null if the workload has finished.
+   * @throws InterruptedException if interrupted while waiting to issue the write.
+   */
+  public CompletableFuture<Void> performWriteAsync(int threadIdx) throws InterruptedException {
+    // If we have written enough keys we are done.
+    if (appConfig.numKeysToWrite >= 0 && numKeysWritten.get() >= appConfig.numKeysToWrite
+        || isOutOfTime()) {
+      hasFinished.set(true);
+      return null;
+    }
+    return performAsync(MetricName.Write, numKeysWritten, () -> doWriteAsync(threadIdx));
+  }
+
+  /**
+   * Called by the framework in asynchronous mode to perform read operations. See
+   * performWriteAsync().
+   * @return a future completed once the read completed, or null if the workload has finished.
+   * @throws InterruptedException if interrupted while waiting to issue the read.
+   */
+  public CompletableFuture<Void> performReadAsync() throws InterruptedException {
+    // If we have read enough keys we are done.
+    if (appConfig.numKeysToRead >= 0 && numKeysRead.get() >= appConfig.numKeysToRead
+        || isOutOfTime()) {
+      hasFinished.set(true);
+      return null;
+    }
+    return performAsync(MetricName.Read, numKeysRead, this::doReadAsync);
+  }
+
+  private CompletableFuture<Void> performAsync(MetricName metricName, AtomicLong numKeys,
+                                               Supplier<CompletionStage<Long>> op)
+      throws InterruptedException {
+    final Semaphore permits = getOpsInFlightPermits();
+    final long intendedStartTs;
+    if (isOpenLoop()) {
+      // Waiting for a permit delays the operation past its intended start, which is accounted
+      // for in its latency.
+      intendedStartTs = getOpenLoopSchedule(metricName).awaitNextOp();
+      permits.acquire();
+    } else {
+      permits.acquire();
+      intendedStartTs = System.nanoTime();
+    }
+    CompletionStage<Long> result;
+    try {
+      result = op.get();
+    } catch (RuntimeException e) {
+      permits.release();
+      recordFailedOp(metricName, System.nanoTime() - intendedStartTs);
+      throw e;
+    }
+    return result.whenComplete((count, e) -> {
+      long latencyNanos = System.nanoTime() - intendedStartTs;
+      if (e != null) {
+        recordFailedOp(metricName, latencyNanos);
+      } else if (count > 0) {
+        numKeys.addAndGet(count);
+        if (metricsTracker != null) {
+          metricsTracker.getMetric(metricName).accumulate(count, latencyNanos);
+        }
+      }
+    }).whenComplete((count, e) -> permits.release()).thenAccept(count -> {})
+        .toCompletableFuture();
+  }
+
+  /**
+   * Records the latency of an operation that failed or timed out as that of a single operation.
+   * These are the slowest operations while the cluster stalls, leaving them out would hide the
+   * stall from the latencies the same way a closed loop does.
+   */
+  private void recordFailedOp(MetricName metricName, long latencyNanos) {
+    if (metricsTracker != null) {
+      metricsTracker.getMetric(metricName).accumulate(1, latencyNanos);
+    }
+  }
+
+  private OpenLoopSchedule getOpenLoopSchedule(MetricName metricName) {
+    if (writeSchedule == null) {
+      synchronized (AppBase.class) {
+        if (writeSchedule == null) {
+          // Split the target rate between reads and writes by their number of threads.
+          int numReaders = configuration.getNumReaderThreads();
+          int numWriters = configuration.getNumWriterThreads();
+          double target = appConfig.targetOpsPerSecond;
+          int numThreads = numReaders + numWriters;
+          readSchedule = new OpenLoopSchedule(
+              numReaders == 0 ? target : target * numReaders / numThreads);
+          writeSchedule = new OpenLoopSchedule(
+              numWriters == 0 ? target : target * numWriters / numThreads);
+        }
+      }
+    }
+    return metricName == MetricName.Read ? readSchedule : writeSchedule;
+  }
+
+  private static Semaphore getOpsInFlightPermits() {
+    if (opsInFlightPermits == null) {
+      synchronized (AppBase.class) {
+        if (opsInFlightPermits == null) {
+          opsInFlightPermits = new Semaphore(appConfig.maxOpsInFlight);
+        }
+      }
+    }
+    return opsInFlightPermits;
+  }
+
+  /**
+   * Logs the total number of operations and their latency percentiles over the whole run, after
+   * writing the metrics of the last interval to the metrics output file and closing it. Called by
+   * the framework once all the IO threads have finished.
+   */
+  public static void logMetricsSummary() {
+    if (metricsTracker != null) {
+      metricsTracker.closeOutputFile();
+      metricsTracker.logSummary();
+    }
+  }
+
   @Override
   public String appenderName() {
     return this.getClass().getSimpleName();
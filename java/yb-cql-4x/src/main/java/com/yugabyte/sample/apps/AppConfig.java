@@ -140,6 +140,26 @@ public class AppConfig {
   // Run time for workload. Negative values means no limit.
   public long runTimeSeconds = -1;
 
+  // Target rate of operations per second, reads and writes together, in open-loop mode. The
+  // operations are issued at this rate whether the previous ones completed or not, and their
+  // latency is measured from the time they were meant to start. Zero or less means closed loop,
+  // where each IO thread issues its next operation once the previous one completed.
+  public double targetOpsPerSecond = -1;
+
+  // Issue the operations asynchronously, keeping up to maxOpsInFlight of them in flight, rather
+  // than one at a time per IO thread. Implied by the open-loop mode.
+  public boolean pipelined = false;
+
+  // Maximum number of operations in flight in asynchronous mode, across all the IO threads.
+  public int maxOpsInFlight = 1024;
+
+  // Maximum number of requests in flight on each CQL connection.
+  public int maxRequestsPerConnection = 1024;
+
+  // File to write the metrics to, as CSV or as JSON lines if it ends in ".json". The metrics are
+  // only logged if not set.
+  public String metricsOutputFile = null;
+
   public String localDc;
 
   // Used by CassandraPersonalization workload.
@@ -13,10 +13,13 @@
 
 package com.yugabyte.sample.apps;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -177,6 +180,24 @@ public class CassandraStockTicker extends AppBase {
     return 1;
   }
 
+  @Override
+  public CompletionStage<Long> doReadAsync() {
+    // Pick a random data source.
+    TickerInfo dataSource = tickers.get(random.nextInt(tickers.size()));
+    // Make sure it has emitted data, otherwise there is nothing to read.
+    if (!dataSource.getHasEmittedData()) {
+      return CompletableFuture.completedFuture(0L);
+    }
+
+    // Bind the select statement.
+    BoundStatement select = getPreparedSelectLatest().bind(dataSource.getTickerId());
+    // Make the query, the latest row fits in the first page.
+    return getCassandraClient().executeAsync(select).thenApply(rs -> {
+      num_rows_read.addAndGet(rs.remaining());
+      return 1L;
+    });
+  }
+
   private PreparedStatement getPreparedInsertRaw()  {
     if (preparedInsertRaw == null) {
       synchronized (prepareInitLock) {
@@ -261,6 +282,51 @@ public class CassandraStockTicker extends AppBase {
     return numKeysWritten;
   }
 
+  @Override
+  public CompletionStage<Long> doWriteAsync(int threadIdx) {
+    // Pick random data sources and write the data points they have due, up to batch_size data
+    // points in all. A data source which lags behind its emit rate has several data points due,
+    // which go into the same partition and are thus written as a single batch. The data points
+    // are claimed before they are written, so that the other operations in flight pick others.
+    List<TickerInfo> dataSources = new ArrayList<TickerInfo>(appConfig.batchSize);
+    List<BoundStatement> inserts = new ArrayList<BoundStatement>(2 * appConfig.batchSize);
+    int numDataPoints = 0;
+    for (int i = 0; i < appConfig.batchSize && numDataPoints < appConfig.batchSize; i++) {
+      TickerInfo dataSource = tickers.get(random.nextInt(tickers.size()));
+      if (dataSources.contains(dataSource)) {
+        continue;
+      }
+      List<Long> timestamps =
+          dataSource.claimDataEmitTsBacklog(appConfig.batchSize - numDataPoints);
+      if (timestamps.isEmpty()) {
+        continue;
+      }
+      dataSources.add(dataSource);
+      for (long ts : timestamps) {
+        String value = String.format("value-%s", ts);
+        // Insert the row.
+        inserts.add(getPreparedInsertRaw().bind(dataSource.getTickerId(), new Date(ts), value));
+        // With some probability, insert into the minutely table.
+        if (random.nextInt(60000) < data_emit_rate_millis) {
+          inserts.add(getPreparedInsertMin().bind(dataSource.getTickerId(), new Date(ts), value));
+        }
+        numDataPoints++;
+      }
+    }
+    // If we have nothing to write, back off as doWrite() does rather than spin on the IO thread.
+    if (inserts.isEmpty()) {
+      try {
+        Thread.sleep(100 /* millisecs */);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return CompletableFuture.completedFuture(0L);
+    }
+
+    // The inserts of a ticker into the same table are batched together.
+    return executeAsyncByPartition(inserts);
+  }
+
   @Override
   public void appendMessage(StringBuilder sb) {
     super.appendMessage(sb);
@@ -322,6 +388,9 @@ public class CassandraStockTicker extends AppBase {
       "--num_threads_write " + appConfig.numWriterThreads,
       "--num_ticker_symbols " + num_ticker_symbols,
       "--data_emit_rate_millis " + data_emit_rate_millis,
-      "--table_ttl_seconds " + appConfig.tableTTLSeconds);
+      "--table_ttl_seconds " + appConfig.tableTTLSeconds,
+      "--pipelined",
+      "--max_ops_in_flight " + appConfig.maxOpsInFlight,
+      "--batch_size " + appConfig.batchSize);
   }
 }
@@ -125,6 +125,30 @@ public class CmdLineOpts {
     }
     LOG.info("Run time (seconds): " + AppBase.appConfig.runTimeSeconds);
 
+    if (commandLine.hasOption("target_ops_per_sec")) {
+      AppBase.appConfig.targetOpsPerSecond =
+          Double.parseDouble(commandLine.getOptionValue("target_ops_per_sec"));
+      LOG.info("Open loop, target ops/sec: " + AppBase.appConfig.targetOpsPerSecond);
+    }
+    if (commandLine.hasOption("metrics_output_file")) {
+      AppBase.appConfig.metricsOutputFile = commandLine.getOptionValue("metrics_output_file");
+    }
+    if (commandLine.hasOption("pipelined")) {
+      AppBase.appConfig.pipelined = true;
+    }
+    if (commandLine.hasOption("max_requests_per_connection")) {
+      AppBase.appConfig.maxRequestsPerConnection =
+          Integer.parseInt(commandLine.getOptionValue("max_requests_per_connection"));
+    }
+    if (commandLine.hasOption("max_ops_in_flight")) {
+      AppBase.appConfig.maxOpsInFlight =
+          Integer.parseInt(commandLine.getOptionValue("max_ops_in_flight"));
+      if (AppBase.appConfig.maxOpsInFlight <= 0) {
+        LOG.error("--max_ops_in_flight must be positive");
+        System.exit(1);
+      }
+    }
+
     // Get the proxy contact points.
     List<String> hostPortList = Arrays.asList(commandLine.getOptionValue("nodes").split(","));
     for (String hostPort : hostPortList) {
@@ -472,6 +496,21 @@ public class CmdLineOpts {
     options.addOption("skip_workload", false, "Skip running workload.");
     options.addOption("run_time", true,
         "Run time for workload. Negative value means forever (default).");
+    options.addOption("target_ops_per_sec", true,
+        "Run in open loop: issue reads and writes at this total rate, whether the previous " +
+        "ones completed or not, and measure their latency from the time they were meant to " +
+        "start. The rate is split between reads and writes by their number of threads.");
+    options.addOption("pipelined", false,
+        "Issue reads and writes asynchronously, keeping up to --max_ops_in_flight of them in " +
+        "flight, so that a few threads can drive many requests.");
+    options.addOption("max_ops_in_flight", true,
+        "[Pipelined or open loop only] Maximum number of operations in flight across all " +
+        "threads.");
+    options.addOption("max_requests_per_connection", true,
+        "Maximum number of requests in flight on each CQL connection.");
+    options.addOption("metrics_output_file", true,
+        "Also write the metrics reported every interval to this file, as JSON lines if its name " +
+        "ends in .json, as CSV otherwise.");
     options.addOption("use_redis_cluster", false, "Use redis cluster client.");
     options.addOption("username", true,
         "User name to connect to the database using. ");
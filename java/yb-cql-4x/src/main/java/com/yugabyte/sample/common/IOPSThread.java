@@ -14,6 +14,9 @@
 package com.yugabyte.sample.common;
 
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.yugabyte.sample.apps.AppBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +25,11 @@ import org.slf4j.LoggerFactory;
  * A class that encapsulates a single IO thread. The thread has an index (which is an integer),
  * models an OLTP app and an IO type (read or write). It performs the required IO as long as
  * the app has not completed all its IO.
+ *
+ * By default the thread performs one operation after the other. In asynchronous mode (see
+ * AppBase.isAsync()) it issues asynchronous operations without waiting for the previous ones to
+ * complete: as long as there are less than maxOpsInFlight in flight, or at the times set by the
+ * schedule in open-loop mode.
  */
 public class IOPSThread extends Thread {
   private static final Logger LOG = LoggerFactory.getLogger(IOPSThread.class);
@@ -42,21 +50,32 @@ public class IOPSThread extends Thread {
   // The app that is being run.
   protected AppBase app;
 
-  private int numExceptions = 0;
+  // The number of IO threads created and not finished yet.
+  private static final AtomicInteger numLiveThreads = new AtomicInteger(0);
+
+  private volatile int numExceptions = 0;
 
   private volatile boolean ioThreadFailed = false;
 
   private final boolean printAllExceptions;
 
+  // Exceptions of the asynchronous operations, which complete on the client threads.
+  private final AtomicInteger numAsyncExceptions = new AtomicInteger(0);
+  private final AtomicInteger numConsecutiveAsyncExceptions = new AtomicInteger(0);
+
+  // The number of asynchronous operations in flight.
+  private final AtomicInteger numOpsInFlight = new AtomicInteger(0);
+
   public IOPSThread(int threadIdx, AppBase app, IOType ioType, boolean printAllExceptions) {
     this.threadIdx = threadIdx;
     this.app = app;
     this.ioType = ioType;
     this.printAllExceptions = printAllExceptions;
+    numLiveThreads.incrementAndGet();
   }
 
   public int getNumExceptions() {
-    return numExceptions;
+    return numExceptions + numAsyncExceptions.get();
   }
 
   public boolean hasFailed() {
@@ -82,13 +101,22 @@ public class IOPSThread extends Thread {
     try {
       LOG.debug("Starting " + ioType.toString() + " IOPS thread #" + threadIdx);
       int numConsecutiveExceptions = 0;
-      while (!app.hasFinished()) {
+      final boolean async = app.isAsync();
+      while (!app.hasFinished() && !ioThreadFailed) {
         try {
-          switch (ioType) {
-            case Write: app.performWrite(threadIdx); break;
-            case Read: app.performRead(); break;
+          if (async) {
+            performAsync();
+          } else {
+            switch (ioType) {
+              case Write: app.performWrite(threadIdx); break;
+              case Read: app.performRead(); break;
+            }
           }
           numConsecutiveExceptions = 0;
+        } catch (InterruptedException e) {
+          LOG.error("Interrupted while waiting to issue an operation.", e);
+          ioThreadFailed = true;
+          return;
         } catch (RuntimeException e) {
           numExceptions++;
           if (numConsecutiveExceptions++ % 10 == 0 || printAllExceptions) {
@@ -113,8 +141,70 @@ public class IOPSThread extends Thread {
         }
       }
     } finally {
+      awaitOpsInFlight();
       LOG.debug("IOPS thread #" + threadIdx + " finished");
       app.terminate();
+      if (numLiveThreads.decrementAndGet() == 0) {
+        AppBase.logMetricsSummary();
+      }
+    }
+  }
+
+  /**
+   * Issues the next asynchronous operation, once it may be: see AppBase.performWriteAsync().
+   */
+  private void performAsync() throws InterruptedException {
+    CompletableFuture<Void> op = null;
+    switch (ioType) {
+      case Write: op = app.performWriteAsync(threadIdx); break;
+      case Read: op = app.performReadAsync(); break;
+    }
+    if (op == null) {
+      return;
+    }
+    numOpsInFlight.incrementAndGet();
+    op.whenComplete((v, e) -> {
+      if (e == null) {
+        numConsecutiveAsyncExceptions.set(0);
+      } else {
+        onAsyncException(e);
+      }
+      if (numOpsInFlight.decrementAndGet() == 0) {
+        synchronized (numOpsInFlight) {
+          numOpsInFlight.notifyAll();
+        }
+      }
+    });
+  }
+
+  private void onAsyncException(Throwable t) {
+    numAsyncExceptions.incrementAndGet();
+    int numConsecutive = numConsecutiveAsyncExceptions.getAndIncrement();
+    Throwable cause = t.getCause() != null ? t.getCause() : t;
+    if ((numConsecutive % 10 == 0 || printAllExceptions) && cause instanceof Exception) {
+      app.reportException((Exception) cause);
+    }
+    if (numConsecutive >= 500 && !ioThreadFailed) {
+      LOG.error("Had more than " + numConsecutive + " consecutive exceptions. Exiting.", cause);
+      ioThreadFailed = true;
+    }
+  }
+
+  /**
+   * Waits for the asynchronous operations issued by this thread to complete, so that they are
+   * accounted for before the app is terminated.
+   */
+  private void awaitOpsInFlight() {
+    synchronized (numOpsInFlight) {
+      while (numOpsInFlight.get() > 0) {
+        try {
+          numOpsInFlight.wait(1000);
+        } catch (InterruptedException e) {
+          LOG.warn("Interrupted while waiting for " + numOpsInFlight.get() +
+                   " operations in flight.");
+          return;
+        }
+      }
     }
   }
 }
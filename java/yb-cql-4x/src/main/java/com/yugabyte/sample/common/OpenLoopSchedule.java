@@ -0,0 +1,73 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package com.yugabyte.sample.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The schedule of the operations of an open-loop workload. Operations are started at a fixed
+ * rate, whether the previous ones completed or not, and each one has an intended start time on
+ * the schedule. The schedule is shared by all the IO threads issuing the same type of operation.
+ *
+ * The latency of an operation is measured from its intended start time rather than from the time
+ * it was actually sent, so that the time an operation spent waiting behind a stalled cluster or
+ * a busy client is not omitted from the measurements.
+ */
+public class OpenLoopSchedule {
+  // The time the schedule started.
+  private final long startNanos;
+  // The time between the intended start of two consecutive operations.
+  private final double intervalNanos;
+  // The index of the next operation to start.
+  private final AtomicLong nextOp = new AtomicLong(0);
+
+  /**
+   * @param opsPerSecond the rate at which operations are started, must be positive.
+   */
+  public OpenLoopSchedule(double opsPerSecond) {
+    if (opsPerSecond <= 0) {
+      throw new IllegalArgumentException("Invalid operation rate: " + opsPerSecond);
+    }
+    this.intervalNanos = 1000000000.0 / opsPerSecond;
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Claims the next operation on the schedule and waits until its intended start time. Returns
+   * right away if the operation is already late.
+   * @return the intended start time of the operation, in System.nanoTime() units.
+   * @throws InterruptedException if the thread was interrupted while waiting.
+   */
+  public long awaitNextOp() throws InterruptedException {
+    final long intendedStartNanos = startNanos + (long) (nextOp.getAndIncrement() * intervalNanos);
+    long remainingNanos;
+    while ((remainingNanos = intendedStartNanos - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remainingNanos);
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+    return intendedStartNanos;
+  }
+
+  /**
+   * @return how late, in nanoseconds, the operations are started compared to the schedule. A
+   *         growing lag means the client can't keep up with the target rate.
+   */
+  public long getLagNanos() {
+    final long scheduledNanos = startNanos + (long) (nextOp.get() * intervalNanos);
+    return Math.max(0, System.nanoTime() - scheduledNanos);
+  }
+}
@@ -13,10 +13,11 @@
 
 package com.yugabyte.sample.common;
 
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.util.HashSet;
+import java.security.NoSuchAlgorithmException;
 import java.util.Random;
-import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -27,36 +28,76 @@ import org.slf4j.LoggerFactory;
 public class SimpleLoadGenerator {
   private static final Logger LOG = LoggerFactory.getLogger(SimpleLoadGenerator.class);
 
+  // The prefix of the values, see Key.getValueStr().
+  private static final byte[] VALUE_PREFIX = "val:".getBytes(StandardCharsets.US_ASCII);
+
+  // The default key prefix, cached for the UUID it was made of.
+  private static volatile UUID defaultKeyPrefixUUID = null;
+  private static volatile String defaultKeyPrefix = "key";
+
+  // MD5 digests are not thread-safe, so each thread reuses its own.
+  private static final ThreadLocal<MessageDigest> md5 = new ThreadLocal<MessageDigest>() {
+    @Override
+    protected MessageDigest initialValue() {
+      try {
+        return MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  };
+
+  private static String getDefaultKeyPrefix() {
+    UUID uuid = CmdLineOpts.loadTesterUUID;
+    if (uuid == null) {
+      return "key";
+    }
+    if (!uuid.equals(defaultKeyPrefixUUID)) {
+      defaultKeyPrefix = uuid.toString();
+      defaultKeyPrefixUUID = uuid;
+    }
+    return defaultKeyPrefix;
+  }
+
   public static class Key {
+    // The max length of the value of a key with putValueBytes(): the prefix and a long.
+    public static final int MAX_VALUE_BYTES = VALUE_PREFIX.length + 20;
+
     // The underlying key is an integer.
-    Long key;
+    final long key;
     // The randomized loadtester prefix.
-    String keyPrefix = (CmdLineOpts.loadTesterUUID != null)
-                           ? CmdLineOpts.loadTesterUUID.toString()
-                           : "key";
+    final String keyPrefix;
 
     public Key(long key, String keyPrefix) {
-      this.key = new Long(key);
-      if (keyPrefix != null) {
-        this.keyPrefix = keyPrefix;
-      }
+      this.key = key;
+      this.keyPrefix = (keyPrefix != null) ? keyPrefix : getDefaultKeyPrefix();
     }
 
     public long asNumber() {
       return key;
     }
 
-    public String asString() { return keyPrefix + ":" + key.toString(); }
+    public String asString() { return keyPrefix + ":" + key; }
 
     public String getKeyWithHashPrefix() throws Exception {
       String k = asString();
-      MessageDigest md = MessageDigest.getInstance("MD5");
+      MessageDigest md = md5.get();
       md.update(k.getBytes());
       return Hex.encodeHexString(md.digest()) + ":" + k;
     }
 
     public String getValueStr() {
-      return ("val:" + key.toString());
+      return ("val:" + key);
+    }
+
+    /**
+     * Writes the bytes of getValueStr() into a buffer, without allocating.
+     * @param out the buffer to write to, at least MAX_VALUE_BYTES long.
+     * @return the number of bytes written.
+     */
+    public int putValueBytes(byte[] out) {
+      System.arraycopy(VALUE_PREFIX, 0, out, 0, VALUE_PREFIX.length);
+      return putDecimal(key, out, VALUE_PREFIX.length);
     }
 
     public String getValueStr(int idx, int size) {
@@ -64,7 +105,7 @@ public class SimpleLoadGenerator {
       sb.append("val");
       sb.append(idx);
       sb.append(":");
-      sb.append(key.toString());
+      sb.append(key);
       for (int i = sb.length(); i < size; ++i) {
         sb.append("_");
       }
@@ -73,7 +114,7 @@ public class SimpleLoadGenerator {
 
     public void verify(String value) {
       if (value == null || !value.equals(getValueStr())) {
-        LOG.error("Value mismatch for key: " + key.toString() +
+        LOG.error("Value mismatch for key: " + key +
                   ", expected: " + getValueStr() +
                   ", got: " + value);
       }
@@ -85,20 +126,34 @@ public class SimpleLoadGenerator {
     }
   }
 
+  /**
+   * Writes the decimal digits of a non-negative number into a buffer.
+   * @return the offset past the last digit.
+   */
+  static int putDecimal(long value, byte[] out, int offset) {
+    int numDigits = 1;
+    for (long v = value / 10; v > 0; v /= 10) {
+      numDigits++;
+    }
+    int end = offset + numDigits;
+    for (int i = end - 1; i >= offset; i--) {
+      out[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    return end;
+  }
+
   // The key to start from.
   final long startKey;
   // The key to write till.
   final long endKey;
-  // The max key that was successfully written consecutively.
-  AtomicLong maxWrittenKey;
+  // The keys written (or failed to be) out of order, and the max key that was successfully written
+  // consecutively.
+  final WrittenKeysWindow writtenKeys;
   // The max key that has been generated and handed out so far.
   AtomicLong maxGeneratedKey;
   // Set of keys that failed to write.
-  final Set<Long> failedKeys;
-  // Keys that have been written above maxWrittenKey.
-  final Set<Long> writtenKeys;
-  // A background thread to track keys written and increment maxWrittenKey.
-  Thread writtenKeysTracker;
+  final SparseKeyBitmap failedKeys = new SparseKeyBitmap();
   // The prefix for the key.
   String keyPrefix;
   // Random number generator.
@@ -106,40 +161,18 @@ public class SimpleLoadGenerator {
 
   public SimpleLoadGenerator(long startKey, final long endKey,
                              long maxWrittenKey) {
+    this(startKey, endKey, maxWrittenKey, WrittenKeysWindow.DEFAULT_SIZE);
+  }
+
+  /**
+   * @param windowSize the max number of keys handed out for writing above the max written key.
+   */
+  public SimpleLoadGenerator(long startKey, final long endKey,
+                             long maxWrittenKey, int windowSize) {
     this.startKey = startKey;
     this.endKey = endKey;
-    this.maxWrittenKey = new AtomicLong(maxWrittenKey);
+    this.writtenKeys = new WrittenKeysWindow(maxWrittenKey, windowSize);
     this.maxGeneratedKey = new AtomicLong(maxWrittenKey);
-    failedKeys = new HashSet<Long>();
-    writtenKeys = new HashSet<Long>();
-    writtenKeysTracker = new Thread("Written Keys Tracker") {
-        @Override
-        public void run() {
-          do {
-            long key = SimpleLoadGenerator.this.maxWrittenKey.get() + 1;
-            synchronized (this) {
-              if (failedKeys.contains(key) || writtenKeys.remove(key)) {
-                SimpleLoadGenerator.this.maxWrittenKey.set(key);
-                if (key == endKey - 1) {
-                  // We've inserted all requested keys, no need to track
-                  // maxWrittenKey/writtenKeys anymore.
-                  break;
-                }
-              } else {
-                try {
-                  wait();
-                } catch (InterruptedException e) {
-                  // Ignore
-                }
-              };
-            }
-          } while (true);
-        }
-      };
-    // Make tracker a daemon thread so that it will not block the load tester from exiting
-    // when done.
-    writtenKeysTracker.setDaemon(true);
-    writtenKeysTracker.start();
   }
 
   public void setKeyPrefix(String prefix) {
@@ -147,20 +180,13 @@ public class SimpleLoadGenerator {
   }
 
   public void recordWriteSuccess(Key key) {
-    if (key.asNumber() > maxWrittenKey.get()) {
-      synchronized (writtenKeysTracker) {
-        writtenKeys.add(key.asNumber());
-        writtenKeysTracker.notify();
-      }
-    }
+    writtenKeys.markDone(key.asNumber());
   }
 
   public void recordWriteFailure(Key key) {
-    synchronized (writtenKeysTracker) {
-      if (key != null) {
-        failedKeys.add(key.asNumber());
-        writtenKeysTracker.notify();
-      }
+    if (key != null) {
+      failedKeys.add(key.asNumber());
+      writtenKeys.markDone(key.asNumber());
     }
   }
 
@@ -168,12 +194,22 @@ public class SimpleLoadGenerator {
   public Key getKeyToWrite() {
     Key retKey = null;
     do {
-      long maxKey = maxWrittenKey.get();
+      long maxKey = writtenKeys.getWatermark();
       // Return a random key to update if we have already written all keys.
       if (maxKey != -1 && maxKey == endKey - 1) {
         retKey = generateKey(ThreadLocalRandom.current().nextLong(maxKey));
       } else {
-        retKey = generateKey(maxGeneratedKey.incrementAndGet());
+        long key = maxGeneratedKey.get() + 1;
+        if (!writtenKeys.canTrack(key)) {
+          // The key is too far above the max written key to be tracked, wait for the writes in
+          // flight to complete.
+          retKey = null;
+        } else if (maxGeneratedKey.compareAndSet(key - 1, key)) {
+          retKey = generateKey(key);
+        } else {
+          // Another thread took the key, try the next one right away.
+          continue;
+        }
       }
 
       if (retKey == null) {
@@ -187,7 +223,7 @@ public class SimpleLoadGenerator {
   }
 
   public Key getKeyToRead() {
-    long maxKey = maxWrittenKey.get();
+    long maxKey = writtenKeys.getWatermark();
     if (maxKey < 0) {
       return null;
     } else if (maxKey == 0) {
@@ -201,13 +237,17 @@ public class SimpleLoadGenerator {
   }
 
   public long getMaxWrittenKey() {
-    return maxWrittenKey.get();
+    return writtenKeys.getWatermark();
   }
 
   public long getMaxGeneratedKey() {
     return maxGeneratedKey.get();
   }
 
+  public long getNumFailedKeys() {
+    return failedKeys.size();
+  }
+
   public Key generateKey(long key) {
     return new Key(key, keyPrefix);
   }
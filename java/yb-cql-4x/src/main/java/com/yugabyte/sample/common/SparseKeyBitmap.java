@@ -0,0 +1,76 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package com.yugabyte.sample.common;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A set of keys stored as a bitmap split in chunks, where only the chunks holding keys are
+ * allocated. Meant for keys that are few and far between, like the keys that failed to be written:
+ * a key costs at most one bit plus its share of a chunk, and looking a key up in an empty set
+ * neither allocates nor reads any shared state that changes.
+ */
+public class SparseKeyBitmap {
+  // Each chunk holds the bits of 4096 consecutive keys, in 64 longs.
+  private static final int CHUNK_SHIFT = 12;
+  private static final int CHUNK_WORDS = (1 << CHUNK_SHIFT) / Long.SIZE;
+
+  private final ConcurrentHashMap<Long, AtomicLongArray> chunks =
+      new ConcurrentHashMap<Long, AtomicLongArray>();
+  private final LongAdder numKeys = new LongAdder();
+  // Set once the first key is added, so that lookups in an empty set skip the map.
+  private volatile boolean empty = true;
+
+  /**
+   * Adds a key to the set.
+   * @return true if the key was not in the set.
+   */
+  public boolean add(long key) {
+    AtomicLongArray chunk =
+        chunks.computeIfAbsent(key >>> CHUNK_SHIFT, k -> new AtomicLongArray(CHUNK_WORDS));
+    empty = false;
+    final int word = wordIndex(key);
+    final long bit = 1L << (key & 63);
+    long current;
+    do {
+      current = chunk.get(word);
+      if ((current & bit) != 0) {
+        return false;
+      }
+    } while (!chunk.compareAndSet(word, current, current | bit));
+    numKeys.increment();
+    return true;
+  }
+
+  public boolean contains(long key) {
+    if (empty) {
+      return false;
+    }
+    AtomicLongArray chunk = chunks.get(key >>> CHUNK_SHIFT);
+    return chunk != null && (chunk.get(wordIndex(key)) & (1L << (key & 63))) != 0;
+  }
+
+  /**
+   * @return the number of keys in the set.
+   */
+  public long size() {
+    return numKeys.sum();
+  }
+
+  private static int wordIndex(long key) {
+    return (int) ((key >>> 6) & (CHUNK_WORDS - 1));
+  }
+}
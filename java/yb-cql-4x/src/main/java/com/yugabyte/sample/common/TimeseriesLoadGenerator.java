@@ -13,6 +13,8 @@
 
 package com.yugabyte.sample.common;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -84,6 +86,39 @@ public class TimeseriesLoadGenerator {
     return lastEmittedTs + dataEmitRateMs;
   }
 
+  /**
+   * Returns the epoch times of the data points due since the last one emitted, oldest first, i.e.
+   * the values getDataEmitTs() would return one after the other if each data point was emitted
+   * right away. Empty if no data point needs to be emitted.
+   * @param maxDataPoints the maximum number of data points to return.
+   */
+  public List<Long> getDataEmitTsBacklog(int maxDataPoints) {
+    List<Long> timestamps = new ArrayList<Long>();
+    long ts = getDataEmitTs();
+    if (ts == -1) {
+      return timestamps;
+    }
+    long now = System.currentTimeMillis();
+    while (timestamps.size() < maxDataPoints && ts <= now) {
+      timestamps.add(ts);
+      ts += dataEmitRateMs;
+    }
+    return timestamps;
+  }
+
+  /**
+   * Same as getDataEmitTsBacklog(), but also marks the data points returned as emitted, so that
+   * callers writing data points concurrently each get their own instead of writing the same ones.
+   * @param maxDataPoints the maximum number of data points to return.
+   */
+  public synchronized List<Long> claimDataEmitTsBacklog(int maxDataPoints) {
+    List<Long> timestamps = getDataEmitTsBacklog(maxDataPoints);
+    if (!timestamps.isEmpty()) {
+      setLastEmittedTs(timestamps.get(timestamps.size() - 1));
+    }
+    return timestamps;
+  }
+
   /**
    * @return true if this generator has emitted any data so far.
    */
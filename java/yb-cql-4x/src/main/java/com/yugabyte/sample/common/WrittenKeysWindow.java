@@ -0,0 +1,146 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package com.yugabyte.sample.common;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks the keys whose write completed out of order, to maintain the watermark: the max key such
+ * that all the keys up to it were written (or failed to be).
+ *
+ * The keys above the watermark are tracked in a fixed size bitmap used as a ring: the bit of key k
+ * is the bit (k % size), so the memory used doesn't depend on the number of keys. Keys more than
+ * size above the watermark can't be tracked, which is why getKeyToWrite() in SimpleLoadGenerator
+ * doesn't hand them out until the watermark moved up.
+ *
+ * Marking a key doesn't block. The watermark is moved up by one thread at a time, the others
+ * leave it their keys and go on.
+ */
+public class WrittenKeysWindow {
+  // The default number of keys tracked above the watermark, a 512KB bitmap.
+  public static final int DEFAULT_SIZE = 1 << 22;
+
+  // The max key such that all the keys up to it are done.
+  private final AtomicLong watermark;
+  // The bits of the keys done above the watermark.
+  private final AtomicLongArray bits;
+  // Mask of the bit index of a key in the bitmap.
+  private final long mask;
+  // Set while a thread moves the watermark up.
+  private final AtomicBoolean advancing = new AtomicBoolean(false);
+
+  /**
+   * @param watermark the initial watermark, -1 if no key was written.
+   * @param size the number of keys that can be tracked above the watermark, a power of 2 and a
+   *             multiple of 64.
+   */
+  public WrittenKeysWindow(long watermark, int size) {
+    if (size < Long.SIZE || Integer.bitCount(size) != 1) {
+      throw new IllegalArgumentException("Invalid window size: " + size);
+    }
+    this.watermark = new AtomicLong(watermark);
+    this.bits = new AtomicLongArray(size / Long.SIZE);
+    this.mask = size - 1;
+  }
+
+  public long getWatermark() {
+    return watermark.get();
+  }
+
+  /**
+   * @return the number of keys that can be tracked above the watermark.
+   */
+  public long size() {
+    return mask + 1;
+  }
+
+  /**
+   * @return true if the key is above the watermark but close enough to it to be tracked.
+   */
+  public boolean canTrack(long key) {
+    long current = watermark.get();
+    return key > current && key - current <= size();
+  }
+
+  /**
+   * Marks a key as done and moves the watermark up as far as the keys done allow.
+   * @return false if the key is too far above the watermark to be tracked, true otherwise.
+   */
+  public boolean markDone(long key) {
+    long current = watermark.get();
+    if (key <= current) {
+      return true;
+    }
+    if (key - current > size()) {
+      return false;
+    }
+    setBit(key);
+    advance();
+    return true;
+  }
+
+  private void advance() {
+    while (advancing.compareAndSet(false, true)) {
+      try {
+        // Only this thread clears bits and moves the watermark. A bit is cleared before the
+        // watermark moves past it, so it is free by the time the key one lap later is tracked.
+        long next = watermark.get() + 1;
+        while (clearBit(next)) {
+          watermark.set(next);
+          next++;
+        }
+      } finally {
+        advancing.set(false);
+      }
+      // A key may have been marked after the last check and before the flag was reset, while
+      // its thread saw the flag set: check again.
+      if (!isSet(watermark.get() + 1)) {
+        return;
+      }
+    }
+  }
+
+  private void setBit(long key) {
+    final int word = wordIndex(key);
+    final long bit = 1L << (key & 63);
+    long current;
+    do {
+      current = bits.get(word);
+    } while ((current & bit) == 0 && !bits.compareAndSet(word, current, current | bit));
+  }
+
+  // Clears the bit of the key if it is set, returns whether it was.
+  private boolean clearBit(long key) {
+    final int word = wordIndex(key);
+    final long bit = 1L << (key & 63);
+    long current;
+    do {
+      current = bits.get(word);
+      if ((current & bit) == 0) {
+        return false;
+      }
+    } while (!bits.compareAndSet(word, current, current & ~bit));
+    return true;
+  }
+
+  private boolean isSet(long key) {
+    return (bits.get(wordIndex(key)) & (1L << (key & 63))) != 0;
+  }
+
+  private int wordIndex(long key) {
+    return (int) ((key & mask) >>> 6);
+  }
+}
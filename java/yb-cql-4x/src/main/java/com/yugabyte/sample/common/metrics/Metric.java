@@ -13,51 +13,169 @@
 
 package com.yugabyte.sample.common.metrics;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Tracks the throughput and the latency of one type of operation.
+ *
+ * Recording an operation doesn't take any lock: the counters are striped, and each thread records
+ * latencies into its own histogram recorder. The recorders are only merged by the thread taking
+ * the snapshots, usually the metrics tracker, so that the IO threads don't contend with each other
+ * however many there are.
+ */
 public class Metric {
   private static final Logger LOG = LoggerFactory.getLogger(Metric.class);
+  // Precision of the latency histograms, in significant decimal digits.
+  private static final int LATENCY_SIGNIFICANT_DIGITS = 3;
+  private static final double NANOS_PER_MILLI = 1000000.0;
   String name;
+  // Taken by the snapshots only.
   private final Object lock = new Object();
-  private long curOpCount = 0;
-  private long curOpLatencyNanos = 0;
-  private long totalOpCount = 0;
+  private final LongAdder curOpCount = new LongAdder();
+  private final LongAdder curOpLatencyNanos = new LongAdder();
+  private final LongAdder totalOpCount = new LongAdder();
   private long lastSnapshotNanos;
+  // The latency recorders of all the threads which recorded operations.
+  private final List<ThreadRecorder> recorders = new CopyOnWriteArrayList<ThreadRecorder>();
+  private final ThreadLocal<ThreadRecorder> threadRecorder = new ThreadLocal<ThreadRecorder>() {
+    @Override
+    protected ThreadRecorder initialValue() {
+      ThreadRecorder recorder = new ThreadRecorder();
+      recorders.add(recorder);
+      return recorder;
+    }
+  };
+  // Latencies of the last interval, merged from the recorders of all the threads.
+  private final Histogram intervalLatencies = new Histogram(LATENCY_SIGNIFICANT_DIGITS);
+  // Latencies since the metric was created.
+  private final Histogram totalLatencies = new Histogram(LATENCY_SIGNIFICANT_DIGITS);
+
+  /**
+   * The latency recorder of one thread, along with the histogram it recycles between intervals.
+   */
+  private static class ThreadRecorder {
+    final SingleWriterRecorder recorder = new SingleWriterRecorder(LATENCY_SIGNIFICANT_DIGITS);
+    // Only accessed by the snapshots, under the lock.
+    Histogram interval = null;
+  }
+
+  /**
+   * The metrics of one interval.
+   */
+  public static class Snapshot {
+    public final String name;
+    // Wall clock time the snapshot was taken at.
+    public final long timestampMillis;
+    public final double opsPerSec;
+    public final double meanLatencyMillis;
+    public final double p50LatencyMillis;
+    public final double p99LatencyMillis;
+    public final double p999LatencyMillis;
+    public final double maxLatencyMillis;
+    public final long totalOps;
+
+    Snapshot(String name, long timestampMillis, double opsPerSec, double meanLatencyMillis,
+             Histogram latencies, long totalOps) {
+      this.name = name;
+      this.timestampMillis = timestampMillis;
+      this.opsPerSec = opsPerSec;
+      this.meanLatencyMillis = meanLatencyMillis;
+      this.p50LatencyMillis = latencies.getValueAtPercentile(50.0) / NANOS_PER_MILLI;
+      this.p99LatencyMillis = latencies.getValueAtPercentile(99.0) / NANOS_PER_MILLI;
+      this.p999LatencyMillis = latencies.getValueAtPercentile(99.9) / NANOS_PER_MILLI;
+      this.maxLatencyMillis = latencies.getMaxValue() / NANOS_PER_MILLI;
+      this.totalOps = totalOps;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %.2f ops/sec (%.2f ms/op, p50 %.2f ms, p99 %.2f ms, " +
+                           "p99.9 %.2f ms, max %.2f ms), %d total ops",
+                           name, opsPerSec, meanLatencyMillis, p50LatencyMillis, p99LatencyMillis,
+                           p999LatencyMillis, maxLatencyMillis, totalOps);
+    }
+  }
 
   public Metric(String name) {
     this.name = name;
     lastSnapshotNanos = System.nanoTime();
   }
 
+  public String getName() {
+    return name;
+  }
+
   /**
    * Accumulate metrics with operations processed as one batch.
    * @param numOps number of ops processed as one batch
    * @param batchLatencyNanos whole batch latency
    */
   public void accumulate(long numOps, long batchLatencyNanos) {
-    synchronized(lock) {
-      curOpCount += numOps;
-      curOpLatencyNanos += batchLatencyNanos * numOps;
-      totalOpCount += numOps;
-    }
+    curOpCount.add(numOps);
+    curOpLatencyNanos.add(batchLatencyNanos * numOps);
+    totalOpCount.add(numOps);
+    threadRecorder.get().recorder.recordValueWithCount(Math.max(0, batchLatencyNanos), numOps);
   }
 
-  public String getMetricsAndReset() {
-    String msg = null;
+  /**
+   * Takes the snapshot of the metrics since the previous one, and starts a new interval.
+   * @return the metrics of the interval.
+   */
+  public Snapshot takeSnapshot() {
     synchronized(lock) {
       long currNanos = System.nanoTime();
       long elapsedNanos = currNanos - lastSnapshotNanos;
-      LOG.debug("currentOpLatency: " + curOpLatencyNanos + ", currentOpCount: " + curOpCount);
-      double ops_per_sec =
-          (elapsedNanos == 0) ? 0 : (curOpCount * 1000000000 * 1.0 / elapsedNanos);
-      double latency = (curOpCount == 0) ? 0 : (curOpLatencyNanos / 1000000 * 1.0 / curOpCount);
-      msg = String.format("%s: %.2f ops/sec (%.2f ms/op), %d total ops",
-                          name, ops_per_sec, latency, totalOpCount);
-      curOpCount = 0;
-      curOpLatencyNanos = 0;
+      // Operations recorded concurrently with the reset count in the next interval.
+      long opCount = curOpCount.sumThenReset();
+      long opLatencyNanos = curOpLatencyNanos.sumThenReset();
+      LOG.debug("currentOpLatency: " + opLatencyNanos + ", currentOpCount: " + opCount);
+      double ops_per_sec = (elapsedNanos == 0) ? 0 : (opCount * 1000000000.0 / elapsedNanos);
+      double latency = (opCount == 0) ? 0 : (opLatencyNanos / NANOS_PER_MILLI / opCount);
+      mergeRecorders();
       lastSnapshotNanos = currNanos;
+      return new Snapshot(name, System.currentTimeMillis(), ops_per_sec, latency,
+                          intervalLatencies, totalOpCount.sum());
+    }
+  }
+
+  public String getMetricsAndReset() {
+    return takeSnapshot().toString();
+  }
+
+  /**
+   * Returns the summary of the whole run so far, including the operations since the last
+   * snapshot. Meant to be called at the end of the run: the latencies recorded since the last
+   * snapshot are moved to the totals, and won't be part of the next snapshot.
+   * @return the total number of ops and the latency percentiles over all of them.
+   */
+  public String getSummary() {
+    synchronized(lock) {
+      mergeRecorders();
+      return String.format("%s: %d total ops (%.2f ms/op, p50 %.2f ms, p99 %.2f ms, " +
+                           "p99.9 %.2f ms, max %.2f ms)",
+                           name, totalOpCount.sum(), totalLatencies.getMean() / NANOS_PER_MILLI,
+                           totalLatencies.getValueAtPercentile(50.0) / NANOS_PER_MILLI,
+                           totalLatencies.getValueAtPercentile(99.0) / NANOS_PER_MILLI,
+                           totalLatencies.getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                           totalLatencies.getMaxValue() / NANOS_PER_MILLI);
+    }
+  }
+
+  // Merges the latencies recorded by all the threads since the last merge into the interval and
+  // the total histograms. Must be called under the lock.
+  private void mergeRecorders() {
+    intervalLatencies.reset();
+    for (ThreadRecorder recorder : recorders) {
+      recorder.interval = recorder.recorder.getIntervalHistogram(recorder.interval);
+      intervalLatencies.add(recorder.interval);
     }
-    return msg;
+    totalLatencies.add(intervalLatencies);
   }
 }
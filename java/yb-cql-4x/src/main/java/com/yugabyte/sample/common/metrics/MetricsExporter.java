@@ -0,0 +1,86 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package com.yugabyte.sample.common.metrics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes the metric snapshots taken by the metrics tracker to a file, as a time series that can be
+ * compared between runs offline. Files ending in ".json" get one JSON object per snapshot and per
+ * line (JSON lines), other files get CSV with a header line.
+ */
+public class MetricsExporter implements Closeable {
+  private static final String CSV_HEADER =
+      "timestamp_ms,metric,ops_per_sec,mean_ms,p50_ms,p99_ms,p999_ms,max_ms,total_ops";
+
+  private final Writer writer;
+  private final boolean json;
+
+  /**
+   * @param path the file to write to, truncated if it exists.
+   * @throws IOException if the file can't be created.
+   */
+  public MetricsExporter(String path) throws IOException {
+    this.writer = new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8));
+    this.json = path.toLowerCase(Locale.ROOT).endsWith(".json");
+    if (!json) {
+      writer.write(CSV_HEADER);
+      writer.write('\n');
+    }
+  }
+
+  /**
+   * Writes the snapshots of one interval, and flushes them so that the file is up to date even if
+   * the app is killed.
+   */
+  public void write(List<Metric.Snapshot> snapshots) throws IOException {
+    for (Metric.Snapshot snapshot : snapshots) {
+      writer.write(json ? toJson(snapshot) : toCsv(snapshot));
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+
+  private static String toCsv(Metric.Snapshot s) {
+    return String.format(Locale.ROOT, "%d,%s,%.2f,%.3f,%.3f,%.3f,%.3f,%.3f,%d",
+                         s.timestampMillis, s.name, s.opsPerSec, s.meanLatencyMillis,
+                         s.p50LatencyMillis, s.p99LatencyMillis, s.p999LatencyMillis,
+                         s.maxLatencyMillis, s.totalOps);
+  }
+
+  private static String toJson(Metric.Snapshot s) {
+    // Metric names are plain identifiers, there is nothing to escape.
+    return String.format(Locale.ROOT,
+                         "{\"timestamp_ms\":%d,\"metric\":\"%s\",\"ops_per_sec\":%.2f," +
+                         "\"mean_ms\":%.3f,\"p50_ms\":%.3f,\"p99_ms\":%.3f,\"p999_ms\":%.3f," +
+                         "\"max_ms\":%.3f,\"total_ops\":%d}",
+                         s.timestampMillis, s.name, s.opsPerSec, s.meanLatencyMillis,
+                         s.p50LatencyMillis, s.p99LatencyMillis, s.p999LatencyMillis,
+                         s.maxLatencyMillis, s.totalOps);
+  }
+}
@@ -13,6 +13,9 @@
 
 package com.yugabyte.sample.common.metrics;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -45,6 +48,11 @@ public class MetricsTracker extends Thread {
   // Map of custom appenders.
   Map<String, StatusMessageAppender> appenders =
       new ConcurrentHashMap<String, StatusMessageAppender>();
+  // Writes the snapshots to a file, if an output file is set.
+  private volatile MetricsExporter exporter = null;
+  // Taken to take and export snapshots, so that the file gets them in order and none after it is
+  // closed.
+  private final Object exportLock = new Object();
 
   public MetricsTracker() {
     this.setDaemon(true);
@@ -54,6 +62,17 @@ public class MetricsTracker extends Thread {
     appenders.put(appender.appenderName(), appender);
   }
 
+  /**
+   * Sets the file the metric snapshots are written to, in addition to being logged. See
+   * MetricsExporter for the formats.
+   * @param path the file to write to, truncated if it exists.
+   * @throws IOException if the file can't be created.
+   */
+  public void setOutputFile(String path) throws IOException {
+    exporter = new MetricsExporter(path);
+    LOG.info("Writing metrics to " + path);
+  }
+
   public void createMetric(MetricName metricName) {
     synchronized (initLock) {
       if (!metrics.containsKey(metricName)) {
@@ -67,9 +86,78 @@ public class MetricsTracker extends Thread {
   }
 
   public void getMetricsAndReset(StringBuilder sb) {
+    for (Metric.Snapshot snapshot : takeSnapshots()) {
+      sb.append(String.format("%s  |  ", snapshot));
+    }
+  }
+
+  private List<Metric.Snapshot> takeSnapshots() {
+    List<Metric.Snapshot> snapshots = new ArrayList<Metric.Snapshot>();
     for (MetricName metricName : MetricName.values()) {
-      sb.append(String.format("%s  |  ", metrics.get(metricName).getMetricsAndReset()));
+      Metric metric = metrics.get(metricName);
+      if (metric != null) {
+        snapshots.add(metric.takeSnapshot());
+      }
     }
+    return snapshots;
+  }
+
+  private List<Metric.Snapshot> takeAndExportSnapshots() {
+    synchronized (exportLock) {
+      List<Metric.Snapshot> snapshots = takeSnapshots();
+      MetricsExporter currentExporter = exporter;
+      if (currentExporter != null) {
+        try {
+          currentExporter.write(snapshots);
+        } catch (IOException e) {
+          LOG.error("Failed to write metrics, not writing them anymore.", e);
+          exporter = null;
+          closeQuietly(currentExporter);
+        }
+      }
+      return snapshots;
+    }
+  }
+
+  /**
+   * Writes the snapshots of the last interval, which the app stopped in the middle of, to the
+   * output file if any, and closes it. Must be called before logSummary(), which moves the
+   * latencies of the interval to the totals.
+   */
+  public void closeOutputFile() {
+    synchronized (exportLock) {
+      if (exporter == null) {
+        return;
+      }
+      takeAndExportSnapshots();
+      MetricsExporter currentExporter = exporter;
+      exporter = null;
+      if (currentExporter != null) {
+        closeQuietly(currentExporter);
+      }
+    }
+  }
+
+  private static void closeQuietly(MetricsExporter exporter) {
+    try {
+      exporter.close();
+    } catch (IOException e) {
+      LOG.error("Failed to close the metrics output file.", e);
+    }
+  }
+
+  /**
+   * Logs the totals and the latency percentiles of the whole run, for all the metrics.
+   */
+  public void logSummary() {
+    StringBuilder sb = new StringBuilder("Summary: ");
+    for (MetricName metricName : MetricName.values()) {
+      Metric metric = metrics.get(metricName);
+      if (metric != null) {
+        sb.append(String.format("%s  |  ", metric.getSummary()));
+      }
+    }
+    LOG.info(sb.toString());
   }
 
   @Override
@@ -88,7 +176,9 @@ public class MetricsTracker extends Thread {
       try {
         Thread.sleep(5000);
         StringBuilder sb = new StringBuilder();
-        getMetricsAndReset(sb);
+        for (Metric.Snapshot snapshot : takeAndExportSnapshots()) {
+          sb.append(String.format("%s  |  ", snapshot));
+        }
         for (StatusMessageAppender appender : appenders.values()) {
           appender.appendMessage(sb);
         }
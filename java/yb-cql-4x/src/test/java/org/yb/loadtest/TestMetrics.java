@@ -0,0 +1,137 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.loadtest;
+
+import com.yugabyte.sample.common.metrics.Metric;
+import com.yugabyte.sample.common.metrics.MetricsTracker;
+import com.yugabyte.sample.common.metrics.MetricsTracker.MetricName;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertTrue;
+
+@RunWith(value = YBTestRunner.class)
+public class TestMetrics {
+  private static final long NANOS_PER_MILLI = 1000000;
+  // Relative precision of the latency histograms, 3 significant digits.
+  private static final double PRECISION = 0.001;
+
+  private static void assertLatency(double expectedMillis, double actualMillis) {
+    assertEquals(expectedMillis, actualMillis, expectedMillis * PRECISION);
+  }
+
+  @Test
+  public void testRecorderAggregation() throws Exception {
+    final Metric metric = new Metric("Reads");
+    // Every thread records into its own recorder: thread i records 1000 ops of i + 1 ms each.
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      final long latencyNanos = (i + 1) * NANOS_PER_MILLI;
+      threads.add(new Thread(() -> {
+        for (int op = 0; op < 1000; op++) {
+          metric.accumulate(1, latencyNanos);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Metric.Snapshot snapshot = metric.takeSnapshot();
+    assertEquals(4000, snapshot.totalOps);
+    assertEquals(2.5, snapshot.meanLatencyMillis, 1e-9);
+    assertLatency(2, snapshot.p50LatencyMillis);
+    assertLatency(4, snapshot.p99LatencyMillis);
+    assertLatency(4, snapshot.maxLatencyMillis);
+
+    // The next interval only has its own latencies, a batch of 10 ops taking 10 ms.
+    metric.accumulate(10, 10 * NANOS_PER_MILLI);
+    snapshot = metric.takeSnapshot();
+    assertEquals(4010, snapshot.totalOps);
+    assertEquals(10.0, snapshot.meanLatencyMillis, 1e-9);
+    assertLatency(10, snapshot.p50LatencyMillis);
+    assertLatency(10, snapshot.maxLatencyMillis);
+
+    // The summary covers both intervals.
+    assertTrue(metric.getSummary().startsWith("Reads: 4010 total ops"));
+  }
+
+  @Test
+  public void testCsvLines() throws Exception {
+    Path file = Files.createTempDirectory("metrics").resolve("metrics.csv");
+    MetricsTracker tracker = new MetricsTracker();
+    tracker.setOutputFile(file.toString());
+    tracker.createMetric(MetricName.Read);
+    tracker.getMetric(MetricName.Read).accumulate(3, 2 * NANOS_PER_MILLI);
+    // Stopping the app writes the interval it stopped in.
+    tracker.closeOutputFile();
+    tracker.closeOutputFile();
+
+    List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    assertEquals(2, lines.size());
+    assertEquals("timestamp_ms,metric,ops_per_sec,mean_ms,p50_ms,p99_ms,p999_ms,max_ms,total_ops",
+                 lines.get(0));
+    String[] fields = lines.get(1).split(",");
+    assertEquals(9, fields.length);
+    assertTrue(Long.parseLong(fields[0]) > 0);
+    assertEquals("Read", fields[1]);
+    assertTrue(Double.parseDouble(fields[2]) > 0);
+    assertEquals("2.000", fields[3]);
+    for (int i = 4; i < 8; i++) {
+      assertLatency(2, Double.parseDouble(fields[i]));
+    }
+    assertEquals("3", fields[8]);
+  }
+
+  @Test
+  public void testJsonLines() throws Exception {
+    Path file = Files.createTempDirectory("metrics").resolve("metrics.json");
+    MetricsTracker tracker = new MetricsTracker();
+    tracker.setOutputFile(file.toString());
+    tracker.createMetric(MetricName.Read);
+    tracker.createMetric(MetricName.Write);
+    tracker.getMetric(MetricName.Write).accumulate(5, 4 * NANOS_PER_MILLI);
+    tracker.closeOutputFile();
+
+    // One JSON object per metric and per line, without a header.
+    List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    assertEquals(2, lines.size());
+    JSONObject read = new JSONObject(lines.get(0));
+    JSONObject write = new JSONObject(lines.get(1));
+    assertEquals(new HashSet<>(Arrays.asList("timestamp_ms", "metric", "ops_per_sec", "mean_ms",
+                                             "p50_ms", "p99_ms", "p999_ms", "max_ms",
+                                             "total_ops")),
+                 write.keySet());
+    assertEquals("Read", read.getString("metric"));
+    assertEquals(0, read.getLong("total_ops"));
+    assertEquals("Write", write.getString("metric"));
+    assertEquals(5, write.getLong("total_ops"));
+    assertEquals(4.0, write.getDouble("mean_ms"), 1e-9);
+    assertLatency(4, write.getDouble("p50_ms"));
+  }
+}
@@ -0,0 +1,114 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.loadtest;
+
+import com.yugabyte.sample.common.OpenLoopSchedule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertTrue;
+
+@RunWith(value = YBTestRunner.class)
+public class TestOpenLoopSchedule {
+  private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void testOpsStartOnSchedule() throws Exception {
+    OpenLoopSchedule schedule = new OpenLoopSchedule(1000);
+    long first = schedule.awaitNextOp();
+    long previous = first;
+    for (int i = 1; i < 100; i++) {
+      long intendedStart = schedule.awaitNextOp();
+      // Every op waits for its own slot, one millisecond after the previous one.
+      assertTrue(System.nanoTime() >= intendedStart);
+      assertEquals(NANOS_PER_MILLI, intendedStart - previous, 1.0);
+      previous = intendedStart;
+    }
+    assertEquals(99 * NANOS_PER_MILLI, previous - first, 1.0);
+    assertTrue(System.nanoTime() - first >= 99 * NANOS_PER_MILLI);
+  }
+
+  @Test
+  public void testLateOpsKeepTheirIntendedStart() throws Exception {
+    OpenLoopSchedule schedule = new OpenLoopSchedule(10);
+    long first = schedule.awaitNextOp();
+    // The client stalls for 350ms, the 3 ops due meanwhile are started right away, but their
+    // latency is measured from when they should have started.
+    Thread.sleep(350);
+    long stalledAt = System.nanoTime();
+    for (int i = 1; i <= 3; i++) {
+      long intendedStart = schedule.awaitNextOp();
+      assertEquals(first + i * 100 * NANOS_PER_MILLI, intendedStart);
+      long latency = System.nanoTime() - intendedStart;
+      assertTrue(latency >= (350 - i * 100) * NANOS_PER_MILLI);
+    }
+    assertTrue(System.nanoTime() - stalledAt < 50 * NANOS_PER_MILLI);
+    // The next op is on time again, and waits for its slot.
+    long intendedStart = schedule.awaitNextOp();
+    assertEquals(first + 400 * NANOS_PER_MILLI, intendedStart);
+    assertTrue(System.nanoTime() >= intendedStart);
+    assertEquals(0, schedule.getLagNanos());
+  }
+
+  @Test
+  public void testLag() throws Exception {
+    OpenLoopSchedule schedule = new OpenLoopSchedule(100);
+    schedule.awaitNextOp();
+    Thread.sleep(200);
+    // The next op was due 190ms ago.
+    assertTrue(schedule.getLagNanos() >= 190 * NANOS_PER_MILLI);
+  }
+
+  @Test
+  public void testScheduleSharedByThreads() throws Exception {
+    final OpenLoopSchedule schedule = new OpenLoopSchedule(2000);
+    final List<Long> intendedStarts = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      threads.add(new Thread(() -> {
+        try {
+          for (int op = 0; op < 50; op++) {
+            intendedStarts.add(schedule.awaitNextOp());
+          }
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    // The threads claim distinct slots, together they follow the rate of the schedule.
+    Collections.sort(intendedStarts);
+    assertEquals(200, intendedStarts.size());
+    for (int i = 1; i < intendedStarts.size(); i++) {
+      assertEquals(NANOS_PER_MILLI / 2, intendedStarts.get(i) - intendedStarts.get(i - 1), 1.0);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidRate() {
+    new OpenLoopSchedule(0);
+  }
+}
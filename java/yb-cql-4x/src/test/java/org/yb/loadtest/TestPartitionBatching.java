@@ -0,0 +1,119 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.loadtest;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.config.DefaultDriverOption;
+import com.datastax.oss.driver.api.core.config.DriverConfigLoader;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.querybuilder.SchemaBuilder;
+import com.yugabyte.sample.apps.AppBase;
+import com.yugabyte.sample.common.TimeseriesLoadGenerator;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.minicluster.BaseMiniClusterTest;
+import org.yb.util.YBTestRunnerNonTsanOnly;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertTrue;
+
+@RunWith(value= YBTestRunnerNonTsanOnly.class)
+public class TestPartitionBatching extends BaseMiniClusterTest {
+  private static final String KEYSPACE = "cql_test_keyspace";
+  private static final long DATA_EMIT_RATE_MS = 60000;
+  private static final long TABLE_TTL_MS = 24 * 60 * 60 * 1000L;
+
+  private CqlSession session = null;
+
+  @After
+  public void tearDown() {
+    if (session != null) {
+      session.close();
+    }
+  }
+
+  private void createTickerTable(String name) {
+    session.execute(String.format("CREATE TABLE %s.%s (ticker_id varchar, ts timestamp, " +
+                                  "value varchar, primary key ((ticker_id), ts))", KEYSPACE, name));
+  }
+
+  private long countRows(String table, String tickerId) {
+    return session.execute(String.format("SELECT count(*) FROM %s.%s WHERE ticker_id = '%s'",
+                                         KEYSPACE, table, tickerId)).one().getLong(0);
+  }
+
+  @Test
+  public void testBatchedTickerBacklog() throws Exception {
+    session = CqlSession.builder()
+        .withConfigLoader(DriverConfigLoader.programmaticBuilder()
+            .withDuration(DefaultDriverOption.REQUEST_TIMEOUT, Duration.ofSeconds(10))
+            .build())
+        .addContactPoints(miniCluster.getCQLContactPoints())
+        .build();
+    session.execute(SchemaBuilder.createKeyspace(KEYSPACE).ifNotExists()
+                                 .withSimpleStrategy(1).build());
+    createTickerTable("stock_ticker_raw");
+    createTickerTable("stock_ticker_1min");
+    PreparedStatement insertRaw = session.prepare(
+        "INSERT INTO " + KEYSPACE + ".stock_ticker_raw (ticker_id, ts, value) VALUES (?, ?, ?)");
+    PreparedStatement insertMin = session.prepare(
+        "INSERT INTO " + KEYSPACE + ".stock_ticker_1min (ticker_id, ts, value) VALUES (?, ?, ?)");
+
+    // A ticker which is five data points behind has them all due, up to the batch size.
+    TimeseriesLoadGenerator ticker =
+        new TimeseriesLoadGenerator(0, DATA_EMIT_RATE_MS, TABLE_TTL_MS);
+    long now = System.currentTimeMillis();
+    ticker.setLastEmittedTs(now - now % DATA_EMIT_RATE_MS - 5 * DATA_EMIT_RATE_MS);
+    assertEquals(5, ticker.getDataEmitTsBacklog(10).size());
+    List<Long> backlog = ticker.claimDataEmitTsBacklog(3);
+    assertEquals(3, backlog.size());
+    // Claimed data points are not handed out again, the next operation gets the rest.
+    assertEquals(2, ticker.getDataEmitTsBacklog(10).size());
+    assertEquals((long) backlog.get(2) + DATA_EMIT_RATE_MS,
+                 (long) ticker.getDataEmitTsBacklog(10).get(0));
+
+    List<BoundStatement> inserts = new ArrayList<>();
+    for (long ts : backlog) {
+      inserts.add(insertRaw.bind(ticker.getId(), new Date(ts), "value-" + ts));
+    }
+    inserts.add(insertRaw.bind("1", new Date(now), "value-" + now));
+    inserts.add(insertMin.bind(ticker.getId(), new Date(now), "value-" + now));
+
+    // The backlog of the ticker goes into a single batch, the other partitions on their own.
+    List<Statement<?>> grouped = AppBase.groupByPartition(inserts);
+    assertEquals(3, grouped.size());
+    assertTrue(grouped.get(0) instanceof BatchStatement);
+    BatchStatement batch = (BatchStatement) grouped.get(0);
+    assertEquals(3, batch.size());
+    assertEquals(inserts.get(0).getRoutingKey(), batch.getRoutingKey());
+    assertTrue(grouped.get(1) == inserts.get(3));
+    assertTrue(grouped.get(2) == inserts.get(4));
+
+    for (Statement<?> statement : grouped) {
+      session.execute(statement);
+    }
+    assertEquals(3, countRows("stock_ticker_raw", ticker.getId()));
+    assertEquals(1, countRows("stock_ticker_raw", "1"));
+    assertEquals(1, countRows("stock_ticker_1min", ticker.getId()));
+  }
+}
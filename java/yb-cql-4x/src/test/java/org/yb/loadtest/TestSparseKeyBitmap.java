@@ -0,0 +1,51 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.loadtest;
+
+import com.yugabyte.sample.common.SparseKeyBitmap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertFalse;
+import static org.yb.AssertionWrappers.assertTrue;
+
+@RunWith(value = YBTestRunner.class)
+public class TestSparseKeyBitmap {
+
+  @Test
+  public void testWordBoundaries() {
+    SparseKeyBitmap keys = new SparseKeyBitmap();
+    assertFalse(keys.contains(0));
+    assertEquals(0, keys.size());
+
+    // The last and first bits of neighbouring words, and of neighbouring chunks of 4096 keys.
+    long[] added = {0, 63, 64, 127, 4095, 4096, 1L << 40, (1L << 40) + 63};
+    for (long key : added) {
+      assertTrue(keys.add(key));
+    }
+    for (long key : added) {
+      assertTrue(keys.contains(key));
+      // Adding a key twice doesn't count it twice.
+      assertFalse(keys.add(key));
+    }
+    assertEquals(added.length, keys.size());
+
+    // The bits next to the ones set, within and across words and chunks.
+    for (long key : new long[] {1, 62, 65, 126, 128, 4094, 4097, 8191, (1L << 40) + 64}) {
+      assertFalse(keys.contains(key));
+    }
+  }
+}
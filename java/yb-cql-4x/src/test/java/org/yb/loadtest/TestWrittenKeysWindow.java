@@ -0,0 +1,94 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.loadtest;
+
+import com.yugabyte.sample.common.WrittenKeysWindow;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertFalse;
+import static org.yb.AssertionWrappers.assertTrue;
+
+@RunWith(value = YBTestRunner.class)
+public class TestWrittenKeysWindow {
+
+  @Test
+  public void testWrapAround() {
+    WrittenKeysWindow window = new WrittenKeysWindow(-1, 64);
+    for (int lap = 0; lap < 4; lap++) {
+      long first = window.getWatermark() + 1;
+      // Keys done out of order don't move the watermark past the first key left.
+      for (long key = first + 63; key > first; key--) {
+        assertTrue(window.markDone(key));
+      }
+      assertEquals(first - 1, window.getWatermark());
+      // The key one lap above the first one shares its bit, it can't be tracked yet.
+      assertFalse(window.canTrack(first + 64));
+      assertFalse(window.markDone(first + 64));
+
+      assertTrue(window.markDone(first));
+      assertEquals(first + 63, window.getWatermark());
+      // The bits of the lap were cleared, the next lap starts from scratch.
+      assertTrue(window.canTrack(first + 64));
+      assertTrue(window.canTrack(first + 127));
+      assertFalse(window.canTrack(first + 128));
+    }
+    assertEquals(4 * 64 - 1, window.getWatermark());
+
+    // Keys at or below the watermark are done already.
+    assertTrue(window.markDone(10));
+    assertFalse(window.canTrack(10));
+    assertEquals(4 * 64 - 1, window.getWatermark());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSize() {
+    new WrittenKeysWindow(-1, 96);
+  }
+
+  @Test
+  public void testConcurrentAdvance() throws Exception {
+    final long numKeys = 1000000;
+    final WrittenKeysWindow window = new WrittenKeysWindow(-1, 1024);
+    final AtomicLong nextKey = new AtomicLong();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      threads.add(new Thread(() -> {
+        long key;
+        while ((key = nextKey.getAndIncrement()) < numKeys) {
+          // Wait for the slower threads to move the watermark up, as getKeyToWrite() does.
+          while (!window.markDone(key)) {
+            Thread.yield();
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    // No key marked while another thread was moving the watermark up was left behind.
+    assertEquals(numKeys - 1, window.getWatermark());
+    assertTrue(window.canTrack(numKeys + 1023));
+    assertFalse(window.canTrack(numKeys + 1024));
+  }
+}
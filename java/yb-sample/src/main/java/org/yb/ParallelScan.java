@@ -0,0 +1,283 @@
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+package org.yb.sample;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// ParallelScan.
+// This module scans a large table in parallel. The table is split in ranges of the yb_hash_code()
+// of its hash columns, and the ranges are scanned each with its own connection on a bounded pool,
+// streaming the rows with the given fetch size.
+// By default there is one range per tablet: a table hash-partitioned in N tablets is split in N
+// equal ranges of the hash space, which are the boundaries of its tablets unless they were split
+// since. Use --ranges to split the hash space in another number of ranges.
+// Completed ranges are recorded in the checkpoint file, if any, so that an interrupted scan
+// resumes with the ranges it didn't complete.
+// To install and execute
+//   mvn install exec:java -Dexec.mainClass=org.yb.sample.ParallelScan \
+//       -Dexec.args="--table users --hash_columns id --parallelism 8 --checkpoint_file users.ckpt"
+public class ParallelScan {
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelScan.class);
+
+  // yb_hash_code() values are in [0, MAX_HASH_CODE).
+  private static final int MAX_HASH_CODE = 65536;
+
+  // How often to report the progress of the whole scan.
+  private static final long REPORT_INTERVAL_SECONDS = 10;
+
+  private static final String USAGE =
+      "Options: --table <name> --hash_columns <col1,col2,...> [--columns <col1,...>]\n" +
+      "         [--url <jdbc url>] [--user <user>] [--password <password>]\n" +
+      "         [--parallelism <threads>] [--ranges <count>] [--fetch_size <rows>]\n" +
+      "         [--checkpoint_file <path>]";
+
+  private String url = "jdbc:postgresql://localhost:5433/yugabyte";
+  private String user = "yugabyte";
+  private String password = "yugabyte";
+  private String table = null;
+  private String hashColumns = null;
+  private String columns = "*";
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  // The number of ranges to scan, one per tablet if not set.
+  private int numRanges = 0;
+  private int fetchSize = 1000;
+  private String checkpointFile = null;
+
+  private final LongAdder totalRows = new LongAdder();
+  private final LongAdder totalBytes = new LongAdder();
+  private final AtomicInteger numRangesDone = new AtomicInteger();
+
+  // A range [lo, hi) of yb_hash_code() values.
+  static class HashRange {
+    final int lo;
+    final int hi;
+
+    HashRange(int lo, int hi) {
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    @Override
+    public String toString() {
+      return lo + "-" + hi;
+    }
+  }
+
+  private void parseArgs(String[] args) {
+    for (int i = 0; i < args.length; i += 2) {
+      if (i + 1 >= args.length) {
+        throw new IllegalArgumentException("Missing value for " + args[i] + "\n" + USAGE);
+      }
+      String value = args[i + 1];
+      switch (args[i]) {
+        case "--url": url = value; break;
+        case "--user": user = value; break;
+        case "--password": password = value; break;
+        case "--table": table = value; break;
+        case "--hash_columns": hashColumns = value; break;
+        case "--columns": columns = value; break;
+        case "--parallelism": parallelism = Integer.parseInt(value); break;
+        case "--ranges": numRanges = Integer.parseInt(value); break;
+        case "--fetch_size": fetchSize = Integer.parseInt(value); break;
+        case "--checkpoint_file": checkpointFile = value; break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + args[i] + "\n" + USAGE);
+      }
+    }
+    if (table == null || hashColumns == null) {
+      throw new IllegalArgumentException("--table and --hash_columns are required\n" + USAGE);
+    }
+    if (parallelism <= 0 || numRanges < 0 || numRanges > MAX_HASH_CODE || fetchSize <= 0) {
+      throw new IllegalArgumentException("Invalid option values\n" + USAGE);
+    }
+  }
+
+  // Splits the hash space in the given number of equal ranges, the way the tablets of a
+  // hash-partitioned table are split when it is created.
+  static List<HashRange> splitHashSpace(int count) {
+    List<HashRange> ranges = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      ranges.add(new HashRange(i * MAX_HASH_CODE / count, (i + 1) * MAX_HASH_CODE / count));
+    }
+    return ranges;
+  }
+
+  private int getNumTablets() throws Exception {
+    try (Connection cxn = new YbSqlUtil().connect(url, user, password);
+         PreparedStatement stmt =
+             cxn.prepareStatement("SELECT num_tablets FROM yb_table_properties(?::regclass)")) {
+      stmt.setString(1, table);
+      try (ResultSet rs = stmt.executeQuery()) {
+        rs.next();
+        return rs.getInt(1);
+      }
+    }
+  }
+
+  private Set<String> loadCheckpoint() throws IOException {
+    Set<String> done = new HashSet<>();
+    if (checkpointFile == null || !new File(checkpointFile).exists()) {
+      return done;
+    }
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+             new FileInputStream(checkpointFile), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        // Each line is "<range> <rows> <bytes>".
+        String[] fields = line.trim().split(" ");
+        if (!fields[0].isEmpty()) {
+          done.add(fields[0]);
+        }
+      }
+    }
+    return done;
+  }
+
+  private synchronized void checkpoint(HashRange range, long rows, long bytes) throws IOException {
+    if (checkpointFile == null) {
+      return;
+    }
+    try (Writer writer = new OutputStreamWriter(
+             new FileOutputStream(checkpointFile, true /* append */), StandardCharsets.UTF_8)) {
+      writer.write(String.format("%s %d %d\n", range, rows, bytes));
+    }
+  }
+
+  private void scanRange(HashRange range) throws Exception {
+    String query = String.format(
+        "SELECT %s FROM %s WHERE yb_hash_code(%s) >= ? AND yb_hash_code(%s) < ?",
+        columns, table, hashColumns, hashColumns);
+    long startNanos = System.nanoTime();
+    long rows = 0;
+    long bytes = 0;
+    try (Connection cxn = new YbSqlUtil().connect(url, user, password)) {
+      // Rows are only streamed by fetch size batches within a transaction.
+      cxn.setAutoCommit(false);
+      try (PreparedStatement stmt = cxn.prepareStatement(query)) {
+        stmt.setFetchSize(fetchSize);
+        stmt.setInt(1, range.lo);
+        stmt.setInt(2, range.hi);
+        try (ResultSet rs = stmt.executeQuery()) {
+          int numColumns = rs.getMetaData().getColumnCount();
+          while (rs.next()) {
+            long rowBytes = 0;
+            for (int i = 1; i <= numColumns; i++) {
+              // The value as received, without decoding it.
+              byte[] value = rs.getBytes(i);
+              if (value != null) {
+                rowBytes += value.length;
+              }
+            }
+            rows++;
+            bytes += rowBytes;
+            totalRows.increment();
+            totalBytes.add(rowBytes);
+          }
+        }
+      }
+      cxn.commit();
+    }
+    checkpoint(range, rows, bytes);
+    double seconds = Math.max(1, System.nanoTime() - startNanos) / 1e9;
+    LOG.info(String.format("Range %s: %d rows, %d bytes in %.1f s, %.0f rows/sec, %.0f bytes/sec" +
+                           " (%d ranges done)",
+                           range, rows, bytes, seconds, rows / seconds, bytes / seconds,
+                           numRangesDone.incrementAndGet()));
+  }
+
+  // Returns true if all the ranges were scanned.
+  private boolean run() throws Exception {
+    if (numRanges == 0) {
+      try {
+        numRanges = getNumTablets();
+      } catch (SQLException e) {
+        numRanges = 4 * parallelism;
+        LOG.warn(String.format("Failed to get the number of tablets of %s, scanning %d ranges.",
+                               table, numRanges), e);
+      }
+    }
+    List<HashRange> ranges = splitHashSpace(numRanges);
+    Set<String> done = loadCheckpoint();
+    List<HashRange> pending = new ArrayList<>();
+    for (HashRange range : ranges) {
+      if (!done.contains(range.toString())) {
+        pending.add(range);
+      }
+    }
+    LOG.info(String.format("Scanning %s: %d ranges, %d already done, %d threads",
+                           table, ranges.size(), ranges.size() - pending.size(), parallelism));
+
+    long startNanos = System.nanoTime();
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+    reporter.scheduleAtFixedRate(() -> {
+      double seconds = (System.nanoTime() - startNanos) / 1e9;
+      LOG.info(String.format("Progress: %d/%d ranges, %d rows, %d bytes, %.0f rows/sec," +
+                             " %.0f bytes/sec",
+                             numRangesDone.get(), pending.size(), totalRows.sum(),
+                             totalBytes.sum(), totalRows.sum() / seconds,
+                             totalBytes.sum() / seconds));
+    }, REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+    ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+    List<Future<?>> futures = new ArrayList<>();
+    for (HashRange range : pending) {
+      futures.add(pool.submit(() -> {
+        scanRange(range);
+        return null;
+      }));
+    }
+    int numFailed = 0;
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        futures.get(i).get();
+      } catch (ExecutionException e) {
+        numFailed++;
+        LOG.error(String.format("Failed to scan range %s.", pending.get(i)), e.getCause());
+      }
+    }
+    pool.shutdown();
+    reporter.shutdownNow();
+
+    double seconds = (System.nanoTime() - startNanos) / 1e9;
+    LOG.info(String.format("Scanned %d rows, %d bytes in %.1f s, %.0f rows/sec, %.0f bytes/sec." +
+                           " %d ranges failed",
+                           totalRows.sum(), totalBytes.sum(), seconds, totalRows.sum() / seconds,
+                           totalBytes.sum() / seconds, numFailed));
+    return numFailed == 0;
+  }
+
+  public static void main(String[] args) throws Exception {
+    ParallelScan scan = new ParallelScan();
+    scan.parseArgs(args);
+    if (!scan.run()) {
+      LOG.info("Run again with the same checkpoint file to scan the failed ranges.");
+      System.exit(1);
+    }
+  }
+}
@@ -26,10 +26,15 @@ public class YbSqlUtil {
   private Connection localCxn = null;
 
   public Connection connectLocal() throws Exception {
-    Class.forName("org.postgresql.Driver");
     String host = "localhost";
     String connectString = "jdbc:postgresql://" + host + ":5433/yugabyte";
-    localCxn = DriverManager.getConnection(connectString, "yugabyte", "yugabyte");
+    return connect(connectString, "yugabyte", "yugabyte");
+  }
+
+  public Connection connect(String connectString, String user, String password)
+      throws Exception {
+    Class.forName("org.postgresql.Driver");
+    localCxn = DriverManager.getConnection(connectString, user, password);
 
     return localCxn;
   }
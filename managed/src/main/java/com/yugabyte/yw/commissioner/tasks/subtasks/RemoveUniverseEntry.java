@@ -39,7 +39,6 @@ public class RemoveUniverseEntry extends UniverseTaskBase {
   public void run() {
     Customer customer = Customer.get(taskParams().customerUUID);
     customer.removeUniverseUUID(taskParams().universeUUID);
-    customer.save();
     Universe.delete(taskParams().universeUUID);
 
     alertConfigurationService.handleSourceRemoval(
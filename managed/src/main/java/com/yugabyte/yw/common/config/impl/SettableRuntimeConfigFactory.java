@@ -13,6 +13,8 @@ package com.yugabyte.yw.common.config.impl;
 import static com.yugabyte.yw.models.ScopedRuntimeConfig.GLOBAL_SCOPE_UUID;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import com.typesafe.config.ConfigParseOptions;
@@ -21,10 +23,17 @@ import com.yugabyte.yw.common.ybflyway.YBFlywayInit;
 import com.yugabyte.yw.models.Customer;
 import com.yugabyte.yw.models.Provider;
 import com.yugabyte.yw.models.RuntimeConfigEntry;
+import com.yugabyte.yw.models.ScopedRuntimeConfig;
 import com.yugabyte.yw.models.Universe;
 import io.ebean.Model;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
@@ -34,11 +43,39 @@ import org.slf4j.LoggerFactory;
 import play.db.ebean.EbeanDynamicEvolutions;
 import play.libs.Json;
 
-/** Factory to create RuntimeConfig for various scopes */
+/**
+ * Factory to create RuntimeConfig for various scopes.
+ *
+ * <p>The config resolved for a scope is cached along with the versions of the scopes it is
+ * resolved from, so that it is built from the DB entries only after a write to one of them. The
+ * writes of this platform instance are seen right away, the writes of other instances sharing the
+ * DB once the versions in the DB are checked, at most every version_check_interval.
+ */
 @Singleton
 public class SettableRuntimeConfigFactory implements RuntimeConfigFactory {
   private static final Logger LOG = LoggerFactory.getLogger(SettableRuntimeConfigFactory.class);
 
+  // Config names
+  @VisibleForTesting static final String CACHE_ENABLED = "yb.runtime_conf_cache.enabled";
+
+  @VisibleForTesting
+  static final String CACHE_VERSION_CHECK_INTERVAL =
+      "yb.runtime_conf_cache.version_check_interval";
+
+  // Metric names
+  static final String CACHE_HIT_METRIC_NAME = "ybp_runtime_config_cache_hit_count";
+  static final String CACHE_MISS_METRIC_NAME = "ybp_runtime_config_cache_miss_count";
+
+  // Cached configs, one per customer, universe and provider and the global one.
+  private static final long MAX_CACHED_CONFIGS = 10000;
+
+  private static Counter CACHE_HIT_COUNT;
+  private static Counter CACHE_MISS_COUNT;
+
+  static {
+    registerMetrics();
+  }
+
   // For example, anything just email, or ending with .email, _email or -email matches.
   private static final Pattern SENSITIVE_CONFIG_NAME_PAT =
       Pattern.compile("(^|\\.|[_\\-])(email|password|server)$");
@@ -48,6 +85,31 @@ public class SettableRuntimeConfigFactory implements RuntimeConfigFactory {
 
   private final Config appConfig;
 
+  private final boolean cacheEnabled;
+  private final long versionCheckIntervalNanos;
+  private final Cache<UUID, CachedConfig> cache =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_CONFIGS).build();
+  // Customer uuids by id, as universes only refer to their customer by id.
+  private final Map<Long, UUID> customerUUIDs = new ConcurrentHashMap<>();
+
+  /** A config resolved from the entries of some scopes, and the versions of these scopes. */
+  private static class CachedConfig {
+    final Config config;
+    final List<UUID> scopes;
+    final long[] localWriteCounts;
+    final long[] versions;
+    // When the versions were last checked to be current.
+    volatile long checkedNanos;
+
+    CachedConfig(Config config, List<UUID> scopes, long[] localWriteCounts, long[] versions) {
+      this.config = config;
+      this.scopes = scopes;
+      this.localWriteCounts = localWriteCounts;
+      this.versions = versions;
+      this.checkedNanos = System.nanoTime();
+    }
+  }
+
   // We need to do this because appConfig is preResolved by playFramework
   // So setting references to global or universe scoped config in reference.conf or application.conf
   // wont resolve to unexpected.
@@ -60,6 +122,18 @@ public class SettableRuntimeConfigFactory implements RuntimeConfigFactory {
   public SettableRuntimeConfigFactory(
       Config appConfig, EbeanDynamicEvolutions ebeanDynamicEvolutions, YBFlywayInit ybFlywayInit) {
     this.appConfig = appConfig;
+    this.cacheEnabled = appConfig.getBoolean(CACHE_ENABLED);
+    this.versionCheckIntervalNanos = appConfig.getDuration(CACHE_VERSION_CHECK_INTERVAL).toNanos();
+  }
+
+  @VisibleForTesting
+  static void registerMetrics() {
+    CACHE_HIT_COUNT =
+        Counter.build(CACHE_HIT_METRIC_NAME, "Number of runtime configs served from the cache")
+            .register(CollectorRegistry.defaultRegistry);
+    CACHE_MISS_COUNT =
+        Counter.build(CACHE_MISS_METRIC_NAME, "Number of runtime configs read from the DB")
+            .register(CollectorRegistry.defaultRegistry);
   }
 
   /** @return A RuntimeConfig instance for a given scope */
@@ -68,8 +142,12 @@ public class SettableRuntimeConfigFactory implements RuntimeConfigFactory {
     RuntimeConfig<Customer> config =
         new RuntimeConfig<>(
             customer,
-            getConfigForScope(customer.uuid, "Scoped Config (" + customer + ")")
-                .withFallback(globalConfig()));
+            getCachedConfig(
+                customer.uuid,
+                Arrays.asList(customer.uuid, GLOBAL_SCOPE_UUID),
+                () ->
+                    getConfigForScope(customer.uuid, "Scoped Config (" + customer + ")")
+                        .withFallback(loadGlobalConfig())));
     LOG.trace("forCustomer {}: {}", customer.uuid, config);
     return config;
   }
@@ -77,13 +155,22 @@ public class SettableRuntimeConfigFactory implements RuntimeConfigFactory {
   /** @return A RuntimeConfig instance for a given scope */
   @Override
   public RuntimeConfig<Universe> forUniverse(Universe universe) {
-    Customer customer = Customer.get(universe.customerId);
+    UUID customerUUID =
+        customerUUIDs.computeIfAbsent(universe.customerId, id -> Customer.get(id).uuid);
     RuntimeConfig<Universe> config =
         new RuntimeConfig<>(
             universe,
-            getConfigForScope(universe.universeUUID, "Scoped Config (" + universe + ")")
-                .withFallback(getConfigForScope(customer.uuid, "Scoped Config (" + customer + ")"))
-                .withFallback(globalConfig()));
+            getCachedConfig(
+                universe.universeUUID,
+                Arrays.asList(universe.universeUUID, customerUUID, GLOBAL_SCOPE_UUID),
+                () -> {
+                  Customer customer = Customer.get(universe.customerId);
+                  return getConfigForScope(
+                          universe.universeUUID, "Scoped Config (" + universe + ")")
+                      .withFallback(
+                          getConfigForScope(customer.uuid, "Scoped Config (" + customer + ")"))
+                      .withFallback(loadGlobalConfig());
+                }));
     LOG.trace("forUniverse {}: {}", universe.universeUUID, config);
     return config;
   }
@@ -91,13 +178,19 @@ public class SettableRuntimeConfigFactory implements RuntimeConfigFactory {
   /** @return A RuntimeConfig instance for a given scope */
   @Override
   public RuntimeConfig<Provider> forProvider(Provider provider) {
-    Customer customer = Customer.get(provider.customerUUID);
     RuntimeConfig<Provider> config =
         new RuntimeConfig<>(
             provider,
-            getConfigForScope(provider.uuid, "Scoped Config (" + provider + ")")
-                .withFallback(getConfigForScope(customer.uuid, "Scoped Config (" + customer + ")"))
-                .withFallback(globalConfig()));
+            getCachedConfig(
+                provider.uuid,
+                Arrays.asList(provider.uuid, provider.customerUUID, GLOBAL_SCOPE_UUID),
+                () -> {
+                  Customer customer = Customer.get(provider.customerUUID);
+                  return getConfigForScope(provider.uuid, "Scoped Config (" + provider + ")")
+                      .withFallback(
+                          getConfigForScope(customer.uuid, "Scoped Config (" + customer + ")"))
+                      .withFallback(loadGlobalConfig());
+                }));
     LOG.trace("forProvider {}: {}", provider.uuid, config);
     return config;
   }
@@ -114,6 +207,11 @@ public class SettableRuntimeConfigFactory implements RuntimeConfigFactory {
   }
 
   private Config globalConfig() {
+    return getCachedConfig(
+        GLOBAL_SCOPE_UUID, Arrays.asList(GLOBAL_SCOPE_UUID), this::loadGlobalConfig);
+  }
+
+  private Config loadGlobalConfig() {
     Config config =
         getConfigForScope(GLOBAL_SCOPE_UUID, "Global Runtime Config (" + GLOBAL_SCOPE_UUID + ")")
             .withFallback(UNRESOLVED_STATIC_CONFIG)
@@ -122,6 +220,48 @@ public class SettableRuntimeConfigFactory implements RuntimeConfigFactory {
     return config;
   }
 
+  /**
+   * @return the config cached for the key if none of the scopes it is resolved from was written
+   *     since, otherwise the config built by the loader.
+   */
+  private Config getCachedConfig(UUID key, List<UUID> scopes, Supplier<Config> loader) {
+    if (!cacheEnabled) {
+      return loader.get();
+    }
+    long[] localWriteCounts = getLocalWriteCounts(scopes);
+    CachedConfig cached = cache.getIfPresent(key);
+    if (cached != null
+        && cached.scopes.equals(scopes)
+        && Arrays.equals(cached.localWriteCounts, localWriteCounts)) {
+      long now = System.nanoTime();
+      if (now - cached.checkedNanos < versionCheckIntervalNanos) {
+        CACHE_HIT_COUNT.inc();
+        return cached.config;
+      }
+      // Written by another platform instance?
+      if (Arrays.equals(cached.versions, ScopedRuntimeConfig.getVersions(scopes))) {
+        cached.checkedNanos = now;
+        CACHE_HIT_COUNT.inc();
+        return cached.config;
+      }
+    }
+    CACHE_MISS_COUNT.inc();
+    // The versions are read before the entries: a write in between makes the cached config look
+    // outdated, and it is read again, rather than the other way around.
+    long[] versions = ScopedRuntimeConfig.getVersions(scopes);
+    Config config = loader.get();
+    cache.put(key, new CachedConfig(config, scopes, localWriteCounts, versions));
+    return config;
+  }
+
+  private static long[] getLocalWriteCounts(List<UUID> scopes) {
+    long[] counts = new long[scopes.size()];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = ScopedRuntimeConfig.getLocalWriteCount(scopes.get(i));
+    }
+    return counts;
+  }
+
   @VisibleForTesting
   Config getConfigForScope(UUID scope, String description) {
     Map<String, String> values = RuntimeConfigEntry.getAsMapForScope(scope);
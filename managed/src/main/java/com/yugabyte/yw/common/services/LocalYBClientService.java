@@ -2,34 +2,195 @@
 
 package com.yugabyte.yw.common.services;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.yb.client.AsyncYBClient;
 import org.yb.client.YBClient;
+import play.inject.ApplicationLifecycle;
 
+/**
+ * Hands out clients from a pool keyed by (masterHostPorts, certFile), so that the subtasks and
+ * controllers calling getClient/closeClient around a few RPCs share the connections, threads and
+ * master leader discovery of one client per universe instead of building their own each time.
+ *
+ * <p>Each getClient call leases the pooled client of its key, and closing the returned client
+ * (through closeClient or close) releases the lease. A pooled client is removed from the pool when
+ * it stays idle longer than the idle timeout, fails a health check, leased or not, or is
+ * superseded by a client for a changed set of masters of the same universe. It is closed once its
+ * leases are released. Clients built by
+ * getClientWithConfig are not pooled: they belong to the caller, which closes them.
+ */
 @Singleton
 public class LocalYBClientService implements YBClientService {
   public static final Logger LOG = LoggerFactory.getLogger(LocalYBClientService.class);
 
+  // Config names
+  static final String POOL_ENABLED = "yb.client_pool.enabled";
+  static final String POOL_IDLE_TIMEOUT = "yb.client_pool.idle_timeout";
+  static final String POOL_HEALTH_CHECK_INTERVAL = "yb.client_pool.health_check_interval";
+  static final String POOL_HEALTH_CHECK_PARALLELISM = "yb.client_pool.health_check_parallelism";
+
+  // Metric names
+  static final String POOL_HIT_METRIC_NAME = "ybp_yb_client_pool_hit_count";
+  static final String POOL_MISS_METRIC_NAME = "ybp_yb_client_pool_miss_count";
+  static final String POOL_EVICTION_METRIC_NAME = "ybp_yb_client_pool_eviction_count";
+  static final String POOL_SIZE_METRIC_NAME = "ybp_yb_client_pool_size";
+  static final String POOL_LEASES_METRIC_NAME = "ybp_yb_client_pool_leases";
+
+  // Metric label
+  static final String EVICTION_REASON_LABEL = "reason";
+
+  // Eviction reasons
+  static final String EVICTED_IDLE = "idle";
+  static final String EVICTED_UNHEALTHY = "unhealthy";
+  static final String EVICTED_MASTERS_CHANGED = "masters_changed";
+
+  private static Counter POOL_HIT_COUNT;
+  private static Counter POOL_MISS_COUNT;
+  private static Counter POOL_EVICTION_COUNT;
+  private static Gauge POOL_SIZE;
+  private static Gauge POOL_LEASES;
+
+  static {
+    registerMetrics();
+  }
+
+  private final boolean poolEnabled;
+  private final long idleTimeoutNanos;
+  private final long healthCheckIntervalNanos;
+
+  // The pooled clients that can be leased. Guarded by this.
+  private final Map<PoolKey, PooledClient> pool = new HashMap<>();
+  // Number of leases held on pooled clients, including the ones no longer in the pool. Guarded by
+  // this.
+  private int numLeases = 0;
+
+  private final ScheduledExecutorService maintenanceExecutor;
+  // Runs the health checks of a maintenance run in parallel, so that unreachable masters don't
+  // delay the checks of the other clients.
+  private final ExecutorService healthCheckExecutor;
+
+  @Inject
+  public LocalYBClientService(com.typesafe.config.Config config, ApplicationLifecycle lifecycle) {
+    this(
+        config.getBoolean(POOL_ENABLED),
+        config.getDuration(POOL_IDLE_TIMEOUT),
+        config.getDuration(POOL_HEALTH_CHECK_INTERVAL),
+        config.getInt(POOL_HEALTH_CHECK_PARALLELISM));
+    lifecycle.addStopHook(() -> CompletableFuture.runAsync(this::shutdown));
+  }
+
+  @VisibleForTesting
+  LocalYBClientService(
+      boolean poolEnabled,
+      Duration idleTimeout,
+      Duration healthCheckInterval,
+      int healthCheckParallelism) {
+    this.poolEnabled = poolEnabled;
+    this.idleTimeoutNanos = idleTimeout.toNanos();
+    this.healthCheckIntervalNanos = healthCheckInterval.toNanos();
+    if (poolEnabled) {
+      // Evictions are checked several times per idle timeout, so that clients don't outstay it by
+      // much.
+      long periodMs =
+          Math.max(1000, Math.min(idleTimeout.toMillis() / 4, healthCheckInterval.toMillis()));
+      maintenanceExecutor =
+          Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder()
+                  .setNameFormat("YBClient-Pool-Maintenance-%d")
+                  .setDaemon(true)
+                  .build());
+      healthCheckExecutor =
+          Executors.newFixedThreadPool(
+              healthCheckParallelism,
+              new ThreadFactoryBuilder()
+                  .setNameFormat("YBClient-Pool-Health-Check-%d")
+                  .setDaemon(true)
+                  .build());
+      maintenanceExecutor.scheduleWithFixedDelay(
+          () -> {
+            try {
+              runMaintenance();
+            } catch (Exception e) {
+              LOG.error("Error running YBClient pool maintenance", e);
+            }
+          },
+          periodMs,
+          periodMs,
+          TimeUnit.MILLISECONDS);
+    } else {
+      maintenanceExecutor = null;
+      healthCheckExecutor = null;
+    }
+  }
+
+  @VisibleForTesting
+  static void registerMetrics() {
+    POOL_HIT_COUNT =
+        Counter.build(POOL_HIT_METRIC_NAME, "Number of YBClient leases served by a pooled client")
+            .register(CollectorRegistry.defaultRegistry);
+    POOL_MISS_COUNT =
+        Counter.build(POOL_MISS_METRIC_NAME, "Number of YBClients created for the pool")
+            .register(CollectorRegistry.defaultRegistry);
+    POOL_EVICTION_COUNT =
+        Counter.build(POOL_EVICTION_METRIC_NAME, "Number of YBClients evicted from the pool")
+            .labelNames(EVICTION_REASON_LABEL)
+            .register(CollectorRegistry.defaultRegistry);
+    POOL_SIZE =
+        Gauge.build(POOL_SIZE_METRIC_NAME, "Number of YBClients in the pool")
+            .register(CollectorRegistry.defaultRegistry);
+    POOL_LEASES =
+        Gauge.build(POOL_LEASES_METRIC_NAME, "Number of leases held on pooled YBClients")
+            .register(CollectorRegistry.defaultRegistry);
+  }
+
   @Override
-  public synchronized YBClient getClient(String masterHostPorts) {
+  public YBClient getClient(String masterHostPorts) {
     return getClient(masterHostPorts, null);
   }
 
   @Override
-  public synchronized YBClient getClient(String masterHostPorts, String certFile) {
-    if (masterHostPorts != null) {
+  public YBClient getClient(String masterHostPorts, String certFile) {
+    if (masterHostPorts == null) {
+      return null;
+    }
+    if (!poolEnabled || StringUtils.isBlank(masterHostPorts)) {
       return getNewClient(masterHostPorts, certFile);
     }
-    return null;
+    return lease(new PoolKey(masterHostPorts, certFile));
   }
 
   @Override
-  public synchronized void closeClient(YBClient client, String masterHostPorts) {
+  public void closeClient(YBClient client, String masterHostPorts) {
     if (client != null) {
       LOG.debug("Closing client masters={}.", masterHostPorts);
       try {
+        // Releases the lease of a pooled client, closes any other client.
         client.close();
       } catch (Exception e) {
         LOG.warn("Closing client with masters={} hit error {}", masterHostPorts, e.getMessage());
@@ -46,12 +207,239 @@ public class LocalYBClientService implements YBClientService {
 
   @Override
   public YBClient getClientWithConfig(Config config) {
+    AsyncYBClient asyncClient = getAsyncClientWithConfig(config);
+    return asyncClient == null ? null : new YBClient(asyncClient);
+  }
+
+  private AsyncYBClient getAsyncClientWithConfig(Config config) {
     if (config == null || StringUtils.isBlank(config.getMasterHostPorts())) {
       return null;
     }
-    return new YBClient.YBClientBuilder(config.getMasterHostPorts())
+    return new AsyncYBClient.AsyncYBClientBuilder(config.getMasterHostPorts())
         .defaultAdminOperationTimeoutMs(config.getAdminOperationTimeout().toMillis())
         .sslCertFile(config.getCertFile())
         .build();
   }
+
+  private synchronized YBClient lease(PoolKey key) {
+    PooledClient pooled = pool.get(key);
+    if (pooled != null) {
+      POOL_HIT_COUNT.inc();
+    } else {
+      // Masters shared with other pooled clients mean that the masters of their universe
+      // changed: they won't be leased anymore.
+      for (PooledClient other : new ArrayList<>(pool.values())) {
+        if (other.key.isSupersededBy(key)) {
+          retire(other, EVICTED_MASTERS_CHANGED);
+        }
+      }
+      POOL_MISS_COUNT.inc();
+      pooled =
+          new PooledClient(
+              key, getAsyncClientWithConfig(new Config(key.masterHostPorts, key.certFile)));
+      pool.put(key, pooled);
+      POOL_SIZE.set(pool.size());
+      LOG.debug("Created pooled client for masters={}.", key.masterHostPorts);
+    }
+    pooled.numLeases++;
+    pooled.lastUsedNanos = System.nanoTime();
+    numLeases++;
+    POOL_LEASES.set(numLeases);
+    return new LeasedYBClient(pooled);
+  }
+
+  private void release(PooledClient pooled) {
+    synchronized (this) {
+      pooled.numLeases--;
+      pooled.lastUsedNanos = System.nanoTime();
+      numLeases--;
+      POOL_LEASES.set(numLeases);
+      if (!pooled.retired || pooled.numLeases > 0) {
+        return;
+      }
+    }
+    closeAsyncClient(pooled);
+  }
+
+  // Removes a client from the pool, it is closed now if it has no leases, or once they are
+  // released. Must be called with the lock held.
+  private void retire(PooledClient pooled, String reason) {
+    pool.remove(pooled.key);
+    pooled.retired = true;
+    POOL_SIZE.set(pool.size());
+    POOL_EVICTION_COUNT.labels(reason).inc();
+    LOG.info("Evicting pooled client for masters={}: {}.", pooled.key.masterHostPorts, reason);
+    if (pooled.numLeases == 0) {
+      // Closing waits for the pending RPCs, don't make the lease callers wait for it.
+      maintenanceExecutor.execute(() -> closeAsyncClient(pooled));
+    }
+  }
+
+  private void closeAsyncClient(PooledClient pooled) {
+    try {
+      pooled.asyncClient.close();
+    } catch (Exception e) {
+      LOG.warn(
+          "Closing pooled client with masters={} hit error {}",
+          pooled.key.masterHostPorts,
+          e.getMessage());
+    }
+  }
+
+  /**
+   * Evicts the idle clients, and health checks the others, leased or not, that were not checked
+   * for a while.
+   */
+  @VisibleForTesting
+  void runMaintenance() {
+    List<PooledClient> toCheck = new ArrayList<>();
+    synchronized (this) {
+      long now = System.nanoTime();
+      for (PooledClient pooled : new ArrayList<>(pool.values())) {
+        if (pooled.numLeases == 0 && now - pooled.lastUsedNanos > idleTimeoutNanos) {
+          retire(pooled, EVICTED_IDLE);
+        } else if (now - pooled.lastCheckedNanos > healthCheckIntervalNanos) {
+          toCheck.add(pooled);
+        }
+      }
+    }
+    // Outside of the lock, in parallel: a check waits for the masters up to the admin operation
+    // timeout. The run waits for all of them, so that the next one doesn't check them again.
+    List<CompletableFuture<Void>> checks = new ArrayList<>();
+    for (PooledClient pooled : toCheck) {
+      checks.add(CompletableFuture.runAsync(() -> check(pooled), healthCheckExecutor));
+    }
+    CompletableFuture.allOf(checks.toArray(new CompletableFuture<?>[0])).join();
+  }
+
+  private void check(PooledClient pooled) {
+    boolean healthy = isHealthy(pooled.asyncClient);
+    synchronized (this) {
+      pooled.lastCheckedNanos = System.nanoTime();
+      if (!healthy && pool.get(pooled.key) == pooled) {
+        // The next lease gets a new client, the current lessees keep this one until they close it.
+        retire(pooled, EVICTED_UNHEALTHY);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  boolean isHealthy(AsyncYBClient asyncClient) {
+    try {
+      // Not closed: the pooled client is closed only once its leases are released.
+      return new YBClient(asyncClient).getLeaderMasterHostAndPort() != null;
+    } catch (Exception e) {
+      LOG.warn("Health check of pooled client failed: {}", e.getMessage());
+      return false;
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int getPoolSize() {
+    return pool.size();
+  }
+
+  @VisibleForTesting
+  synchronized int getNumLeases() {
+    return numLeases;
+  }
+
+  @VisibleForTesting
+  void shutdown() {
+    List<PooledClient> toClose;
+    synchronized (this) {
+      toClose = new ArrayList<>(pool.values());
+      pool.clear();
+      POOL_SIZE.set(0);
+    }
+    if (maintenanceExecutor != null) {
+      maintenanceExecutor.shutdownNow();
+      healthCheckExecutor.shutdownNow();
+    }
+    toClose.forEach(this::closeAsyncClient);
+  }
+
+  private static class PoolKey {
+    final String masterHostPorts;
+    final String certFile;
+    final Set<String> masters;
+
+    PoolKey(String masterHostPorts, String certFile) {
+      this.masterHostPorts = masterHostPorts;
+      this.certFile = certFile;
+      this.masters =
+          Arrays.stream(masterHostPorts.split(","))
+              .map(String::trim)
+              .filter(StringUtils::isNotEmpty)
+              .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    // A key with some of the same masters is for the same universe after a master change.
+    boolean isSupersededBy(PoolKey other) {
+      if (equals(other) || !Objects.equals(certFile, other.certFile)) {
+        return false;
+      }
+      return !Collections.disjoint(masters, other.masters);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof PoolKey)) {
+        return false;
+      }
+      // The same masters, listed in another order or with other spacing, are the same universe.
+      PoolKey other = (PoolKey) o;
+      return masters.equals(other.masters) && Objects.equals(certFile, other.certFile);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(masters, certFile);
+    }
+  }
+
+  private static class PooledClient {
+    final PoolKey key;
+    final AsyncYBClient asyncClient;
+    // Guarded by the service lock.
+    int numLeases = 0;
+    long lastUsedNanos = System.nanoTime();
+    long lastCheckedNanos = System.nanoTime();
+    // Removed from the pool, closed once its leases are released.
+    boolean retired = false;
+
+    PooledClient(PoolKey key, AsyncYBClient asyncClient) {
+      this.key = key;
+      this.asyncClient = asyncClient;
+    }
+  }
+
+  /**
+   * A lease on a pooled client. Closing or shutting it down releases the lease instead of the
+   * shared client, so that callers close it the same way as a client of their own.
+   */
+  private class LeasedYBClient extends YBClient {
+    private final PooledClient pooled;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    LeasedYBClient(PooledClient pooled) {
+      super(pooled.asyncClient);
+      this.pooled = pooled;
+    }
+
+    @Override
+    public void close() {
+      if (released.compareAndSet(false, true)) {
+        release(pooled);
+      }
+    }
+
+    @Override
+    public void shutdown() {
+      close();
+    }
+  }
 }
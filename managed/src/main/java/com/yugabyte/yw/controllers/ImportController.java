@@ -507,7 +507,6 @@ public class ImportController extends AuthenticatedController {
     // ---------------------------------------------------------------------------------------------
     // Add the universe to the current user account
     customer.addUniverseUUID(universe.universeUUID);
-    customer.save();
 
     results.state = State.FINISHED;
 
@@ -413,9 +413,8 @@ public class UniverseCRUDHandler {
     Universe universe = Universe.create(taskParams, customer.getCustomerId());
     LOG.info("Created universe {} : {}.", universe.universeUUID, universe.name);
 
-    // Add an entry for the universe into the customer table.
+    // Add an entry for the universe into the customer_universe table.
     customer.addUniverseUUID(universe.universeUUID);
-    customer.save();
 
     LOG.info(
         "Added universe {} : {} for customer [{}].",
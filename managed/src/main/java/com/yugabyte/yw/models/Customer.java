@@ -9,9 +9,8 @@ import static play.mvc.Http.Status.BAD_REQUEST;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.google.common.base.Joiner;
 import com.yugabyte.yw.common.PlatformServiceException;
-import com.yugabyte.yw.forms.UniverseDefinitionTaskParams.Cluster;
+import io.ebean.Ebean;
 import io.ebean.Finder;
 import io.ebean.Model;
 import io.swagger.annotations.ApiModel;
@@ -22,12 +21,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Transient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import play.data.validation.Constraints;
@@ -89,63 +88,79 @@ public class Customer extends Model {
   @ApiModelProperty(value = "UI_ONLY", hidden = true, accessMode = READ_ONLY)
   private JsonNode features;
 
-  @Column(columnDefinition = "TEXT", nullable = false)
-  @ApiModelProperty(
-      value = "Universe UUIDs",
-      accessMode = READ_ONLY,
-      example = "[c3595ca7-68a3-47f0-b1b2-1725886d5ed5, 9e0bb733-556c-4935-83dd-6b742a2c32e6]")
-  private String universeUUIDs = "";
+  // Universes registered to the customer, loaded from the customer_universe table the first time
+  // they are needed, e.g. to serialize the customer, and kept up to date by this instance.
+  @Transient private Set<UUID> cachedUniverseUUIDs;
 
+  /**
+   * Registers the universe to the customer, in the customer_universe table: unlike the other
+   * fields, the universes of the customer are not saved with the customer.
+   */
   public synchronized void addUniverseUUID(UUID universeUUID) {
-    Set<UUID> universes = getUniverseUUIDs();
-    universes.add(universeUUID);
-    universeUUIDs = Joiner.on(",").join(universes);
-    LOG.trace("New universe list for customer [" + name + "] : " + universeUUIDs);
+    // Registering the same universe concurrently is a no-op rather than a key violation.
+    Ebean.createSqlUpdate(
+            "INSERT INTO customer_universe (customer_uuid, universe_uuid)"
+                + " VALUES (:customerUUID, :universeUUID) ON CONFLICT DO NOTHING")
+        .setParameter("customerUUID", uuid)
+        .setParameter("universeUUID", universeUUID)
+        .execute();
+    if (cachedUniverseUUIDs != null) {
+      cachedUniverseUUIDs.add(universeUUID);
+    }
+    LOG.trace("Added universe {} for customer [{}]", universeUUID, name);
   }
 
   public synchronized void removeUniverseUUID(UUID universeUUID) {
-    Set<UUID> universes = getUniverseUUIDs();
-    universes.remove(universeUUID);
-    universeUUIDs = Joiner.on(",").join(universes);
-    LOG.trace("New universe list for customer [" + name + "] : " + universeUUIDs);
+    Ebean.createSqlUpdate(
+            "DELETE FROM customer_universe"
+                + " WHERE customer_uuid = :customerUUID AND universe_uuid = :universeUUID")
+        .setParameter("customerUUID", uuid)
+        .setParameter("universeUUID", universeUUID)
+        .execute();
+    if (cachedUniverseUUIDs != null) {
+      cachedUniverseUUIDs.remove(universeUUID);
+    }
+    LOG.trace("Removed universe {} for customer [{}]", universeUUID, name);
   }
 
+  /** @return true if the universe is registered to the customer. */
+  public boolean hasUniverse(UUID universeUUID) {
+    return Ebean.createSqlQuery(
+            "SELECT universe_uuid FROM customer_universe"
+                + " WHERE customer_uuid = :customerUUID AND universe_uuid = :universeUUID")
+        .setParameter("customerUUID", uuid)
+        .setParameter("universeUUID", universeUUID)
+        .findOneOrEmpty()
+        .isPresent();
+  }
+
+  @ApiModelProperty(
+      value = "Universe UUIDs",
+      accessMode = READ_ONLY,
+      example = "[c3595ca7-68a3-47f0-b1b2-1725886d5ed5, 9e0bb733-556c-4935-83dd-6b742a2c32e6]")
   public synchronized Set<UUID> getUniverseUUIDs() {
-    Set<UUID> uuids = new HashSet<UUID>();
-    if (!universeUUIDs.isEmpty()) {
-      String[] ids = universeUUIDs.split(",");
-      for (String id : ids) {
-        uuids.add(UUID.fromString(id));
-      }
+    if (cachedUniverseUUIDs == null) {
+      Set<UUID> uuids = new HashSet<>();
+      Ebean.createSqlQuery(
+              "SELECT universe_uuid FROM customer_universe WHERE customer_uuid = :uuid")
+          .setParameter("uuid", uuid)
+          .findEach(row -> uuids.add(row.getUUID("universe_uuid")));
+      cachedUniverseUUIDs = uuids;
     }
-    return uuids;
+    return new HashSet<>(cachedUniverseUUIDs);
   }
 
   @JsonIgnore
   public Set<Universe> getUniverses() {
-    if (getUniverseUUIDs().isEmpty()) {
-      return new HashSet<>();
-    }
-    return Universe.getAllPresent(getUniverseUUIDs());
+    return Universe.getAllPresent(this);
   }
 
   @JsonIgnore
   public Set<Universe> getUniversesForProvider(UUID providerUUID) {
-    Set<Universe> universesInProvider =
-        getUniverses()
-            .stream()
-            .filter(u -> checkClusterInProvider(u, providerUUID))
-            .collect(Collectors.toSet());
-    return universesInProvider;
-  }
-
-  private boolean checkClusterInProvider(Universe universe, UUID providerUUID) {
-    for (Cluster cluster : universe.getUniverseDetails().clusters) {
-      if (cluster.userIntent.provider.equals(providerUUID.toString())) {
-        return true;
-      }
-    }
-    return false;
+    Set<UUID> universeUUIDs =
+        UniverseAttribute.findUniverseUUIDs(
+            getCustomerId(), providerUUID.toString(), UniverseAttribute.Name.PROVIDER);
+    return Universe.getAllPresent(universeUUIDs);
   }
 
   public static final Finder<UUID, Customer> find = new Finder<UUID, Customer>(Customer.class) {};
@@ -102,6 +102,7 @@ public class RuntimeConfigEntry extends Model {
     }
 
     config.save();
+    ScopedRuntimeConfig.incrementVersion(uuid);
     return config;
   }
 
@@ -126,6 +127,14 @@ public class RuntimeConfigEntry extends Model {
     return upsertInternal(provider.uuid, path, value, () -> ScopedRuntimeConfig.ensure(provider));
   }
 
+  @Override
+  @Transactional
+  public boolean delete() {
+    boolean deleted = super.delete();
+    ScopedRuntimeConfig.incrementVersion(idKey.getScopeUUID());
+    return deleted;
+  }
+
   @Override
   public String toString() {
     return "RuntimeConfigEntry{" + "idKey=" + idKey + ", value='" + value + '\'' + '}';
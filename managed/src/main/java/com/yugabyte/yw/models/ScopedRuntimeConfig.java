@@ -1,9 +1,17 @@
 package com.yugabyte.yw.models;
 
 import com.google.common.annotations.VisibleForTesting;
+import io.ebean.Ebean;
 import io.ebean.Finder;
 import io.ebean.Model;
+import io.ebean.Transaction;
+import io.ebean.TransactionCallbackAdapter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import org.slf4j.Logger;
@@ -39,6 +47,14 @@ public class ScopedRuntimeConfig extends Model {
   // End foreign key fields
   // ====================================================
 
+  // Incremented by each write to the entries of the scope, see incrementVersion().
+  private long version;
+
+  // Number of writes to the entries of each scope committed by this platform instance. Lets the
+  // instance see its own writes right away, while the version above tells it about the writes of
+  // the other instances.
+  private static final Map<UUID, AtomicLong> localWriteCounts = new ConcurrentHashMap<>();
+
   private ScopedRuntimeConfig() {
     uuid = GLOBAL_SCOPE_UUID;
     customerUUID = null;
@@ -105,6 +121,54 @@ public class ScopedRuntimeConfig extends Model {
     }
   }
 
+  /**
+   * Increments the version of the scope, in the transaction of the write to its entries if there is
+   * one. The local write count is incremented once the write is committed, so that the config read
+   * after it is read from the committed entries.
+   */
+  static void incrementVersion(UUID uuid) {
+    Ebean.createSqlUpdate(
+            "UPDATE scoped_runtime_config SET version = version + 1 WHERE uuid = :uuid")
+        .setParameter("uuid", uuid)
+        .execute();
+    Transaction transaction = Ebean.currentTransaction();
+    if (transaction == null) {
+      incrementLocalWriteCount(uuid);
+    } else {
+      transaction.register(
+          new TransactionCallbackAdapter() {
+            @Override
+            public void postCommit() {
+              incrementLocalWriteCount(uuid);
+            }
+          });
+    }
+  }
+
+  private static void incrementLocalWriteCount(UUID uuid) {
+    localWriteCounts.computeIfAbsent(uuid, k -> new AtomicLong()).incrementAndGet();
+  }
+
+  /** @return the number of writes to the entries of the scope committed by this instance. */
+  public static long getLocalWriteCount(UUID uuid) {
+    AtomicLong count = localWriteCounts.get(uuid);
+    return count == null ? 0 : count.get();
+  }
+
+  /** @return the versions of the given scopes in the same order, -1 for a scope not created. */
+  public static long[] getVersions(List<UUID> uuids) {
+    Map<UUID, Long> versions = new HashMap<>();
+    for (ScopedRuntimeConfig scope :
+        finder.query().select("uuid, version").where().idIn(uuids).findList()) {
+      versions.put(scope.uuid, scope.version);
+    }
+    long[] result = new long[uuids.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = versions.getOrDefault(uuids.get(i), -1L);
+    }
+    return result;
+  }
+
   @Override
   public String toString() {
     if (GLOBAL_SCOPE_UUID.equals(uuid)) {
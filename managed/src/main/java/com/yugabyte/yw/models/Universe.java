@@ -22,6 +22,7 @@ import com.yugabyte.yw.forms.UniverseDefinitionTaskParams.UserIntent;
 import com.yugabyte.yw.models.helpers.CommonUtils;
 import com.yugabyte.yw.models.helpers.NodeDetails;
 import com.yugabyte.yw.models.helpers.PlacementInfo;
+import com.yugabyte.yw.models.helpers.UniverseDetailsCache;
 import com.yugabyte.yw.models.helpers.TransactionUtil;
 import io.ebean.Ebean;
 import io.ebean.ExpressionList;
@@ -69,7 +70,7 @@ public class Universe extends Model {
   public static final KeyLock<UUID> UNIVERSE_KEY_LOCK = new KeyLock<UUID>();
 
   private static void checkUniverseInCustomer(UUID universeUUID, Customer customer) {
-    if (!customer.getUniverseUUIDs().contains(universeUUID)) {
+    if (!customer.hasUniverse(universeUUID)) {
       throw new PlatformServiceException(
           BAD_REQUEST,
           String.format(
@@ -139,12 +140,21 @@ public class Universe extends Model {
 
   @Transient private UniverseDefinitionTaskParams universeDetails;
 
+  // Details of a universe loaded from the UniverseDetailsCache, shared with the other universes
+  // loaded from it. This universe binds its own copy into universeDetails when first needed.
+  @Transient private JsonNode cachedUniverseDetails;
+
   public void setUniverseDetails(UniverseDefinitionTaskParams details) {
     universeDetailsJson = Json.stringify(Json.toJson(details));
     universeDetails = details;
+    cachedUniverseDetails = null;
   }
 
   public UniverseDefinitionTaskParams getUniverseDetails() {
+    if (universeDetails == null && cachedUniverseDetails != null) {
+      universeDetails = Json.fromJson(cachedUniverseDetails, UniverseDefinitionTaskParams.class);
+      cachedUniverseDetails = null;
+    }
     return universeDetails;
   }
 
@@ -159,10 +169,11 @@ public class Universe extends Model {
 
   @JsonIgnore
   public List<String> getVersions() {
-    if (null == universeDetails || null == universeDetails.clusters) {
+    UniverseDefinitionTaskParams details = getUniverseDetails();
+    if (null == details || null == details.clusters) {
       return new ArrayList<>();
     }
-    return universeDetails
+    return details
         .clusters
         .stream()
         .filter(c -> c != null && c.userIntent != null)
@@ -210,6 +221,8 @@ public class Universe extends Model {
         universe.universeDetailsJson);
     // Save the object.
     universe.save();
+    UniverseAttribute.update(universe.universeUUID, universe.universeDetails);
+    UniverseDetailsCache.invalidate(universe.universeUUID);
     return universe;
   }
 
@@ -239,17 +252,27 @@ public class Universe extends Model {
     return ImmutableSet.copyOf(find.query().where().findIds());
   }
 
+  /**
+   * Returns the universes of the customer. Their details are read from the details cache, each
+   * universe binds its own copy.
+   */
   public static Set<Universe> getAllWithoutResources(Customer customer) {
+    long generation = UniverseDetailsCache.getGeneration();
     List<Universe> rawList =
         find.query().where().eq("customer_id", customer.getCustomerId()).findList();
-    return rawList.stream().peek(Universe::fillUniverseDetails).collect(Collectors.toSet());
+    return fillCachedUniverseDetails(rawList, generation);
   }
 
+  /**
+   * Returns the universes with the given UUIDs. Their details are read from the details cache,
+   * each universe binds its own copy.
+   */
   public static Set<Universe> getAllWithoutResources(Set<UUID> uuids) {
+    long generation = UniverseDetailsCache.getGeneration();
     ExpressionList<Universe> query = find.query().where();
     CommonUtils.appendInClause(query, "universeUUID", uuids);
     List<Universe> rawList = query.findList();
-    return rawList.stream().peek(Universe::fillUniverseDetails).collect(Collectors.toSet());
+    return fillCachedUniverseDetails(rawList, generation);
   }
 
   /**
@@ -278,13 +301,32 @@ public class Universe extends Model {
     return Optional.of(universe);
   }
 
+  /**
+   * Returns the universes with the given UUIDs which exist. Their details are read from the
+   * details cache, each universe binds its own copy.
+   */
   public static Set<Universe> getAllPresent(Set<UUID> universeUUIDs) {
-    return universeUUIDs
-        .stream()
-        .map(Universe::maybeGet)
-        .filter(Optional::isPresent)
-        .map(Optional::get)
-        .collect(Collectors.toSet());
+    if (universeUUIDs.isEmpty()) {
+      return new HashSet<>();
+    }
+    return getAllWithoutResources(universeUUIDs);
+  }
+
+  /**
+   * Returns the universes registered to the customer which exist. Their details are read from the
+   * details cache, each universe binds its own copy.
+   */
+  public static Set<Universe> getAllPresent(Customer customer) {
+    long generation = UniverseDetailsCache.getGeneration();
+    List<Universe> rawList =
+        find.query()
+            .where()
+            .raw(
+                "universe_uuid in"
+                    + " (select universe_uuid from customer_universe where customer_uuid = ?)",
+                customer.uuid)
+            .findList();
+    return fillCachedUniverseDetails(rawList, generation);
   }
 
   public static Universe getUniverseByName(String universeName) {
@@ -355,6 +397,8 @@ public class Universe extends Model {
             universeRef.set(universe);
           },
           TransactionUtil.DEFAULT_RETRY_CONFIG);
+      // Once committed, as the details read before the commit may have been cached since.
+      UniverseDetailsCache.invalidate(universeUUID);
       return universeRef.get();
     } finally {
       UNIVERSE_KEY_LOCK.releaseLock(universeUUID);
@@ -371,10 +415,11 @@ public class Universe extends Model {
     Universe universe = Universe.getOrBadRequest(universeUUID);
     // Make sure this universe has been locked.
     // TODO: fixme. Useless check. java asserts are turned off by default in production code!!!
-    assert !universe.universeDetails.updateInProgress;
+    assert !universe.getUniverseDetails().updateInProgress;
     // Delete the universe.
     LOG.info("Deleting universe " + universe.name + ":" + universeUUID);
     universe.delete();
+    UniverseDetailsCache.remove(universeUUID);
   }
 
   /**
@@ -763,10 +808,13 @@ public class Universe extends Model {
    */
   public void save(boolean incrementVersion) {
     // Update the universe details json.
+    UniverseDefinitionTaskParams details = getUniverseDetails();
     this.universeDetailsJson =
-        Json.stringify(RedactingService.filterSecretFields(Json.toJson(universeDetails)));
+        Json.stringify(RedactingService.filterSecretFields(Json.toJson(details)));
     this.version = incrementVersion ? this.version + 1 : this.version;
     super.save();
+    UniverseAttribute.update(universeUUID, details);
+    UniverseDetailsCache.invalidate(universeUUID);
   }
 
   /**
@@ -879,42 +927,33 @@ public class Universe extends Model {
   }
 
   public static Set<Universe> universeDetailsIfCertsExists(UUID certUUID, UUID customerUUID) {
-    return Customer.get(customerUUID)
-        .getUniverses()
-        .stream()
-        .filter(
-            s ->
-                (s.getUniverseDetails().rootCA != null
-                        && s.getUniverseDetails().rootCA.equals(certUUID))
-                    || (s.getUniverseDetails().clientRootCA != null
-                        && s.getUniverseDetails().clientRootCA.equals(certUUID)))
-        .collect(Collectors.toSet());
+    Set<UUID> universeUUIDs =
+        UniverseAttribute.findUniverseUUIDs(
+            Customer.get(customerUUID).getCustomerId(),
+            certUUID.toString(),
+            UniverseAttribute.Name.ROOT_CA,
+            UniverseAttribute.Name.CLIENT_ROOT_CA);
+    return getAllPresent(universeUUIDs);
   }
 
   public static Set<Universe> universeDetailsIfReleaseExists(String version) {
-    Set<Universe> universes = new HashSet<Universe>();
-    Customer.getAll()
-        .forEach(customer -> universes.addAll(Customer.get(customer.getUuid()).getUniverses()));
-    Set<Universe> universesWithGivenRelease = new HashSet<Universe>();
-    for (Universe u : universes) {
-      List<Cluster> clusters = u.getUniverseDetails().clusters;
-      for (Cluster c : clusters) {
-        if (c.userIntent.ybSoftwareVersion != null
-            && c.userIntent.ybSoftwareVersion.equals(version)) {
-          universesWithGivenRelease.add(u);
-          break;
-        }
-      }
-    }
-    return universesWithGivenRelease;
+    Set<UUID> universeUUIDs =
+        UniverseAttribute.findUniverseUUIDs(
+            null /* customerId */, version, UniverseAttribute.Name.SOFTWARE_VERSION);
+    return getAllPresent(universeUUIDs);
   }
 
   public static boolean existsCertificate(UUID certUUID, UUID customerUUID) {
-    return universeDetailsIfCertsExists(certUUID, customerUUID).size() != 0;
+    return UniverseAttribute.exists(
+        Customer.get(customerUUID).getCustomerId(),
+        certUUID.toString(),
+        UniverseAttribute.Name.ROOT_CA,
+        UniverseAttribute.Name.CLIENT_ROOT_CA);
   }
 
   public static boolean existsRelease(String version) {
-    return universeDetailsIfReleaseExists(version).size() != 0;
+    return UniverseAttribute.exists(
+        null /* customerId */, version, UniverseAttribute.Name.SOFTWARE_VERSION);
   }
 
   static boolean isUniversePaused(UUID uuid) {
@@ -925,6 +964,28 @@ public class Universe extends Model {
     return universe.getUniverseDetails().universePaused;
   }
 
+  /**
+   * Fills the details of the universes from the cache if their version is cached, parses them
+   * otherwise and caches them.
+   *
+   * @param generation the cache generation read before the universes were read from the DB.
+   */
+  private static Set<Universe> fillCachedUniverseDetails(
+      List<Universe> universes, long generation) {
+    List<Universe> parsed = new ArrayList<>();
+    for (Universe universe : universes) {
+      JsonNode details = UniverseDetailsCache.get(universe.universeUUID, universe.version);
+      if (details != null) {
+        universe.cachedUniverseDetails = details;
+      } else {
+        fillUniverseDetails(universe);
+        parsed.add(universe);
+      }
+    }
+    UniverseDetailsCache.putAll(parsed, generation);
+    return new HashSet<>(universes);
+  }
+
   private static Universe fillUniverseDetails(Universe universe) {
     JsonNode detailsJson = Json.parse(universe.universeDetailsJson);
     universe.universeDetails = Json.fromJson(detailsJson, UniverseDefinitionTaskParams.class);
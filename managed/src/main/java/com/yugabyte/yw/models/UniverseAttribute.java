@@ -0,0 +1,161 @@
+// Copyright (c) YugaByte, Inc.
+
+package com.yugabyte.yw.models;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import com.yugabyte.yw.forms.UniverseDefinitionTaskParams;
+import com.yugabyte.yw.forms.UniverseDefinitionTaskParams.Cluster;
+import io.ebean.Ebean;
+import io.ebean.SqlQuery;
+import io.ebean.SqlRow;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Attributes of the universe details by which universes are looked up, stored in the
+ * universe_attribute table indexed by name and value: the lookups are single SQL queries instead
+ * of loading and parsing the details of all the universes. The attributes of a universe are
+ * updated when it is created or saved.
+ */
+public class UniverseAttribute {
+
+  public enum Name {
+    // The root certificate of the universe.
+    ROOT_CA,
+    // The client root certificate of the universe.
+    CLIENT_ROOT_CA,
+    // The software version of a cluster.
+    SOFTWARE_VERSION,
+    // The provider of a cluster.
+    PROVIDER
+  }
+
+  /**
+   * @return the attributes of the universe details. The user intent stored at the top level of
+   *     the details of old universes is read as the one of their primary cluster, when the details
+   *     are parsed, which the V175 migration filling the attributes mirrors.
+   */
+  static SetMultimap<Name, String> fromDetails(UniverseDefinitionTaskParams details) {
+    SetMultimap<Name, String> attributes = HashMultimap.create();
+    if (details == null) {
+      return attributes;
+    }
+    if (details.rootCA != null) {
+      attributes.put(Name.ROOT_CA, details.rootCA.toString());
+    }
+    if (details.clientRootCA != null) {
+      attributes.put(Name.CLIENT_ROOT_CA, details.clientRootCA.toString());
+    }
+    if (details.clusters != null) {
+      for (Cluster cluster : details.clusters) {
+        if (cluster.userIntent == null) {
+          continue;
+        }
+        if (cluster.userIntent.ybSoftwareVersion != null) {
+          attributes.put(Name.SOFTWARE_VERSION, cluster.userIntent.ybSoftwareVersion);
+        }
+        if (cluster.userIntent.provider != null) {
+          attributes.put(Name.PROVIDER, cluster.userIntent.provider);
+        }
+      }
+    }
+    return attributes;
+  }
+
+  /** @return the stored attributes of the universe. */
+  static SetMultimap<Name, String> get(UUID universeUUID) {
+    SqlQuery query =
+        Ebean.createSqlQuery(
+                "SELECT name, value FROM universe_attribute WHERE universe_uuid = :universeUUID")
+            .setParameter("universeUUID", universeUUID);
+    SetMultimap<Name, String> attributes = HashMultimap.create();
+    for (SqlRow row : query.findList()) {
+      attributes.put(Name.valueOf(row.getString("name")), row.getString("value"));
+    }
+    return attributes;
+  }
+
+  /**
+   * Updates the stored attributes of the universe to the ones of its details. Only the changed
+   * attributes are written.
+   */
+  static void update(UUID universeUUID, UniverseDefinitionTaskParams details) {
+    SetMultimap<Name, String> attributes = fromDetails(details);
+    SetMultimap<Name, String> current = get(universeUUID);
+    if (attributes.equals(current)) {
+      return;
+    }
+    Set<Map.Entry<Name, String>> newEntries = new HashSet<>(attributes.entries());
+    Set<Map.Entry<Name, String>> currentEntries = new HashSet<>(current.entries());
+    for (Map.Entry<Name, String> entry : Sets.difference(currentEntries, newEntries)) {
+      Ebean.createSqlUpdate(
+              "DELETE FROM universe_attribute"
+                  + " WHERE universe_uuid = :universeUUID AND name = :name AND value = :value")
+          .setParameter("universeUUID", universeUUID)
+          .setParameter("name", entry.getKey().name())
+          .setParameter("value", entry.getValue())
+          .execute();
+    }
+    for (Map.Entry<Name, String> entry : Sets.difference(newEntries, currentEntries)) {
+      Ebean.createSqlUpdate(
+              "INSERT INTO universe_attribute (universe_uuid, name, value)"
+                  + " VALUES (:universeUUID, :name, :value)")
+          .setParameter("universeUUID", universeUUID)
+          .setParameter("name", entry.getKey().name())
+          .setParameter("value", entry.getValue())
+          .execute();
+    }
+  }
+
+  /**
+   * Finds the universes with one of the attributes set to the value.
+   *
+   * @param customerId the customer of the universes, all customers if null.
+   * @return the UUIDs of the universes.
+   */
+  public static Set<UUID> findUniverseUUIDs(Long customerId, String value, Name... names) {
+    return createQuery(customerId, value, names, "DISTINCT a.universe_uuid")
+        .findList()
+        .stream()
+        .map(row -> row.getUUID("universe_uuid"))
+        .collect(Collectors.toSet());
+  }
+
+  /**
+   * @param customerId the customer of the universes, all customers if null.
+   * @return true if a universe has one of the attributes set to the value.
+   */
+  public static boolean exists(Long customerId, String value, Name... names) {
+    return createQuery(customerId, value, names, "a.universe_uuid")
+        .setMaxRows(1)
+        .findOneOrEmpty()
+        .isPresent();
+  }
+
+  private static SqlQuery createQuery(
+      Long customerId, String value, Name[] names, String selectList) {
+    // The names are enum constants, safe to inline.
+    String nameList =
+        Arrays.stream(names).map(name -> "'" + name.name() + "'").collect(Collectors.joining(","));
+    String sql =
+        "SELECT "
+            + selectList
+            + " FROM universe_attribute a"
+            + (customerId == null ? "" : " JOIN universe u ON u.universe_uuid = a.universe_uuid")
+            + " WHERE a.name IN ("
+            + nameList
+            + ") AND a.value = :value"
+            + (customerId == null ? "" : " AND u.customer_id = :customerId");
+    SqlQuery query = Ebean.createSqlQuery(sql).setParameter("value", value);
+    if (customerId != null) {
+      query.setParameter("customerId", customerId);
+    }
+    return query;
+  }
+}
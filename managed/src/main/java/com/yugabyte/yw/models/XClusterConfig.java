@@ -393,8 +393,8 @@ public class XClusterConfig extends Model {
 
   private static void checkXClusterConfigInCustomer(
       XClusterConfig xClusterConfig, Customer customer) {
-    if (!customer.getUniverseUUIDs().contains(xClusterConfig.sourceUniverseUUID)
-        || !customer.getUniverseUUIDs().contains(xClusterConfig.targetUniverseUUID)) {
+    if (!customer.hasUniverse(xClusterConfig.sourceUniverseUUID)
+        || !customer.hasUniverse(xClusterConfig.targetUniverseUUID)) {
       throw new PlatformServiceException(
           BAD_REQUEST,
           String.format(
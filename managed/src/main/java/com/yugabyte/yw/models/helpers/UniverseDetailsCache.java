@@ -0,0 +1,117 @@
+// Copyright (c) YugaByte, Inc.
+
+package com.yugabyte.yw.models.helpers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.yugabyte.yw.models.Universe;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import play.libs.Json;
+
+/**
+ * Details of the universes as parsed from their universe_details_json, by universe and version,
+ * so that the universes loaded in bulk to be read (list APIs, health checks, metrics) are not
+ * parsed again until they are saved.
+ *
+ * <p>The details are cached as a JSON tree, which is never handed out as is: each universe loaded
+ * from the cache binds its own copy of the details from it, the first time it uses them. Callers
+ * can thus modify the details of a universe without changing what the other readers see, and
+ * without the cost of reading the JSON text again.
+ *
+ * <p>The map is replaced as a whole on each change, so that reads don't lock. An invalidated
+ * universe keeps an entry without details, with the generation of its invalidation: details
+ * parsed from a row read before it are not cached, even if the version didn't change.
+ */
+public class UniverseDetailsCache {
+
+  private static class Entry {
+    final int version;
+    final JsonNode details;
+    // Generation of the last invalidation of the universe.
+    final long generation;
+
+    Entry(int version, JsonNode details, long generation) {
+      this.version = version;
+      this.details = details;
+      this.generation = generation;
+    }
+  }
+
+  private static volatile boolean enabled = true;
+
+  private static volatile ImmutableMap<UUID, Entry> entries = ImmutableMap.of();
+
+  // Incremented by each invalidation. Guarded by the class lock.
+  private static long generation = 0;
+
+  /**
+   * @return the generation to pass to putAll(), read before the universes are read from the DB.
+   */
+  public static synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * @return the cached details of the universe version, null if not cached. The tree is shared
+   *     with the other callers: bind a copy of the details from it, don't modify it.
+   */
+  public static JsonNode get(UUID universeUUID, int version) {
+    if (!enabled) {
+      return null;
+    }
+    Entry entry = entries.get(universeUUID);
+    return entry != null && entry.version == version ? entry.details : null;
+  }
+
+  /**
+   * Caches the details parsed from universes read from the DB.
+   *
+   * @param universes the universes, with their parsed details.
+   * @param readGeneration the generation read before the universes were read from the DB. The
+   *     details of the universes invalidated since are not cached.
+   */
+  public static synchronized void putAll(Collection<Universe> universes, long readGeneration) {
+    if (!enabled || universes.isEmpty()) {
+      return;
+    }
+    Map<UUID, Entry> newEntries = new HashMap<>(entries);
+    for (Universe universe : universes) {
+      Entry current = newEntries.get(universe.universeUUID);
+      long entryGeneration = current == null ? 0 : current.generation;
+      if (entryGeneration > readGeneration
+          || (current != null && current.details != null && current.version > universe.version)) {
+        continue;
+      }
+      JsonNode details = Json.toJson(universe.getUniverseDetails());
+      newEntries.put(universe.universeUUID, new Entry(universe.version, details, entryGeneration));
+    }
+    entries = ImmutableMap.copyOf(newEntries);
+  }
+
+  /** Drops the cached details of the universe, to be called once it is saved or created. */
+  public static synchronized void invalidate(UUID universeUUID) {
+    generation++;
+    Map<UUID, Entry> newEntries = new HashMap<>(entries);
+    newEntries.put(universeUUID, new Entry(-1, null, generation));
+    entries = ImmutableMap.copyOf(newEntries);
+  }
+
+  /** Drops the universe from the cache, to be called once it is deleted. */
+  public static synchronized void remove(UUID universeUUID) {
+    if (entries.containsKey(universeUUID)) {
+      Map<UUID, Entry> newEntries = new HashMap<>(entries);
+      newEntries.remove(universeUUID);
+      entries = ImmutableMap.copyOf(newEntries);
+    }
+  }
+
+  @VisibleForTesting
+  public static synchronized void setEnabled(boolean enabled) {
+    UniverseDetailsCache.enabled = enabled;
+    entries = ImmutableMap.of();
+  }
+}
@@ -0,0 +1,46 @@
+// Copyright (c) YugaByte, Inc.
+
+package db.migration.default.common
+
+import java.sql.Connection
+
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration
+import play.api.libs.json._
+
+// Fills universe_attribute with the attributes of the existing universes, as extracted by
+// UniverseAttribute.fromDetails.
+class V175__Fill_Universe_Attribute_Table extends JdbcMigration {
+  override def migrate(connection: Connection): Unit = {
+    val selectStmt = "SELECT universe_uuid, universe_details_json FROM universe"
+    val resultSet = connection.createStatement().executeQuery(selectStmt)
+    val insertStmt = connection.prepareStatement(
+      "INSERT INTO universe_attribute (universe_uuid, name, value) VALUES (?, ?, ?)")
+
+    while (resultSet.next()) {
+      val univUuid = resultSet.getObject("universe_uuid")
+      val univDetails = Json.parse(resultSet.getString("universe_details_json"))
+
+      // Universes created before the clusters have their user intent at the top level.
+      val userIntents = (univDetails \ "clusters").asOpt[Seq[JsValue]] match {
+        case Some(clusters) if clusters.nonEmpty => clusters.map(cluster => cluster \ "userIntent")
+        case _ => Seq(univDetails \ "userIntent")
+      }
+      val attributes = (
+        (univDetails \ "rootCA").asOpt[String].map("ROOT_CA" -> _) ++
+        (univDetails \ "clientRootCA").asOpt[String].map("CLIENT_ROOT_CA" -> _) ++
+        userIntents.flatMap(intent => (intent \ "ybSoftwareVersion").asOpt[String])
+          .map("SOFTWARE_VERSION" -> _) ++
+        userIntents.flatMap(intent => (intent \ "provider").asOpt[String]).map("PROVIDER" -> _)
+      ).toSet
+
+      for ((name, value) <- attributes) {
+        insertStmt.setObject(1, univUuid)
+        insertStmt.setString(2, name)
+        insertStmt.setString(3, value)
+        insertStmt.addBatch()
+      }
+    }
+    insertStmt.executeBatch()
+    insertStmt.close()
+  }
+}
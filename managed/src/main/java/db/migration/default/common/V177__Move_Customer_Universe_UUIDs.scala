@@ -0,0 +1,43 @@
+// Copyright (c) YugaByte, Inc.
+
+package db.migration.default.common
+
+import java.sql.Connection
+import java.util.UUID
+
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration
+
+import scala.util.Try
+
+// Copies the comma separated universe UUIDs of the customers to the customer_universe table.
+// The universe_uuids column is kept for a release, so that the platform can still be rolled back
+// to a version which reads it. It only gets a default, as customers are no longer saved with it.
+class V177__Move_Customer_Universe_UUIDs extends JdbcMigration {
+  override def migrate(connection: Connection): Unit = {
+    val selectStmt = "SELECT uuid, universe_uuids FROM customer"
+    val resultSet = connection.createStatement().executeQuery(selectStmt)
+    val insertStmt = connection.prepareStatement(
+      "INSERT INTO customer_universe (customer_uuid, universe_uuid) VALUES (?, ?)")
+
+    while (resultSet.next()) {
+      val customerUuid = resultSet.getObject("uuid")
+      val universeUuids = Option(resultSet.getString("universe_uuids")).getOrElse("")
+        .split(",")
+        .map(_.trim)
+        .filter(_.nonEmpty)
+        .flatMap(id => Try(UUID.fromString(id)).toOption)
+        .distinct
+
+      for (universeUuid <- universeUuids) {
+        insertStmt.setObject(1, customerUuid)
+        insertStmt.setObject(2, universeUuid)
+        insertStmt.addBatch()
+      }
+    }
+    insertStmt.executeBatch()
+    insertStmt.close()
+
+    connection.createStatement()
+      .execute("ALTER TABLE customer ALTER COLUMN universe_uuids SET DEFAULT ''")
+  }
+}
@@ -0,0 +1,6 @@
+-- Copyright (c) YugaByte, Inc.
+
+-- Version of the runtime config entries of a scope, incremented by each write to them so that
+-- the platform instances can tell whether the config they cached for the scope is current.
+ALTER TABLE IF EXISTS scoped_runtime_config
+    ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,12 @@
+-- Copyright (c) YugaByte, Inc.
+
+CREATE TABLE IF NOT EXISTS universe_attribute (
+  universe_uuid                 uuid NOT NULL,
+  name                          VARCHAR(64) NOT NULL,
+  value                         VARCHAR(255) NOT NULL,
+  constraint pk_universe_attribute PRIMARY KEY (universe_uuid, name, value),
+  constraint fk_universe_attribute_universe_uuid foreign key (universe_uuid)
+    references universe (universe_uuid) on delete cascade on update cascade
+);
+
+CREATE INDEX IF NOT EXISTS ix_universe_attribute_name_value ON universe_attribute (name, value);
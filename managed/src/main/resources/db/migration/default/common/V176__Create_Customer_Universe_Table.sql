@@ -0,0 +1,11 @@
+-- Copyright (c) YugaByte, Inc.
+
+CREATE TABLE IF NOT EXISTS customer_universe (
+  customer_uuid                 uuid NOT NULL,
+  universe_uuid                 uuid NOT NULL,
+  constraint pk_customer_universe PRIMARY KEY (customer_uuid, universe_uuid),
+  constraint fk_customer_universe_customer_uuid foreign key (customer_uuid)
+    references customer (uuid) on delete cascade on update cascade
+);
+
+CREATE INDEX IF NOT EXISTS ix_customer_universe_universe_uuid ON customer_universe (universe_uuid);
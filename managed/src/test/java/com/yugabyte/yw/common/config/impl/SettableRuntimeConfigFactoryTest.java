@@ -10,6 +10,7 @@
 
 package com.yugabyte.yw.common.config.impl;
 
+import static com.yugabyte.yw.models.ScopedRuntimeConfig.GLOBAL_SCOPE_UUID;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 
@@ -18,12 +19,16 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
 import com.yugabyte.yw.common.FakeDBApplication;
 import com.yugabyte.yw.common.ModelFactory;
 import com.yugabyte.yw.models.Customer;
 import com.yugabyte.yw.models.Provider;
+import com.yugabyte.yw.models.RuntimeConfigEntry;
 import com.yugabyte.yw.models.Universe;
+import io.ebean.Ebean;
 import io.ebean.Model;
+import io.prometheus.client.CollectorRegistry;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
@@ -58,15 +63,16 @@ public class SettableRuntimeConfigFactoryTest extends FakeDBApplication {
 
   // app config
   private static final Map<String, Object> staticConfigMap =
-      ImmutableMap.of(
-          SettableRuntimeConfigFactory.RUNTIME_CONFIG_INCLUDED_OBJECTS,
-          ImmutableList.of("yb.external_script"),
-          YB_STATIC_ONLY_KEY,
-          Scope.STATIC.toString(),
-          YB_OVERRIDDEN_KEY,
-          Scope.STATIC.toString(),
-          YB_CLOUD_ENABLED_KEY,
-          Boolean.TRUE);
+      ImmutableMap.<String, Object>builder()
+          .put(
+              SettableRuntimeConfigFactory.RUNTIME_CONFIG_INCLUDED_OBJECTS,
+              ImmutableList.of("yb.external_script"))
+          .put(YB_STATIC_ONLY_KEY, Scope.STATIC.toString())
+          .put(YB_OVERRIDDEN_KEY, Scope.STATIC.toString())
+          .put(YB_CLOUD_ENABLED_KEY, Boolean.TRUE)
+          .put(SettableRuntimeConfigFactory.CACHE_ENABLED, Boolean.TRUE)
+          .put(SettableRuntimeConfigFactory.CACHE_VERSION_CHECK_INTERVAL, "1 hour")
+          .build();
 
   // overrides in global scope:
   private static final Set<String> globalConfigSet =
@@ -218,6 +224,55 @@ public class SettableRuntimeConfigFactoryTest extends FakeDBApplication {
     assertEquals(2L, configFactory.forUniverse(universe2).getDuration(TASK_GC_FREQUENCY).toDays());
   }
 
+  @Test
+  public void testCachedUntilWritten() {
+    setupUniverseConfig();
+    double misses = getCounterValue(SettableRuntimeConfigFactory.CACHE_MISS_METRIC_NAME);
+    double hits = getCounterValue(SettableRuntimeConfigFactory.CACHE_HIT_METRIC_NAME);
+    validateUniverseValues(configFactory.forUniverse(defaultUniverse));
+    validateUniverseValues(configFactory.forUniverse(defaultUniverse));
+    assertEquals(
+        misses + 1, getCounterValue(SettableRuntimeConfigFactory.CACHE_MISS_METRIC_NAME), 0);
+    assertEquals(hits + 1, getCounterValue(SettableRuntimeConfigFactory.CACHE_HIT_METRIC_NAME), 0);
+
+    // A write to any scope the universe config is resolved from is seen right away.
+    configFactory.forCustomer(defaultCustomer).setValue(TASK_GC_FREQUENCY, "3 days");
+    assertEquals(
+        3L, configFactory.forUniverse(defaultUniverse).getDuration(TASK_GC_FREQUENCY).toDays());
+    configFactory.forUniverse(defaultUniverse).deleteEntry(YB_OVERRIDDEN_KEY);
+    assertEquals(
+        Scope.CUSTOMER.toString(),
+        configFactory.forUniverse(defaultUniverse).getString(YB_OVERRIDDEN_KEY));
+  }
+
+  @Test
+  public void testWrittenByOtherInstance() {
+    setupGlobalConfig();
+    SettableRuntimeConfigFactory checkingFactory =
+        new SettableRuntimeConfigFactory(
+            ConfigFactory.parseMap(staticConfigMap)
+                .withValue(
+                    SettableRuntimeConfigFactory.CACHE_VERSION_CHECK_INTERVAL,
+                    ConfigValueFactory.fromAnyRef("0 s")),
+            null,
+            null);
+    validateGlobalValues(checkingFactory.globalRuntimeConf());
+
+    // Written the way another platform instance would, without the local write count.
+    RuntimeConfigEntry entry =
+        RuntimeConfigEntry.getOrBadRequest(GLOBAL_SCOPE_UUID, YB_GLOBAL_RUNTIME_ONLY_KEY);
+    entry.setValue("other");
+    entry.save();
+    Ebean.createSqlUpdate("UPDATE scoped_runtime_config SET version = version + 1").execute();
+    assertEquals(
+        "other", checkingFactory.globalRuntimeConf().getString(YB_GLOBAL_RUNTIME_ONLY_KEY));
+  }
+
+  private static double getCounterValue(String name) {
+    Double value = CollectorRegistry.defaultRegistry.getSampleValue(name + "_total");
+    return value == null ? 0 : value;
+  }
+
   @Test
   public void testToRedactedString() {
     Map<String, Object> inputMap =
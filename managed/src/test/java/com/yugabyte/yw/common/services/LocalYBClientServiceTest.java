@@ -0,0 +1,190 @@
+// Copyright (c) YugaByte, Inc.
+
+package com.yugabyte.yw.common.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.yb.client.AsyncYBClient;
+import org.yb.client.YBClient;
+
+public class LocalYBClientServiceTest {
+
+  private static final String MASTERS = "10.0.0.1:7100,10.0.0.2:7100,10.0.0.3:7100";
+
+  private static final Duration LONG_TIMEOUT = Duration.ofHours(1);
+
+  private final List<LocalYBClientService> services = new ArrayList<>();
+
+  private static class TestYBClientService extends LocalYBClientService {
+    boolean healthy = true;
+    // Checks wait on it before returning, when set.
+    CountDownLatch checksStarted = null;
+
+    TestYBClientService(Duration idleTimeout, Duration healthCheckInterval) {
+      super(true, idleTimeout, healthCheckInterval, 2);
+    }
+
+    @Override
+    boolean isHealthy(AsyncYBClient asyncClient) {
+      if (checksStarted != null) {
+        checksStarted.countDown();
+        try {
+          // Only returns once the other check started too.
+          if (!checksStarted.await(10, TimeUnit.SECONDS)) {
+            return false;
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+      return healthy;
+    }
+  }
+
+  private TestYBClientService newService(Duration idleTimeout, Duration healthCheckInterval) {
+    TestYBClientService service = new TestYBClientService(idleTimeout, healthCheckInterval);
+    services.add(service);
+    return service;
+  }
+
+  @After
+  public void tearDown() {
+    // Closes the pooled clients and the maintenance executors.
+    services.forEach(LocalYBClientService::shutdown);
+  }
+
+  @Test
+  public void testClientsShared() {
+    TestYBClientService service = newService(LONG_TIMEOUT, LONG_TIMEOUT);
+    YBClient client1 = service.getClient(MASTERS, null);
+    YBClient client2 = service.getClient(MASTERS, null);
+    assertNotNull(client1);
+    assertNotNull(client2);
+    assertEquals(1, service.getPoolSize());
+    assertEquals(2, service.getNumLeases());
+
+    service.closeClient(client1, MASTERS);
+    // Closing a client twice releases its lease once.
+    service.closeClient(client1, MASTERS);
+    assertEquals(1, service.getNumLeases());
+    service.closeClient(client2, MASTERS);
+    assertEquals(0, service.getNumLeases());
+    assertEquals(1, service.getPoolSize());
+  }
+
+  @Test
+  public void testClientsKeyedByCertFile() {
+    TestYBClientService service = newService(LONG_TIMEOUT, LONG_TIMEOUT);
+    YBClient client1 = service.getClient(MASTERS, null);
+    YBClient client2 = service.getClient(MASTERS, "/tmp/ca.crt");
+    assertEquals(2, service.getPoolSize());
+    service.closeClient(client1, MASTERS);
+    service.closeClient(client2, MASTERS);
+  }
+
+  @Test
+  public void testClientsKeyedByMasterSet() {
+    TestYBClientService service = newService(LONG_TIMEOUT, LONG_TIMEOUT);
+    YBClient client1 = service.getClient(MASTERS);
+    YBClient client2 = service.getClient("10.0.0.3:7100, 10.0.0.1:7100,10.0.0.2:7100");
+    // The same masters in another order share the client, without superseding it.
+    assertEquals(1, service.getPoolSize());
+    assertEquals(2, service.getNumLeases());
+    service.closeClient(client1, MASTERS);
+    service.closeClient(client2, MASTERS);
+  }
+
+  @Test
+  public void testIdleClientEvicted() throws Exception {
+    TestYBClientService service = newService(Duration.ZERO, LONG_TIMEOUT);
+    try (YBClient client = service.getClient(MASTERS)) {
+      service.runMaintenance();
+      // Leased clients are not evicted.
+      assertEquals(1, service.getPoolSize());
+    }
+    service.runMaintenance();
+    assertEquals(0, service.getPoolSize());
+  }
+
+  @Test
+  public void testUnhealthyClientEvicted() {
+    TestYBClientService service = newService(LONG_TIMEOUT, Duration.ZERO);
+    YBClient client = service.getClient(MASTERS);
+    service.closeClient(client, MASTERS);
+    service.runMaintenance();
+    assertEquals(1, service.getPoolSize());
+
+    service.healthy = false;
+    service.runMaintenance();
+    assertEquals(0, service.getPoolSize());
+  }
+
+  @Test
+  public void testClientsCheckedInParallel() {
+    TestYBClientService service = newService(LONG_TIMEOUT, Duration.ZERO);
+    service.closeClient(service.getClient(MASTERS), MASTERS);
+    String otherMasters = "10.0.1.1:7100";
+    service.closeClient(service.getClient(otherMasters), otherMasters);
+    // Each check waits for the other one: run one after the other, they would both fail.
+    service.checksStarted = new CountDownLatch(2);
+    service.runMaintenance();
+    assertEquals(0, service.checksStarted.getCount());
+    assertEquals(2, service.getPoolSize());
+  }
+
+  @Test
+  public void testUnhealthyLeasedClientEvicted() {
+    TestYBClientService service = newService(LONG_TIMEOUT, Duration.ZERO);
+    YBClient client1 = service.getClient(MASTERS);
+    service.healthy = false;
+    service.runMaintenance();
+    // Leased clients are health checked too.
+    assertEquals(0, service.getPoolSize());
+
+    // The next lease gets a new client.
+    service.healthy = true;
+    YBClient client2 = service.getClient(MASTERS);
+    assertEquals(1, service.getPoolSize());
+    assertEquals(2, service.getNumLeases());
+    service.closeClient(client1, MASTERS);
+    service.closeClient(client2, MASTERS);
+    assertEquals(0, service.getNumLeases());
+  }
+
+  @Test
+  public void testMastersChanged() throws Exception {
+    TestYBClientService service = newService(LONG_TIMEOUT, LONG_TIMEOUT);
+    YBClient client1 = service.getClient(MASTERS);
+    String newMasters = "10.0.0.1:7100,10.0.0.2:7100,10.0.0.4:7100";
+    YBClient client2 = service.getClient(newMasters);
+    // The client for the old masters is not leased anymore, and closed once released.
+    assertEquals(1, service.getPoolSize());
+    assertEquals(2, service.getNumLeases());
+    service.closeClient(client1, MASTERS);
+    service.closeClient(client2, newMasters);
+    assertEquals(0, service.getNumLeases());
+
+    // The masters of another universe don't replace the client.
+    service.getClient("10.0.1.1:7100").close();
+    assertEquals(2, service.getPoolSize());
+  }
+
+  @Test
+  public void testPoolDisabled() {
+    LocalYBClientService service = new LocalYBClientService(false, LONG_TIMEOUT, LONG_TIMEOUT, 1);
+    services.add(service);
+    YBClient client = service.getClient(MASTERS);
+    assertNotNull(client);
+    assertEquals(0, service.getPoolSize());
+    service.closeClient(client, MASTERS);
+  }
+}
@@ -0,0 +1,90 @@
+// Copyright (c) YugaByte, Inc.
+
+package com.yugabyte.yw.controllers;
+
+import static com.yugabyte.yw.common.ApiUtils.getDefaultUserIntent;
+import static com.yugabyte.yw.common.AssertHelper.assertOk;
+import static com.yugabyte.yw.common.FakeApiHelper.doRequestWithAuthToken;
+import static com.yugabyte.yw.common.ModelFactory.createUniverse;
+import static org.junit.Assert.assertEquals;
+import static play.test.Helpers.contentAsString;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.yugabyte.yw.common.ApiUtils;
+import com.yugabyte.yw.forms.UniverseDefinitionTaskParams.UserIntent;
+import com.yugabyte.yw.models.Universe;
+import com.yugabyte.yw.models.helpers.UniverseDetailsCache;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.libs.Json;
+import play.mvc.Result;
+
+/**
+ * Latency of the universe list API with 500 universes of 100 nodes each, with and without the
+ * cache of the parsed universe details. Skipped unless YB_RUN_BENCHMARKS=true is set, as in
+ *
+ * <p>YB_RUN_BENCHMARKS=true sbt "testOnly com.yugabyte.yw.controllers.UniverseListBenchmarkTest"
+ */
+public class UniverseListBenchmarkTest extends UniverseControllerTestBase {
+  private static final Logger LOG = LoggerFactory.getLogger(UniverseListBenchmarkTest.class);
+
+  private static final int NUM_UNIVERSES = 500;
+
+  private static final int NUM_NODES = 100;
+
+  private static final int NUM_WARMUP_REQUESTS = 3;
+
+  private static final int NUM_REQUESTS = 10;
+
+  @After
+  public void tearDown() {
+    UniverseDetailsCache.setEnabled(true);
+  }
+
+  @Test
+  public void testListUniversesLatency() {
+    Assume.assumeTrue("true".equals(System.getenv("YB_RUN_BENCHMARKS")));
+    UserIntent userIntent = getDefaultUserIntent(customer);
+    userIntent.numNodes = NUM_NODES;
+    for (int i = 0; i < NUM_UNIVERSES; i++) {
+      Universe universe = createUniverse("Universe-" + i, customer.getCustomerId());
+      Universe.saveDetails(universe.universeUUID, ApiUtils.mockUniverseUpdater(userIntent));
+      customer.addUniverseUUID(universe.universeUUID);
+    }
+    customer.save();
+
+    UniverseDetailsCache.setEnabled(false);
+    double uncachedMillis = measureListUniverses();
+    UniverseDetailsCache.setEnabled(true);
+    double cachedMillis = measureListUniverses();
+    LOG.info(
+        "List of {} universes of {} nodes: {} ms without the details cache, {} ms with it",
+        NUM_UNIVERSES,
+        NUM_NODES,
+        String.format("%.1f", uncachedMillis),
+        String.format("%.1f", cachedMillis));
+  }
+
+  // Returns the average latency of the list requests after the warmup ones.
+  private double measureListUniverses() {
+    for (int i = 0; i < NUM_WARMUP_REQUESTS; i++) {
+      listUniverses();
+    }
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < NUM_REQUESTS; i++) {
+      listUniverses();
+    }
+    return (System.nanoTime() - startNanos) / 1e6 / NUM_REQUESTS;
+  }
+
+  private void listUniverses() {
+    Result result =
+        doRequestWithAuthToken("GET", "/api/customers/" + customer.uuid + "/universes", authToken);
+    assertOk(result);
+    JsonNode json = Json.parse(contentAsString(result));
+    assertEquals(NUM_UNIVERSES, json.size());
+  }
+}
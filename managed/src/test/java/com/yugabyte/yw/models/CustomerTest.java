@@ -4,12 +4,14 @@ package com.yugabyte.yw.models;
 
 import static com.yugabyte.yw.common.ModelFactory.createUniverse;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableSet;
 import com.yugabyte.yw.common.ApiUtils;
 import com.yugabyte.yw.common.FakeDBApplication;
 import com.yugabyte.yw.common.ModelFactory;
@@ -127,4 +129,44 @@ public class CustomerTest extends FakeDBApplication {
     Set<Universe> universes = c.getUniversesForProvider(randProviderUUID);
     assertEquals(1, universes.size());
   }
+
+  @Test
+  public void testAddAndRemoveUniverses() {
+    Customer c = ModelFactory.testCustomer();
+    // ModelFactory registers the universes to their customer.
+    Universe u1 = createUniverse("Universe1", c.getCustomerId());
+    Universe u2 = createUniverse("Universe2", c.getCustomerId());
+    UUID missingUniverseUUID = UUID.randomUUID();
+    c.addUniverseUUID(missingUniverseUUID);
+    assertEquals(
+        ImmutableSet.of(u1.universeUUID, u2.universeUUID, missingUniverseUUID),
+        c.getUniverseUUIDs());
+    assertTrue(c.hasUniverse(u1.universeUUID));
+    // Universes which don't exist are not returned.
+    assertEquals(2, c.getUniverses().size());
+
+    c.removeUniverseUUID(u1.universeUUID);
+    c.removeUniverseUUID(missingUniverseUUID);
+    assertFalse(c.hasUniverse(u1.universeUUID));
+    assertEquals(ImmutableSet.of(u2.universeUUID), c.getUniverseUUIDs());
+    Set<Universe> universes = c.getUniverses();
+    assertEquals(1, universes.size());
+    assertEquals(u2.universeUUID, universes.iterator().next().universeUUID);
+  }
+
+  @Test
+  public void testAddUniversesFromStaleCustomers() {
+    Customer c = ModelFactory.testCustomer();
+    Customer c1 = Customer.get(c.uuid);
+    Customer c2 = Customer.get(c.uuid);
+    UUID universeUUID1 = UUID.randomUUID();
+    UUID universeUUID2 = UUID.randomUUID();
+    c1.addUniverseUUID(universeUUID1);
+    c2.addUniverseUUID(universeUUID2);
+    c1.save();
+    c2.save();
+    // Adding twice is a no-op.
+    c2.addUniverseUUID(universeUUID1);
+    assertEquals(ImmutableSet.of(universeUUID1, universeUUID2), c.getUniverseUUIDs());
+  }
 }
@@ -22,6 +22,7 @@ import static org.mockito.Mockito.when;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.yugabyte.yw.cloud.PublicCloudConstants;
@@ -45,6 +46,8 @@ import com.yugabyte.yw.models.helpers.CloudSpecificInfo;
 import com.yugabyte.yw.models.helpers.DeviceInfo;
 import com.yugabyte.yw.models.helpers.NodeDetails;
 import com.yugabyte.yw.models.helpers.NodeDetails.NodeState;
+import com.yugabyte.yw.models.helpers.UniverseDetailsCache;
+import io.ebean.Ebean;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -131,6 +134,40 @@ public class UniverseTest extends FakeDBApplication {
     Universe.getOrBadRequest(unknownUUID);
   }
 
+  @Test
+  public void testGetAllPresentCopiesDetails() {
+    Universe u = createUniverse(defaultCustomer.getCustomerId());
+    Set<UUID> uuids = ImmutableSet.of(u.universeUUID);
+    Universe fetched1 = Universe.getAllPresent(uuids).iterator().next();
+    Universe fetched2 = Universe.getAllPresent(uuids).iterator().next();
+    assertFalse(fetched1.getUniverseDetails() == fetched2.getUniverseDetails());
+    // Modifying the details of a universe loaded from the cache doesn't change the others.
+    fetched1.getUniverseDetails().updateInProgress = true;
+    assertFalse(fetched2.getUniverseDetails().updateInProgress);
+    Universe fetched3 = Universe.getAllPresent(uuids).iterator().next();
+    assertFalse(fetched3.getUniverseDetails().updateInProgress);
+  }
+
+  @Test
+  public void testGetAllPresentAfterSaveDetails() {
+    Universe u = createUniverse(defaultCustomer.getCustomerId());
+    Set<UUID> uuids = ImmutableSet.of(u.universeUUID);
+    Universe fetched = Universe.getAllPresent(uuids).iterator().next();
+    assertFalse(fetched.getUniverseDetails().updateInProgress);
+
+    Universe.saveDetails(
+        u.universeUUID, universe -> universe.getUniverseDetails().updateInProgress = true);
+    fetched = Universe.getAllPresent(uuids).iterator().next();
+    assertTrue(fetched.getUniverseDetails().updateInProgress);
+
+    // Saved without incrementing the version.
+    Universe.saveDetails(
+        u.universeUUID, universe -> universe.getUniverseDetails().updateInProgress = false, false);
+    fetched = Universe.getAllWithoutResources(defaultCustomer).iterator().next();
+    assertFalse(fetched.getUniverseDetails().updateInProgress);
+    assertTrue(Universe.getAllPresent(ImmutableSet.of()).isEmpty());
+  }
+
   @Test
   public void testParallelSaveDetails() {
     int numNodes = 100;
@@ -567,6 +604,64 @@ public class UniverseTest extends FakeDBApplication {
     assertEquals(universes.size(), 0);
   }
 
+  @Test
+  public void testReleaseLookupAfterSaveDetails() {
+    Universe u = createUniverse(defaultCustomer.getCustomerId());
+    assertFalse(Universe.existsRelease("2.0.0.0-b1"));
+
+    Universe.saveDetails(
+        u.universeUUID,
+        universe ->
+            universe.getUniverseDetails().getPrimaryCluster().userIntent.ybSoftwareVersion =
+                "2.0.0.0-b1");
+    assertTrue(Universe.existsRelease("2.0.0.0-b1"));
+    assertEquals(1, Universe.universeDetailsIfReleaseExists("2.0.0.0-b1").size());
+
+    Universe.saveDetails(
+        u.universeUUID,
+        universe ->
+            universe.getUniverseDetails().getPrimaryCluster().userIntent.ybSoftwareVersion =
+                "2.1.0.0-b1");
+    assertFalse(Universe.existsRelease("2.0.0.0-b1"));
+    assertTrue(Universe.existsRelease("2.1.0.0-b1"));
+
+    Universe.delete(u.universeUUID);
+    assertFalse(Universe.existsRelease("2.1.0.0-b1"));
+  }
+
+  @Test
+  public void testAttributesOfLegacyUserIntent() {
+    Universe u = createUniverse(defaultCustomer.getCustomerId());
+    // Details stored before the clusters, with the user intent at the top level.
+    String legacyDetails =
+        "{\"universeUUID\": \""
+            + u.universeUUID
+            + "\", \"userIntent\": {\"universeName\": \"Legacy\","
+            + " \"ybSoftwareVersion\": \"1.0.0.0-b1\", \"provider\": \""
+            + defaultProvider.uuid
+            + "\"}, \"placementInfo\": {\"cloudList\": []}}";
+    Ebean.createSqlUpdate(
+            "UPDATE universe SET universe_details_json = :details WHERE universe_uuid = :uuid")
+        .setParameter("details", legacyDetails)
+        .setParameter("uuid", u.universeUUID)
+        .execute();
+    UniverseDetailsCache.invalidate(u.universeUUID);
+
+    // Like the universe_attribute migration, the top level user intent stands for the primary
+    // cluster.
+    UniverseDefinitionTaskParams details =
+        Universe.getOrBadRequest(u.universeUUID).getUniverseDetails();
+    SetMultimap<UniverseAttribute.Name, String> attributes = UniverseAttribute.fromDetails(details);
+    assertEquals(
+        ImmutableSet.of("1.0.0.0-b1"), attributes.get(UniverseAttribute.Name.SOFTWARE_VERSION));
+    assertEquals(
+        ImmutableSet.of(defaultProvider.uuid.toString()),
+        attributes.get(UniverseAttribute.Name.PROVIDER));
+
+    Universe.saveDetails(u.universeUUID, universe -> {});
+    assertTrue(Universe.existsRelease("1.0.0.0-b1"));
+  }
+
   private UserIntent getBaseIntent() {
 
     // Create regions